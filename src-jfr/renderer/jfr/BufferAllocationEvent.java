@@ -0,0 +1,34 @@
+package renderer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A framebuffer or other per-pixel buffer being allocated. */
+@Name("renderer.BufferAllocation")
+@Label("Buffer Allocation")
+@Category("Renderer")
+@Description("A per-pixel buffer allocated by the renderer")
+@Enabled(false)
+class BufferAllocationEvent extends Event {
+
+	@Label("Buffer")
+	String buffer;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Size")
+	@Description("Approximate size of the buffer")
+	@DataAmount
+	long bytes;
+}
+
+// code for comp261 assignments
@@ -0,0 +1,98 @@
+package renderer.jfr;
+
+import jdk.jfr.EventType;
+import renderer.RenderEvents;
+
+/**
+ * Sends the renderer's events to the flight recorder. {@link RenderEvents}
+ * loads this by name, so the rest of the renderer never refers to jdk.jfr.
+ * Each hook checks whether its event is enabled before making one, so a
+ * disabled event allocates nothing.
+ */
+public class FlightRecorderProbe implements RenderEvents.Probe {
+
+	private static final EventType FRAME = EventType.getEventType(FrameEvent.class);
+	private static final EventType STAGE = EventType.getEventType(StageEvent.class);
+	private static final EventType LOAD = EventType.getEventType(SceneLoadEvent.class);
+	private static final EventType BUFFER = EventType.getEventType(BufferAllocationEvent.class);
+
+	@Override
+	public Object beginFrame() {
+		if (!FRAME.isEnabled())
+			return null;
+		FrameEvent event = new FrameEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endFrame(Object frame, int triangles, int drawn, int width, int height) {
+		FrameEvent event = (FrameEvent) frame;
+		event.end();
+		if (event.shouldCommit()) {
+			event.triangles = triangles;
+			event.drawn = drawn;
+			event.width = width;
+			event.height = height;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginStage(String stage) {
+		if (!STAGE.isEnabled())
+			return null;
+		StageEvent event = new StageEvent();
+		event.stage = stage;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endStage(Object stage, int triangles) {
+		StageEvent event = (StageEvent) stage;
+		event.end();
+		if (event.shouldCommit()) {
+			event.triangles = triangles;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginLoad(String file, long bytes) {
+		if (!LOAD.isEnabled())
+			return null;
+		SceneLoadEvent event = new SceneLoadEvent();
+		event.file = file;
+		event.bytes = bytes;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endLoad(Object load, int triangles, String error) {
+		SceneLoadEvent event = (SceneLoadEvent) load;
+		event.end();
+		if (event.shouldCommit()) {
+			event.triangles = triangles;
+			event.error = error;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void bufferAllocated(String buffer, int width, int height, long bytes) {
+		if (!BUFFER.isEnabled())
+			return;
+		BufferAllocationEvent event = new BufferAllocationEvent();
+		if (event.shouldCommit()) {
+			event.buffer = buffer;
+			event.width = width;
+			event.height = height;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+}
+
+// code for comp261 assignments
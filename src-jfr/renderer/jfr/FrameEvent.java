@@ -0,0 +1,35 @@
+package renderer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One frame drawn by the renderer, from the start of the frame to the image being ready. */
+@Name("renderer.Frame")
+@Label("Frame")
+@Category("Renderer")
+@Description("A frame drawn by the renderer")
+@Enabled(false)
+@StackTrace(false)
+class FrameEvent extends Event {
+
+	@Label("Triangles")
+	@Description("Triangles in the scene")
+	int triangles;
+
+	@Label("Drawn")
+	@Description("Triangles facing the viewer")
+	int drawn;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+}
+
+// code for comp261 assignments
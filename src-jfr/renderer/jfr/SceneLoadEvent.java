@@ -0,0 +1,36 @@
+package renderer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** The load of a scene file, from opening it to the whole scene being parsed. */
+@Name("renderer.SceneLoad")
+@Label("Scene Load")
+@Category("Renderer")
+@Description("A scene file read and parsed")
+@Enabled(false)
+@StackTrace(false)
+class SceneLoadEvent extends Event {
+
+	@Label("File")
+	String file;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+
+	@Label("Triangles")
+	int triangles;
+
+	@Label("Error")
+	@Description("Why the load failed, if it did")
+	String error;
+}
+
+// code for comp261 assignments
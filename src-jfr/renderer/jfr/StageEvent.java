@@ -0,0 +1,28 @@
+package renderer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One stage of a frame, such as transforming the geometry or rasterizing it. */
+@Name("renderer.Stage")
+@Label("Frame Stage")
+@Category("Renderer")
+@Description("A stage of a frame drawn by the renderer")
+@Enabled(false)
+@StackTrace(false)
+class StageEvent extends Event {
+
+	@Label("Stage")
+	String stage;
+
+	@Label("Triangles")
+	@Description("Triangles the stage worked on")
+	int triangles;
+}
+
+// code for comp261 assignments
@@ -0,0 +1,88 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import renderer.FrameBuffer;
+import renderer.RenderEvents;
+
+public class FlightRecorderTests {
+
+	private static final String[] EVENTS = { "renderer.Frame", "renderer.Stage", "renderer.SceneLoad",
+			"renderer.BufferAllocation" };
+
+	@Before
+	public void needsRecorder() {
+		Assume.assumeTrue(RenderEvents.isAvailable());
+	}
+
+	/* emits one of every event */
+	private static void emitAll() {
+		Object frame = RenderEvents.beginFrame();
+		Object stage = RenderEvents.beginStage(RenderEvents.GEOMETRY);
+		RenderEvents.endStage(stage, 968);
+		new FrameBuffer(30, 20);
+		RenderEvents.endFrame(frame, 968, 500, 30, 20);
+		Object load = RenderEvents.beginLoad("data/monkey.txt", 80000);
+		RenderEvents.endLoad(load, 968, null);
+	}
+
+	private static List<RecordedEvent> record(boolean enable) throws IOException {
+		Recording recording = new Recording();
+		try {
+			if (enable)
+				for (String event : EVENTS)
+					recording.enable(event).withoutThreshold();
+			recording.start();
+			emitAll();
+			recording.stop();
+			File file = Files.createTempFile("renderer", ".jfr").toFile();
+			file.deleteOnExit();
+			recording.dump(file.toPath());
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			recording.close();
+		}
+	}
+
+	@Test
+	/** Enabled events carry what happened. */
+	public void testEvents() throws IOException {
+		Map<String, RecordedEvent> found = new HashMap<String, RecordedEvent>();
+		for (RecordedEvent event : record(true))
+			found.put(event.getEventType().getName(), event);
+		for (String name : EVENTS)
+			assertTrue("no " + name, found.containsKey(name));
+		RecordedEvent frame = found.get("renderer.Frame");
+		assertEquals(968, frame.getInt("triangles"));
+		assertEquals(500, frame.getInt("drawn"));
+		assertEquals(30, frame.getInt("width"));
+		assertEquals("geometry", found.get("renderer.Stage").getString("stage"));
+		assertEquals(80000, found.get("renderer.SceneLoad").getLong("bytes"));
+		assertEquals(968, found.get("renderer.SceneLoad").getInt("triangles"));
+		assertEquals(20, found.get("renderer.BufferAllocation").getInt("height"));
+	}
+
+	@Test
+	/** Events are off unless a recording asks for them. */
+	public void testDisabledByDefault() throws IOException {
+		assertNull(RenderEvents.beginFrame());
+		for (RecordedEvent event : record(false))
+			assertFalse(event.getEventType().getName().startsWith("renderer."));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,183 @@
+package renderer;
+
+/**
+ * The same 3x4 affine transformation as {@link Transform}, for inner loops.
+ * The twelve elements are final fields rather than a float[][], so reading
+ * them needs no array bounds checks, and points are transformed in bulk
+ * straight from one float array to another without creating a Vector3D for
+ * each of them.
+ * 
+ * Transforming a point or composing two transformations rounds exactly as
+ * Transform does, so the two can be mixed without changing a pixel. The fused
+ * operations (scaledRotation, preScale, preTranslate) skip the multiplications
+ * by zero that building and composing the separate matrices would do.
+ */
+public final class Affine {
+
+	public final float m00, m01, m02, m03;
+	public final float m10, m11, m12, m13;
+	public final float m20, m21, m22, m23;
+
+	private static final Affine IDENTITY = new Affine(1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f);
+
+	public Affine(float m00, float m01, float m02, float m03, float m10, float m11, float m12, float m13, float m20,
+			float m21, float m22, float m23) {
+		this.m00 = m00;
+		this.m01 = m01;
+		this.m02 = m02;
+		this.m03 = m03;
+		this.m10 = m10;
+		this.m11 = m11;
+		this.m12 = m12;
+		this.m13 = m13;
+		this.m20 = m20;
+		this.m21 = m21;
+		this.m22 = m22;
+		this.m23 = m23;
+	}
+
+	public static Affine identity() {
+		return IDENTITY;
+	}
+
+	public static Affine translation(float tx, float ty, float tz) {
+		return new Affine(1f, 0f, 0f, tx, 0f, 1f, 0f, ty, 0f, 0f, 1f, tz);
+	}
+
+	public static Affine scale(float sx, float sy, float sz) {
+		return new Affine(sx, 0f, 0f, 0f, 0f, sy, 0f, 0f, 0f, 0f, sz, 0f);
+	}
+
+	public static Affine xRotation(float th) {
+		float sinth = (float) Math.sin(th);
+		float costh = (float) Math.cos(th);
+		return new Affine(1f, 0f, 0f, 0f, 0f, costh, -sinth, 0f, 0f, sinth, costh, 0f);
+	}
+
+	public static Affine yRotation(float th) {
+		float sinth = (float) Math.sin(th);
+		float costh = (float) Math.cos(th);
+		return new Affine(costh, 0f, sinth, 0f, 0f, 1f, 0f, 0f, -sinth, 0f, costh, 0f);
+	}
+
+	public static Affine zRotation(float th) {
+		float sinth = (float) Math.sin(th);
+		float costh = (float) Math.cos(th);
+		return new Affine(costh, -sinth, 0f, 0f, sinth, costh, 0f, 0f, 0f, 0f, 1f, 0f);
+	}
+
+	/**
+	 * The uniform scale s applied after a rotation by xRot around the x axis
+	 * applied after one by yRot around the y axis, i.e. scale(s) composed with
+	 * xRotation(xRot) composed with yRotation(yRot), built in one step.
+	 */
+	public static Affine scaledRotation(float s, float xRot, float yRot) {
+		float sx = (float) Math.sin(xRot), cx = (float) Math.cos(xRot);
+		float sy = (float) Math.sin(yRot), cy = (float) Math.cos(yRot);
+		return new Affine(s * cy, 0f, s * sy, 0f,
+				s * (sx * sy), s * cx, s * (-sx * cy), 0f,
+				s * (-cx * sy), s * sx, s * (cx * cy), 0f);
+	}
+
+	/** post multiply this transform by another (this * other) */
+	public Affine compose(Affine o) {
+		return new Affine(
+				m00 * o.m00 + m01 * o.m10 + m02 * o.m20,
+				m00 * o.m01 + m01 * o.m11 + m02 * o.m21,
+				m00 * o.m02 + m01 * o.m12 + m02 * o.m22,
+				m00 * o.m03 + m01 * o.m13 + m02 * o.m23 + m03,
+				m10 * o.m00 + m11 * o.m10 + m12 * o.m20,
+				m10 * o.m01 + m11 * o.m11 + m12 * o.m21,
+				m10 * o.m02 + m11 * o.m12 + m12 * o.m22,
+				m10 * o.m03 + m11 * o.m13 + m12 * o.m23 + m13,
+				m20 * o.m00 + m21 * o.m10 + m22 * o.m20,
+				m20 * o.m01 + m21 * o.m11 + m22 * o.m21,
+				m20 * o.m02 + m21 * o.m12 + m22 * o.m22,
+				m20 * o.m03 + m21 * o.m13 + m22 * o.m23 + m23);
+	}
+
+	/** scale(sx, sy, sz) composed with this, without building the scale */
+	public Affine preScale(float sx, float sy, float sz) {
+		return new Affine(sx * m00, sx * m01, sx * m02, sx * m03,
+				sy * m10, sy * m11, sy * m12, sy * m13,
+				sz * m20, sz * m21, sz * m22, sz * m23);
+	}
+
+	/** translation(tx, ty, tz) composed with this, without building the translation */
+	public Affine preTranslate(float tx, float ty, float tz) {
+		return new Affine(m00, m01, m02, m03 + tx, m10, m11, m12, m13 + ty, m20, m21, m22, m23 + tz);
+	}
+
+	/**
+	 * Returns the transform that undoes this one, throwing an
+	 * IllegalStateException if it flattens space and so cannot be undone.
+	 */
+	public Affine invert() {
+		// the inverse of the 3x3 part is its adjugate over its determinant
+		float c00 = m11 * m22 - m12 * m21, c01 = m02 * m21 - m01 * m22, c02 = m01 * m12 - m02 * m11;
+		float c10 = m12 * m20 - m10 * m22, c11 = m00 * m22 - m02 * m20, c12 = m02 * m10 - m00 * m12;
+		float c20 = m10 * m21 - m11 * m20, c21 = m01 * m20 - m00 * m21, c22 = m00 * m11 - m01 * m10;
+		float det = m00 * c00 + m01 * c10 + m02 * c20;
+		if (det == 0f || Float.isNaN(det))
+			throw new IllegalStateException("Affine: cannot invert a singular transform");
+		float f = 1f / det;
+		c00 *= f; c01 *= f; c02 *= f;
+		c10 *= f; c11 *= f; c12 *= f;
+		c20 *= f; c21 *= f; c22 *= f;
+		return new Affine(c00, c01, c02, -(c00 * m03 + c01 * m13 + c02 * m23),
+				c10, c11, c12, -(c10 * m03 + c11 * m13 + c12 * m23),
+				c20, c21, c22, -(c20 * m03 + c21 * m13 + c22 * m23));
+	}
+
+	/**
+	 * Applies this transform to count points stored as consecutive triples of
+	 * floats from srcOff in src, writing the results from dstOff in dst. The
+	 * two ranges may be the same, but must not otherwise overlap.
+	 */
+	public void multiplyInto(float[] src, int srcOff, float[] dst, int dstOff, int count) {
+		int end = srcOff + count * 3;
+		for (int s = srcOff, d = dstOff; s < end; s += 3, d += 3) {
+			float vx = src[s], vy = src[s + 1], vz = src[s + 2];
+			dst[d] = m03 + (m00 * vx + m01 * vy + m02 * vz);
+			dst[d + 1] = m13 + (m10 * vx + m11 * vy + m12 * vz);
+			dst[d + 2] = m23 + (m20 * vx + m21 * vy + m22 * vz);
+		}
+	}
+
+	/**
+	 * As multiplyInto, but for directions rather than points, so the translation
+	 * is ignored.
+	 */
+	public void multiplyDirectionsInto(float[] src, int srcOff, float[] dst, int dstOff, int count) {
+		int end = srcOff + count * 3;
+		for (int s = srcOff, d = dstOff; s < end; s += 3, d += 3) {
+			float vx = src[s], vy = src[s + 1], vz = src[s + 2];
+			dst[d] = m00 * vx + m01 * vy + m02 * vz;
+			dst[d + 1] = m10 * vx + m11 * vy + m12 * vz;
+			dst[d + 2] = m20 * vx + m21 * vy + m22 * vz;
+		}
+	}
+
+	/** Applies this transform to the point v, overwriting it. */
+	public Vec3 multiplyInto(Vec3 v) {
+		float vx = v.x, vy = v.y, vz = v.z;
+		return v.set(m03 + (m00 * vx + m01 * vy + m02 * vz), m13 + (m10 * vx + m11 * vy + m12 * vz),
+				m23 + (m20 * vx + m21 * vy + m22 * vz));
+	}
+
+	public Vector3D multiply(Vector3D v) {
+		return new Vector3D(m03 + (m00 * v.x + m01 * v.y + m02 * v.z), m13 + (m10 * v.x + m11 * v.y + m12 * v.z),
+				m23 + (m20 * v.x + m21 * v.y + m22 * v.z));
+	}
+
+	public Transform toTransform() {
+		return Transform.of(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23);
+	}
+
+	public String toString() {
+		return m00 + " " + m01 + " " + m02 + " " + m03 + " \n" + m10 + " " + m11 + " " + m12 + " " + m13 + " \n" + m20
+				+ " " + m21 + " " + m22 + " " + m23 + " \n";
+	}
+}
+
+// code for comp261 assignments
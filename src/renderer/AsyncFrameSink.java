@@ -0,0 +1,164 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands frames to another sink on background worker threads, so that encoding
+ * frame N overlaps with rendering frame N+1.
+ *
+ * Frames wait in a bounded queue. When the workers fall behind, writeFrame
+ * blocks until there is room, so no more than (capacity + workers) frames are
+ * ever held in memory however long the sequence is. If the wrapped sink fails,
+ * the error is rethrown by the next call to writeFrame or by close.
+ *
+ * Given a {@link FramePool}, each image goes back to the pool once it has been
+ * written, or skipped after a failure, so the renderer can draw the next
+ * frames into it.
+ */
+public class AsyncFrameSink implements FrameSink {
+
+	private static final Frame POISON = new Frame(-1, null);
+
+	private final FrameSink sink;
+	private final BlockingQueue<Frame> queue;
+	private final Thread[] workers;
+	private final FramePool pool;
+	private final AtomicInteger waits = new AtomicInteger();
+	private volatile IOException failure;
+	private boolean closed;
+
+	/**
+	 * @param sink
+	 *            The sink that does the actual writing. It must accept frames
+	 *            from several threads if more than one worker is used.
+	 * @param capacity
+	 *            How many frames may wait in the queue.
+	 * @param threads
+	 *            How many worker threads to write with.
+	 */
+	public AsyncFrameSink(FrameSink sink, int capacity, int threads) {
+		this(sink, capacity, threads, null);
+	}
+
+	/** As above, giving every image back to the pool once written; the pool may be null. */
+	public AsyncFrameSink(FrameSink sink, int capacity, int threads, FramePool pool) {
+		if (capacity < 1 || threads < 1)
+			throw new IllegalArgumentException("AsyncFrameSink: capacity and threads must be positive");
+		this.sink = sink;
+		this.pool = pool;
+		this.queue = new ArrayBlockingQueue<Frame>(capacity);
+		this.workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "frame-encoder-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	private void work() {
+		try {
+			while (true) {
+				Frame frame = queue.take();
+				if (frame == POISON)
+					return;
+				try {
+					// after a failure keep draining, so the renderer never blocks forever
+					if (failure == null)
+						sink.writeFrame(frame.index, frame.image);
+				} catch (IOException e) {
+					failure = e;
+				} catch (RuntimeException e) {
+					failure = new IOException(e);
+				} catch (Error e) {
+					// a dead worker would leave close waiting on a full queue
+					failure = new IOException(e);
+				} finally {
+					if (pool != null)
+						pool.release(frame.image);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void writeFrame(int index, BufferedImage frame) throws IOException {
+		if (closed)
+			throw new IllegalStateException("AsyncFrameSink: already closed");
+		checkFailure();
+		Frame queued = new Frame(index, frame);
+		try {
+			if (!queue.offer(queued)) {
+				// only a full queue holds up the renderer
+				waits.incrementAndGet();
+				queue.put(queued);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the encoder", e);
+		}
+	}
+
+	/** Returns how many frames are currently waiting to be written. */
+	public int pending() {
+		return queue.size();
+	}
+
+	/** Returns how many times writeFrame found the queue full and had to wait. */
+	public int getWaits() {
+		return waits.get();
+	}
+
+	/** Returns the pool images go back to, or null if there is none. */
+	public FramePool getPool() {
+		return pool;
+	}
+
+	private void checkFailure() throws IOException {
+		IOException e = failure;
+		if (e != null)
+			throw new IOException("Frame encoding failed", e);
+	}
+
+	/** Waits for every queued frame to be written, then closes the wrapped sink. */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			for (int i = 0; i < workers.length; i++)
+				queue.put(POISON);
+			for (Thread worker : workers)
+				worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the encoder", e);
+		} finally {
+			sink.close();
+		}
+		checkFailure();
+	}
+
+	private static class Frame {
+		final int index;
+		final BufferedImage image;
+
+		Frame(int index, BufferedImage image) {
+			this.index = index;
+			this.image = image;
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,367 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders thumbnails and turntables for many scene files at once, as listed
+ * in a manifest with one job per line:
+ *
+ * <pre>
+ * # comments and blank lines are skipped
+ * SCENE OUTPUT WIDTH HEIGHT [XROT YROT [SCALE [FRAMES]]]
+ * </pre>
+ *
+ * Paths are relative to the manifest. A job of one frame (the default) writes
+ * a PNG to OUTPUT; a job of more frames renders a turntable starting from the
+ * given camera into OUTPUT, which is a .y4m or .rgb video or else a directory
+ * of PNGs, as for {@link SequenceRenderer}.
+ *
+ * Each job runs on a thread of its own that reads and parses the scene and
+ * encodes the frames; those threads spend most of their time waiting, so they
+ * are virtual threads where the JVM has them (Java 21 and later) and pooled
+ * platform threads otherwise. Rasterizing, the only heavy computation, is
+ * handed to a fixed pool of platform threads, one per core by default. A job
+ * keeps one frame rasterizing ahead of the one it is encoding.
+ *
+ * A {@link MemoryBudget} bounds how many scenes are resident at once: a job
+ * takes its estimated footprint before reading its scene and gives it back
+ * when it is done, so with thousands of jobs queued only as many are loaded
+ * as fit. A job that fails, whether its file is missing or malformed or its
+ * output cannot be written, is reported in its result and the rest carry on.
+ *
+ * Run as a program:
+ *
+ * <pre>
+ * BatchRenderer manifest.txt [memory MB] [render threads]
+ * </pre>
+ *
+ * it prints a line per finished job and a report of the failures at the end,
+ * and exits with status 1 if any job failed.
+ */
+public class BatchRenderer {
+
+	/** Roughly how many bytes of heap a parsed scene takes per byte of its file. */
+	public static final int SCENE_BYTES_PER_FILE_BYTE = 4;
+
+	/** Roughly how many bytes each pixel of a frame takes while it is drawn and encoded. */
+	public static final int BYTES_PER_PIXEL = 16;
+
+	/** One scene file to render. */
+	public static class Job {
+		public final File scene;
+		public final File output;
+		public final Dimension size;
+		public final Camera camera;
+		public final int frames;
+
+		public Job(File scene, File output, Dimension size, Camera camera, int frames) {
+			if (size.width < 1 || size.height < 1 || size.width > RenderService.MAX_SIZE
+					|| size.height > RenderService.MAX_SIZE)
+				throw new IllegalArgumentException("Bad image size: " + size.width + "x" + size.height);
+			if (frames < 1)
+				throw new IllegalArgumentException("Bad frame count: " + frames);
+			this.scene = scene;
+			this.output = output;
+			this.size = size;
+			this.camera = camera;
+			this.frames = frames;
+		}
+
+		/** The bytes this job is expected to need while it runs. */
+		public long estimateBytes() {
+			return scene.length() * SCENE_BYTES_PER_FILE_BYTE + 2L * size.width * size.height * BYTES_PER_PIXEL;
+		}
+
+		@Override
+		public String toString() {
+			return scene.getPath() + " -> " + output.getPath();
+		}
+	}
+
+	/** How a job went. */
+	public static class Result {
+		public final Job job;
+		/** Why the job failed, or null if it succeeded. */
+		public final Exception error;
+		public final long millis;
+
+		Result(Job job, Exception error, long millis) {
+			this.job = job;
+			this.error = error;
+			this.millis = millis;
+		}
+
+		public boolean succeeded() {
+			return error == null;
+		}
+
+		@Override
+		public String toString() {
+			if (succeeded())
+				return "ok " + job + " (" + millis + " ms)";
+			return "FAILED " + job + ": " + error;
+		}
+	}
+
+	/** Is told as each job finishes, on that job's thread. */
+	public interface Progress {
+		void finished(Result result, int done, int total);
+	}
+
+	private final MemoryBudget budget;
+	private final int renderThreads;
+	private final Color lightColor, ambientLight;
+
+	/**
+	 * @param memoryBudget
+	 *            how many bytes the resident scenes and frames may take between
+	 *            them
+	 * @param renderThreads
+	 *            how many platform threads rasterize
+	 */
+	public BatchRenderer(long memoryBudget, int renderThreads) {
+		this(memoryBudget, renderThreads, SequenceRenderer.DEFAULT_LIGHT, SequenceRenderer.DEFAULT_LIGHT);
+	}
+
+	public BatchRenderer(long memoryBudget, int renderThreads, Color lightColor, Color ambientLight) {
+		if (renderThreads < 1)
+			throw new IllegalArgumentException("BatchRenderer: need at least one render thread");
+		this.budget = new MemoryBudget(memoryBudget);
+		this.renderThreads = renderThreads;
+		this.lightColor = lightColor;
+		this.ambientLight = ambientLight;
+	}
+
+	/**
+	 * Reads a manifest, throwing an IllegalArgumentException naming the line if
+	 * one is malformed, so a bad manifest is caught before any work starts.
+	 */
+	public static List<Job> readManifest(File manifest) throws IOException {
+		File directory = manifest.getAbsoluteFile().getParentFile();
+		List<Job> jobs = new ArrayList<Job>();
+		BufferedReader reader = new BufferedReader(new FileReader(manifest));
+		try {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				try {
+					jobs.add(parseJob(line, directory));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(manifest + ":" + number + ": " + e.getMessage(), e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return jobs;
+	}
+
+	/** Parses one manifest line, with paths relative to the given directory. */
+	public static Job parseJob(String line, File directory) {
+		String[] values = line.trim().split("\\s+");
+		if (values.length < 4 || values.length == 5 || values.length > 8)
+			throw new IllegalArgumentException("Bad job line: " + line);
+		Camera camera = Camera.DEFAULT;
+		if (values.length >= 6) {
+			float scale = values.length >= 7 ? Float.parseFloat(values[6]) : 1.0f;
+			camera = new Camera(Float.parseFloat(values[4]), Float.parseFloat(values[5]), scale, 0f, 0f);
+		}
+		int frames = values.length == 8 ? Integer.parseInt(values[7]) : 1;
+		return new Job(resolve(directory, values[0]), resolve(directory, values[1]),
+				new Dimension(Integer.parseInt(values[2]), Integer.parseInt(values[3])), camera, frames);
+	}
+
+	private static File resolve(File directory, String path) {
+		File file = new File(path);
+		return file.isAbsolute() || directory == null ? file : new File(directory, path);
+	}
+
+	/**
+	 * Runs every job and returns their results in the same order, once all
+	 * have finished. The progress listener may be null.
+	 */
+	public List<Result> run(List<Job> jobs, final Progress progress) throws InterruptedException {
+		ExecutorService renderers = Executors.newFixedThreadPool(renderThreads, daemonThreads("batch-render"));
+		ExecutorService workers = newJobExecutor();
+		try {
+			final int total = jobs.size();
+			final AtomicInteger done = new AtomicInteger();
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(total);
+			for (final Job job : jobs) {
+				final ExecutorService pool = renderers;
+				futures.add(workers.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						Result result = runJob(job, pool);
+						if (progress != null)
+							progress.finished(result, done.incrementAndGet(), total);
+						return result;
+					}
+				}));
+			}
+			List<Result> results = new ArrayList<Result>(total);
+			for (Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					// runJob catches everything a job can throw
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			workers.shutdownNow();
+			renderers.shutdownNow();
+		}
+	}
+
+	/* runs one job on the calling thread, rasterizing on the given pool */
+	private Result runJob(Job job, ExecutorService renderers) {
+		long start = System.nanoTime();
+		long reserved = 0;
+		try {
+			reserved = budget.acquire(job.estimateBytes());
+			Scene scene = SceneLoader.load(job.scene);
+			if (scene == null)
+				throw new IllegalArgumentException("Nothing found in the scene");
+			float[] bound = scene.getBound();
+			List<Camera> cameras = job.frames == 1 ? java.util.Collections.singletonList(job.camera)
+					: job.camera.turntable(job.frames);
+
+			FrameSink sink = job.frames == 1 ? null : openSink(job.output);
+			try {
+				Future<BufferedImage> next = renderers.submit(frame(scene, bound, cameras.get(0), job.size));
+				for (int i = 0; i < cameras.size(); i++) {
+					Future<BufferedImage> current = next;
+					if (i + 1 < cameras.size())
+						next = renderers.submit(frame(scene, bound, cameras.get(i + 1), job.size));
+					BufferedImage image = current.get();
+					if (sink == null)
+						writePng(image, job.output);
+					else
+						sink.writeFrame(i, image);
+				}
+			} finally {
+				if (sink != null)
+					sink.close();
+			}
+			return new Result(job, null, (System.nanoTime() - start) / 1000000);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			return new Result(job, cause instanceof Exception ? (Exception) cause : e,
+					(System.nanoTime() - start) / 1000000);
+		} catch (Exception e) {
+			return new Result(job, e, (System.nanoTime() - start) / 1000000);
+		} finally {
+			budget.release(reserved);
+		}
+	}
+
+	private Callable<BufferedImage> frame(final Scene scene, final float[] bound, final Camera camera,
+			final Dimension size) {
+		return new Callable<BufferedImage>() {
+			@Override
+			public BufferedImage call() {
+				FrameBuffer buffer = new FrameBuffer(size.width, size.height);
+				Pipeline.renderFrame(scene, bound, camera, lightColor, ambientLight, buffer);
+				return Pipeline.convertBitmapToImage(buffer.color);
+			}
+		};
+	}
+
+	private static void writePng(BufferedImage image, File output) throws IOException {
+		File parent = output.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Could not create " + parent);
+		if (!ImageIO.write(image, "png", output))
+			throw new IOException("No PNG writer available");
+	}
+
+	/* a sink that encodes on the calling thread, which is the job's own */
+	private static FrameSink openSink(File target) throws IOException {
+		String name = target.getName().toLowerCase();
+		if (name.endsWith(".y4m"))
+			return new RawVideoWriter(target, RawVideoWriter.Format.Y4M, 30);
+		if (name.endsWith(".rgb"))
+			return new RawVideoWriter(target, RawVideoWriter.Format.RGB, 30);
+		return new PngSequenceWriter(target, "frame_");
+	}
+
+	/*
+	 * a virtual thread per job where the JVM has them, found reflectively as
+	 * this code also runs on older JVMs, or else a pool of platform threads
+	 * big enough to keep the render threads busy while others wait on I/O
+	 */
+	static ExecutorService newJobExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors(),
+					daemonThreads("batch-job"));
+		}
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("usage: BatchRenderer manifest.txt [memory MB] [render threads]");
+			System.exit(1);
+		}
+		long memory = args.length > 1 ? Long.parseLong(args[1]) << 20 : Runtime.getRuntime().maxMemory() / 2;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		List<Job> jobs = readManifest(new File(args[0]));
+
+		List<Result> results = new BatchRenderer(memory, threads).run(jobs, new Progress() {
+			@Override
+			public void finished(Result result, int done, int total) {
+				System.out.println("[" + done + "/" + total + "] " + result);
+			}
+		});
+		int failed = 0;
+		for (Result result : results)
+			if (!result.succeeded())
+				failed++;
+		System.out.println((results.size() - failed) + " of " + results.size() + " jobs succeeded");
+		if (failed > 0) {
+			System.out.println("Failures:");
+			for (Result result : results)
+				if (!result.succeeded())
+					System.out.println("  " + result.job + ": " + result.error);
+			System.exit(1);
+		}
+	}
+}
+
+// code for comp261 assignments
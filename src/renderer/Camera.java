@@ -0,0 +1,54 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable description of where the viewer is looking from. The rotation
+ * angles are applied to the auto-scaled scene in the same order as
+ * {@link Pipeline#rotateScene(Scene, float, float)}, the scale is applied
+ * around the centre of the canvas, and (x, y) shifts the result on screen.
+ *
+ * Unlike the interactive state in {@link Renderer}, a Camera is absolute: the
+ * same Camera always produces the same image of the same Scene, which is what
+ * headless tools such as {@link SequenceRenderer} need.
+ */
+public class Camera {
+
+	public static final Camera DEFAULT = new Camera(0f, 0f, 1.0f, 0f, 0f);
+
+	public final float xRot;
+	public final float yRot;
+	public final float scale;
+	public final float x;
+	public final float y;
+
+	public Camera(float xRot, float yRot, float scale, float x, float y) {
+		this.xRot = xRot;
+		this.yRot = yRot;
+		this.scale = scale;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Returns a path of the given number of frames that turns the model one full
+	 * revolution around the Y-axis, keeping the tilt, scale and offset of this
+	 * camera.
+	 */
+	public List<Camera> turntable(int frames) {
+		List<Camera> path = new ArrayList<Camera>(frames);
+		for (int i = 0; i < frames; i++) {
+			float angle = (float) (2 * Math.PI * i / frames);
+			path.add(new Camera(xRot, yRot + angle, scale, x, y));
+		}
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return "Camera:(" + xRot + ',' + yRot + ',' + scale + ',' + x + ',' + y + ')';
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,61 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The colour and depth buffers a frame is drawn into, indexed by column then
+ * row like the arrays {@link Pipeline#computeZBuffer} works on. Allocating two
+ * full-size arrays every frame is wasteful when frames are rendered back to
+ * back, so a FrameBuffer can be kept and cleared for the next frame instead.
+ */
+public class FrameBuffer {
+
+	public final int width;
+	public final int height;
+	public final Color[][] color;
+	public final float[][] depth;
+	private int[][] ranks;
+
+	public FrameBuffer(int width, int height) {
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("FrameBuffer: bad size " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.color = new Color[width][height];
+		this.depth = new float[width][height];
+		clear();
+		RenderEvents.bufferAllocated("frame buffer", width, height, RenderEvents.bufferBytes(width, height, 8));
+	}
+
+	/** Resets every pixel to the background colour and an infinite depth. */
+	public void clear() {
+		Pipeline.clearBuffers(color, depth);
+		if (ranks != null)
+			for (int[] column : ranks)
+				Arrays.fill(column, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the index of the polygon showing at each pixel, for renderers
+	 * that need to know which polygon is where (see {@link
+	 * Pipeline#computeZBuffer(FrameBuffer, EdgeList, Color, int)}). The array is
+	 * only allocated the first time it is asked for.
+	 */
+	public int[][] ranks() {
+		if (ranks == null) {
+			ranks = new int[width][height];
+			RenderEvents.bufferAllocated("rank buffer", width, height, RenderEvents.bufferBytes(width, height, 4));
+			for (int[] column : ranks)
+				Arrays.fill(column, Integer.MAX_VALUE);
+		}
+		return ranks;
+	}
+
+	/** Returns true if this buffer has the given size. */
+	public boolean hasSize(int width, int height) {
+		return this.width == width && this.height == height;
+	}
+}
+
+// code for comp261 assignments
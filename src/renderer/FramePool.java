@@ -0,0 +1,66 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the images of frames that have been written, so that rendering a long
+ * sequence reuses a handful of images instead of allocating one per frame.
+ *
+ * A renderer takes an image with acquire and hands it to an
+ * {@link AsyncFrameSink} built with the same pool, which gives it back once
+ * the frame is encoded. Images of another size than the pool's are never
+ * kept, and nor are more than the pool holds.
+ */
+public class FramePool {
+
+	private final int width, height, capacity;
+	private final Deque<BufferedImage> free = new ArrayDeque<BufferedImage>();
+	private int allocated;
+
+	/**
+	 * @param capacity
+	 *            How many idle images to keep; more than the frames that can be
+	 *            waiting in the sink at once gains nothing.
+	 */
+	public FramePool(int width, int height, int capacity) {
+		if (width < 1 || height < 1 || capacity < 1)
+			throw new IllegalArgumentException("FramePool: sizes and capacity must be positive");
+		this.width = width;
+		this.height = height;
+		this.capacity = capacity;
+	}
+
+	/** Returns an image of the pool's size, whose old contents are left as they were. */
+	public synchronized BufferedImage acquire() {
+		BufferedImage image = free.pollFirst();
+		if (image != null)
+			return image;
+		allocated++;
+		RenderEvents.bufferAllocated("frame pool", width, height, RenderEvents.bufferBytes(width, height, 4));
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/** Gives an image back for reuse once nothing is using it any more. */
+	public synchronized void release(BufferedImage image) {
+		if (image.getWidth() == width && image.getHeight() == height
+				&& image.getType() == BufferedImage.TYPE_INT_RGB && free.size() < capacity)
+			free.addFirst(image);
+	}
+
+	/** Returns how many images the pool has had to create. */
+	public synchronized int getAllocated() {
+		return allocated;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,21 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Somewhere finished frames can be sent, such as a video stream or a folder of
+ * images. Frames are numbered from zero in the order they were rendered.
+ *
+ * A sink owns the frames it is given, so the renderer must not draw into an
+ * image again once it has been written. Closing the sink flushes anything still
+ * pending and releases its files.
+ */
+public interface FrameSink extends Closeable {
+
+	/** Writes (or queues for writing) the frame with the given number. */
+	void writeFrame(int index, BufferedImage frame) throws IOException;
+}
+
+// code for comp261 assignments
@@ -0,0 +1,203 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import renderer.Scene.Polygon;
+
+/**
+ * The geometry half of the pipeline (transforming, back-face culling and
+ * shading) run over the polygons in fixed-size batches on the common
+ * fork-join pool.
+ *
+ * Results go into flat arrays indexed by polygon: nine screen-space floats
+ * per polygon, a visibility flag and the shaded colour packed as an RGB int.
+ * Every batch writes only its own slice of the arrays, so no locking is
+ * needed, and the arrays are kept and reused for the next frame.
+ *
+ * The transforms are applied one after another exactly as the Scene-based
+ * stages apply them, so drawing the results gives the same pixels as
+ * transforming a Scene and calling {@link Pipeline#rasterize}.
+ */
+public class GeometryStage {
+
+	/** How many polygons each parallel task handles. */
+	public static final int BATCH_SIZE = 1024;
+
+	private float[] positions = new float[0];
+	private boolean[] visible = new boolean[0];
+	private int[] reflectances = new int[0];
+	private int[] shades = new int[0];
+	// the source of each textured polygon, and null for the rest
+	private Polygon[] textured = new Polygon[0];
+	private float[] batchBounds = new float[0];
+	private int count;
+	private Vector3D light;
+
+	/**
+	 * Transforms the polygons by view, re-centres them on the canvas as
+	 * {@link Pipeline#autoTranslate} does, moves them by offset, and then culls
+	 * and shades them. The light is not rotated by view, so it stays fixed
+	 * relative to the viewer, but it does follow the re-centring and offset.
+	 */
+	public void process(List<Polygon> polygons, Transform view, Vector3D lightVector, Vector3D offset,
+			Dimension dimension, final Color lightColor, final Color ambientLight) {
+		final List<Polygon> input = polygons instanceof RandomAccess ? polygons : new ArrayList<Polygon>(polygons);
+		count = input.size();
+		if (visible.length < count) {
+			positions = new float[count * 9];
+			visible = new boolean[count];
+			reflectances = new int[count];
+			shades = new int[count];
+			textured = new Polygon[count];
+		}
+		final int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+		if (batchBounds.length < batches * 6)
+			batchBounds = new float[batches * 6];
+
+		// transform into view space, finding the bounds of each batch
+		final Affine toView = view.toAffine();
+		IntStream.range(0, batches).parallel().forEach(new IntConsumer() {
+			@Override
+			public void accept(int batch) {
+				transform(input, toView, batch);
+			}
+		});
+
+		float[] bound = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int b = 0; b < batches; b++) {
+			for (int i = 0; i < 6; i += 2) {
+				bound[i] = Math.min(bound[i], batchBounds[b * 6 + i]);
+				bound[i + 1] = Math.max(bound[i + 1], batchBounds[b * 6 + i + 1]);
+			}
+		}
+		final Affine recentre = Pipeline.centring(bound, 1.0f, dimension).toAffine();
+		final Affine shift = Affine.translation(offset.x, offset.y, offset.z);
+		light = shift.multiply(recentre.multiply(lightVector));
+
+		// move into place, then cull and shade
+		IntStream.range(0, batches).parallel().forEach(new IntConsumer() {
+			@Override
+			public void accept(int batch) {
+				shade(recentre, shift, lightColor, ambientLight, batch);
+			}
+		});
+	}
+
+	private void transform(List<Polygon> input, Affine view, int batch) {
+		int from = batch * BATCH_SIZE;
+		int to = Math.min(count, from + BATCH_SIZE);
+		float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int t = from; t < to; t++) {
+			Polygon poly = input.get(t);
+			Vector3D[] vertices = poly.vertices;
+			reflectances[t] = poly.reflectance.getRGB();
+			textured[t] = poly.texture != null ? poly : null;
+			for (int i = 0; i < 3; i++) {
+				int v = t * 9 + i * 3;
+				positions[v] = vertices[i].x;
+				positions[v + 1] = vertices[i].y;
+				positions[v + 2] = vertices[i].z;
+			}
+			view.multiplyInto(positions, t * 9, positions, t * 9, 3);
+			for (int v = t * 9; v < t * 9 + 9; v += 3) {
+				float x = positions[v], y = positions[v + 1], z = positions[v + 2];
+				if (x < minX)
+					minX = x;
+				if (x > maxX)
+					maxX = x;
+				if (y < minY)
+					minY = y;
+				if (y > maxY)
+					maxY = y;
+				if (z < minZ)
+					minZ = z;
+				if (z > maxZ)
+					maxZ = z;
+			}
+		}
+		int b = batch * 6;
+		batchBounds[b] = minX;
+		batchBounds[b + 1] = maxX;
+		batchBounds[b + 2] = minY;
+		batchBounds[b + 3] = maxY;
+		batchBounds[b + 4] = minZ;
+		batchBounds[b + 5] = maxZ;
+	}
+
+	private void shade(Affine recentre, Affine shift, Color lightColor, Color ambientLight, int batch) {
+		int from = batch * BATCH_SIZE;
+		int to = Math.min(count, from + BATCH_SIZE);
+		recentre.multiplyInto(positions, from * 9, positions, from * 9, (to - from) * 3);
+		shift.multiplyInto(positions, from * 9, positions, from * 9, (to - from) * 3);
+		float[] normal = new float[3];
+		for (int t = from; t < to; t++) {
+			Pipeline.getNormal(positions, t * 9, normal, 0);
+			visible[t] = !(normal[2] > 0);
+			if (visible[t])
+				shades[t] = Pipeline.shade(reflectances[t], Pipeline.cosTheta(normal, 0, light), lightColor,
+						ambientLight);
+		}
+	}
+
+	/**
+	 * Draws the visible polygons from the last call to process into the
+	 * buffers, in their original order.
+	 */
+	public void rasterize(Color[][] zbuffer, float[][] zdepth) {
+		for (int t = 0; t < count; t++) {
+			if (!visible[t])
+				continue;
+			EdgeList edgeList = Pipeline.computeEdgeList(positions, t * 9);
+			if (textured[t] != null)
+				Pipeline.computeTexturedZBuffer(zbuffer, zdepth, edgeList, positions, t * 9, Pipeline.ORTHOGRAPHIC,
+						textured[t].texture, textured[t].uvs, shades[t]);
+			else
+				Pipeline.computeZBuffer(zbuffer, zdepth, edgeList, new Color(shades[t]));
+		}
+	}
+
+	/**
+	 * Draws the visible polygons from the last call to process into a
+	 * TYPE_INT_RGB image with a scanline renderer instead of a z-buffer.
+	 * Textured polygons are drawn in their shaded colour alone.
+	 */
+	public void rasterize(ScanlineRenderer renderer, BufferedImage image) {
+		renderer.render(positions, visible, shades, count, image);
+	}
+
+	/** The number of polygons handled by the last call to process. */
+	public int size() {
+		return count;
+	}
+
+	/** The number of polygons that faced the viewer after the last call to process. */
+	public int visibleCount() {
+		int visibleCount = 0;
+		for (int t = 0; t < count; t++)
+			if (visible[t])
+				visibleCount++;
+		return visibleCount;
+	}
+
+	/** Whether polygon t faced the viewer after the last call to process. */
+	public boolean isVisible(int t) {
+		return visible[t];
+	}
+
+	/** The shaded colour of polygon t, packed as an RGB int. */
+	public int getShade(int t) {
+		return shades[t];
+	}
+}
+
+// code for comp261 assignments
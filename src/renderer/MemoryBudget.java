@@ -0,0 +1,73 @@
+package renderer;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of bytes shared out between threads, for limiting how much
+ * work is resident at once. A thread takes the bytes it expects to need
+ * before starting and gives them back when done, waiting if there are not
+ * enough to spare.
+ *
+ * Waiting uses a lock and condition rather than a monitor, so virtual threads
+ * that block here release their carrier thread.
+ */
+public class MemoryBudget {
+
+	private final long capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private long used;
+
+	public MemoryBudget(long capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("MemoryBudget: capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Waits until the given number of bytes are free and takes them, returning
+	 * the number taken, which is what must be passed back to release. A request
+	 * for more than the whole budget takes all of it, so it can still go ahead
+	 * once it has the budget to itself.
+	 */
+	public long acquire(long bytes) throws InterruptedException {
+		long wanted = Math.max(0, Math.min(bytes, capacity));
+		lock.lock();
+		try {
+			while (used + wanted > capacity)
+				released.await();
+			used += wanted;
+			return wanted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Gives back bytes taken by acquire. */
+	public void release(long bytes) {
+		lock.lock();
+		try {
+			used -= bytes;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/** Returns the number of bytes currently taken. */
+	public long getUsed() {
+		lock.lock();
+		try {
+			return used;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
+
+// code for comp261 assignments
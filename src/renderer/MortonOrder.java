@@ -0,0 +1,60 @@
+package renderer;
+
+/**
+ * Sort keys along a Morton (Z-order) curve: sorting the keys of points puts
+ * points that are close in space close together. {@link OffHeapMesh} uses
+ * them to group triangles whose normals point the same way into clusters.
+ *
+ * Triangles themselves are drawn in the order they were given. Reordering a
+ * mesh by its centroids was measured to make frames no faster, since the cost
+ * of a triangle is dominated by rasterizing it rather than by where it sits in
+ * memory.
+ */
+public class MortonOrder {
+
+	/* the grid has 2^12 cells a side; the rest of a key is the index */
+	private static final int GRID_BITS = 12;
+	private static final int INDEX_BITS = 27;
+
+	/** One more than the largest index a key can carry. */
+	public static final int MAX_TRIANGLES = 1 << INDEX_BITS;
+
+	/**
+	 * Returns the sort key of a point within the given bounds, carrying the
+	 * given index (less than MAX_TRIANGLES) in its low bits. Sorting keys puts
+	 * their indices in Morton order, keeping points in the same grid cell in
+	 * index order.
+	 */
+	public static long key(float x, float y, float z, float[] bound, int index) {
+		return morton(cell(x, bound[0], bound[1]), cell(y, bound[2], bound[3]), cell(z, bound[4], bound[5]))
+				<< INDEX_BITS | index;
+	}
+
+	/** Returns the index carried by a key. */
+	public static int index(long key) {
+		return (int) (key & (MAX_TRIANGLES - 1));
+	}
+
+	private static int cell(float value, float min, float max) {
+		if (!(max > min))
+			return 0;
+		int cell = (int) ((value - min) / (max - min) * (1 << GRID_BITS));
+		return Math.max(0, Math.min((1 << GRID_BITS) - 1, cell));
+	}
+
+	/* interleaves the low GRID_BITS bits of x, y and z, x lowest */
+	private static long morton(int x, int y, int z) {
+		return spread(x) | spread(y) << 1 | spread(z) << 2;
+	}
+
+	private static long spread(int value) {
+		long v = value & 0xfff;
+		v = (v | v << 16) & 0x0000ff0000ffL;
+		v = (v | v << 8) & 0x00f00f00f00fL;
+		v = (v | v << 4) & 0x0c30c30c30c3L;
+		v = (v | v << 2) & 0x249249249249L;
+		return v;
+	}
+}
+
+// code for comp261 assignments
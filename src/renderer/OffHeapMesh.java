@@ -0,0 +1,348 @@
+package renderer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * A triangle mesh whose geometry lives in direct buffers outside the Java
+ * heap, for models too large to keep as {@link Polygon} objects. Per triangle
+ * it stores the nine vertex coordinates, the face normal (computed once when
+ * the triangle is added) and the reflectance packed as an RGB int.
+ *
+ * Storage grows in fixed-size chunks, so adding triangles never copies what is
+ * already stored and no single buffer approaches the 2GB limit of a
+ * ByteBuffer. The garbage collector only ever sees the chunk headers. Note that
+ * the JVM caps direct memory with -XX:MaxDirectMemorySize (by default the same
+ * as the maximum heap), so large meshes need that raised rather than -Xmx.
+ *
+ * Triangles are grouped into clusters of CLUSTER_SIZE whose normals point
+ * the same way, by cutting the Morton order of their unit normals (see
+ * {@link MortonOrder}) into runs. Each cluster keeps a cone bounding the
+ * directions of its normals, so a renderer can reject a cluster that faces
+ * wholly away from the viewer with one test instead of one per triangle.
+ * Grouping by direction rather than by file order keeps the cones narrow for
+ * models, such as CAD exports, whose triangles are listed in no useful order;
+ * grouping by position does little better, since 64 neighbouring triangles
+ * on a curved surface face many ways. The triangles themselves stay in the
+ * order they were added, which is the order they are drawn in. Clusters are
+ * worked out when first asked for after triangles have been added.
+ *
+ * Meshes are filled by one thread and may then be read from any number of
+ * threads.
+ */
+public class OffHeapMesh {
+
+	private static final int CHUNK_SHIFT = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** The number of triangles in each cluster; only the last may be smaller. */
+	public static final int CLUSTER_SIZE = 64;
+
+	/*
+	 * how far inside the cone the view direction must be before a cluster is
+	 * rejected, so rounding never rejects a triangle the per-triangle test would
+	 * draw
+	 */
+	private static final float CONE_MARGIN = 1e-3f;
+
+	// the cube holding every unit normal, to sort normals along a Morton curve
+	private static final float[] DIRECTIONS = { -1f, 1f, -1f, 1f, -1f, 1f };
+
+	private final List<FloatBuffer> positions = new ArrayList<FloatBuffer>();
+	private final List<FloatBuffer> normals = new ArrayList<FloatBuffer>();
+	private final List<IntBuffer> colors = new ArrayList<IntBuffer>();
+	private final float[] bound = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+			Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+	private final Vector3D light;
+	private final float[] scratchNormal = new float[3];
+	private int size;
+	// per cluster: the unit axis of its normal cone, then the sine of the
+	// cone's half-angle, or 2 if the cluster can never face wholly away
+	private float[] cones = new float[0];
+	// the cluster of each triangle
+	private final List<IntBuffer> clusters = new ArrayList<IntBuffer>();
+	// the number of clusters, and of the triangles they were worked out for
+	private int clusterCount, clustered;
+
+	public OffHeapMesh(Vector3D light) {
+		this.light = light;
+	}
+
+	/** Copies the polygons of a scene into a new mesh. */
+	public static OffHeapMesh fromScene(Scene scene) {
+		OffHeapMesh mesh = new OffHeapMesh(scene.getLight());
+		float[] points = new float[9];
+		for (Polygon p : scene.getPolygons()) {
+			for (int i = 0; i < 3; i++) {
+				points[i * 3] = p.vertices[i].x;
+				points[i * 3 + 1] = p.vertices[i].y;
+				points[i * 3 + 2] = p.vertices[i].z;
+			}
+			mesh.add(points, 0, p.reflectance.getRGB() & 0xffffff);
+		}
+		return mesh;
+	}
+
+	/**
+	 * Reads a scene file straight into a new mesh, without creating any Polygon
+	 * objects. Returns null if the file is empty. Binary scenes written by
+	 * {@link TriangleWriter} are read as well as text ones.
+	 */
+	public static OffHeapMesh load(File file) throws IOException {
+		if (TriangleWriter.isBinary(file))
+			return loadBinary(file);
+		BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16);
+		try {
+			String line = reader.readLine();
+			if (line == null)
+				return null;
+			OffHeapMesh mesh = new OffHeapMesh(SceneLoader.parseLight(line));
+			float[] points = new float[9];
+			int[] color = new int[3];
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				SceneLoader.parsePolygon(line, points, color);
+				mesh.add(points, 0, packColor(color[0], color[1], color[2]));
+			}
+			return mesh;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static OffHeapMesh loadBinary(File file) throws IOException {
+		TriangleReader reader = new TriangleReader(file);
+		try {
+			OffHeapMesh mesh = new OffHeapMesh(reader.getLight());
+			float[] points = new float[1024 * 9];
+			int[] colors = new int[1024];
+			int count;
+			while ((count = reader.read(points, colors, 1024)) > 0)
+				for (int i = 0; i < count; i++)
+					mesh.add(points, i * 9, colors[i]);
+			return mesh;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Packs colour components between 0 and 255 into an RGB int. */
+	public static int packColor(int r, int g, int b) {
+		if ((r | g | b) < 0 || r > 255 || g > 255 || b > 255)
+			throw new IllegalArgumentException("Colour out of range: " + r + "," + g + "," + b);
+		return (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Appends a triangle given as nine floats starting at the offset, with its
+	 * reflectance packed as an RGB int.
+	 */
+	public void add(float[] points, int offset, int rgb) {
+		int index = size & CHUNK_MASK;
+		if (index == 0) {
+			positions.add(allocate(CHUNK_SIZE * 9 * 4).asFloatBuffer());
+			normals.add(allocate(CHUNK_SIZE * 3 * 4).asFloatBuffer());
+			colors.add(allocate(CHUNK_SIZE * 4).asIntBuffer());
+		}
+		int chunk = size >>> CHUNK_SHIFT;
+		FloatBuffer p = positions.get(chunk);
+		for (int i = 0; i < 9; i++)
+			p.put(index * 9 + i, points[offset + i]);
+
+		Pipeline.getNormal(points, offset, scratchNormal, 0);
+		FloatBuffer n = normals.get(chunk);
+		for (int i = 0; i < 3; i++)
+			n.put(index * 3 + i, scratchNormal[i]);
+
+		colors.get(chunk).put(index, rgb & 0xffffff);
+
+		for (int i = 0; i < 3; i++) {
+			int v = offset + i * 3;
+			for (int axis = 0; axis < 3; axis++) {
+				float value = points[v + axis];
+				if (value < bound[axis * 2])
+					bound[axis * 2] = value;
+				if (value > bound[axis * 2 + 1])
+					bound[axis * 2 + 1] = value;
+			}
+		}
+		size++;
+	}
+
+	/*
+	 * sorts the triangles along a Morton curve of their unit normals and cuts
+	 * the order into clusters. meshes too large for a Morton key are cut in
+	 * the order the triangles were added.
+	 */
+	private synchronized void buildClusters() {
+		if (clustered == size)
+			return;
+		long[] keys = null;
+		if (size <= MortonOrder.MAX_TRIANGLES) {
+			keys = new long[size];
+			float[] n = new float[3];
+			for (int t = 0; t < size; t++) {
+				getNormal(t, n, 0);
+				float mag = (float) Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+				if (mag > 0f)
+					keys[t] = MortonOrder.key(n[0] / mag, n[1] / mag, n[2] / mag, DIRECTIONS, t);
+				else
+					keys[t] = MortonOrder.key(0f, 0f, 0f, DIRECTIONS, t);
+			}
+			Arrays.sort(keys);
+		}
+		while (clusters.size() < positions.size())
+			clusters.add(allocate(CHUNK_SIZE * 4).asIntBuffer());
+		clusterCount = (size + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+		cones = new float[clusterCount * 4];
+		int[] members = new int[CLUSTER_SIZE];
+		for (int c = 0; c < clusterCount; c++) {
+			int count = Math.min(CLUSTER_SIZE, size - c * CLUSTER_SIZE);
+			for (int i = 0; i < count; i++) {
+				int at = c * CLUSTER_SIZE + i;
+				int t = keys == null ? at : MortonOrder.index(keys[at]);
+				members[i] = t;
+				clusters.get(t >>> CHUNK_SHIFT).put(t & CHUNK_MASK, c);
+			}
+			buildCone(c, members, count);
+		}
+		clustered = size;
+	}
+
+	/*
+	 * the axis is the mean direction of the normals and the half-angle the
+	 * widest any of them strays from it. clusters with a degenerate triangle
+	 * (which the per-triangle test never rejects) or normals spread over a
+	 * hemisphere or more are never rejected.
+	 */
+	private void buildCone(int cluster, int[] members, int count) {
+		float[] n = new float[3];
+		float ax = 0f, ay = 0f, az = 0f;
+		boolean cullable = true;
+		for (int i = 0; i < count; i++) {
+			getNormal(members[i], n, 0);
+			float mag = (float) Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+			if (!(mag > 0f)) {
+				cullable = false;
+				break;
+			}
+			ax += n[0] / mag;
+			ay += n[1] / mag;
+			az += n[2] / mag;
+		}
+		float axisMag = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+		float minCos = 0f;
+		if (cullable && axisMag > 0f) {
+			ax /= axisMag;
+			ay /= axisMag;
+			az /= axisMag;
+			minCos = 1f;
+			for (int i = 0; i < count; i++) {
+				getNormal(members[i], n, 0);
+				float mag = (float) Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+				minCos = Math.min(minCos, (ax * n[0] + ay * n[1] + az * n[2]) / mag);
+			}
+		}
+		int c = cluster * 4;
+		if (minCos > 0f) {
+			cones[c] = ax;
+			cones[c + 1] = ay;
+			cones[c + 2] = az;
+			cones[c + 3] = (float) Math.sqrt(Math.max(0f, 1f - minCos * minCos));
+		} else {
+			cones[c] = cones[c + 1] = cones[c + 2] = 0f;
+			cones[c + 3] = 2f;
+		}
+	}
+
+	/**
+	 * Returns the number of clusters, working them out first if triangles have
+	 * been added since. The other cluster methods answer for the clusters as
+	 * they were when this was last called.
+	 */
+	public int clusterCount() {
+		buildClusters();
+		synchronized (this) {
+			return clusterCount;
+		}
+	}
+
+	/** Returns the cluster a triangle belongs to. */
+	public int getCluster(int triangle) {
+		return clusters.get(triangle >>> CHUNK_SHIFT).get(triangle & CHUNK_MASK);
+	}
+
+	/**
+	 * Returns true if every triangle in the cluster faces away from a viewer
+	 * looking along the given model-space direction, i.e. every normal has a
+	 * positive dot product with it. A false answer means the triangles need
+	 * testing one by one.
+	 */
+	public boolean clusterFacesAway(int cluster, float viewX, float viewY, float viewZ) {
+		int c = cluster * 4;
+		float dot = cones[c] * viewX + cones[c + 1] * viewY + cones[c + 2] * viewZ;
+		float viewMag = (float) Math.sqrt(viewX * viewX + viewY * viewY + viewZ * viewZ);
+		return dot > (cones[c + 3] + CONE_MARGIN) * viewMag;
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/** Returns the number of triangles in the mesh. */
+	public int size() {
+		return size;
+	}
+
+	public Vector3D getLight() {
+		return light;
+	}
+
+	/** Returns the bounds in the same layout as {@link Scene#getBound()}. */
+	public float[] getBound() {
+		return bound.clone();
+	}
+
+	/** Copies the nine vertex coordinates of a triangle into dst. */
+	public void getPositions(int triangle, float[] dst, int offset) {
+		FloatBuffer p = positions.get(triangle >>> CHUNK_SHIFT);
+		int base = (triangle & CHUNK_MASK) * 9;
+		for (int i = 0; i < 9; i++)
+			dst[offset + i] = p.get(base + i);
+	}
+
+	/** Copies the (unnormalised) face normal of a triangle into dst. */
+	public void getNormal(int triangle, float[] dst, int offset) {
+		FloatBuffer n = normals.get(triangle >>> CHUNK_SHIFT);
+		int base = (triangle & CHUNK_MASK) * 3;
+		dst[offset] = n.get(base);
+		dst[offset + 1] = n.get(base + 1);
+		dst[offset + 2] = n.get(base + 2);
+	}
+
+	/** Returns the reflectance of a triangle packed as an RGB int. */
+	public int getColor(int triangle) {
+		return colors.get(triangle >>> CHUNK_SHIFT).get(triangle & CHUNK_MASK);
+	}
+
+	/** Returns the number of bytes of direct memory the mesh has reserved. */
+	public long offHeapBytes() {
+		return (long) positions.size() * CHUNK_SIZE * (9 + 3 + 1) * 4
+				+ (long) clusters.size() * CHUNK_SIZE * 4;
+	}
+}
+
+// code for comp261 assignments
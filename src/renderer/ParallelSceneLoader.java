@@ -0,0 +1,421 @@
+package renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Loads scene files using every core. After the light line, each line of a
+ * scene file is an independent polygon, so the file is cut into byte ranges
+ * that end on line breaks, the ranges are parsed at the same time on the
+ * common fork-join pool, and the results are joined back together in file
+ * order. The bounds of each range are found while it is parsed, so the loaded
+ * Scene never has to be scanned for them.
+ *
+ * The result is the same as {@link SceneLoader#load(File)} gives. Files that
+ * declare meshes and instances cannot be cut up like this, since a mesh spans
+ * several lines, and nor can those declaring textures, which later lines
+ * refer to; they are handed over to SceneLoader as soon as one is found.
+ */
+public class ParallelSceneLoader {
+
+	/** Ranges are never smaller than this, so small files are parsed in one go. */
+	static final int MIN_CHUNK = 1 << 20;
+
+	/** Ranges are never larger than this, so one range never holds up the rest. */
+	static final int MAX_CHUNK = 1 << 26;
+
+	/** The triangles parsed from one byte range of a file. */
+	static class Chunk {
+		float[] points;
+		int[] colors;
+		int count;
+		final float[] bound = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		List<Polygon> polygons;
+
+		Chunk(int capacity) {
+			points = new float[capacity * 9];
+			colors = new int[capacity];
+		}
+
+		void add(float[] triangle, int[] color) {
+			if (count == colors.length) {
+				colors = Arrays.copyOf(colors, count * 2 + 1);
+				points = Arrays.copyOf(points, colors.length * 9);
+			}
+			System.arraycopy(triangle, 0, points, count * 9, 9);
+			colors[count] = OffHeapMesh.packColor(color[0], color[1], color[2]);
+			for (int i = 0; i < 9; i++) {
+				int axis = (i % 3) * 2;
+				if (triangle[i] < bound[axis])
+					bound[axis] = triangle[i];
+				if (triangle[i] > bound[axis + 1])
+					bound[axis + 1] = triangle[i];
+			}
+			count++;
+		}
+	}
+
+	/** A whole file, as the light and its chunks in file order. */
+	static class Parsed {
+		final Vector3D light;
+		final List<Chunk> chunks;
+
+		Parsed(Vector3D light, List<Chunk> chunks) {
+			this.light = light;
+			this.chunks = chunks;
+		}
+
+		int size() {
+			int size = 0;
+			for (Chunk chunk : chunks)
+				size += chunk.count;
+			return size;
+		}
+
+		float[] bound() {
+			float[] bound = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+					Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+			for (Chunk chunk : chunks) {
+				for (int i = 0; i < 6; i += 2) {
+					bound[i] = Math.min(bound[i], chunk.bound[i]);
+					bound[i + 1] = Math.max(bound[i + 1], chunk.bound[i + 1]);
+				}
+			}
+			return bound;
+		}
+	}
+
+	/* thrown by a range that finds a mesh, instance or texture line */
+	private static class ExtendedFormatFound extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** Is told about the scene loaded so far each time another range is parsed. */
+	public interface Progress {
+		/**
+		 * Called on the loading thread, in file order, with an immutable scene of
+		 * every polygon parsed so far and the bounds of just those polygons.
+		 * Throwing a RuntimeException abandons the load.
+		 */
+		void loaded(Scene partial);
+	}
+
+	/** Loads a scene, or returns null if the file is empty. */
+	public static Scene loadScene(File file) throws IOException {
+		return loadScene(file, 0);
+	}
+
+	/**
+	 * Loads a scene, cutting the file into ranges of about the given number of
+	 * bytes, or of a size chosen from the file size and core count if it is 0.
+	 */
+	public static Scene loadScene(File file, int chunkBytes) throws IOException {
+		return loadScene(file, chunkBytes, null);
+	}
+
+	/**
+	 * As {@link #loadScene(File, int)}, reporting each range to the given
+	 * progress listener (if it is not null) as soon as it and every range before
+	 * it have been parsed.
+	 */
+	public static Scene loadScene(File file, int chunkBytes, Progress progress) throws IOException {
+		Parsed parsed;
+		try {
+			parsed = parse(file, chunkBytes, true, progress);
+		} catch (ExtendedFormatFound e) {
+			Scene scene = SceneLoader.load(file);
+			if (progress != null)
+				progress.loaded(scene);
+			return scene;
+		}
+		if (parsed == null)
+			return null;
+		List<Polygon> polygons = new ArrayList<Polygon>(parsed.size());
+		for (Chunk chunk : parsed.chunks)
+			polygons.addAll(chunk.polygons);
+		return new Scene(polygons, parsed.light, parsed.bound());
+	}
+
+	/** Loads a file into an off-heap mesh, or returns null if the file is empty. */
+	public static OffHeapMesh loadMesh(File file) throws IOException {
+		return loadMesh(file, 0);
+	}
+
+	/** As {@link #loadScene(File, int)}, loading into an off-heap mesh. */
+	public static OffHeapMesh loadMesh(File file, int chunkBytes) throws IOException {
+		Parsed parsed;
+		try {
+			parsed = parse(file, chunkBytes, false, null);
+		} catch (ExtendedFormatFound e) {
+			return OffHeapMesh.fromScene(SceneLoader.load(file));
+		}
+		if (parsed == null)
+			return null;
+		OffHeapMesh mesh = new OffHeapMesh(parsed.light);
+		for (Chunk chunk : parsed.chunks)
+			for (int t = 0; t < chunk.count; t++)
+				mesh.add(chunk.points, t * 9, chunk.colors[t]);
+		return mesh;
+	}
+
+	/**
+	 * Parses the file in parallel. If polygons is true every chunk also turns
+	 * its triangles into Polygons, which then happens in parallel too, and the
+	 * progress listener (if any) is told about every range in turn.
+	 */
+	static Parsed parse(File file, int chunkBytes, final boolean polygons, Progress progress) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			String firstLine = readFirstLine(channel);
+			if (firstLine == null)
+				return null;
+			Vector3D light = SceneLoader.parseLight(firstLine);
+
+			long body = Math.min(size, firstLine.length() + 1L);
+			long chunk = chunkBytes > 0 ? chunkBytes : chunkSize(size - body);
+			long[] bounds = splitLines(channel, body, size, chunk);
+			List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+			for (int i = 0; i + 1 < bounds.length; i++) {
+				final long start = bounds[i], end = bounds[i + 1];
+				futures.add(ForkJoinPool.commonPool().submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						return parseRange(channel, start, end, polygons);
+					}
+				}));
+			}
+
+			List<Chunk> chunks = new ArrayList<Chunk>(futures.size());
+			try {
+				for (Future<Chunk> future : futures) {
+					chunks.add(await(future));
+					if (progress != null && polygons) {
+						Parsed sofar = new Parsed(light, new ArrayList<Chunk>(chunks));
+						progress.loaded(new Scene(new PolygonChunks(sofar.chunks), light, sofar.bound()));
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				for (Future<Chunk> future : futures)
+					future.cancel(true);
+				throw e;
+			}
+			return new Parsed(light, chunks);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static Chunk await(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Returns the light line, without its line break, or null if the file is
+	 * empty. The line may be followed by either \n or \r\n.
+	 */
+	private static String readFirstLine(FileChannel channel) throws IOException {
+		StringBuilder line = new StringBuilder();
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		long position = 0;
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n <= 0)
+				return line.length() == 0 ? null : line.toString();
+			for (int i = 0; i < n; i++) {
+				char c = (char) buffer.get(i);
+				if (c == '\n')
+					return line.toString();
+				line.append(c);
+			}
+			position += n;
+		}
+	}
+
+	/** Picks a range size that gives every core a few ranges to work on. */
+	private static long chunkSize(long bytes) {
+		int threads = ForkJoinPool.commonPool().getParallelism();
+		return Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, bytes / (threads * 4L) + 1));
+	}
+
+	/**
+	 * Cuts the bytes from start to size into ranges of roughly the given length
+	 * that each begin at the start of a line, returning their boundaries.
+	 */
+	static long[] splitLines(FileChannel channel, long start, long size, long chunk) throws IOException {
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(start);
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long next = start + chunk;
+		while (next < size) {
+			// move the cut forward to just after the next line break
+			long position = next;
+			long cut = size;
+			search: while (position < size) {
+				buffer.clear();
+				int n = channel.read(buffer, position);
+				if (n <= 0)
+					break;
+				for (int i = 0; i < n; i++) {
+					if (buffer.get(i) == '\n') {
+						cut = position + i + 1;
+						break search;
+					}
+				}
+				position += n;
+			}
+			if (cut >= size)
+				break;
+			bounds.add(cut);
+			next = cut + chunk;
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = bounds.get(i);
+		return result;
+	}
+
+	private static Chunk parseRange(FileChannel channel, long start, long end, boolean polygons)
+			throws IOException {
+		int length = (int) (end - start);
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0)
+				break;
+		}
+		byte[] bytes = buffer.array();
+
+		// scene lines are usually 60-100 bytes long
+		Chunk chunk = new Chunk(length / 64 + 1);
+		float[] triangle = new float[9];
+		int[] color = new int[3];
+		int lineStart = 0;
+		for (int i = 0; i <= buffer.position(); i++) {
+			if (i == buffer.position() || bytes[i] == '\n') {
+				if (i > lineStart) {
+					String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.US_ASCII);
+					if (SceneLoader.isExtended(line))
+						throw new ExtendedFormatFound();
+					if (!line.trim().isEmpty()) {
+						// SceneLoader reports a texture that was never declared
+						if (SceneLoader.parsePolygon(line, triangle, color))
+							throw new ExtendedFormatFound();
+						chunk.add(triangle, color);
+					}
+				}
+				lineStart = i + 1;
+			}
+		}
+
+		if (polygons) {
+			chunk.polygons = new ArrayList<Polygon>(chunk.count);
+			for (int t = 0; t < chunk.count; t++) {
+				float[] points = Arrays.copyOfRange(chunk.points, t * 9, t * 9 + 9);
+				chunk.polygons.add(new Polygon(points, new int[] { (chunk.colors[t] >> 16) & 0xff,
+						(chunk.colors[t] >> 8) & 0xff, chunk.colors[t] & 0xff }));
+			}
+			// the primitive copy is no longer needed once the polygons exist
+			chunk.points = null;
+			chunk.colors = null;
+		}
+		return chunk;
+	}
+
+	/**
+	 * A read-only view of the polygons of some parsed ranges, one after another,
+	 * that avoids copying them into a single list for every partial scene.
+	 */
+	private static class PolygonChunks extends AbstractList<Polygon> {
+		private final List<Chunk> chunks;
+		private final int[] starts;
+		private final int size;
+
+		PolygonChunks(List<Chunk> chunks) {
+			this.chunks = chunks;
+			this.starts = new int[chunks.size()];
+			int total = 0;
+			for (int i = 0; i < chunks.size(); i++) {
+				starts[i] = total;
+				total += chunks.get(i).polygons.size();
+			}
+			this.size = total;
+		}
+
+		@Override
+		public Polygon get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			int chunk = Arrays.binarySearch(starts, index);
+			if (chunk < 0)
+				chunk = -chunk - 2;
+			// skip over empty ranges that share a start
+			while (chunk + 1 < starts.length && starts[chunk + 1] == index)
+				chunk++;
+			return chunks.get(chunk).polygons.get(index - starts[chunk]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<Polygon> iterator() {
+			return new Iterator<Polygon>() {
+				private int chunk = 0;
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					while (chunk < chunks.size() && next == chunks.get(chunk).polygons.size()) {
+						chunk++;
+						next = 0;
+					}
+					return chunk < chunks.size();
+				}
+
+				@Override
+				public Polygon next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					return chunks.get(chunk).polygons.get(next++);
+				}
+			};
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -2,9 +2,12 @@ package renderer;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 
+import renderer.Scene.Instance;
+import renderer.Scene.Mesh;
 import renderer.Scene.Polygon;
 
 /**
@@ -17,17 +20,24 @@ import renderer.Scene.Polygon;
  */
 public class Pipeline {
 
+	/** The colour of every pixel that no polygon covers. */
+	public static final Color BACKGROUND = new Color(200, 200, 200);
+
 	/**
 	 * Returns true if the given polygon is facing away from the camera (and so
 	 * should be hidden), and false otherwise.
 	 */
 	public static boolean isHidden(Polygon poly) {
-		return getNormal(poly).z > 0;
+		// only the z component of the normal matters, so skip building it
+		Vector3D[] v = poly.vertices;
+		float e1x = v[1].x - v[0].x, e1y = v[1].y - v[0].y;
+		float e2x = v[2].x - v[1].x, e2y = v[2].y - v[1].y;
+		return e1x * e2y - e1y * e2x > 0;
 	}
 
 	public static Vector3D getNormal(Polygon poly) {
-		Vector3D edge1 = poly.getVertices()[1].minus(poly.getVertices()[0]);
-		Vector3D edge2 = poly.getVertices()[2].minus(poly.getVertices()[1]);
+		Vector3D edge1 = poly.vertices[1].minus(poly.vertices[0]);
+		Vector3D edge2 = poly.vertices[2].minus(poly.vertices[1]);
 		return edge1.crossProduct(edge2);
 	}
 
@@ -37,7 +47,7 @@ public class Pipeline {
 			Vector3D[] vectors = new Vector3D[3];
 			for (int i = 0; i < vectors.length; i++)
 				vectors[i] = matrix.multiply(p.vertices[i]);
-			newPolygons.add(new Polygon(vectors[0], vectors[1], vectors[2], p.reflectance));
+			newPolygons.add(new Polygon(vectors[0], vectors[1], vectors[2], p.reflectance, p.texture, p.uvs));
 		}
 		return new Scene(newPolygons, matrix.multiply(scene.getLight()));
 	}
@@ -57,22 +67,53 @@ public class Pipeline {
 	 *            the direction.
 	 */
 	public static Color getShading(Polygon poly, Vector3D lightDirection, Color lightColor, Color ambientLight) {
+		return getShading(getNormal(poly), poly.reflectance.getRGB(), lightDirection, lightColor, ambientLight);
+	}
+
+	/**
+	 * As {@link #getShading(Polygon, Vector3D, Color, Color)}, for a face given
+	 * by its normal and its reflectance packed as an RGB int.
+	 */
+	public static Color getShading(Vector3D normal, int reflectance, Vector3D lightDirection, Color lightColor,
+			Color ambientLight) {
+		return new Color(shade(reflectance, normal.cosTheta(lightDirection), lightColor, ambientLight));
+	}
+
+	/**
+	 * The arithmetic behind getShading: lights a face of the given reflectance
+	 * whose normal makes an angle with the cosine cos to the light, and returns
+	 * the colour packed as an RGB int.
+	 */
+	public static int shade(int reflectance, float cosTheta, Color lightColor, Color ambientLight) {
 		int r, g, b;
-		Vector3D normal = getNormal(poly);
-		double cos = normal.cosTheta(lightDirection);
+		int reflectR = (reflectance >> 16) & 0xff;
+		int reflectG = (reflectance >> 8) & 0xff;
+		int reflectB = reflectance & 0xff;
+		double cos = cosTheta;
 		if (cos > 0) {
-			r = (int) (poly.reflectance.getRed() / 255.0f * (ambientLight.getRed() + lightColor.getRed() * cos));
-			g = (int) (poly.reflectance.getGreen() / 255.0f * (ambientLight.getGreen() + lightColor.getGreen() * cos));
-			b = (int) (poly.reflectance.getBlue() / 255.0f * (ambientLight.getBlue() + lightColor.getBlue() * cos));
+			r = (int) (reflectR / 255.0f * (ambientLight.getRed() + lightColor.getRed() * cos));
+			g = (int) (reflectG / 255.0f * (ambientLight.getGreen() + lightColor.getGreen() * cos));
+			b = (int) (reflectB / 255.0f * (ambientLight.getBlue() + lightColor.getBlue() * cos));
 		} else {
-			r = (int) (poly.reflectance.getRed() / 255.0f * ambientLight.getRed());
-			g = (int) (poly.reflectance.getGreen() / 255.0f * ambientLight.getGreen());
-			b = (int) (poly.reflectance.getBlue() / 255.0f * ambientLight.getBlue());
+			r = (int) (reflectR / 255.0f * ambientLight.getRed());
+			g = (int) (reflectG / 255.0f * ambientLight.getGreen());
+			b = (int) (reflectB / 255.0f * ambientLight.getBlue());
 		}
 		r = r > 255 ? 255 : r;
 		g = g > 255 ? 255 : g;
 		b = b > 255 ? 255 : b;
-		return new Color(r, g, b);
+		return (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Returns the cosine of the angle between the normal stored as three floats
+	 * at the offset and the given vector, computed exactly as
+	 * {@link Vector3D#cosTheta(Vector3D)} would.
+	 */
+	public static float cosTheta(float[] normal, int offset, Vector3D other) {
+		float x = normal[offset], y = normal[offset + 1], z = normal[offset + 2];
+		float mag = (float) Math.sqrt(x * x + y * y + z * z);
+		return (x * other.x + y * other.y + z * other.z) / mag / other.mag;
 	}
 
 	/**
@@ -97,6 +138,13 @@ public class Pipeline {
 		return new Scene(compute(scene, Transform.newXRotation(xRot).compose(Transform.newYRotation(yRot))).getPolygons(),newLightPos);
 	}
 
+	/**
+	 * Applies an arbitrary transform to every polygon and the light of a scene.
+	 */
+	public static Scene transformScene(Scene scene, Transform matrix) {
+		return compute(scene, matrix);
+	}
+
 	/**
 	 * This should translate the scene by the appropriate amount.
 	 *
@@ -119,93 +167,106 @@ public class Pipeline {
 
 
 	public static Scene autoScaleAndTranslate(Scene scene, float[] boundary, Dimension dimension) {
-
-	    float left = boundary[0];
-	    float right = boundary[1];
-	    float up = boundary[2];
-	    float down = boundary[3];
-	    float close = boundary[4];
-        float far = boundary[5];
-
-	    float objectWidth = right - left;
-	    float objectHeight = down - up;
-	    float objectdepth = far - close;
-	    int canvasWidth = dimension.width;
-	    int canvasHeight = dimension.height;
-
-	    //scale
-        float ratioHorizontal = canvasWidth / 2 / objectWidth;
-        float ratioVertical = canvasHeight / 2 / objectHeight;
-        float ratioDepth = Math.min(canvasWidth, canvasHeight) / 2 / objectdepth;
-
-        float scale = Math.min(Math.min(ratioHorizontal, ratioVertical), ratioDepth);
-        Transform scaleMatrix = Transform.newScale(scale, scale, scale);
-        Scene scaledScene = compute(scene, scaleMatrix);
-
-        //translate
-        float scaledLeft = left * scale;
-        float scaledUp = up * scale;
-
-        // work out how much to shift horizontally
-        float scaledObjectWidth = objectWidth * scale;
-        float centralPosX = (canvasWidth - scaledObjectWidth) / 2;
-        float horizontalShift = centralPosX - scaledLeft;
-
-        // work out how much to shift vertically
-        float scaledObjectHeight = objectHeight * scale;
-        float centralPosY = (canvasHeight - scaledObjectHeight) / 2;
-        float verticalShift = centralPosY - scaledUp;
-
-        return compute(scaledScene, Transform.newTranslation(horizontalShift, verticalShift, 0f));
-    }
+		float scale = fitScale(boundary, dimension);
+		Scene scaledScene = compute(scene, Transform.newScale(scale, scale, scale));
+		return compute(scaledScene, centring(boundary, scale, dimension));
+	}
 
 	public static Scene autoTranslate(Scene scene, float[] boundary, Dimension dimension) {
+		return compute(scene, centring(boundary, 1.0f, dimension));
+	}
+
+	/**
+	 * Returns the largest uniform scale at which an object with the given bounds
+	 * fits inside half of the canvas in every direction.
+	 */
+	public static float fitScale(float[] boundary, Dimension dimension) {
+		float left = boundary[0];
+		float right = boundary[1];
+		float up = boundary[2];
+		float down = boundary[3];
+		float close = boundary[4];
+		float far = boundary[5];
+
+		float objectWidth = right - left;
+		float objectHeight = down - up;
+		float objectdepth = far - close;
+		int canvasWidth = dimension.width;
+		int canvasHeight = dimension.height;
 
-        float left = boundary[0];
-        float right = boundary[1];
-        float up = boundary[2];
-        float down = boundary[3];
+		float ratioHorizontal = canvasWidth / 2 / objectWidth;
+		float ratioVertical = canvasHeight / 2 / objectHeight;
+		float ratioDepth = Math.min(canvasWidth, canvasHeight) / 2 / objectdepth;
 
-        float objectWidth = right - left;
-        float objectHeight = down - up;
-        int canvasWidth = dimension.width;
-        int canvasHeight = dimension.height;
+		return Math.min(Math.min(ratioHorizontal, ratioVertical), ratioDepth);
+	}
 
-        // work out how much to shift horizontally
-        float centralPosX = (canvasWidth - objectWidth) / 2;
-        float horizontalShift = centralPosX - left;
+	/**
+	 * Returns the translation that moves an object with the given bounds, once
+	 * scaled by the given amount, to the centre of the canvas.
+	 */
+	public static Transform centring(float[] boundary, float scale, Dimension dimension) {
+		float left = boundary[0];
+		float right = boundary[1];
+		float up = boundary[2];
+		float down = boundary[3];
 
-        // work out how much to shift vertically
-        float centralPosY = (canvasHeight - objectHeight) / 2;
-        float verticalShift = centralPosY - up;
+		float objectWidth = right - left;
+		float objectHeight = down - up;
+		int canvasWidth = dimension.width;
+		int canvasHeight = dimension.height;
 
-        return compute(scene, Transform.newTranslation(horizontalShift, verticalShift, 0f));
-    }
+		// work out how much to shift horizontally
+		float scaledObjectWidth = objectWidth * scale;
+		float centralPosX = (canvasWidth - scaledObjectWidth) / 2;
+		float horizontalShift = centralPosX - left * scale;
 
+		// work out how much to shift vertically
+		float scaledObjectHeight = objectHeight * scale;
+		float centralPosY = (canvasHeight - scaledObjectHeight) / 2;
+		float verticalShift = centralPosY - up * scale;
+
+		return Transform.newTranslation(horizontalShift, verticalShift, 0f);
+	}
 
 	/**
 	 * Computes the edgelist of a single provided polygon, as per the lecture
 	 * slides.
 	 */
 	public static EdgeList computeEdgeList(Polygon poly) {
-		int minY = (int) Math.min(Math.min(poly.vertices[0].y, poly.vertices[1].y), poly.vertices[2].y);
-		int maxY = (int) Math.max(Math.max(poly.vertices[0].y, poly.vertices[1].y), poly.vertices[2].y);
+		float[] points = new float[9];
+		for (int i = 0; i < 3; i++) {
+			points[i * 3] = poly.vertices[i].x;
+			points[i * 3 + 1] = poly.vertices[i].y;
+			points[i * 3 + 2] = poly.vertices[i].z;
+		}
+		return computeEdgeList(points, 0);
+	}
+
+	/**
+	 * As {@link #computeEdgeList(Polygon)}, for a triangle stored as nine floats
+	 * (x, y, z for each vertex) starting at the given offset.
+	 */
+	public static EdgeList computeEdgeList(float[] points, int offset) {
+		float y0 = points[offset + 1], y1 = points[offset + 4], y2 = points[offset + 7];
+		int minY = (int) Math.min(Math.min(y0, y1), y2);
+		int maxY = (int) Math.max(Math.max(y0, y1), y2);
 		EdgeList edgeList = new EdgeList(minY, maxY);
 		for (int i = 0; i < 3; i++) {
-			Vector3D up, down;
 			int j = i + 1;
 			j = j == 3 ? 0 : j;
-			if (poly.vertices[i].y == poly.vertices[j].y)
+			int a = offset + i * 3;
+			int b = offset + j * 3;
+			if (points[a + 1] == points[b + 1])
 				continue;
-			else {
-				up = poly.vertices[i].y > poly.vertices[j].y ? poly.vertices[j] : poly.vertices[i];
-				down = poly.vertices[i].y < poly.vertices[j].y ? poly.vertices[j] : poly.vertices[i];
-			}
-			float x = up.x;
-			float z = up.z;
-			float mX = (down.x - x) / (down.y - up.y);
-			float mZ = (down.z - z) / (down.y - up.y);
-			for (int y = (int) up.y; y < (int) down.y; y++, x += mX, z += mZ)
+			int up = points[a + 1] > points[b + 1] ? b : a;
+			int down = points[a + 1] < points[b + 1] ? b : a;
+			float upY = points[up + 1], downY = points[down + 1];
+			float x = points[up];
+			float z = points[up + 2];
+			float mX = (points[down] - x) / (downY - upY);
+			float mZ = (points[down + 2] - z) / (downY - upY);
+			for (int y = (int) upY; y < (int) downY; y++, x += mX, z += mZ)
 				edgeList.addRow(y - minY, x, z);
 		}
 		return edgeList;
@@ -230,6 +291,21 @@ public class Pipeline {
 	 *            The colour of the polygon to add into the zbuffer.
 	 */
 	public static void computeZBuffer(Color[][] zbuffer, float[][] zdepth, EdgeList polyEdgeList, Color polyColor) {
+		computeZBuffer(zbuffer, zdepth, null, polyEdgeList, polyColor, 0);
+	}
+
+	/**
+	 * As computeZBuffer, also recording the given index of the polygon at each
+	 * pixel it wins in the buffer's rank plane (see {@link FrameBuffer#ranks()}),
+	 * for renderers that need to know which polygon shows where.
+	 */
+	public static void computeZBuffer(FrameBuffer buffer, EdgeList polyEdgeList, Color polyColor, int rank) {
+		computeZBuffer(buffer.color, buffer.depth, buffer.ranks(), polyEdgeList, polyColor, rank);
+	}
+
+	/* the z-buffer loop; ranks may be null */
+	private static void computeZBuffer(Color[][] zbuffer, float[][] zdepth, int[][] ranks, EdgeList polyEdgeList,
+			Color polyColor, int rank) {
 		int startY = polyEdgeList.getStartY();
 		int endY = polyEdgeList.getEndY();
 		int dy = endY - startY;
@@ -244,10 +320,480 @@ public class Pipeline {
 				if (z < zdepth[x][y + startY]) {
 					zdepth[x][y + startY] = z;
 					zbuffer[x][y + startY] = polyColor;
+					if (ranks != null)
+						ranks[x][y + startY] = rank;
+				}
+			}
+		}
+	}
+
+	/*
+	 * w of each vertex under this pipeline's orthographic projection; a
+	 * perspective camera would pass the vertices' real w instead
+	 */
+	static final float[] ORTHOGRAPHIC = { 1f, 1f, 1f };
+
+	/**
+	 * As computeZBuffer, for a textured polygon already in screen space, whose
+	 * texels are tinted by the given shaded colour (packed as an RGB int).
+	 */
+	public static void computeTexturedZBuffer(Color[][] zbuffer, float[][] zdepth, EdgeList polyEdgeList,
+			Polygon poly, int shade) {
+		float[] points = new float[9];
+		for (int i = 0; i < 3; i++) {
+			points[i * 3] = poly.vertices[i].x;
+			points[i * 3 + 1] = poly.vertices[i].y;
+			points[i * 3 + 2] = poly.vertices[i].z;
+		}
+		computeTexturedZBuffer(zbuffer, zdepth, polyEdgeList, points, 0, ORTHOGRAPHIC, poly.texture, poly.uvs,
+				shade);
+	}
+
+	/**
+	 * Draws a textured triangle, stored as nine screen-space floats from the
+	 * offset in points, covering the pixels of its edge list exactly as
+	 * computeZBuffer would.
+	 *
+	 * The texture coordinates are interpolated perspective-correctly: u/w, v/w
+	 * and 1/w are linear across the screen, so they are found from the plane
+	 * through their values at the vertices and divided out at each pixel. The
+	 * same planes give the rate at which the texture moves under the pixels,
+	 * and so the mip level to sample; where 1/w is constant, as it is for every
+	 * triangle of an orthographic view, that level is worked out once for the
+	 * whole triangle.
+	 *
+	 * @param w
+	 *            the w of each vertex after projection
+	 * @param uvs
+	 *            the texture coordinates (u, v) of each vertex
+	 */
+	public static void computeTexturedZBuffer(Color[][] zbuffer, float[][] zdepth, EdgeList polyEdgeList,
+			float[] points, int offset, float[] w, Texture texture, float[] uvs, int shade) {
+		computeTexturedZBuffer(zbuffer, zdepth, null, polyEdgeList, points, offset, w, texture, uvs, shade, 0);
+	}
+
+	/**
+	 * As computeTexturedZBuffer for an orthographic view, also recording the
+	 * given index of the polygon at each pixel it wins in the buffer's rank
+	 * plane, as {@link #computeZBuffer(FrameBuffer, EdgeList, Color, int)} does.
+	 */
+	public static void computeTexturedZBuffer(FrameBuffer buffer, EdgeList polyEdgeList, float[] points,
+			int offset, Texture texture, float[] uvs, int shade, int rank) {
+		computeTexturedZBuffer(buffer.color, buffer.depth, buffer.ranks(), polyEdgeList, points, offset,
+				ORTHOGRAPHIC, texture, uvs, shade, rank);
+	}
+
+	/* the textured z-buffer loop; ranks may be null */
+	private static void computeTexturedZBuffer(Color[][] zbuffer, float[][] zdepth, int[][] ranks,
+			EdgeList polyEdgeList, float[] points, int offset, float[] w, Texture texture, float[] uvs, int shade,
+			int rank) {
+		float x0 = points[offset], y0 = points[offset + 1];
+		float e1x = points[offset + 3] - x0, e1y = points[offset + 4] - y0;
+		float e2x = points[offset + 6] - x0, e2y = points[offset + 7] - y0;
+		float area = e1x * e2y - e2x * e1y;
+		if (area == 0) {
+			// edge on, so there is no texture to see
+			computeZBuffer(zbuffer, zdepth, ranks, polyEdgeList, new Color(shade), rank);
+			return;
+		}
+		float q0 = 1f / w[0], q1 = 1f / w[1], q2 = 1f / w[2];
+		float s0 = uvs[0] * q0, s1 = uvs[2] * q1, s2 = uvs[4] * q2;
+		float t0 = uvs[1] * q0, t1 = uvs[3] * q1, t2 = uvs[5] * q2;
+		// the gradients across the screen of the planes through s = u/w, t = v/w and q = 1/w
+		float dsdx = ((s1 - s0) * e2y - (s2 - s0) * e1y) / area, dsdy = ((s2 - s0) * e1x - (s1 - s0) * e2x) / area;
+		float dtdx = ((t1 - t0) * e2y - (t2 - t0) * e1y) / area, dtdy = ((t2 - t0) * e1x - (t1 - t0) * e2x) / area;
+		float dqdx = ((q1 - q0) * e2y - (q2 - q0) * e1y) / area, dqdy = ((q2 - q0) * e1x - (q1 - q0) * e2x) / area;
+		boolean affine = dqdx == 0 && dqdy == 0;
+		int width = texture.getWidth(0), height = texture.getHeight(0);
+		int level = affine ? texture.level(footprint(dsdx / q0, dtdx / q0, dsdy / q0, dtdy / q0, width, height)) : 0;
+
+		int sr = (shade >> 16) & 0xff, sg = (shade >> 8) & 0xff, sb = shade & 0xff;
+		int lastTexel = -1;
+		Color lastColor = null;
+		int startY = polyEdgeList.getStartY();
+		int dy = polyEdgeList.getEndY() - startY;
+		for (int y = 0; y < dy; y++) {
+			int row = y + startY;
+			if (row < 0 || row >= zbuffer[0].length)
+				continue;
+			float z = polyEdgeList.getLeftZ(y);
+			float mZ = (polyEdgeList.getRightZ(y) - z) / (polyEdgeList.getRightX(y) - polyEdgeList.getLeftX(y));
+			for (int x = (int) polyEdgeList.getLeftX(y); x < (int) polyEdgeList.getRightX(y); x++, z += mZ) {
+				if (x < 0 || x >= zbuffer.length)
+					continue;
+				if (!(z < zdepth[x][row]))
+					continue;
+				float px = x - x0, py = row - y0;
+				float s = s0 + dsdx * px + dsdy * py;
+				float t = t0 + dtdx * px + dtdy * py;
+				float q = q0 + dqdx * px + dqdy * py;
+				float u = s / q, v = t / q;
+				if (!affine)
+					level = texture.level(footprint((dsdx - u * dqdx) / q, (dtdx - v * dqdx) / q,
+							(dsdy - u * dqdy) / q, (dtdy - v * dqdy) / q, width, height));
+				int texel = texture.sample(u, v, level);
+				if (texel != lastTexel) {
+					int r = ((texel >> 16) & 0xff) * sr / 255;
+					int g = ((texel >> 8) & 0xff) * sg / 255;
+					int b = (texel & 0xff) * sb / 255;
+					lastColor = new Color((r << 16) | (g << 8) | b);
+					lastTexel = texel;
 				}
+				zdepth[x][row] = z;
+				zbuffer[x][row] = lastColor;
+				if (ranks != null)
+					ranks[x][row] = rank;
+			}
+		}
+	}
+
+	/*
+	 * the number of texels a pixel spans, from the change in (u, v) across and
+	 * down the screen, in a texture of the given size
+	 */
+	private static float footprint(float dudx, float dvdx, float dudy, float dvdy, int width, int height) {
+		float across = (dudx * width) * (dudx * width) + (dvdx * height) * (dvdx * height);
+		float down = (dudy * width) * (dudy * width) + (dvdy * height) * (dvdy * height);
+		return (float) Math.sqrt(Math.max(across, down));
+	}
+
+	/**
+	 * Resets every pixel of the given buffers to the background colour and an
+	 * infinite depth, ready for a new frame.
+	 */
+	public static void clearBuffers(Color[][] zbuffer, float[][] zdepth) {
+		for (int i = 0; i < zbuffer.length; i++) {
+			for (int j = 0; j < zbuffer[i].length; j++) {
+				zbuffer[i][j] = BACKGROUND;
+				zdepth[i][j] = Float.POSITIVE_INFINITY;
 			}
 		}
 	}
+
+	/**
+	 * Puts the scene into screen space as seen by the given camera: the scene is
+	 * fitted to the canvas, rotated, scaled, re-centred and finally shifted by
+	 * the camera offset, in the same order the interactive renderer uses.
+	 */
+	public static Scene project(Scene scene, Camera camera, Dimension dimension) {
+		return project(scene, scene.getBound(), camera, dimension);
+	}
+
+	/**
+	 * As {@link #project(Scene, Camera, Dimension)}, for callers that already
+	 * know the bounds of the scene.
+	 */
+	public static Scene project(Scene scene, float[] bound, Camera camera, Dimension dimension) {
+		Scene centralisedScene = autoScaleAndTranslate(scene, bound, dimension);
+		Scene rotatedScene = rotateScene(centralisedScene, camera.xRot, camera.yRot);
+		Scene scaledScene = scaleScene(rotatedScene, camera.scale, camera.scale, camera.scale);
+		Scene reCenteredScene = autoTranslate(scaledScene, scaledScene.getBound(), dimension);
+		return translateScene(reCenteredScene, camera.x, camera.y, 0f);
+	}
+
+	/**
+	 * Shades every visible polygon of a scene that is already in screen space
+	 * and draws it into the given buffers.
+	 */
+	public static void rasterize(Scene scene, Color lightColor, Color ambientLight, Color[][] zbuffer,
+			float[][] zdepth) {
+		rasterize(scene.getPolygons(), scene.getLight(), lightColor, ambientLight, zbuffer, zdepth);
+	}
+
+	/**
+	 * As {@link #rasterize(Scene, Color, Color, Color[][], float[][])}, for just
+	 * some of the polygons of a screen-space scene.
+	 */
+	public static void rasterize(List<Polygon> polygons, Vector3D lightVector, Color lightColor,
+			Color ambientLight, Color[][] zbuffer, float[][] zdepth) {
+		for (Polygon p : polygons) {
+			if (isHidden(p))
+				continue;
+			Color polyColor = getShading(p, lightVector, lightColor, ambientLight);
+			EdgeList edgeList = computeEdgeList(p);
+			if (p.texture != null)
+				computeTexturedZBuffer(zbuffer, zdepth, edgeList, p, polyColor.getRGB());
+			else
+				computeZBuffer(zbuffer, zdepth, edgeList, polyColor);
+		}
+	}
+
+	/**
+	 * Renders a complete frame of the scene without any GUI, returning an image
+	 * of the given size.
+	 */
+	public static BufferedImage renderFrame(Scene scene, Camera camera, Dimension dimension, Color lightColor,
+			Color ambientLight) {
+		FrameBuffer buffer = new FrameBuffer(dimension.width, dimension.height);
+		renderFrame(scene, scene.getBound(), camera, lightColor, ambientLight, buffer);
+		return convertBitmapToImage(buffer.color);
+	}
+
+	/**
+	 * As {@link #renderFrame(Scene, Camera, Dimension, Color, Color)}, working
+	 * out visibility with the given engine.
+	 */
+	public static BufferedImage renderFrame(Scene scene, Camera camera, Dimension dimension, Color lightColor,
+			Color ambientLight, RenderEngine engine) {
+		if (engine == RenderEngine.Z_BUFFER)
+			return renderFrame(scene, camera, dimension, lightColor, ambientLight);
+		BufferedImage image = new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
+		new ScanlineRenderer().render(project(scene, camera, dimension), lightColor, ambientLight, image);
+		return image;
+	}
+
+	/**
+	 * Clears the given buffer and renders a frame of the scene into it, for
+	 * callers that reuse one buffer across many frames.
+	 */
+	public static void renderFrame(Scene scene, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer buffer) {
+		if (!scene.getInstances().isEmpty()) {
+			renderInstances(scene, bound, camera, lightColor, ambientLight, buffer);
+			return;
+		}
+		buffer.clear();
+		Scene projected = project(scene, bound, camera, new Dimension(buffer.width, buffer.height));
+		rasterize(projected, lightColor, ambientLight, buffer.color, buffer.depth);
+	}
+
+	/**
+	 * Returns the transform that fits a model with the given bounds to the
+	 * canvas and then rotates and scales it as the camera asks, i.e. everything
+	 * {@link #project(Scene, float[], Camera, Dimension)} does before it
+	 * re-centres the result.
+	 */
+	public static Transform viewTransform(float[] bound, Camera camera, Dimension dimension) {
+		float scale = fitScale(bound, dimension);
+		Transform fit = centring(bound, scale, dimension).compose(Transform.newScale(scale, scale, scale));
+		Transform rotation = Transform.newXRotation(camera.xRot).compose(Transform.newYRotation(camera.yRot));
+		return Transform.newScale(camera.scale, camera.scale, camera.scale).compose(rotation).compose(fit);
+	}
+
+	/**
+	 * Returns bounds, in the layout of {@link Scene#getBound()}, that hold the
+	 * given bounds' box after the transform: those of its eight transformed
+	 * corners. They contain whatever the box did, though they may be looser
+	 * than the bounds of the transformed contents.
+	 */
+	public static float[] transformBound(float[] bound, Transform transform) {
+		float[] result = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		float[] corner = new float[3];
+		for (int c = 0; c < 8; c++) {
+			corner[0] = bound[c & 1];
+			corner[1] = bound[2 + (c >> 1 & 1)];
+			corner[2] = bound[4 + (c >> 2 & 1)];
+			transform.multiply(corner, 0, corner, 0);
+			for (int axis = 0; axis < 3; axis++) {
+				result[axis * 2] = Math.min(result[axis * 2], corner[axis]);
+				result[axis * 2 + 1] = Math.max(result[axis * 2 + 1], corner[axis]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renders a frame of an off-heap mesh into the given buffer. Triangles are
+	 * read straight from the mesh into a few scratch arrays, so no per-triangle
+	 * objects are kept; back faces are rejected a cluster at a time by the
+	 * mesh's normal cones, then one by one by their stored normals, before
+	 * their vertices are transformed at all. The frame is centred on the
+	 * mesh's bounding box as the camera sees it, so that needs no vertex
+	 * transformed either.
+	 */
+	public static void renderFrame(OffHeapMesh mesh, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer buffer) {
+		buffer.clear();
+		Dimension dimension = new Dimension(buffer.width, buffer.height);
+		Transform view = viewTransform(mesh.getBound(), camera, dimension);
+		Transform toScreen = Transform.newTranslation(camera.x, camera.y, 0f)
+				.compose(centring(transformBound(mesh.getBound(), view), 1.0f, dimension)).compose(view);
+		Vector3D lightVector = toScreen.multiply(mesh.getLight());
+
+		// the third row of the transform is the screen z axis, which the viewer
+		// looks along, carried back into model space
+		Affine screen = toScreen.toAffine();
+		float[] v = new float[9];
+		float[] n = new float[3];
+		boolean[] away = new boolean[mesh.clusterCount()];
+		for (int c = 0; c < away.length; c++)
+			away[c] = mesh.clusterFacesAway(c, screen.m20, screen.m21, screen.m22);
+		// triangles are still drawn in mesh order, so depth ties come out the same
+		for (int t = 0; t < mesh.size(); t++) {
+			if (away[mesh.getCluster(t)])
+				continue;
+			mesh.getNormal(t, n, 0);
+			if (isBackFacing(n, screen))
+				continue;
+			mesh.getPositions(t, v, 0);
+			drawTriangle(v, n, mesh.getColor(t), toScreen, lightVector, lightColor, ambientLight, buffer);
+		}
+	}
+
+	/**
+	 * Renders a frame of a scene with instances without building their
+	 * polygons. Each instance's placement is folded into the screen transform
+	 * once. An instance whose transformed mesh bounds miss the buffer is
+	 * skipped whole. Back faces are rejected against the mesh's shared normals
+	 * before any vertex is transformed. For a general affine transform A, the
+	 * z component of a transformed normal has the sign of the normal's dot
+	 * product with the cross product of A's first two rows, so that cross
+	 * product is the view direction in the mesh's own space.
+	 */
+	static void renderInstances(Scene scene, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer buffer) {
+		buffer.clear();
+		Dimension dimension = new Dimension(buffer.width, buffer.height);
+		Transform view = viewTransform(bound, camera, dimension);
+		Transform toScreen = Transform.newTranslation(camera.x, camera.y, 0f)
+				.compose(centring(scene.getBound(view), 1.0f, dimension)).compose(view);
+		Vector3D lightVector = toScreen.multiply(scene.getLight());
+		Affine screen = toScreen.toAffine();
+
+		float[] v = new float[9];
+		float[] n = new float[3];
+		for (Polygon p : scene.getOwnPolygons()) {
+			for (int i = 0; i < 3; i++) {
+				v[i * 3] = p.vertices[i].x;
+				v[i * 3 + 1] = p.vertices[i].y;
+				v[i * 3 + 2] = p.vertices[i].z;
+			}
+			screen.multiplyInto(v, 0, v, 0, 3);
+			drawScreenTriangle(v, n, p.reflectance.getRGB(), p.texture, p.uvs, lightVector, lightColor,
+					ambientLight, buffer);
+		}
+
+		float[] corners = new float[24];
+		for (Instance instance : scene.getInstances()) {
+			Mesh mesh = instance.getMesh();
+			Affine m = screen.compose(instance.placement);
+			if (!overlaps(mesh.bound, m, corners, buffer))
+				continue;
+			float dx = m.m01 * m.m12 - m.m02 * m.m11;
+			float dy = m.m02 * m.m10 - m.m00 * m.m12;
+			float dz = m.m00 * m.m11 - m.m01 * m.m10;
+			Color color = instance.getColor();
+			for (int t = 0; t < mesh.colors.length; t++) {
+				float[] normals = mesh.normals;
+				if (dx * normals[t * 3] + dy * normals[t * 3 + 1] + dz * normals[t * 3 + 2] > 0)
+					continue;
+				m.multiplyInto(mesh.positions, t * 9, v, 0, 3);
+				Polygon p = mesh.polygons.get(t);
+				drawScreenTriangle(v, n, color == null ? mesh.colors[t] : color.getRGB(), p.texture, p.uvs,
+						lightVector, lightColor, ambientLight, buffer);
+			}
+		}
+	}
+
+	/*
+	 * draws a screen-space triangle unless it faces away, shading it by its
+	 * screen-space normal; the texture may be null for an untextured one
+	 */
+	private static void drawScreenTriangle(float[] v, float[] n, int rgb, Texture texture, float[] uvs,
+			Vector3D lightVector, Color lightColor, Color ambientLight, FrameBuffer buffer) {
+		getNormal(v, 0, n, 0);
+		if (n[2] > 0)
+			return;
+		int shade = shade(rgb, cosTheta(n, 0, lightVector), lightColor, ambientLight);
+		EdgeList edgeList = computeEdgeList(v, 0);
+		if (texture != null)
+			computeTexturedZBuffer(buffer.color, buffer.depth, edgeList, v, 0, ORTHOGRAPHIC, texture, uvs, shade);
+		else
+			computeZBuffer(buffer.color, buffer.depth, edgeList, new Color(shade));
+	}
+
+	/* returns false if a box with the given bounds lands wholly outside the buffer once transformed */
+	private static boolean overlaps(float[] box, Affine m, float[] corners, FrameBuffer buffer) {
+		for (int c = 0; c < 8; c++) {
+			corners[c * 3] = box[(c & 1)];
+			corners[c * 3 + 1] = box[2 + ((c >> 1) & 1)];
+			corners[c * 3 + 2] = box[4 + ((c >> 2) & 1)];
+		}
+		m.multiplyInto(corners, 0, corners, 0, 8);
+		float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int c = 0; c < 24; c += 3) {
+			minX = Math.min(minX, corners[c]);
+			maxX = Math.max(maxX, corners[c]);
+			minY = Math.min(minY, corners[c + 1]);
+			maxY = Math.max(maxY, corners[c + 1]);
+		}
+		return maxX >= 0 && minX < buffer.width && maxY >= 0 && minY < buffer.height;
+	}
+
+	/**
+	 * Computes the face normal of a triangle stored as nine floats, exactly as
+	 * {@link #getNormal(Polygon)} does, writing it to dst.
+	 */
+	public static void getNormal(float[] points, int offset, float[] dst, int dstOff) {
+		float e1x = points[offset + 3] - points[offset], e1y = points[offset + 4] - points[offset + 1],
+				e1z = points[offset + 5] - points[offset + 2];
+		float e2x = points[offset + 6] - points[offset + 3], e2y = points[offset + 7] - points[offset + 4],
+				e2z = points[offset + 8] - points[offset + 5];
+		dst[dstOff] = e1y * e2z - e1z * e2y;
+		dst[dstOff + 1] = e1z * e2x - e1x * e2z;
+		dst[dstOff + 2] = e1x * e2y - e1y * e2x;
+	}
+
+	/**
+	 * Returns true if the face with the given model-space normal points away
+	 * from the viewer once transformed to the screen. Only the z component of
+	 * the screen-space normal matters, and that is its dot product with the
+	 * third row of the transform: the view direction carried back into model
+	 * space. The answer is exactly the one transforming the normal would give.
+	 */
+	static boolean isBackFacing(float[] normal, Affine toScreen) {
+		return toScreen.m20 * normal[0] + toScreen.m21 * normal[1] + toScreen.m22 * normal[2] > 0;
+	}
+
+	/**
+	 * Transforms a model-space triangle (overwriting v) and its normal (also
+	 * overwritten) to the screen and draws it. This is the inner loop shared by
+	 * the renderers that work on primitive arrays rather than Polygons.
+	 */
+	static void drawTriangle(float[] v, float[] normal, int rgb, Transform toScreen, Vector3D lightVector,
+			Color lightColor, Color ambientLight, FrameBuffer buffer) {
+		for (int i = 0; i < 9; i += 3)
+			toScreen.multiply(v, i, v, i);
+		toScreen.multiplyDirection(normal, 0, normal, 0);
+		Color polyColor = new Color(shade(rgb, cosTheta(normal, 0, lightVector), lightColor, ambientLight));
+		computeZBuffer(buffer.color, buffer.depth, computeEdgeList(v, 0), polyColor);
+	}
+
+	/**
+	 * Converts a 2D array of Colors to a BufferedImage. Assumes that bitmap is
+	 * indexed by column then row. Note that image.setRGB requires x (col) and y
+	 * (row) are given in that order.
+	 */
+	public static BufferedImage convertBitmapToImage(Color[][] bitmap) {
+		int width = bitmap.length;
+		int height = bitmap[0].length;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, bitmap[x][y].getRGB());
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * As {@link #convertBitmapToImage(Color[][])}, drawing into an image of the
+	 * same size that is being reused, such as one from a {@link FramePool}.
+	 */
+	public static void convertBitmapToImage(Color[][] bitmap, BufferedImage image) {
+		int width = bitmap.length;
+		int height = bitmap[0].length;
+		if (image.getWidth() != width || image.getHeight() != height)
+			throw new IllegalArgumentException("Pipeline: the image is not the size of the bitmap");
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++)
+				row[x] = bitmap[x][y].getRGB();
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+	}
 }
 
 // code for comp261 assignments
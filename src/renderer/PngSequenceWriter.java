@@ -0,0 +1,68 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes every frame to its own numbered PNG file, e.g. frame_00042.png. Each
+ * frame goes to a different file, so frames may be written in any order and
+ * from several threads at once; each thread keeps its own {@link PngEncoder}.
+ */
+public class PngSequenceWriter implements FrameSink {
+
+	private final File directory;
+	private final String prefix;
+	private final int level;
+	private final ThreadLocal<PngEncoder> encoders = new ThreadLocal<PngEncoder>();
+
+	public PngSequenceWriter(File directory, String prefix) throws IOException {
+		this(directory, prefix, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level
+	 *            The deflate level from 0 to 9, trading the size of the files
+	 *            for the time taken to encode them, or -1 for the default of 6.
+	 */
+	public PngSequenceWriter(File directory, String prefix, int level) throws IOException {
+		if (level < -1 || level > 9)
+			throw new IllegalArgumentException("PngSequenceWriter: level must be from -1 to 9");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create directory " + directory);
+		this.directory = directory;
+		this.prefix = prefix;
+		this.level = level < 0 ? 6 : level;
+	}
+
+	/** Returns the file the frame with the given number is written to. */
+	public File fileFor(int index) {
+		return new File(directory, String.format("%s%05d.png", prefix, index));
+	}
+
+	@Override
+	public void writeFrame(int index, BufferedImage frame) throws IOException {
+		PngEncoder encoder = encoders.get();
+		if (encoder == null) {
+			encoder = new PngEncoder(level);
+			encoders.set(encoder);
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(fileFor(index)), 1 << 16);
+		try {
+			encoder.write(frame, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		// every frame is a complete file, there is nothing left to flush
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,171 @@
+package renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Loads a scene file on a background thread, handing over the polygons loaded
+ * so far every so often, so a large model can be drawn while the rest of it
+ * is still being read.
+ *
+ * Each partial scene carries the bounds of just the polygons it holds, which
+ * serve as provisional bounds for fitting the model to the canvas; the final
+ * scene carries the exact bounds of the whole file.
+ *
+ * Given a {@link SceneSidecar}, a scene with a fresh sidecar is handed over
+ * whole straight from it, and any other is given a sidecar once loaded.
+ */
+public class ProgressiveLoader {
+
+	/** Receives the results of a load. Both methods are called on the loading thread. */
+	public interface Listener {
+		/**
+		 * Called with the scene loaded so far. The last call has complete set to
+		 * true and holds every polygon in the file.
+		 */
+		void loaded(Scene scene, boolean complete);
+
+		/** Called instead of a complete scene if the load fails. */
+		void failed(Exception e);
+	}
+
+	/** The default time between partial scenes, after the first one. */
+	public static final long DEFAULT_INTERVAL = 100;
+
+	/** The default amount of the file parsed in each range. */
+	public static final int DEFAULT_CHUNK = 1 << 18;
+
+	private final File file;
+	private final Listener listener;
+	private final long interval;
+	private final int chunkBytes;
+	private final SceneSidecar sidecar;
+	private volatile boolean cancelled;
+	private Thread thread;
+
+	public ProgressiveLoader(File file, Listener listener) {
+		this(file, listener, DEFAULT_INTERVAL, DEFAULT_CHUNK, null);
+	}
+
+	/** Loads through the given sidecar cache, which may be null for none. */
+	public ProgressiveLoader(File file, Listener listener, SceneSidecar sidecar) {
+		this(file, listener, DEFAULT_INTERVAL, DEFAULT_CHUNK, sidecar);
+	}
+
+	/**
+	 * @param interval
+	 *            How many milliseconds to wait after handing over one partial
+	 *            scene before handing over the next.
+	 * @param chunkBytes
+	 *            How much of the file to parse between checks, which bounds how
+	 *            soon the first partial scene can appear.
+	 */
+	public ProgressiveLoader(File file, Listener listener, long interval, int chunkBytes) {
+		this(file, listener, interval, chunkBytes, null);
+	}
+
+	public ProgressiveLoader(File file, Listener listener, long interval, int chunkBytes, SceneSidecar sidecar) {
+		this.file = file;
+		this.listener = listener;
+		this.interval = interval;
+		this.chunkBytes = chunkBytes;
+		this.sidecar = sidecar;
+	}
+
+	/** Starts loading on a new daemon thread. */
+	public synchronized void start() {
+		if (thread != null)
+			throw new IllegalStateException("ProgressiveLoader: already started");
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				load();
+			}
+		}, "scene-loader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the load as soon as possible. The listener is not called again once
+	 * this has returned, except possibly for a call that was already under way.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/** Waits for the loading thread to finish. */
+	public void join() throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		if (t != null)
+			t.join();
+	}
+
+	private void load() {
+		try {
+			if (sidecar != null && loadSidecar())
+				return;
+			long length = file.length(), modified = file.lastModified();
+			Scene scene = ParallelSceneLoader.loadScene(file, chunkBytes, new ParallelSceneLoader.Progress() {
+				private long last = -1;
+
+				@Override
+				public void loaded(Scene partial) {
+					if (cancelled)
+						throw new CancellationException();
+					long now = System.currentTimeMillis();
+					if (last < 0 || now - last >= interval) {
+						last = now;
+						listener.loaded(partial, false);
+					}
+				}
+			});
+			if (cancelled)
+				return;
+			if (scene == null)
+				listener.failed(new IllegalArgumentException("Nothing found in the file."));
+			else {
+				listener.loaded(scene, true);
+				storeSidecar(scene, length, modified);
+			}
+		} catch (CancellationException e) {
+			// nobody is waiting for this scene any more
+		} catch (IOException | RuntimeException e) {
+			if (!cancelled)
+				listener.failed(e);
+		}
+	}
+
+	/* hands over the scene from a fresh sidecar, returning false if there is none */
+	private boolean loadSidecar() {
+		Scene scene;
+		try {
+			SceneSidecar.Data data = sidecar.open(file);
+			if (data == null)
+				return false;
+			scene = data.toScene();
+		} catch (IOException | RuntimeException e) {
+			// a sidecar that cannot be read is only a missed shortcut
+			return false;
+		}
+		if (!cancelled)
+			listener.loaded(scene, true);
+		return true;
+	}
+
+	private void storeSidecar(Scene scene, long length, long modified) {
+		if (sidecar == null || cancelled)
+			return;
+		try {
+			sidecar.store(file, scene, length, modified);
+		} catch (IOException | RuntimeException e) {
+			// the scene is loaded; it just has to be parsed again next time
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,79 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Renders frames straight into memory the caller owns, such as a direct
+ * ByteBuffer or a region of a memory-mapped file shared with another process,
+ * instead of into a BufferedImage that would have to be copied again.
+ *
+ * A raw frame is width * height pixels, row by row from the top and left to
+ * right within a row, with no padding between rows. Each pixel is four bytes:
+ * blue, green, red, then 255 for an opaque alpha. Read as a little-endian int
+ * a pixel is 0xffRRGGBB, the ARGB of {@link Color#getRGB()}; most graphics
+ * libraries know the layout as BGRA8888.
+ */
+public class RawFrame {
+
+	public static final int BYTES_PER_PIXEL = 4;
+
+	/** Returns the number of bytes a raw frame of the given size takes. */
+	public static long frameBytes(int width, int height) {
+		return (long) width * height * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Clears the scratch buffer, renders a frame of the scene into it and
+	 * writes the frame to the target, as {@link #copy} does.
+	 */
+	public static void render(Scene scene, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer scratch, ByteBuffer target) {
+		Pipeline.renderFrame(scene, bound, camera, lightColor, ambientLight, scratch);
+		copy(scratch, target);
+	}
+
+	/**
+	 * Writes the colours of a frame buffer as a raw frame at the target's
+	 * position, which moves past it. The target's byte order is left as it was.
+	 */
+	public static void copy(FrameBuffer buffer, ByteBuffer target) {
+		int width = buffer.width, height = buffer.height;
+		if (target.remaining() < frameBytes(width, height))
+			throw new IllegalArgumentException("RawFrame: " + target.remaining() + " bytes is too small for a "
+					+ width + "x" + height + " frame");
+		ByteOrder order = target.order();
+		target.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			int start = target.position();
+			Color[][] color = buffer.color;
+			for (int y = 0; y < height; y++) {
+				int row = start + y * width * BYTES_PER_PIXEL;
+				for (int x = 0; x < width; x++)
+					target.putInt(row + x * BYTES_PER_PIXEL, color[x][y].getRGB() | 0xff000000);
+			}
+			target.position(start + (int) frameBytes(width, height));
+		} finally {
+			target.order(order);
+		}
+	}
+
+	/**
+	 * Maps the given number of raw frames of a file into memory, starting at
+	 * a byte offset, growing the file if it is shorter. Frame i of the region
+	 * starts at byte i * frameBytes(width, height) of the buffer.
+	 */
+	public static MappedByteBuffer map(FileChannel channel, long offset, int width, int height, int frames)
+			throws IOException {
+		long size = frameBytes(width, height) * frames;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("RawFrame: cannot map more than 2GB at once");
+		return channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+	}
+}
+
+// code for comp261 assignments
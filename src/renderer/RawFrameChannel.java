@@ -0,0 +1,134 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes raw frames (see {@link RawFrame}) to a channel such as a file, pipe
+ * or socket, each behind a 16-byte header of four little-endian ints:
+ *
+ * <pre>
+ * 0x46574152 ("RAWF" in file order), width, height, frame number
+ * </pre>
+ *
+ * The header and the pixels go out in one gathering write where the channel
+ * supports it. Frames rendered straight into a ByteBuffer with
+ * {@link RawFrame#render} are written from that buffer without being copied;
+ * BufferedImages and FrameBuffers are copied once into a direct buffer that is
+ * reused, so writing a long sequence allocates nothing per frame.
+ */
+public class RawFrameChannel implements FrameSink {
+
+	public static final int MAGIC = 0x46574152;
+	public static final int HEADER_BYTES = 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer[] gather = new ByteBuffer[2];
+	private ByteBuffer pixels;
+	private IntBuffer pixelInts;
+	private int[] row = new int[0];
+
+	public RawFrameChannel(WritableByteChannel channel) {
+		this.channel = channel;
+		this.gather[0] = header;
+	}
+
+	/** Opens a file to write frames to, replacing anything it held. */
+	public RawFrameChannel(Path file) throws IOException {
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * Writes a frame already in the raw layout from the remaining bytes of the
+	 * buffer, which must be exactly one frame of the given size. The buffer's
+	 * position moves to its limit.
+	 */
+	public void writeFrame(int index, int width, int height, ByteBuffer frame) throws IOException {
+		if (frame.remaining() != RawFrame.frameBytes(width, height))
+			throw new IllegalArgumentException("RawFrameChannel: " + frame.remaining() + " bytes is not a "
+					+ width + "x" + height + " frame");
+		header.clear();
+		header.putInt(MAGIC).putInt(width).putInt(height).putInt(index);
+		header.flip();
+		gather[1] = frame;
+		try {
+			if (channel instanceof GatheringByteChannel) {
+				GatheringByteChannel gathering = (GatheringByteChannel) channel;
+				while (frame.hasRemaining())
+					gathering.write(gather);
+			} else {
+				while (header.hasRemaining())
+					channel.write(header);
+				while (frame.hasRemaining())
+					channel.write(frame);
+			}
+		} finally {
+			gather[1] = null;
+		}
+	}
+
+	/** Writes the colours of a frame buffer. */
+	public void writeFrame(int index, FrameBuffer buffer) throws IOException {
+		ByteBuffer target = pixels(buffer.width, buffer.height);
+		RawFrame.copy(buffer, target);
+		target.flip();
+		writeFrame(index, buffer.width, buffer.height, target);
+	}
+
+	@Override
+	public void writeFrame(int index, BufferedImage frame) throws IOException {
+		int width = frame.getWidth(), height = frame.getHeight();
+		ByteBuffer target = pixels(width, height);
+		pixelInts.clear();
+		if (frame.getType() == BufferedImage.TYPE_INT_RGB && frame.getRaster().getParent() == null
+				&& frame.getRaster().getDataBuffer().getSize() == width * height) {
+			// one bulk copy, then set the alpha the image does not store
+			pixelInts.put(((DataBufferInt) frame.getRaster().getDataBuffer()).getData());
+			for (int i = 3; i < target.capacity(); i += RawFrame.BYTES_PER_PIXEL)
+				target.put(i, (byte) 0xff);
+		} else {
+			if (row.length < width)
+				row = new int[width];
+			for (int y = 0; y < height; y++) {
+				frame.getRGB(0, y, width, 1, row, 0, width);
+				for (int x = 0; x < width; x++)
+					row[x] |= 0xff000000;
+				pixelInts.put(row, 0, width);
+			}
+		}
+		target.position(0).limit(target.capacity());
+		writeFrame(index, width, height, target);
+	}
+
+	/* the reused direct buffer for frames of this size, cleared */
+	private ByteBuffer pixels(int width, int height) {
+		long bytes = RawFrame.frameBytes(width, height);
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("RawFrameChannel: frame too large");
+		if (pixels == null || pixels.capacity() != bytes) {
+			pixels = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+			pixelInts = pixels.asIntBuffer();
+			RenderEvents.bufferAllocated("raw frame", width, height, bytes);
+		}
+		pixels.clear();
+		return pixels;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
+
+// code for comp261 assignments
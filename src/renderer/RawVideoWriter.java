@@ -0,0 +1,111 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes frames as an uncompressed video stream, either as YUV4MPEG2 (.y4m,
+ * which most video tools can read directly) or as bare packed RGB bytes.
+ *
+ * A stream has no room for gaps, so frames must arrive in order: when it is
+ * wrapped in an {@link AsyncFrameSink} that sink should use a single worker.
+ * The conversion buffers are allocated once for the first frame and reused, so
+ * writing a long sequence does not allocate per frame.
+ */
+public class RawVideoWriter implements FrameSink {
+
+	public enum Format {
+		/** YUV4MPEG2 with full resolution (4:4:4) BT.601 chroma. */
+		Y4M,
+		/** Packed 8-bit R, G, B triples, row by row, with no header at all. */
+		RGB
+	}
+
+	private final OutputStream out;
+	private final Format format;
+	private final int frameRate;
+	private int width = -1, height = -1;
+	private int nextIndex = 0;
+	private int[] pixels;
+	private byte[] bytes;
+
+	public RawVideoWriter(OutputStream out, Format format, int frameRate) {
+		this.out = out;
+		this.format = format;
+		this.frameRate = frameRate;
+	}
+
+	public RawVideoWriter(File file, Format format, int frameRate) throws IOException {
+		this(new BufferedOutputStream(new FileOutputStream(file), 1 << 16), format, frameRate);
+	}
+
+	@Override
+	public void writeFrame(int index, BufferedImage frame) throws IOException {
+		if (index != nextIndex)
+			throw new IllegalStateException("RawVideoWriter: expected frame " + nextIndex + " but got " + index);
+		if (width < 0)
+			start(frame.getWidth(), frame.getHeight());
+		else if (frame.getWidth() != width || frame.getHeight() != height)
+			throw new IllegalArgumentException("RawVideoWriter: frame size changed mid-stream");
+
+		frame.getRGB(0, 0, width, height, pixels, 0, width);
+		if (format == Format.Y4M) {
+			out.write("FRAME\n".getBytes(StandardCharsets.US_ASCII));
+			toYuv444(pixels, bytes);
+		} else {
+			toRgb(pixels, bytes);
+		}
+		out.write(bytes);
+		nextIndex++;
+	}
+
+	private void start(int width, int height) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
+		this.bytes = new byte[width * height * 3];
+		if (format == Format.Y4M) {
+			String header = "YUV4MPEG2 W" + width + " H" + height + " F" + frameRate + ":1 Ip A1:1 C444\n";
+			out.write(header.getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	/** Packs ARGB ints into R, G, B byte triples. */
+	static void toRgb(int[] pixels, byte[] dst) {
+		for (int i = 0, j = 0; i < pixels.length; i++) {
+			int rgb = pixels[i];
+			dst[j++] = (byte) (rgb >> 16);
+			dst[j++] = (byte) (rgb >> 8);
+			dst[j++] = (byte) rgb;
+		}
+	}
+
+	/**
+	 * Converts ARGB ints into three consecutive planes of studio-range BT.601 Y,
+	 * Cb and Cr, using the usual 8-bit fixed-point approximation.
+	 */
+	static void toYuv444(int[] pixels, byte[] dst) {
+		int n = pixels.length;
+		for (int i = 0; i < n; i++) {
+			int rgb = pixels[i];
+			int r = (rgb >> 16) & 0xff;
+			int g = (rgb >> 8) & 0xff;
+			int b = rgb & 0xff;
+			dst[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+			dst[n + i] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+			dst[2 * n + i] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,19 @@
+package renderer;
+
+/**
+ * The ways a frame's visible surfaces can be worked out, chosen per render.
+ */
+public enum RenderEngine {
+	/**
+	 * Draw polygons one after another into full-frame colour and depth
+	 * buffers ({@link Pipeline#computeZBuffer}).
+	 */
+	Z_BUFFER,
+	/**
+	 * Resolve each scanline across all polygons at once, writing every pixel
+	 * of the image once ({@link ScanlineRenderer}).
+	 */
+	SCANLINE
+}
+
+// code for comp261 assignments
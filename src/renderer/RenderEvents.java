@@ -0,0 +1,150 @@
+package renderer;
+
+/**
+ * Hooks for Java Flight Recorder events describing each frame, the stages
+ * inside a frame, scene loads and framebuffer allocations, so that frame time
+ * spikes in a recording can be lined up against garbage collections and
+ * loads.
+ *
+ * The events themselves live in renderer.jfr, which needs the jdk.jfr API
+ * (JDK 11, or 8u272 and later), so it is kept in its own source folder,
+ * src-jfr, which the Java 8 project leaves out. Compile src-jfr with JDK 11 or
+ * later onto the same classpath to turn the events on; without it, or on a
+ * JVM without a flight recorder, every hook does nothing. Every event is
+ * disabled by default, and while disabled a hook costs one check of the
+ * event's setting, with nothing allocated. Enable them in the recording's
+ * settings (a copy of default.jfc with the renderer events switched on, or
+ * JDK Mission Control's template manager), or programmatically with
+ * Recording.enable("renderer.Frame") and so on.
+ *
+ * Hooks come in pairs: begin returns a token, or null when the event is off,
+ * and the token is passed back to the matching end, which ignores null.
+ */
+public final class RenderEvents {
+
+	/** What the flight recorder side provides; see renderer.jfr.FlightRecorderProbe. */
+	public interface Probe {
+		Object beginFrame();
+
+		void endFrame(Object frame, int triangles, int drawn, int width, int height);
+
+		Object beginStage(String stage);
+
+		void endStage(Object stage, int triangles);
+
+		Object beginLoad(String file, long bytes);
+
+		void endLoad(Object load, int triangles, String error);
+
+		void bufferAllocated(String buffer, int width, int height, long bytes);
+	}
+
+	/** The stages Renderer splits a frame into. */
+	public static final String FIT = "fit", SHADOWS = "shadows", GEOMETRY = "geometry", RASTERIZE = "rasterize",
+			CONVERT = "convert", RECORD = "record";
+
+	private static final Probe PROBE = load();
+
+	private RenderEvents() {
+	}
+
+	/* the flight recorder probe if this JVM can run it, else one that does nothing */
+	private static Probe load() {
+		try {
+			return (Probe) Class.forName("renderer.jfr.FlightRecorderProbe").getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return new Disabled();
+		} catch (LinkageError e) {
+			return new Disabled();
+		}
+	}
+
+	/** Returns true if events are actually sent to a flight recorder. */
+	public static boolean isAvailable() {
+		return !(PROBE instanceof Disabled);
+	}
+
+	/** Starts timing a frame. */
+	public static Object beginFrame() {
+		return PROBE.beginFrame();
+	}
+
+	/**
+	 * Ends a frame of the given size, which held the given number of triangles
+	 * of which drawn faced the viewer.
+	 */
+	public static void endFrame(Object frame, int triangles, int drawn, int width, int height) {
+		if (frame != null)
+			PROBE.endFrame(frame, triangles, drawn, width, height);
+	}
+
+	/** Starts timing one stage of a frame. */
+	public static Object beginStage(String stage) {
+		return PROBE.beginStage(stage);
+	}
+
+	/** Ends a stage that worked on the given number of triangles. */
+	public static void endStage(Object stage, int triangles) {
+		if (stage != null)
+			PROBE.endStage(stage, triangles);
+	}
+
+	/** Starts timing the load of a scene file of the given size. */
+	public static Object beginLoad(String file, long bytes) {
+		return PROBE.beginLoad(file, bytes);
+	}
+
+	/**
+	 * Ends a load, which gave the given number of triangles or failed with the
+	 * given message if it is not null.
+	 */
+	public static void endLoad(Object load, int triangles, String error) {
+		if (load != null)
+			PROBE.endLoad(load, triangles, error);
+	}
+
+	/** Records that a buffer of about the given number of bytes was allocated. */
+	public static void bufferAllocated(String buffer, int width, int height, long bytes) {
+		PROBE.bufferAllocated(buffer, width, height, bytes);
+	}
+
+	/** The approximate size of a width by height buffer of the given bytes per pixel. */
+	public static long bufferBytes(int width, int height, int bytesPerPixel) {
+		return (long) width * height * bytesPerPixel;
+	}
+
+	private static class Disabled implements Probe {
+		@Override
+		public Object beginFrame() {
+			return null;
+		}
+
+		@Override
+		public void endFrame(Object frame, int triangles, int drawn, int width, int height) {
+		}
+
+		@Override
+		public Object beginStage(String stage) {
+			return null;
+		}
+
+		@Override
+		public void endStage(Object stage, int triangles) {
+		}
+
+		@Override
+		public Object beginLoad(String file, long bytes) {
+			return null;
+		}
+
+		@Override
+		public void endLoad(Object load, int triangles, String error) {
+		}
+
+		@Override
+		public void bufferAllocated(String buffer, int width, int height, long bytes) {
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,523 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Renders camera paths on {@link RenderWorker} processes, on this machine or
+ * others, which connect to the farm over TCP.
+ *
+ * A render is split into tasks of a few consecutive frames. Each worker that
+ * is connected when the render starts, or connects while it runs, is sent the
+ * scene file once and then given tasks one at a time until none are left. It
+ * renders each frame with {@link Pipeline} and sends it back deflated; the
+ * farm writes the frames to a {@link FrameSink} in order as they arrive.
+ *
+ * If a worker disconnects, stops answering for the frame timeout, or sends
+ * garbage, it is dropped and whatever frames of its task it had not returned
+ * go back to the front of the queue for the other workers. A render fails only
+ * if the scene cannot be parsed, the sink fails, or no worker is left to
+ * render on for the frame timeout.
+ *
+ * The scene file is sent, not its path, so workers need no shared files, but
+ * the images of textured scenes are looked for in the directory the scene is
+ * in on the coordinator, so those need the same directory on the workers.
+ *
+ * Run as a program it renders a turntable with local workers, and accepts
+ * workers from other machines on the port it prints:
+ *
+ * <pre>
+ * RenderFarm scene.txt target [frames] [width] [height] [local workers] [port]
+ * </pre>
+ *
+ * where the target is as for {@link SequenceRenderer}. Start remote workers
+ * with {@code RenderWorker host port}.
+ */
+public class RenderFarm implements Closeable {
+
+	static final int MAGIC = 0x52464152;
+	static final int SCENE = 1, TASK = 2, QUIT = 3, FRAME = 4, ERROR = 5;
+
+	/** How long to wait for a frame, or for any worker at all, by default. */
+	public static final int DEFAULT_TIMEOUT = 60000;
+
+	private final ServerSocket server;
+	private final LinkedBlockingQueue<Connection> idle = new LinkedBlockingQueue<Connection>();
+	private final List<Process> processes = new ArrayList<Process>();
+	private final ExecutorService threads;
+	private final AtomicLong scenes = new AtomicLong();
+	private volatile int timeout = DEFAULT_TIMEOUT;
+	private volatile boolean closed;
+
+	/**
+	 * Starts listening for workers on the given port, or any free port if it
+	 * is 0, on every interface.
+	 */
+	public RenderFarm(int port) throws IOException {
+		this(new InetSocketAddress(port));
+	}
+
+	public RenderFarm(InetSocketAddress address) throws IOException {
+		server = new ServerSocket();
+		server.bind(address);
+		threads = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "render-farm-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		threads.execute(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		});
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/** Sets how many milliseconds to wait for a frame, or for any worker at all. */
+	public void setTimeout(int millis) {
+		timeout = millis;
+	}
+
+	/** Returns the number of workers connected and not busy with a render. */
+	public int getIdleWorkers() {
+		return idle.size();
+	}
+
+	/**
+	 * Starts a worker process on this machine with the same Java and class
+	 * path as this one, connecting over loopback. Extra arguments are passed to
+	 * {@link RenderWorker#main}. The process is ended when the farm is closed.
+	 */
+	public Process startLocalWorker(String... options) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Djava.awt.headless=true");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(RenderWorker.class.getName());
+		command.add(InetAddress.getLoopbackAddress().getHostAddress());
+		command.add(Integer.toString(getPort()));
+		for (String option : options)
+			command.add(option);
+		Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		synchronized (processes) {
+			processes.add(process);
+		}
+		return process;
+	}
+
+	/**
+	 * Waits until at least the given number of workers are connected and idle,
+	 * returning false if they have not after the given number of milliseconds.
+	 */
+	public boolean awaitWorkers(int count, long millis) throws InterruptedException {
+		long end = System.currentTimeMillis() + millis;
+		while (idle.size() < count) {
+			if (System.currentTimeMillis() >= end)
+				return false;
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	/**
+	 * Renders one frame per camera in the path on the connected workers and
+	 * writes them to the sink in order, returning once all are written. The
+	 * sink is not closed.
+	 *
+	 * @param framesPerTask
+	 *            how many consecutive frames a worker is given at a time
+	 */
+	public void render(File sceneFile, List<Camera> path, Dimension size, Color lightColor, Color ambientLight,
+			int framesPerTask, FrameSink sink) throws IOException, InterruptedException {
+		if (framesPerTask < 1)
+			throw new IllegalArgumentException("RenderFarm: framesPerTask must be positive");
+		if (size.width < 1 || size.height < 1)
+			throw new IllegalArgumentException("RenderFarm: bad size " + size.width + "x" + size.height);
+		File directory = sceneFile.getAbsoluteFile().getParentFile();
+		final Session session = new Session(scenes.incrementAndGet(), Files.readAllBytes(sceneFile.toPath()),
+				directory == null ? "" : directory.getPath(), size, lightColor, ambientLight, path, sink);
+		for (int first = 0; first < path.size(); first += framesPerTask)
+			session.tasks.add(new Task(first, Math.min(framesPerTask, path.size() - first)));
+
+		long lastWorker = System.currentTimeMillis();
+		try {
+			while (session.remaining.get() > 0 && session.failure == null) {
+				final Connection connection = idle.poll(20, TimeUnit.MILLISECONDS);
+				if (connection != null) {
+					session.active.incrementAndGet();
+					threads.execute(new Runnable() {
+						@Override
+						public void run() {
+							serve(connection, session);
+						}
+					});
+				}
+				if (session.active.get() > 0)
+					lastWorker = System.currentTimeMillis();
+				else if (closed || System.currentTimeMillis() - lastWorker > timeout)
+					throw new IOException("RenderFarm: no workers left with " + session.remaining.get()
+							+ " frames to render");
+			}
+		} finally {
+			session.finished = true;
+			// wait for the workers to hand back their connections
+			while (session.active.get() > 0)
+				Thread.sleep(5);
+		}
+		if (session.failure != null)
+			throw session.failure;
+	}
+
+	/** Tells idle workers to exit, stops listening and ends local worker processes. */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		server.close();
+		Connection connection;
+		while ((connection = idle.poll()) != null) {
+			try {
+				connection.out.writeInt(QUIT);
+				connection.out.flush();
+			} catch (IOException e) {
+				// it is going anyway
+			}
+			connection.close();
+		}
+		threads.shutdownNow();
+		synchronized (processes) {
+			for (Process process : processes) {
+				try {
+					if (!process.waitFor(2, TimeUnit.SECONDS))
+						process.destroy();
+				} catch (InterruptedException e) {
+					process.destroy();
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private void accept() {
+		while (!closed) {
+			Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				// the server socket was closed
+				return;
+			}
+			try {
+				Connection connection = new Connection(socket);
+				socket.setSoTimeout(timeout);
+				if (connection.in.readInt() != MAGIC)
+					throw new IOException("Not a render worker: " + socket.getRemoteSocketAddress());
+				idle.add(connection);
+			} catch (IOException e) {
+				System.err.println("RenderFarm: " + e.getMessage());
+				try {
+					socket.close();
+				} catch (IOException ignored) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	/*
+	 * gives tasks to one worker until none are left, putting back what it had
+	 * not finished if it fails, or failing the session if the frames cannot be
+	 * written
+	 */
+	private void serve(Connection connection, Session session) {
+		boolean healthy = true;
+		try {
+			Task task;
+			while (healthy && (task = session.next()) != null) {
+				int done = 0;
+				try {
+					connection.socket.setSoTimeout(timeout);
+					if (connection.scene != session.id) {
+						session.sendScene(connection.out);
+						connection.scene = session.id;
+					}
+					connection.out.writeInt(TASK);
+					connection.out.writeInt(task.first);
+					connection.out.writeInt(task.count);
+					for (int i = 0; i < task.count; i++) {
+						Camera camera = session.path.get(task.first + i);
+						connection.out.writeFloat(camera.xRot);
+						connection.out.writeFloat(camera.yRot);
+						connection.out.writeFloat(camera.scale);
+						connection.out.writeFloat(camera.x);
+						connection.out.writeFloat(camera.y);
+					}
+					connection.out.flush();
+					for (; done < task.count; done++) {
+						int reply = connection.in.readInt();
+						if (reply == ERROR) {
+							session.fail(new IOException("RenderFarm: worker failed: " + connection.in.readUTF()));
+							healthy = false;
+							break;
+						}
+						if (reply != FRAME || connection.in.readInt() != task.first + done)
+							throw new IOException("RenderFarm: unexpected reply from worker");
+						byte[] data = new byte[connection.in.readInt()];
+						connection.in.readFully(data);
+						session.deliver(task.first + done, decode(data, session.size.width, session.size.height));
+					}
+				} catch (IOException e) {
+					healthy = false;
+					session.tasks.addFirst(new Task(task.first + done, task.count - done));
+				} catch (RuntimeException e) {
+					// the sink or the frame itself is broken, so another worker would not do better
+					session.fail(new IOException("RenderFarm: frame " + (task.first + done) + " failed: " + e, e));
+					healthy = false;
+				}
+			}
+		} finally {
+			if (healthy && !closed)
+				idle.add(connection);
+			else
+				connection.close();
+			session.active.decrementAndGet();
+		}
+	}
+
+	// --------------------------------------------------------------------
+	// Frame encoding, shared with RenderWorker
+	// --------------------------------------------------------------------
+
+	/** Packs a frame as rows of RGB bytes and deflates them. */
+	static byte[] encode(Color[][] bitmap, int width, int height, Deflater deflater) {
+		byte[] rgb = new byte[width * height * 3];
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Color color = bitmap[x][y];
+				rgb[i++] = (byte) color.getRed();
+				rgb[i++] = (byte) color.getGreen();
+				rgb[i++] = (byte) color.getBlue();
+			}
+		}
+		deflater.reset();
+		deflater.setInput(rgb);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(rgb.length / 8 + 64);
+		byte[] chunk = new byte[16384];
+		while (!deflater.finished())
+			out.write(chunk, 0, deflater.deflate(chunk));
+		return out.toByteArray();
+	}
+
+	/** Unpacks a frame deflated by encode. */
+	static BufferedImage decode(byte[] data, int width, int height) throws IOException {
+		byte[] rgb = new byte[width * height * 3];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			int n = 0;
+			while (n < rgb.length && !inflater.finished()) {
+				int read = inflater.inflate(rgb, n, rgb.length - n);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				n += read;
+			}
+			if (n != rgb.length)
+				throw new IOException("RenderFarm: truncated frame");
+		} catch (DataFormatException e) {
+			throw new IOException("RenderFarm: corrupt frame", e);
+		} finally {
+			inflater.end();
+		}
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[width];
+		for (int y = 0, i = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, i += 3)
+				row[x] = ((rgb[i] & 0xff) << 16) | ((rgb[i + 1] & 0xff) << 8) | (rgb[i + 2] & 0xff);
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return image;
+	}
+
+	// --------------------------------------------------------------------
+	// Bookkeeping
+	// --------------------------------------------------------------------
+
+	/** A worker's socket, and which scene it last loaded. */
+	private static class Connection {
+		final Socket socket;
+		final DataInputStream in;
+		final DataOutputStream out;
+		long scene;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	/** Consecutive frames of a path, given to one worker. */
+	private static class Task {
+		final int first;
+		final int count;
+
+		Task(int first, int count) {
+			this.first = first;
+			this.count = count;
+		}
+	}
+
+	/** One call to render: what is left to do, and the frames waiting for their turn in the sink. */
+	private static class Session {
+		final long id;
+		final byte[] scene;
+		final String directory;
+		final Dimension size;
+		final Color lightColor, ambientLight;
+		final List<Camera> path;
+		final FrameSink sink;
+		final LinkedBlockingDeque<Task> tasks = new LinkedBlockingDeque<Task>();
+		final AtomicInteger remaining;
+		final AtomicInteger active = new AtomicInteger();
+		final Map<Integer, BufferedImage> waiting = new TreeMap<Integer, BufferedImage>();
+		int next;
+		volatile IOException failure;
+		volatile boolean finished;
+
+		Session(long id, byte[] scene, String directory, Dimension size, Color lightColor, Color ambientLight,
+				List<Camera> path, FrameSink sink) {
+			this.id = id;
+			this.scene = scene;
+			this.directory = directory;
+			this.size = size;
+			this.lightColor = lightColor;
+			this.ambientLight = ambientLight;
+			this.path = path;
+			this.sink = sink;
+			this.remaining = new AtomicInteger(path.size());
+		}
+
+		/* the next task, waiting while others are out in case they come back, or null when done */
+		Task next() {
+			try {
+				while (!finished && failure == null && remaining.get() > 0) {
+					Task task = tasks.pollFirst(20, TimeUnit.MILLISECONDS);
+					if (task != null)
+						return task;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}
+
+		void sendScene(DataOutputStream out) throws IOException {
+			out.writeInt(SCENE);
+			out.writeUTF(directory);
+			out.writeInt(size.width);
+			out.writeInt(size.height);
+			out.writeInt(lightColor.getRGB());
+			out.writeInt(ambientLight.getRGB());
+			out.writeInt(scene.length);
+			out.write(scene);
+		}
+
+		/* writes the frame and any that were waiting for it, or keeps it until its turn */
+		synchronized void deliver(int index, BufferedImage image) {
+			if (failure != null)
+				return;
+			waiting.put(index, image);
+			try {
+				BufferedImage frame;
+				while ((frame = waiting.remove(next)) != null)
+					sink.writeFrame(next++, frame);
+			} catch (IOException e) {
+				fail(e);
+			}
+			remaining.decrementAndGet();
+		}
+
+		void fail(IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println(
+					"usage: RenderFarm scene.txt target [frames] [width] [height] [local workers] [port]");
+			System.exit(1);
+		}
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+		int width = args.length > 3 ? Integer.parseInt(args[3]) : GUI.CANVAS_WIDTH;
+		int height = args.length > 4 ? Integer.parseInt(args[4]) : GUI.CANVAS_HEIGHT;
+		int locals = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+		int port = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+
+		RenderFarm farm = new RenderFarm(port);
+		System.out.println("Accepting render workers on port " + farm.getPort());
+		FrameSink sink = SequenceRenderer.openSink(new File(args[1]));
+		try {
+			for (int i = 0; i < locals; i++)
+				farm.startLocalWorker();
+			farm.render(new File(args[0]), Camera.DEFAULT.turntable(frames), new Dimension(width, height),
+					SequenceRenderer.DEFAULT_LIGHT, SequenceRenderer.DEFAULT_LIGHT, 4, sink);
+		} finally {
+			sink.close();
+			farm.close();
+		}
+	}
+}
+
+// code for comp261 assignments
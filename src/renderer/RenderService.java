@@ -0,0 +1,472 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP server that renders scenes to PNG images, so thumbnails can be
+ * made without starting the Swing GUI for every image.
+ *
+ * <pre>
+ * GET  /render?scene=data/monkey.txt&amp;yRot=0.5&amp;width=256&amp;height=256
+ * POST /render?yRot=0.5     (with the scene file as the request body)
+ * </pre>
+ *
+ * Optional parameters are xRot, yRot, scale, x, y (see {@link Camera}), light
+ * and ambient as "r,g,b", and width and height. Scenes named by the scene
+ * parameter are resolved inside the root directory the service was started
+ * with, and their textures inside the scene's own directory. Posted scenes
+ * have no directory, so they may not declare textures, and a body larger
+ * than MAX_BODY is refused with 413.
+ *
+ * The service has no authentication, so by default it only listens on the
+ * loopback interface. Run as a program:
+ *
+ * <pre>
+ * RenderService [port] [root] [bind address]
+ * </pre>
+ *
+ * where a bind address of 0.0.0.0 listens on every interface.
+ *
+ * Parsed scenes are kept in a {@link SceneCache}. Requests for the same scene
+ * are batched: while one batch is being rendered, new requests for that scene
+ * queue up and are rendered together afterwards, with the scene looked up once
+ * and identical requests rendered only once. Each render thread keeps its own
+ * {@link FrameBuffer} between requests.
+ */
+public class RenderService {
+
+	/** The largest width or height a client may ask for. */
+	public static final int MAX_SIZE = 4096;
+
+	/** The largest scene body, in bytes, a client may post. */
+	public static final int MAX_BODY = 4 << 20;
+
+	private final HttpServer server;
+	private final File root;
+	private final SceneCache cache;
+	private final ExecutorService renderPool;
+	private final ExecutorService requestPool;
+	private final Map<String, Lane> lanes = new HashMap<String, Lane>();
+	private final ThreadLocal<FrameBuffer> buffers = new ThreadLocal<FrameBuffer>();
+
+	/** Starts a service listening on the loopback interface only. */
+	public RenderService(int port, File root, int cacheSize, int threads) throws IOException {
+		this(InetAddress.getLoopbackAddress(), port, root, cacheSize, threads);
+	}
+
+	/** Starts a service listening on the given local address. */
+	public RenderService(InetAddress address, int port, File root, int cacheSize, int threads)
+			throws IOException {
+		this.root = root.getCanonicalFile();
+		this.cache = new SceneCache(cacheSize);
+		this.renderPool = Executors.newFixedThreadPool(threads);
+		this.requestPool = Executors.newFixedThreadPool(4 * threads);
+		this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+		this.server.createContext("/render", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRender(exchange);
+			}
+		});
+		this.server.setExecutor(requestPool);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/** Stops accepting requests, waiting at most the given number of seconds. */
+	public void stop(int delay) {
+		server.stop(delay);
+		requestPool.shutdown();
+		renderPool.shutdown();
+	}
+
+	/** Returns the port the service is listening on. */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public SceneCache getCache() {
+		return cache;
+	}
+
+	// --------------------------------------------------------------------
+	// HTTP
+	// --------------------------------------------------------------------
+
+	private void handleRender(HttpExchange exchange) throws IOException {
+		int status;
+		byte[] body;
+		String type = "text/plain; charset=utf-8";
+		try {
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			RenderRequest request = RenderRequest.fromParams(params);
+			String method = exchange.getRequestMethod();
+			String key;
+			Callable<SceneCache.Entry> loader;
+			if (method.equals("POST")) {
+				String length = exchange.getRequestHeaders().getFirst("Content-Length");
+				if (length != null && Long.parseLong(length.trim()) > MAX_BODY)
+					throw new BodyTooLarge();
+				final byte[] text = readAll(exchange.getRequestBody());
+				key = "post:" + sha256(text);
+				loader = new Callable<SceneCache.Entry>() {
+					@Override
+					public SceneCache.Entry call() throws IOException {
+						BufferedReader reader = new BufferedReader(
+								new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+						return new SceneCache.Entry(SceneLoader.read(reader));
+					}
+				};
+			} else if (method.equals("GET")) {
+				final File file = resolve(params.get("scene"));
+				key = "file:" + file.getPath() + ':' + file.lastModified() + ':' + file.length();
+				loader = new Callable<SceneCache.Entry>() {
+					@Override
+					public SceneCache.Entry call() throws IOException {
+						return new SceneCache.Entry(SceneLoader.load(file));
+					}
+				};
+			} else {
+				exchange.getResponseHeaders().set("Allow", "GET, POST");
+				send(exchange, 405, type, "Only GET and POST are supported\n".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			body = submit(key, loader, request).get();
+			status = 200;
+			type = "image/png";
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			status = statusFor(cause);
+			body = (cause + "\n").getBytes(StandardCharsets.UTF_8);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = 503;
+			body = "Interrupted\n".getBytes(StandardCharsets.UTF_8);
+		} catch (Exception e) {
+			status = statusFor(e);
+			body = (e + "\n").getBytes(StandardCharsets.UTF_8);
+		}
+		send(exchange, status, type, body);
+	}
+
+	private static int statusFor(Throwable e) {
+		if (e instanceof BodyTooLarge)
+			return 413;
+		if (e instanceof FileNotFoundException)
+			return 404;
+		if (e instanceof SecurityException)
+			return 403;
+		if (e instanceof IllegalArgumentException)
+			return 400;
+		return 500;
+	}
+
+	private static void send(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Finds a scene file inside the root directory, refusing paths outside it. */
+	private File resolve(String name) throws IOException {
+		if (name == null)
+			throw new IllegalArgumentException("Missing scene parameter");
+		File file = new File(root, name).getCanonicalFile();
+		if (!file.getPath().startsWith(root.getPath() + File.separator))
+			throw new SecurityException("Scene is outside the service root: " + name);
+		if (!file.isFile())
+			throw new FileNotFoundException(name);
+		return file;
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null || query.isEmpty())
+			return params;
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0)
+				params.put(URLDecoder.decode(pair, "UTF-8"), "");
+			else
+				params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+						URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}
+		return params;
+	}
+
+	/* reads a request body, giving up once it is longer than MAX_BODY */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int n;
+		try {
+			while ((n = in.read(chunk)) > 0) {
+				if (out.size() + n > MAX_BODY)
+					throw new BodyTooLarge();
+				out.write(chunk, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	/** Thrown for a request body larger than MAX_BODY. */
+	private static class BodyTooLarge extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		BodyTooLarge() {
+			super("Scene bodies are limited to " + MAX_BODY + " bytes");
+		}
+	}
+
+	private static String sha256(byte[] bytes) {
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes))
+				hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// --------------------------------------------------------------------
+	// Batching and rendering
+	// --------------------------------------------------------------------
+
+	/**
+	 * Queues a request on the lane for its scene, starting a render thread on
+	 * the lane if none is running.
+	 */
+	CompletableFuture<byte[]> submit(String key, Callable<SceneCache.Entry> loader, RenderRequest request) {
+		final Job job = new Job(request, loader);
+		final Lane lane;
+		boolean start;
+		synchronized (lanes) {
+			Lane existing = lanes.get(key);
+			if (existing == null) {
+				existing = new Lane(key);
+				lanes.put(key, existing);
+			}
+			lane = existing;
+			lane.pending.add(job);
+			start = !lane.running;
+			lane.running = true;
+		}
+		if (start) {
+			renderPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain(lane);
+				}
+			});
+		}
+		return job.result;
+	}
+
+	/** Renders batches from the lane until no more requests arrive for it. */
+	private void drain(Lane lane) {
+		while (true) {
+			List<Job> batch;
+			synchronized (lanes) {
+				if (lane.pending.isEmpty()) {
+					lane.running = false;
+					lanes.remove(lane.key);
+					return;
+				}
+				batch = lane.pending;
+				lane.pending = new ArrayList<Job>();
+			}
+			renderBatch(lane.key, batch);
+		}
+	}
+
+	private void renderBatch(String key, List<Job> batch) {
+		SceneCache.Entry entry;
+		try {
+			entry = cache.get(key, batch.get(0).loader);
+		} catch (Exception e) {
+			for (Job job : batch)
+				job.result.completeExceptionally(e);
+			return;
+		}
+
+		Map<RenderRequest, byte[]> rendered = new HashMap<RenderRequest, byte[]>();
+		for (Job job : batch) {
+			byte[] png = rendered.get(job.request);
+			if (png == null) {
+				try {
+					png = renderPng(entry, job.request);
+				} catch (Exception e) {
+					job.result.completeExceptionally(e);
+					continue;
+				}
+				rendered.put(job.request, png);
+			}
+			job.result.complete(png);
+		}
+	}
+
+	private byte[] renderPng(SceneCache.Entry entry, RenderRequest request) throws IOException {
+		FrameBuffer buffer = buffers.get();
+		if (buffer == null || !buffer.hasSize(request.width, request.height)) {
+			buffer = new FrameBuffer(request.width, request.height);
+			buffers.set(buffer);
+		}
+		Pipeline.renderFrame(entry.scene, entry.bound, request.camera, request.light, request.ambient, buffer);
+		BufferedImage image = Pipeline.convertBitmapToImage(buffer.color);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	/** The requests waiting for one scene, and whether a thread is serving them. */
+	private static class Lane {
+		final String key;
+		List<Job> pending = new ArrayList<Job>();
+		boolean running;
+
+		Lane(String key) {
+			this.key = key;
+		}
+	}
+
+	private static class Job {
+		final RenderRequest request;
+		final Callable<SceneCache.Entry> loader;
+		final CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+
+		Job(RenderRequest request, Callable<SceneCache.Entry> loader) {
+			this.request = request;
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * Everything about a request except the scene itself. Two requests that are
+	 * equal produce the same image of the same scene.
+	 */
+	static class RenderRequest {
+		final Camera camera;
+		final Color light;
+		final Color ambient;
+		final int width;
+		final int height;
+
+		RenderRequest(Camera camera, Color light, Color ambient, int width, int height) {
+			if (width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE)
+				throw new IllegalArgumentException("Image size must be between 1 and " + MAX_SIZE);
+			this.camera = camera;
+			this.light = light;
+			this.ambient = ambient;
+			this.width = width;
+			this.height = height;
+		}
+
+		static RenderRequest fromParams(Map<String, String> params) {
+			Camera camera = new Camera(floatParam(params, "xRot", 0f), floatParam(params, "yRot", 0f),
+					floatParam(params, "scale", 1.0f), floatParam(params, "x", 0f), floatParam(params, "y", 0f));
+			return new RenderRequest(camera, colorParam(params, "light"), colorParam(params, "ambient"),
+					intParam(params, "width", GUI.CANVAS_WIDTH), intParam(params, "height", GUI.CANVAS_HEIGHT));
+		}
+
+		private static float floatParam(Map<String, String> params, String name, float fallback) {
+			String value = params.get(name);
+			return value == null ? fallback : Float.parseFloat(value);
+		}
+
+		private static int intParam(Map<String, String> params, String name, int fallback) {
+			String value = params.get(name);
+			return value == null ? fallback : Integer.parseInt(value);
+		}
+
+		private static Color colorParam(Map<String, String> params, String name) {
+			String value = params.get(name);
+			if (value == null)
+				return SequenceRenderer.DEFAULT_LIGHT;
+			String[] rgb = value.split(",");
+			if (rgb.length != 3)
+				throw new IllegalArgumentException(name + " must be r,g,b");
+			return new Color(Integer.parseInt(rgb[0]), Integer.parseInt(rgb[1]), Integer.parseInt(rgb[2]));
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Float.floatToIntBits(camera.xRot);
+			result = 31 * result + Float.floatToIntBits(camera.yRot);
+			result = 31 * result + Float.floatToIntBits(camera.scale);
+			result = 31 * result + Float.floatToIntBits(camera.x);
+			result = 31 * result + Float.floatToIntBits(camera.y);
+			result = 31 * result + light.hashCode();
+			result = 31 * result + ambient.hashCode();
+			result = 31 * result + width;
+			return 31 * result + height;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof RenderRequest))
+				return false;
+			RenderRequest other = (RenderRequest) obj;
+			return camera.xRot == other.camera.xRot && camera.yRot == other.camera.yRot
+					&& camera.scale == other.camera.scale && camera.x == other.camera.x
+					&& camera.y == other.camera.y && light.equals(other.light) && ambient.equals(other.ambient)
+					&& width == other.width && height == other.height;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		File root = new File(args.length > 1 ? args[1] : ".");
+		InetAddress address = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+		int threads = Runtime.getRuntime().availableProcessors();
+		RenderService service = new RenderService(address, port, root, 32, threads);
+		service.start();
+		System.out.println("Rendering scenes from " + root.getCanonicalPath() + " on "
+				+ address.getHostAddress() + " port " + service.getPort());
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,137 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * A process that renders frames for a {@link RenderFarm}. It connects to the
+ * farm, then loads whatever scene it is sent and renders the frames it is
+ * asked for until the farm tells it to stop or goes away.
+ *
+ * <pre>
+ * RenderWorker host port [--fail-after frames]
+ * </pre>
+ *
+ * The --fail-after option makes the worker die abruptly after sending the
+ * given number of frames, for trying out how the farm copes.
+ */
+public class RenderWorker {
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final int failAfter;
+	private int sent;
+
+	private Scene scene;
+	private float[] bound;
+	private FrameBuffer buffer;
+	private Color lightColor, ambientLight;
+	private String error;
+
+	RenderWorker(Socket socket, int failAfter) throws IOException {
+		socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		this.failAfter = failAfter;
+	}
+
+	/** Serves the farm until it says to stop or the connection closes. */
+	void serve() throws IOException {
+		out.writeInt(RenderFarm.MAGIC);
+		out.flush();
+		while (true) {
+			int request;
+			try {
+				request = in.readInt();
+			} catch (EOFException e) {
+				return;
+			}
+			if (request == RenderFarm.SCENE)
+				readScene();
+			else if (request == RenderFarm.TASK)
+				renderTask();
+			else if (request == RenderFarm.QUIT)
+				return;
+			else
+				throw new IOException("RenderWorker: unknown request " + request);
+		}
+	}
+
+	private void readScene() throws IOException {
+		String directory = in.readUTF();
+		int width = in.readInt(), height = in.readInt();
+		lightColor = new Color(in.readInt());
+		ambientLight = new Color(in.readInt());
+		byte[] text = new byte[in.readInt()];
+		in.readFully(text);
+
+		if (buffer == null || !buffer.hasSize(width, height))
+			buffer = new FrameBuffer(width, height);
+		scene = null;
+		error = null;
+		try {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+			scene = SceneLoader.read(reader, directory.isEmpty() ? null : new File(directory));
+			if (scene == null)
+				error = "Nothing found in the scene";
+			else
+				bound = scene.getBound();
+		} catch (Exception e) {
+			error = e.toString();
+		}
+	}
+
+	private void renderTask() throws IOException {
+		int first = in.readInt(), count = in.readInt();
+		Camera[] cameras = new Camera[count];
+		for (int i = 0; i < count; i++)
+			cameras[i] = new Camera(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+		if (scene == null) {
+			out.writeInt(RenderFarm.ERROR);
+			out.writeUTF(error == null ? "No scene loaded" : error);
+			out.flush();
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			Pipeline.renderFrame(scene, bound, cameras[i], lightColor, ambientLight, buffer);
+			byte[] data = RenderFarm.encode(buffer.color, buffer.width, buffer.height, deflater);
+			out.writeInt(RenderFarm.FRAME);
+			out.writeInt(first + i);
+			out.writeInt(data.length);
+			out.write(data);
+			out.flush();
+			if (++sent == failAfter)
+				Runtime.getRuntime().halt(3);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2 && !(args.length == 4 && args[2].equals("--fail-after"))) {
+			System.err.println("usage: RenderWorker host port [--fail-after frames]");
+			System.exit(1);
+		}
+		int failAfter = args.length == 4 ? Integer.parseInt(args[3]) : -1;
+		Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+		try {
+			new RenderWorker(socket, failAfter).serve();
+		} finally {
+			socket.close();
+		}
+	}
+}
+
+// code for comp261 assignments
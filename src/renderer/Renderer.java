@@ -7,25 +7,39 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
-import renderer.Scene.Polygon;
+import javax.swing.SwingUtilities;
 
 public class Renderer extends GUI {
 
 	private Scene scene;
-	private Scene centralisedScene;
+	private Scene fittedScene, fittedFrom;
+	private Transform view = Transform.identity();
+	private ProgressiveLoader loader;
+	// parsed scenes are kept so opening them again skips the parse
+	private static final SceneSidecar SIDECARS = SceneSidecar.defaultCache();
+	private File file;
+	private boolean watching, loadedWhole;
+	private SceneWatcher watcher;
 	private float xRot = 0f, yRot = 0f;
 	private Vector3D viewer;
+	private final GeometryStage geometry = new GeometryStage();
+	private final ScanlineRenderer scanline = new ScanlineRenderer();
+	private RenderEngine engine = RenderEngine.Z_BUFFER;
+	private final ShadowRenderer shadows = new ShadowRenderer();
+	private boolean castShadows;
+	private FrameBuffer shadowBuffer;
 	private float currentScale = 1.0f;
 	private static final float MIN_ZOOM = 0.5f, MAX_ZOOM = 5.0f;
 	private boolean isRotating = true;
 	private Point dragStart;
+	private FrameSink frameSink;
+	private int frameIndex;
 
 	@Override
 	protected void onLoad(File file) {
@@ -34,54 +48,155 @@ public class Renderer extends GUI {
 		viewer = new Vector3D(0f, 0f, 0f);
 		currentScale = 1.0f;
 
-		List<Polygon> polygons = new ArrayList<Polygon>();
-		Vector3D lightPos;
-		try {
-			BufferedReader Reader = new BufferedReader(new FileReader(file));
-			String line = Reader.readLine();
+		view = Transform.identity();
+		scene = null;
+		this.file = file;
+		loadedWhole = false;
+		stopWatching();
 
-			if (line == null) {
-				System.out.println("Nothing found in the file.");
-				Reader.close();
-				return;
-			}
+		if (loader != null)
+			loader.cancel();
+		Load load = new Load(RenderEvents.beginLoad(file.getPath(), file.length()));
+		loader = new ProgressiveLoader(file, load, SIDECARS);
+		load.owner = loader;
+		loader.start();
+	}
 
-			String[] values = line.split(" ");
+	/**
+	 * Passes the scenes from the current load over to the event dispatch thread.
+	 * Only the newest scene waiting is shown, so a slow redraw never builds up a
+	 * queue of stale partial scenes.
+	 */
+	private class Load implements ProgressiveLoader.Listener, Runnable {
+		private final AtomicReference<Scene> arrived = new AtomicReference<Scene>();
+		private final Object event;
+		private ProgressiveLoader owner;
+		private volatile Scene complete;
 
-			// the light
-			lightPos = new Vector3D(Float.parseFloat(values[0]), Float.parseFloat(values[1]),Float.parseFloat(values[2]));
+		Load(Object event) {
+			this.event = event;
+		}
 
-			line = Reader.readLine();
+		@Override
+		public void loaded(Scene partial, boolean complete) {
+			if (complete) {
+				RenderEvents.endLoad(event, partial.getPolygons().size(), null);
+				this.complete = partial;
+			}
+			if (arrived.getAndSet(partial) == null)
+				SwingUtilities.invokeLater(this);
+		}
 
-			while (line != null) {
-				values = line.split(" ");
-				// for the polygon
-				float ax = Float.parseFloat(values[0]);
-				float ay = Float.parseFloat(values[1]);
-				float az = Float.parseFloat(values[2]);
-				float bx = Float.parseFloat(values[3]);
-				float by = Float.parseFloat(values[4]);
-				float bz = Float.parseFloat(values[5]);
-				float cx = Float.parseFloat(values[6]);
-				float cy = Float.parseFloat(values[7]);
-				float cz = Float.parseFloat(values[8]);
-				float[] points = new float[] { ax, ay, az, bx, by, bz, cx, cy, cz };
+		@Override
+		public void failed(final Exception e) {
+			RenderEvents.endLoad(event, 0, String.valueOf(e));
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if (e instanceof IOException)
+						System.err.println("IOException");
+					else
+						System.out.println(e.getMessage());
+				}
+			});
+		}
 
-				// for the color of the polygon
-				int r = Integer.parseInt(values[9]);
-				int g = Integer.parseInt(values[10]);
-				int b = Integer.parseInt(values[11]);
-				int[] color = new int[] { r, g, b };
+		@Override
+		public void run() {
+			Scene latest = arrived.getAndSet(null);
+			if (latest == null || loader != owner)
+				return;
+			scene = latest;
+			if (latest == complete) {
+				loadedWhole = true;
+				if (watching)
+					startWatching();
+			}
+			redraw();
+		}
+	}
 
-				polygons.add(new Polygon(points, color));
+	/**
+	 * Passes the changes to a watched file over to the event dispatch thread,
+	 * where each one patches the scene in turn.
+	 */
+	private class Reload implements SceneWatcher.Listener, Runnable {
+		private final Queue<SceneReloader.Update> arrived = new ConcurrentLinkedQueue<SceneReloader.Update>();
+		private SceneWatcher owner;
+
+		@Override
+		public void changed(SceneReloader.Update update) {
+			arrived.add(update);
+			SwingUtilities.invokeLater(this);
+		}
 
-				line = Reader.readLine();
+		@Override
+		public void failed(Exception e) {
+			// most likely caught half written; it is read again on its next change
+			System.err.println("Could not reload " + file + ": " + e.getMessage());
+		}
+
+		@Override
+		public void run() {
+			SceneReloader.Update update;
+			boolean changed = false;
+			while ((update = arrived.poll()) != null) {
+				if (watcher != owner || scene != update.previous)
+					continue;
+				// only the changed polygons are fitted again if the bounds are the
+				// same; otherwise render fits the whole scene. The camera stays put.
+				Scene refitted = fittedFrom == scene ? update.refit(fittedScene, getDrawingSize()) : null;
+				scene = update.scene;
+				if (refitted != null) {
+					fittedScene = refitted;
+					fittedFrom = scene;
+				}
+				changed = true;
 			}
-			Reader.close();
-			this.scene = new Scene(polygons, lightPos);
+			if (changed)
+				redraw();
+		}
+	}
+
+	/* watches the file the current scene was loaded from, if it was loaded whole */
+	private void startWatching() {
+		stopWatching();
+		if (!loadedWhole)
+			return;
+		Reload reload = new Reload();
+		try {
+			// the watcher reads the file on its own thread, not this one
+			watcher = new SceneWatcher(file, scene, reload);
+		} catch (IOException e) {
+			System.err.println("Cannot watch " + file + ": " + e.getMessage());
+			return;
+		}
+		reload.owner = watcher;
+		watcher.start();
+	}
+
+	private void stopWatching() {
+		if (watcher == null)
+			return;
+		try {
+			watcher.close();
 		} catch (IOException e) {
-			System.err.println("IOException");
+			// it stops either way
 		}
+		watcher = null;
+	}
+
+	/**
+	 * Turns watch mode on or off. While it is on, changes to the file of the
+	 * loaded scene are shown as soon as they are saved, keeping the camera
+	 * where it is.
+	 */
+	public void setWatching(boolean watching) {
+		this.watching = watching;
+		if (!watching)
+			stopWatching();
+		else if (watcher == null)
+			startWatching();
 	}
 
 	@Override
@@ -117,6 +232,15 @@ public class Renderer extends GUI {
 				if (currentScale < MIN_ZOOM)
 					currentScale = MIN_ZOOM;
 			}
+			// "Z" switches between the z-buffer and the scanline renderer
+			else if (c == 'z' || c == 'Z')
+				setEngine(engine == RenderEngine.Z_BUFFER ? RenderEngine.SCANLINE : RenderEngine.Z_BUFFER);
+			// "H" turns shadows on and off
+			else if (c == 'h' || c == 'H')
+				setShadows(!castShadows);
+			// "R" turns watching the scene file for changes on and off
+			else if (c == 'r' || c == 'R')
+				setWatching(!watching);
 		}
 	}
 
@@ -164,60 +288,113 @@ public class Renderer extends GUI {
 
 	@Override
 	protected BufferedImage render() {
-		Color[][] zbuffer = new Color[CANVAS_WIDTH][CANVAS_HEIGHT];
-		float[][] zdepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
-		// initialize all light grey
-		for (int i = 0; i < zbuffer.length; i++) {
-			for (int j = 0; j < zbuffer[i].length; j++) {
-				zbuffer[i][j] = new Color(200, 200, 200);
-				zdepth[i][j] = Float.POSITIVE_INFINITY;
-			}
-		}
 		if (this.scene == null)
 			return null;
 		Dimension dimension = getDrawingSize();
+		Object frame = RenderEvents.beginFrame();
 
-		if (centralisedScene == null)
-			centralisedScene = Pipeline.autoScaleAndTranslate(scene, scene.getBound(), dimension);
-		//make sure the model will always be in the center
-		Scene rotatedScene = Pipeline.rotateScene(centralisedScene, xRot, yRot);
+		// a scene that is still loading is fitted to the canvas again with its
+		// provisional bounds every time more of it arrives
+		if (fittedFrom != scene) {
+			Object stage = RenderEvents.beginStage(RenderEvents.FIT);
+			fittedScene = Pipeline.autoScaleAndTranslate(scene, scene.getBound(), dimension);
+			fittedFrom = scene;
+			RenderEvents.endStage(stage, fittedScene.getPolygons().size());
+		}
+		// rotations and zooms are relative to the current view
+		Transform rotation = Transform.newXRotation(xRot).compose(Transform.newYRotation(yRot));
+		view = Transform.newScale(currentScale, currentScale, currentScale).compose(rotation).compose(view);
 		xRot = 0f; yRot = 0f;
-		Scene scaledScene = Pipeline.scaleScene(rotatedScene, currentScale, currentScale, currentScale);
 		currentScale = 1.0f;
-		Scene reCenteredScene = Pipeline.autoTranslate(scaledScene, scaledScene.getBound(), dimension);
-		Scene translatedScene = Pipeline.translateScene(reCenteredScene, viewer.x, viewer.y, viewer.z);
-
-		// update colors in zbuffer
-		Color lightColor = getAddedLight();
-		Color ambientColor = getAmbientLight();
-		Vector3D lightVector = translatedScene.getLight();
-		List<Polygon> polygons = translatedScene.getPolygons();
-		for (Polygon p : polygons) {
-			if (Pipeline.isHidden(p)) {
-				p.isHadden = true;
-				continue;
+		int triangles = fittedScene.getPolygons().size();
+
+		BufferedImage image;
+		int drawn;
+		if (castShadows) {
+			// the light is fixed to the scene, so its shadow map outlives camera moves
+			if (shadowBuffer == null || !shadowBuffer.hasSize(CANVAS_WIDTH, CANVAS_HEIGHT))
+				shadowBuffer = new FrameBuffer(CANVAS_WIDTH, CANVAS_HEIGHT);
+			Object stage = RenderEvents.beginStage(RenderEvents.SHADOWS);
+			shadows.render(fittedScene, view, viewer, getAddedLight(), getAmbientLight(), shadowBuffer);
+			RenderEvents.endStage(stage, triangles);
+			stage = RenderEvents.beginStage(RenderEvents.CONVERT);
+			image = Pipeline.convertBitmapToImage(shadowBuffer.color);
+			RenderEvents.endStage(stage, 0);
+			drawn = shadows.getDrawn();
+		} else {
+			// transform, re-centre, cull and shade in parallel; the light stays
+			// fixed relative to the viewer
+			Object stage = RenderEvents.beginStage(RenderEvents.GEOMETRY);
+			geometry.process(fittedScene.getPolygons(), view, fittedScene.getLight(), viewer, dimension,
+					getAddedLight(), getAmbientLight());
+			RenderEvents.endStage(stage, triangles);
+			// only counted when someone is listening
+			drawn = frame != null ? geometry.visibleCount() : 0;
+
+			if (engine == RenderEngine.SCANLINE) {
+				image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+				RenderEvents.bufferAllocated("scanline image", CANVAS_WIDTH, CANVAS_HEIGHT,
+						RenderEvents.bufferBytes(CANVAS_WIDTH, CANVAS_HEIGHT, 4));
+				stage = RenderEvents.beginStage(RenderEvents.RASTERIZE);
+				geometry.rasterize(scanline, image);
+				RenderEvents.endStage(stage, drawn);
+			} else {
+				Color[][] zbuffer = new Color[CANVAS_WIDTH][CANVAS_HEIGHT];
+				float[][] zdepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
+				RenderEvents.bufferAllocated("z-buffer", CANVAS_WIDTH, CANVAS_HEIGHT,
+						RenderEvents.bufferBytes(CANVAS_WIDTH, CANVAS_HEIGHT, 8));
+				stage = RenderEvents.beginStage(RenderEvents.RASTERIZE);
+				// initialize all light grey
+				Pipeline.clearBuffers(zbuffer, zdepth);
+				// update colors in zbuffer
+				geometry.rasterize(zbuffer, zdepth);
+				RenderEvents.endStage(stage, drawn);
+				stage = RenderEvents.beginStage(RenderEvents.CONVERT);
+				image = Pipeline.convertBitmapToImage(zbuffer);
+				RenderEvents.endStage(stage, 0);
 			}
-			Color polyColor = Pipeline.getShading(p, lightVector, lightColor, ambientColor);
-			EdgeList edgeList = Pipeline.computeEdgeList(p);
-			Pipeline.computeZBuffer(zbuffer, zdepth, edgeList, polyColor);
 		}
+		if (frameSink != null) {
+			Object stage = RenderEvents.beginStage(RenderEvents.RECORD);
+			record(image);
+			RenderEvents.endStage(stage, 0);
+		}
+		RenderEvents.endFrame(frame, triangles, drawn, CANVAS_WIDTH, CANVAS_HEIGHT);
+		return image;
+	}
 
-		return convertBitmapToImage(zbuffer);
+	/* passes a finished frame to the frame sink */
+	private void record(BufferedImage image) {
+		try {
+			frameSink.writeFrame(frameIndex++, image);
+		} catch (IOException e) {
+			System.err.println("Frame sink failed, no longer recording: " + e.getMessage());
+			frameSink = null;
+		}
 	}
 
 	/**
-	 * Converts a 2D array of Colors to a BufferedImage. Assumes that bitmap is
-	 * indexed by column then row and has imageHeight rows and imageWidth columns.
-	 * Note that image.setRGB requires x (col) and y (row) are given in that order.
+	 * Makes every frame drawn from now on also be written to the given sink, or
+	 * stops recording if the sink is null. Frames are numbered from zero. The
+	 * caller stays responsible for closing the sink.
 	 */
-	private BufferedImage convertBitmapToImage(Color[][] bitmap) {
-		BufferedImage image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < CANVAS_WIDTH; x++) {
-			for (int y = 0; y < CANVAS_HEIGHT; y++) {
-				image.setRGB(x, y, bitmap[x][y].getRGB());
-			}
-		}
-		return image;
+	public void setFrameSink(FrameSink sink) {
+		this.frameSink = sink;
+		this.frameIndex = 0;
+	}
+
+	/** Chooses how visibility is worked out for the frames drawn from now on. */
+	public void setEngine(RenderEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Turns shadows from the scene's light on or off. While they are on the
+	 * light stays fixed to the scene rather than to the viewer, so the shadows
+	 * stay put as the camera moves.
+	 */
+	public void setShadows(boolean castShadows) {
+		this.castShadows = castShadows;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,161 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.StressSceneGenerator.Distribution;
+
+/**
+ * Measures how load time, frame time and memory grow with the number of
+ * triangles, by generating scenes of each {@link Distribution} at sizes
+ * rising by factors of ten and rendering each one.
+ *
+ * Text scenes are loaded as a {@link Scene}, the path the GUI takes, and
+ * binary scenes into an {@link OffHeapMesh}, the only one that fits scenes of
+ * hundreds of millions of triangles. Memory is the growth in heap over the
+ * load and the frames, after collecting garbage, plus the direct memory of an
+ * off-heap mesh. Below a few MB it is lost in the noise of the collector and
+ * the renderer's own buffers, and may read as 0. Frame time is the median of
+ * a few frames after a first one to warm up.
+ *
+ * Run as a program it prints the report and writes it to scaling.csv in the
+ * output directory, keeping the generated scenes there too:
+ *
+ * <pre>
+ * ScalingReport outdir [max triangles] [seed] [--binary]
+ * </pre>
+ *
+ * The maximum defaults to 10^6; larger scenes need a heap, or for binary
+ * scenes a -XX:MaxDirectMemorySize, of a few GB per 10^7 triangles.
+ */
+public class ScalingReport {
+
+	public static final int FRAME_SIZE = 600;
+	public static final int FRAMES = 5;
+
+	/** The measurements of one scene. */
+	public static class Row {
+		public final String distribution;
+		public final long triangles;
+		public final long fileBytes;
+		public final double loadMillis;
+		public final double frameMillis;
+		public final long memoryBytes;
+
+		Row(String distribution, long triangles, long fileBytes, double loadMillis, double frameMillis,
+				long memoryBytes) {
+			this.distribution = distribution;
+			this.triangles = triangles;
+			this.fileBytes = fileBytes;
+			this.loadMillis = loadMillis;
+			this.frameMillis = frameMillis;
+			this.memoryBytes = memoryBytes;
+		}
+
+		public String toCsv() {
+			return distribution + ',' + triangles + ',' + fileBytes + ',' + String.format("%.1f", loadMillis) + ','
+					+ String.format("%.2f", frameMillis) + ',' + memoryBytes;
+		}
+	}
+
+	public static final String CSV_HEADER = "distribution,triangles,file bytes,load ms,frame ms,memory bytes";
+
+	/**
+	 * Loads and renders a scene file, counting the triangles drawn from it
+	 * with instances expanded.
+	 */
+	public static Row measure(String distribution, File file) throws IOException {
+		Color light = SequenceRenderer.DEFAULT_LIGHT;
+		FrameBuffer buffer = new FrameBuffer(FRAME_SIZE, FRAME_SIZE);
+		long before = heapUsed();
+		long start = System.nanoTime();
+		boolean binary = TriangleWriter.isBinary(file);
+		Scene scene = binary ? null : SceneLoader.load(file);
+		OffHeapMesh mesh = binary ? OffHeapMesh.load(file) : null;
+		if (scene == null && mesh == null)
+			throw new IllegalArgumentException("Nothing found in " + file);
+		double loadMillis = (System.nanoTime() - start) / 1e6;
+
+		float[] bound = scene == null ? null : scene.getBound();
+		double[] times = new double[FRAMES];
+		for (int i = -1; i < FRAMES; i++) {
+			Camera camera = new Camera(0.3f, 0.5f + 0.1f * i, 1.0f, 0f, 0f);
+			long frameStart = System.nanoTime();
+			if (mesh != null)
+				Pipeline.renderFrame(mesh, camera, light, light, buffer);
+			else
+				Pipeline.renderFrame(scene, bound, camera, light, light, buffer);
+			if (i >= 0)
+				times[i] = (System.nanoTime() - frameStart) / 1e6;
+		}
+		Arrays.sort(times);
+		// measured once the frames are drawn, with the scene still in use
+		long memory = Math.max(0, heapUsed() - before) + (mesh == null ? 0 : mesh.offHeapBytes());
+		long triangles = mesh != null ? mesh.size() : scene.getPolygons().size();
+		return new Row(distribution, triangles, file.length(), loadMillis, times[FRAMES / 2], memory);
+	}
+
+	/**
+	 * Generates and measures scenes of every distribution from 10^3 triangles up
+	 * to the maximum, writing scenes into the directory and a line per scene to
+	 * the output as it goes.
+	 */
+	public static List<Row> run(File directory, long maxTriangles, long seed, boolean binary, PrintWriter out)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create " + directory);
+		List<Row> rows = new ArrayList<Row>();
+		out.println(CSV_HEADER);
+		out.flush();
+		for (Distribution distribution : Distribution.values()) {
+			for (long triangles = 1000; triangles <= maxTriangles; triangles *= 10) {
+				String name = distribution.name().toLowerCase() + '-' + triangles + (binary ? ".tri" : ".txt");
+				File file = new File(directory, name);
+				StressSceneGenerator.generate(distribution, triangles, seed, file);
+				Row row = measure(distribution.name(), file);
+				rows.add(row);
+				out.println(row.toCsv());
+				out.flush();
+			}
+		}
+		return rows;
+	}
+
+	private static long heapUsed() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 2; i++)
+			memory.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: ScalingReport outdir [max triangles] [seed] [--binary]");
+			System.exit(1);
+		}
+		File directory = new File(args[0]);
+		long max = args.length > 1 ? (long) Double.parseDouble(args[1]) : 1000000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 261;
+		boolean binary = args.length > 3 && args[3].equals("--binary");
+
+		List<Row> rows = run(directory, max, seed, binary, new PrintWriter(System.out));
+		PrintWriter csv = new PrintWriter(new FileWriter(new File(directory, "scaling.csv")));
+		try {
+			csv.println(CSV_HEADER);
+			for (Row row : rows)
+				csv.println(row.toCsv());
+		} finally {
+			csv.close();
+		}
+	}
+}
+
+// code for comp261 assignments
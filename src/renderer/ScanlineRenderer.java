@@ -0,0 +1,230 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * A scanline renderer, the alternative to the z-buffer. Instead of drawing
+ * polygons one at a time into a full-frame depth buffer, it sweeps down the
+ * image a row at a time. A global edge table holds every visible polygon
+ * bucketed by the first row it touches; the active list holds the polygons
+ * crossing the current row, each carrying its edges' current x and z. For
+ * each row the spans of all active polygons are resolved against a single
+ * row of depths, and the finished row is copied into the image, so every
+ * pixel of the image is written exactly once and the only per-pixel working
+ * memory is one scanline.
+ *
+ * Edges are stepped and spans filled with the same arithmetic as
+ * {@link Pipeline#computeEdgeList} and {@link Pipeline#computeZBuffer}, and
+ * active polygons are visited in their original order, so the images are
+ * identical to the z-buffer's. Z-buffering wins on scenes with many
+ * overlapping layers; this wins on memory traffic where few polygons
+ * overlap and the image is large. Textures are not applied: textured
+ * polygons are drawn in their shaded colour.
+ *
+ * A renderer keeps its tables between frames and is not thread-safe.
+ */
+public class ScanlineRenderer {
+
+	private static final int BACKGROUND = Pipeline.BACKGROUND.getRGB() & 0xffffff;
+
+	// per polygon: the rows it covers and its colour
+	private int[] firstRow = new int[0], endRow = new int[0], colors = new int[0];
+	// per edge (three per polygon, in the order EdgeList sees them): the rows
+	// it covers, its current x and z, and how they change from row to row
+	private int[] edgeStart = new int[0], edgeEnd = new int[0];
+	private float[] edgeX = new float[0], edgeZ = new float[0], edgeMX = new float[0], edgeMZ = new float[0];
+	// the edge table: polygons starting on each row, linked through next
+	private int[] rowHead = new int[0], next = new int[0];
+	private int[] active = new int[0], merged = new int[0];
+	private float[] rowDepth = new float[0];
+	private int[] rowColor = new int[0];
+
+	/**
+	 * Renders a scene that has already been moved into screen space, as
+	 * {@link Pipeline#rasterize(Scene, Color, Color, Color[][], float[][])}
+	 * would, into a TYPE_INT_RGB image.
+	 */
+	public void render(Scene scene, Color lightColor, Color ambientLight, BufferedImage image) {
+		List<Polygon> polygons = scene.getPolygons();
+		int count = polygons.size();
+		float[] positions = new float[count * 9];
+		boolean[] visible = new boolean[count];
+		int[] shades = new int[count];
+		for (int t = 0; t < count; t++) {
+			Polygon p = polygons.get(t);
+			for (int i = 0; i < 3; i++) {
+				positions[t * 9 + i * 3] = p.vertices[i].x;
+				positions[t * 9 + i * 3 + 1] = p.vertices[i].y;
+				positions[t * 9 + i * 3 + 2] = p.vertices[i].z;
+			}
+			visible[t] = !Pipeline.isHidden(p);
+			if (visible[t])
+				shades[t] = Pipeline.getShading(p, scene.getLight(), lightColor, ambientLight).getRGB() & 0xffffff;
+		}
+		render(positions, visible, shades, count, image);
+	}
+
+	/**
+	 * Renders count screen-space triangles, given as nine floats each in
+	 * positions, into a TYPE_INT_RGB image. Triangles that are not visible are
+	 * skipped; the rest are drawn in the packed RGB colours in shades.
+	 */
+	public void render(float[] positions, boolean[] visible, int[] shades, int count, BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_RGB)
+			throw new IllegalArgumentException("ScanlineRenderer: image must be TYPE_INT_RGB");
+		int width = image.getWidth(), height = image.getHeight();
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		prepare(count, width, height);
+		buildEdgeTable(positions, visible, shades, count, height);
+
+		int activeCount = 0;
+		for (int y = 0; y < height; y++) {
+			activeCount = activate(y, activeCount);
+			Arrays.fill(rowDepth, 0, width, Float.POSITIVE_INFINITY);
+			Arrays.fill(rowColor, 0, width, BACKGROUND);
+			int kept = 0;
+			for (int a = 0; a < activeCount; a++) {
+				int t = active[a];
+				drawSpan(t, y, width);
+				if (y + 1 < endRow[t])
+					active[kept++] = t;
+			}
+			activeCount = kept;
+			System.arraycopy(rowColor, 0, pixels, y * width, width);
+		}
+	}
+
+	private void prepare(int count, int width, int height) {
+		if (firstRow.length < count) {
+			firstRow = new int[count];
+			endRow = new int[count];
+			colors = new int[count];
+			next = new int[count];
+			active = new int[count];
+			merged = new int[count];
+			edgeStart = new int[count * 3];
+			edgeEnd = new int[count * 3];
+			edgeX = new float[count * 3];
+			edgeZ = new float[count * 3];
+			edgeMX = new float[count * 3];
+			edgeMZ = new float[count * 3];
+		}
+		if (rowHead.length < height)
+			rowHead = new int[height];
+		Arrays.fill(rowHead, 0, height, -1);
+		if (rowDepth.length < width) {
+			rowDepth = new float[width];
+			rowColor = new int[width];
+		}
+	}
+
+	/*
+	 * sets up the edges of every visible triangle that reaches the image and
+	 * files it under its first row on screen, keeping each row's list in
+	 * triangle order
+	 */
+	private void buildEdgeTable(float[] positions, boolean[] visible, int[] shades, int count, int height) {
+		for (int t = count - 1; t >= 0; t--) {
+			if (!visible[t])
+				continue;
+			int offset = t * 9;
+			float y0 = positions[offset + 1], y1 = positions[offset + 4], y2 = positions[offset + 7];
+			int minY = (int) Math.min(Math.min(y0, y1), y2);
+			int maxY = (int) Math.max(Math.max(y0, y1), y2);
+			if (maxY <= 0 || minY >= height || minY >= maxY)
+				continue;
+			firstRow[t] = Math.max(minY, 0);
+			endRow[t] = Math.min(maxY, height);
+			colors[t] = shades[t];
+			for (int i = 0; i < 3; i++) {
+				int e = t * 3 + i;
+				int a = offset + i * 3;
+				int b = offset + (i == 2 ? 0 : i + 1) * 3;
+				if (positions[a + 1] == positions[b + 1]) {
+					edgeStart[e] = edgeEnd[e] = 0;
+					continue;
+				}
+				int up = positions[a + 1] > positions[b + 1] ? b : a;
+				int down = positions[a + 1] < positions[b + 1] ? b : a;
+				float upY = positions[up + 1], downY = positions[down + 1];
+				edgeStart[e] = (int) upY;
+				edgeEnd[e] = (int) downY;
+				edgeX[e] = positions[up];
+				edgeZ[e] = positions[up + 2];
+				edgeMX[e] = (positions[down] - edgeX[e]) / (downY - upY);
+				edgeMZ[e] = (positions[down + 2] - edgeZ[e]) / (downY - upY);
+				// step edges starting above the image down to its top row
+				for (int y = edgeStart[e]; y < Math.min(0, edgeEnd[e]); y++) {
+					edgeX[e] += edgeMX[e];
+					edgeZ[e] += edgeMZ[e];
+				}
+			}
+			next[t] = rowHead[firstRow[t]];
+			rowHead[firstRow[t]] = t;
+		}
+	}
+
+	/* merges the triangles starting on row y into the active list, in order */
+	private int activate(int y, int activeCount) {
+		int t = rowHead[y];
+		if (t < 0)
+			return activeCount;
+		int a = 0, m = 0;
+		while (a < activeCount || t >= 0) {
+			if (t < 0 || (a < activeCount && active[a] < t)) {
+				merged[m++] = active[a++];
+			} else {
+				merged[m++] = t;
+				t = next[t];
+			}
+		}
+		int[] swap = active;
+		active = merged;
+		merged = swap;
+		return m;
+	}
+
+	/*
+	 * works out triangle t's span on row y from its edges as EdgeList.addRow
+	 * would, steps the edges on to the next row, and draws the span into the
+	 * row buffers
+	 */
+	private void drawSpan(int t, int y, int width) {
+		float leftX = Float.POSITIVE_INFINITY, rightX = Float.NEGATIVE_INFINITY;
+		float leftZ = Float.POSITIVE_INFINITY, rightZ = Float.POSITIVE_INFINITY;
+		for (int e = t * 3; e < t * 3 + 3; e++) {
+			if (y < edgeStart[e] || y >= edgeEnd[e])
+				continue;
+			float x = edgeX[e], z = edgeZ[e];
+			if (x <= leftX) {
+				leftX = x;
+				leftZ = z;
+			}
+			if (x >= rightX) {
+				rightX = x;
+				rightZ = z;
+			}
+			edgeX[e] = x + edgeMX[e];
+			edgeZ[e] = z + edgeMZ[e];
+		}
+		int color = colors[t];
+		float z = leftZ;
+		float mZ = (rightZ - z) / (rightX - leftX);
+		for (int x = (int) leftX; x < (int) rightX; x++, z += mZ) {
+			if (x < 0 || x >= width)
+				continue;
+			if (z < rowDepth[x]) {
+				rowDepth[x] = z;
+				rowColor[x] = color;
+			}
+		}
+	}
+}
+
+// code for comp261 assignments
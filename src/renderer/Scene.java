@@ -1,6 +1,10 @@
 package renderer;
 
 import java.awt.Color;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -12,15 +16,53 @@ import java.util.List;
  *
  * If you were to implement more fancy rendering, e.g. Phong shading, you'd want
  * to store more information in this class.
+ *
+ * A Scene and its polygons are immutable, so one scene can be rendered from
+ * several threads and cameras at once. Every pipeline stage returns a new
+ * Scene rather than changing the one it was given.
+ *
+ * Besides its own polygons, a scene may hold instances: references to a Mesh
+ * declared once, each placed by its own Transform and optionally recoloured.
+ * Only the mesh's polygons are stored, however many instances there are.
+ * getPolygons still lists every polygon, its own first and then those of each
+ * instance in turn, but builds an instance's polygons only when they are
+ * asked for; renderers that know about instances use getInstances instead.
  */
 public class Scene {
 
-	private static List<Polygon> polygons;
+	private final List<Polygon> polygons;
+	private final List<Polygon> ownPolygons;
+	private final List<Instance> instances;
 	private final Vector3D lightPos;
+	private final float[] bound;
 
+	/**
+	 * Creates a scene that takes ownership of the given list: the list must not
+	 * be changed after it has been handed over.
+	 */
 	public Scene(List<Polygon> polygons, Vector3D lightPos) {
-		Scene.polygons = polygons;
+		this(polygons, lightPos, null);
+	}
+
+	/**
+	 * Creates a scene whose bounds are already known, e.g. because they were
+	 * worked out while the file was parsed, so getBound need not scan the
+	 * polygons again.
+	 */
+	public Scene(List<Polygon> polygons, Vector3D lightPos, float[] bound) {
+		this(polygons, lightPos, bound, Collections.<Instance> emptyList());
+	}
+
+	/**
+	 * Creates a scene with instances of shared meshes as well as its own
+	 * polygons. Like the polygons, the list of instances is taken over.
+	 */
+	public Scene(List<Polygon> polygons, Vector3D lightPos, float[] bound, List<Instance> instances) {
+		this.ownPolygons = polygons == null ? null : Collections.unmodifiableList(polygons);
+		this.instances = Collections.unmodifiableList(instances);
+		this.polygons = instances.isEmpty() ? ownPolygons : new AllPolygons();
 		this.lightPos = lightPos;
+		this.bound = bound == null ? null : bound.clone();
 	}
 
 	public Vector3D getLight() {
@@ -28,14 +70,27 @@ public class Scene {
 	}
 
 	public List<Polygon> getPolygons() {
-		return Scene.polygons;
+		return this.polygons;
+	}
+
+	/** Returns the polygons that belong to the scene itself, not to an instance. */
+	public List<Polygon> getOwnPolygons() {
+		return this.ownPolygons;
+	}
+
+	public List<Instance> getInstances() {
+		return this.instances;
 	}
 
 	public float[] getBound() {
+		if (bound != null)
+			return bound.clone();
+		if (!instances.isEmpty())
+			return getBound(Transform.identity());
 		float left = Float.POSITIVE_INFINITY, right = Float.NEGATIVE_INFINITY;
 		float up = Float.POSITIVE_INFINITY, down = Float.NEGATIVE_INFINITY;
 		float front = Float.POSITIVE_INFINITY, near = Float.NEGATIVE_INFINITY;
-		for (Polygon p : polygons) {
+		for (Polygon p : getPolygons()) {
 			for (Vector3D vec : p.vertices) {
 				float x = vec.x;
 				float y = vec.y;
@@ -57,16 +112,179 @@ public class Scene {
 		return new float[] {left, right, up, down, front, near};
 	}
 
+	/**
+	 * Returns the bounds of every polygon after the given transform, in the
+	 * same layout as getBound, without building the polygons of instances.
+	 */
+	public float[] getBound(Transform transform) {
+		float[] result = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		Affine affine = transform.toAffine();
+		float[] v = new float[9];
+		List<Polygon> own = instances.isEmpty() ? getPolygons() : getOwnPolygons();
+		for (Polygon p : own == null ? Collections.<Polygon> emptyList() : own) {
+			for (int i = 0; i < 3; i++) {
+				v[i * 3] = p.vertices[i].x;
+				v[i * 3 + 1] = p.vertices[i].y;
+				v[i * 3 + 2] = p.vertices[i].z;
+			}
+			affine.multiplyInto(v, 0, v, 0, 3);
+			extend(result, v, 3);
+		}
+		for (Instance instance : instances) {
+			// vertices are placed by the instance first, as getPolygons places them
+			float[] positions = instance.mesh.positions;
+			v = Arrays.copyOf(v, Math.max(v.length, positions.length));
+			instance.placement.multiplyInto(positions, 0, v, 0, positions.length / 3);
+			affine.multiplyInto(v, 0, v, 0, positions.length / 3);
+			extend(result, v, positions.length / 3);
+		}
+		return result;
+	}
+
+	private static void extend(float[] bound, float[] points, int count) {
+		for (int i = 0; i < count * 3; i++) {
+			int axis = (i % 3) * 2;
+			if (points[i] < bound[axis])
+				bound[axis] = points[i];
+			if (points[i] > bound[axis + 1])
+				bound[axis + 1] = points[i];
+		}
+	}
+
+	/**
+	 * A mesh declared once and drawn by any number of instances. Besides the
+	 * polygons it keeps what every instance can share: their vertices and
+	 * reflectances as flat arrays, the face normals and the bounds.
+	 */
+	public static class Mesh {
+		final String name;
+		final List<Polygon> polygons;
+		final float[] positions;
+		final float[] normals;
+		final int[] colors;
+		final float[] bound;
+
+		public Mesh(String name, List<Polygon> polygons) {
+			this.name = name;
+			this.polygons = Collections.unmodifiableList(new ArrayList<Polygon>(polygons));
+			int count = polygons.size();
+			positions = new float[count * 9];
+			normals = new float[count * 3];
+			colors = new int[count];
+			for (int t = 0; t < count; t++) {
+				Polygon p = polygons.get(t);
+				for (int i = 0; i < 3; i++) {
+					positions[t * 9 + i * 3] = p.vertices[i].x;
+					positions[t * 9 + i * 3 + 1] = p.vertices[i].y;
+					positions[t * 9 + i * 3 + 2] = p.vertices[i].z;
+				}
+				Pipeline.getNormal(positions, t * 9, normals, t * 3);
+				colors[t] = p.reflectance.getRGB() & 0xffffff;
+			}
+			bound = new Scene(this.polygons, null).getBound();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<Polygon> getPolygons() {
+			return polygons;
+		}
+
+		/** Returns the bounds of the mesh before any instance places it. */
+		public float[] getBound() {
+			return bound.clone();
+		}
+	}
+
+	/**
+	 * One placement of a Mesh in a scene. The instance's polygons are the
+	 * mesh's, moved by the transform and drawn in the instance's colour, or in
+	 * their own colours if the instance has none. Instances are immutable.
+	 */
+	public static class Instance {
+		final Mesh mesh;
+		final Transform transform;
+		final Affine placement;
+		final Color color;
+
+		public Instance(Mesh mesh, Transform transform, Color color) {
+			this.mesh = mesh;
+			this.transform = transform;
+			this.placement = transform.toAffine();
+			this.color = color;
+		}
+
+		public Mesh getMesh() {
+			return mesh;
+		}
+
+		public Transform getTransform() {
+			return transform;
+		}
+
+		/** Returns the colour of the instance, or null if it keeps the mesh's. */
+		public Color getColor() {
+			return color;
+		}
+
+		/** Builds the polygon with the given index in the mesh, as placed here. */
+		public Polygon getPolygon(int index) {
+			Polygon p = mesh.polygons.get(index);
+			return new Polygon(placement.multiply(p.vertices[0]), placement.multiply(p.vertices[1]),
+					placement.multiply(p.vertices[2]), color == null ? p.reflectance : color, p.texture, p.uvs);
+		}
+	}
+
+	/* the scene's own polygons followed by those of every instance */
+	private class AllPolygons extends AbstractList<Polygon> {
+		private final int[] starts = new int[instances.size()];
+		private final int size;
+
+		AllPolygons() {
+			int total = ownPolygons == null ? 0 : ownPolygons.size();
+			for (int i = 0; i < starts.length; i++) {
+				starts[i] = total;
+				total += instances.get(i).mesh.polygons.size();
+			}
+			size = total;
+		}
+
+		@Override
+		public Polygon get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			if (starts.length == 0 || index < starts[0])
+				return ownPolygons.get(index);
+			int instance = Arrays.binarySearch(starts, index);
+			if (instance < 0)
+				instance = -instance - 2;
+			// skip over instances of empty meshes that share a start
+			while (instance + 1 < starts.length && starts[instance + 1] == index)
+				instance++;
+			return instances.get(instance).getPolygon(index - starts[instance]);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
 	/**
 	 * Polygon stores data about a single polygon in a scene, keeping track of (at
-	 * least!) its three vertices and its reflectance.
+	 * least!) its three vertices and its reflectance. Polygons are immutable.
 	 *
 	 * This class has been done for you.
 	 */
 	public static class Polygon {
-		Vector3D[] vertices;
-		Color reflectance;
-		boolean isHadden;
+		final Vector3D[] vertices;
+		final Color reflectance;
+		final Texture texture;
+		final float[] uvs;
+
 		/**
 		 * @param points
 		 *            An array of floats with 9 elements, corresponding to the (x,y,z)
@@ -92,6 +310,8 @@ public class Scene {
 			int g = color[1];
 			int b = color[2];
 			this.reflectance = new Color(r, g, b);
+			this.texture = null;
+			this.uvs = null;
 		}
 
 		/**
@@ -99,19 +319,42 @@ public class Scene {
 		 * Color object.
 		 */
 		public Polygon(Vector3D a, Vector3D b, Vector3D c, Color color) {
+			this(a, b, c, color, null, null);
+		}
+
+		/**
+		 * Makes a textured polygon. The six texture coordinates are (u, v) for
+		 * each vertex in turn; the texture is tinted by the colour, so white shows
+		 * it as it is. The texture may be null for an untextured polygon, in
+		 * which case so must the coordinates be.
+		 */
+		public Polygon(Vector3D a, Vector3D b, Vector3D c, Color color, Texture texture, float[] uvs) {
+			if ((texture == null) != (uvs == null) || (uvs != null && uvs.length != 6))
+				throw new IllegalArgumentException("Polygon: a texture needs six texture coordinates");
 			this.vertices = new Vector3D[] { a, b, c };
 			this.reflectance = color;
+			this.texture = texture;
+			this.uvs = uvs == null ? null : uvs.clone();
 		}
 
+		/** Returns a copy of the three vertices of this polygon. */
 		public Vector3D[] getVertices() {
-			return vertices;
+			return vertices.clone();
 		}
 
 		public Color getReflectance() {
 			return reflectance;
 		}
 
+		/** Returns the texture of this polygon, or null if it has none. */
+		public Texture getTexture() {
+			return texture;
+		}
 
+		/** Returns a copy of the texture coordinates, or null if it has no texture. */
+		public float[] getTextureCoordinates() {
+			return uvs == null ? null : uvs.clone();
+		}
 
 		@Override
 		public String toString() {
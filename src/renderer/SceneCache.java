@@ -0,0 +1,100 @@
+package renderer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A least-recently-used cache of loaded scenes, shared between threads.
+ *
+ * Each entry keeps the parsed polygons together with their bounds, so a scene
+ * that is rendered again is neither re-read nor re-scanned. When several
+ * threads ask for the same missing scene at once, only one of them loads it and
+ * the others wait for its result.
+ */
+public class SceneCache {
+
+	/** A loaded scene and the data derived from it once at load time. */
+	public static class Entry {
+		public final Scene scene;
+		public final float[] bound;
+
+		/**
+		 * Captures a freshly loaded scene. Throws IllegalArgumentException if the
+		 * scene file was empty.
+		 */
+		public Entry(Scene scene) {
+			if (scene == null)
+				throw new IllegalArgumentException("Nothing found in the scene");
+			this.scene = scene;
+			this.bound = scene.getBound();
+		}
+	}
+
+	private final int capacity;
+	private final LinkedHashMap<String, FutureTask<Entry>> entries;
+
+	public SceneCache(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("SceneCache: capacity must be positive");
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, FutureTask<Entry>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FutureTask<SceneCache.Entry>> eldest) {
+				return size() > SceneCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the entry for the given key, calling the loader to create it if it
+	 * is not cached yet. A load that fails is not cached.
+	 */
+	public Entry get(String key, Callable<Entry> loader) throws Exception {
+		FutureTask<Entry> task;
+		boolean owner = false;
+		synchronized (entries) {
+			task = entries.get(key);
+			if (task == null) {
+				task = new FutureTask<Entry>(loader);
+				entries.put(key, task);
+				owner = true;
+			}
+		}
+		if (owner)
+			task.run();
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			synchronized (entries) {
+				if (entries.get(key) == task)
+					entries.remove(key);
+			}
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+
+	/** Returns true if the key is cached, without marking it as recently used. */
+	public boolean contains(String key) {
+		synchronized (entries) {
+			return entries.containsKey(key);
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,237 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import renderer.Scene.Instance;
+import renderer.Scene.Mesh;
+import renderer.Scene.Polygon;
+
+/**
+ * Reads scenes in the text format used by the files in data/. The first line
+ * holds the direction of the light as three floats, and every following line
+ * describes one polygon as nine floats for its vertices followed by three ints
+ * for its colour.
+ *
+ * Shapes that are repeated can instead be declared once as a mesh and placed
+ * by instances:
+ *
+ * <pre>
+ * mesh box
+ * ...polygon lines...
+ * end
+ * instance box tx ty tz [xRot yRot zRot [scale [r g b]]]
+ * </pre>
+ *
+ * An instance scales its mesh, then rotates it about the z, y and x axes (in
+ * radians), then moves it by (tx, ty, tz). Without a colour it keeps the
+ * mesh's colours. A mesh must be declared before it is used.
+ *
+ * Polygons may be textured. A texture is declared once with the image file
+ * it comes from, relative to the scene file, and a polygon line then names it
+ * after its colour, followed by the (u, v) texture coordinates of each vertex:
+ *
+ * <pre>
+ * texture NAME FILE
+ * ax ay az bx by bz cx cy cz r g b NAME au av bu bv cu cv
+ * </pre>
+ *
+ * The colour tints the texture, so a textured polygon is usually white. The
+ * image must be inside the scene file's directory: paths that lead out of it,
+ * whether absolute or through "..", are refused with a SecurityException, so
+ * a scene cannot be used to read other images on the machine. A scene read
+ * without a directory cannot declare textures.
+ */
+public class SceneLoader {
+
+	/**
+	 * Loads the scene stored in the given file, or returns null if the file is
+	 * empty.
+	 */
+	public static Scene load(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			return read(reader, file.getAbsoluteFile().getParentFile());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads a scene from the given reader, or returns null if there is nothing to
+	 * read. The reader is not closed.
+	 */
+	public static Scene read(BufferedReader reader) throws IOException {
+		return read(reader, null);
+	}
+
+	/**
+	 * As {@link #read(BufferedReader)}, finding the images of textures inside
+	 * the given directory. If it is null, texture lines are refused.
+	 */
+	public static Scene read(BufferedReader reader, File directory) throws IOException {
+		String line = reader.readLine();
+		if (line == null)
+			return null;
+		Vector3D lightPos = parseLight(line);
+
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		Map<String, Mesh> meshes = new HashMap<String, Mesh>();
+		Map<String, Texture> textures = new HashMap<String, Texture>();
+		List<Instance> instances = new ArrayList<Instance>();
+		line = reader.readLine();
+		while (line != null) {
+			if (line.startsWith("texture")) {
+				Texture texture = parseTexture(line, directory);
+				if (textures.put(texture.getName(), texture) != null)
+					throw new IllegalArgumentException("Texture declared twice: " + texture.getName());
+			} else if (line.startsWith("mesh")) {
+				Mesh mesh = readMesh(line, reader, textures);
+				if (meshes.put(mesh.getName(), mesh) != null)
+					throw new IllegalArgumentException("Mesh declared twice: " + mesh.getName());
+			} else if (line.startsWith("instance")) {
+				instances.add(parseInstance(line, meshes));
+			} else if (!line.isEmpty()) {
+				polygons.add(parsePolygon(line, textures));
+			}
+			line = reader.readLine();
+		}
+		return new Scene(polygons, lightPos, null, instances);
+	}
+
+	/**
+	 * Returns true if the line uses a part of the format beyond plain polygons:
+	 * meshes, instances or textures.
+	 */
+	public static boolean isExtended(String line) {
+		return isInstancing(line) || line.trim().startsWith("texture");
+	}
+
+	/** Returns true if the line starts or ends a mesh or places an instance. */
+	public static boolean isInstancing(String line) {
+		String trimmed = line.trim();
+		return trimmed.startsWith("mesh") || trimmed.startsWith("instance") || trimmed.equals("end");
+	}
+
+	private static Mesh readMesh(String header, BufferedReader reader, Map<String, Texture> textures)
+			throws IOException {
+		String[] values = header.trim().split(" ");
+		if (values.length != 2)
+			throw new IllegalArgumentException("Bad mesh line: " + header);
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		String line = reader.readLine();
+		while (line != null && !line.trim().equals("end")) {
+			if (!line.isEmpty())
+				polygons.add(parsePolygon(line, textures));
+			line = reader.readLine();
+		}
+		if (line == null)
+			throw new IllegalArgumentException("Mesh without an end: " + values[1]);
+		return new Mesh(values[1], polygons);
+	}
+
+	/** Parses an instance line, placing one of the given meshes. */
+	public static Instance parseInstance(String line, Map<String, Mesh> meshes) {
+		String[] values = line.trim().split(" ");
+		int numbers = values.length - 2;
+		if (numbers != 3 && numbers != 6 && numbers != 7 && numbers != 10)
+			throw new IllegalArgumentException("Bad instance line: " + line);
+		Mesh mesh = meshes.get(values[1]);
+		if (mesh == null)
+			throw new IllegalArgumentException("Instance of an undeclared mesh: " + line);
+		float[] v = new float[Math.min(numbers, 7)];
+		for (int i = 0; i < v.length; i++)
+			v[i] = Float.parseFloat(values[2 + i]);
+		Transform transform = Transform.newTranslation(v[0], v[1], v[2]);
+		if (numbers >= 6)
+			transform = transform.compose(Transform.newXRotation(v[3])).compose(Transform.newYRotation(v[4]))
+					.compose(Transform.newZRotation(v[5]));
+		if (numbers >= 7)
+			transform = transform.compose(Transform.newScale(v[6], v[6], v[6]));
+		Color color = null;
+		if (numbers == 10)
+			color = new Color(Integer.parseInt(values[9]), Integer.parseInt(values[10]),
+					Integer.parseInt(values[11]));
+		return new Instance(mesh, transform, color);
+	}
+
+	/* loads the texture a texture line declares, from inside the directory */
+	private static Texture parseTexture(String line, File directory) throws IOException {
+		String[] values = line.trim().split(" ", 3);
+		if (values.length != 3)
+			throw new IllegalArgumentException("Bad texture line: " + line);
+		if (directory == null)
+			throw new IllegalArgumentException("Textures need a scene file to be found beside: " + line);
+		File root = directory.getCanonicalFile();
+		File file = new File(values[2]);
+		if (!file.isAbsolute())
+			file = new File(root, values[2]);
+		file = file.getCanonicalFile();
+		if (!file.getPath().startsWith(root.getPath() + File.separator))
+			throw new SecurityException("Texture is outside the scene's directory: " + values[2]);
+		return Texture.load(values[1], file);
+	}
+
+	/** Parses the first line of a scene file into the light direction. */
+	public static Vector3D parseLight(String line) {
+		String[] values = line.trim().split(" ");
+		return new Vector3D(Float.parseFloat(values[0]), Float.parseFloat(values[1]),
+				Float.parseFloat(values[2]));
+	}
+
+	/**
+	 * Parses a single polygon line of a scene file, throwing an
+	 * IllegalArgumentException if it is malformed.
+	 */
+	public static Polygon parsePolygon(String line) {
+		return parsePolygon(line, Collections.<String, Texture> emptyMap());
+	}
+
+	/**
+	 * As {@link #parsePolygon(String)}, for a line that may name one of the
+	 * given textures.
+	 */
+	public static Polygon parsePolygon(String line, Map<String, Texture> textures) {
+		float[] points = new float[9];
+		int[] color = new int[3];
+		if (!parsePolygon(line, points, color))
+			return new Polygon(points, color);
+		String[] values = line.trim().split(" ");
+		Texture texture = textures.get(values[12]);
+		if (texture == null)
+			throw new IllegalArgumentException("Polygon with an undeclared texture: " + line);
+		float[] uvs = new float[6];
+		for (int i = 0; i < 6; i++)
+			uvs[i] = Float.parseFloat(values[13 + i]);
+		return new Polygon(new Vector3D(points[0], points[1], points[2]), new Vector3D(points[3], points[4], points[5]),
+				new Vector3D(points[6], points[7], points[8]), new Color(color[0], color[1], color[2]), texture, uvs);
+	}
+
+	/**
+	 * Parses a single polygon line into the given arrays of nine vertex
+	 * coordinates and three colour components, so that callers storing
+	 * geometry in their own format need not create a Polygon. Returns true if
+	 * the line also names a texture, which callers that cannot draw textures
+	 * must not ignore. Every loader accepts and rejects the same lines this way.
+	 */
+	public static boolean parsePolygon(String line, float[] points, int[] color) {
+		String[] values = line.trim().split(" ");
+		if (values.length != 12 && values.length != 19)
+			throw new IllegalArgumentException("Bad polygon line: " + line);
+		for (int i = 0; i < 9; i++)
+			points[i] = Float.parseFloat(values[i]);
+		for (int i = 0; i < 3; i++)
+			color[i] = Integer.parseInt(values[9 + i]);
+		return values.length == 19;
+	}
+}
+
+// code for comp261 assignments
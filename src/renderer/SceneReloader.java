@@ -0,0 +1,367 @@
+package renderer;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Reads a scene file again after it has changed, parsing only the lines that
+ * differ from the last time it was read.
+ *
+ * A hash of every polygon line is kept. Reading the file again only hashes
+ * its lines, which is many times faster than parsing them; the lines the old
+ * and new file start and end with in common keep their polygons, and only the
+ * run between is parsed. The new scene reuses every unchanged Polygon, and
+ * each {@link Update} says which polygons are new, so whatever was derived
+ * from the old scene can be patched rather than rebuilt.
+ *
+ * Files with meshes, instances or textures are parsed whole every time, since
+ * their lines are not independent, and every update of them counts as a
+ * change to every polygon.
+ */
+public class SceneReloader {
+
+	/** What changed in the scene between two reads of the file. */
+	public static class Update {
+		/** The scene before and after the change. */
+		public final Scene previous, scene;
+		/**
+		 * The polygons of the previous scene from index from, removed of them,
+		 * were replaced by added new ones, at the same index in the new scene.
+		 */
+		public final int from, removed, added;
+		private final int[] changed;
+
+		Update(Scene previous, Scene scene, int from, int removed, int added, int[] changed) {
+			this.previous = previous;
+			this.scene = scene;
+			this.from = from;
+			this.removed = removed;
+			this.added = added;
+			this.changed = changed;
+		}
+
+		/** Returns true if the file changed without changing the scene. */
+		public boolean isEmpty() {
+			return changed.length == 0 && removed == added && scene.getLight().equals(previous.getLight());
+		}
+
+		/**
+		 * Returns the indices in the new scene of the polygons that are not the
+		 * previous scene's, in order. When as many polygons were added as
+		 * removed, those that did not change are left out.
+		 */
+		public int[] getChanged() {
+			return changed.clone();
+		}
+
+		/**
+		 * Applies the change to a copy of the previous scene that was fitted to
+		 * the canvas by {@link Pipeline#autoScaleAndTranslate}, fitting only the
+		 * new polygons. Returns null if the bounds changed, since then every
+		 * polygon moves and the new scene has to be fitted whole.
+		 */
+		public Scene refit(Scene fitted, Dimension dimension) {
+			float[] bound = previous.getBound();
+			if (!Arrays.equals(bound, scene.getBound()) || !previous.getInstances().isEmpty()
+					|| !scene.getInstances().isEmpty())
+				return null;
+			float scale = Pipeline.fitScale(bound, dimension);
+			Transform scaling = Transform.newScale(scale, scale, scale);
+			Transform centring = Pipeline.centring(bound, scale, dimension);
+
+			List<Polygon> old = fitted.getPolygons();
+			List<Polygon> polygons = new ArrayList<Polygon>(old.size() - removed + added);
+			polygons.addAll(old.subList(0, from));
+			if (removed == added)
+				polygons.addAll(old.subList(from, from + added));
+			else
+				for (int i = from; i < from + added; i++)
+					polygons.add(null);
+			polygons.addAll(old.subList(from + removed, old.size()));
+			List<Polygon> source = scene.getPolygons();
+			for (int i : changed)
+				polygons.set(i, fit(source.get(i), scaling, centring));
+			// the same steps as autoScaleAndTranslate, so the result is identical
+			Vector3D light = centring.multiply(scaling.multiply(scene.getLight()));
+			return new Scene(polygons, light);
+		}
+
+		private static Polygon fit(Polygon p, Transform scaling, Transform centring) {
+			Vector3D[] v = new Vector3D[3];
+			for (int i = 0; i < 3; i++)
+				v[i] = centring.multiply(scaling.multiply(p.vertices[i]));
+			return new Polygon(v[0], v[1], v[2], p.reflectance, p.texture, p.uvs);
+		}
+	}
+
+	private static final int BUFFER = 1 << 20;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+	private final File file;
+	private Scene scene;
+	// a hash per polygon line, or null when the file is not plain polygons
+	private long[] hashes;
+
+	/** Reads the whole file, as {@link SceneLoader#load(File)} would. */
+	public SceneReloader(File file) throws IOException {
+		this.file = file;
+		Lines lines = readLines();
+		this.scene = SceneLoader.load(file);
+		if (scene == null)
+			throw new IllegalArgumentException("Nothing found in the file.");
+		this.hashes = baseline(lines, scene);
+	}
+
+	/**
+	 * Takes over a scene already loaded from the file, so it need not be parsed
+	 * again. The file must still hold the scene; if it has a different number
+	 * of polygons by now, the first reload replaces the scene whole.
+	 */
+	public SceneReloader(File file, Scene scene) throws IOException {
+		this.file = file;
+		this.scene = scene;
+		this.hashes = baseline(readLines(), scene);
+	}
+
+	private static long[] baseline(Lines lines, Scene scene) {
+		if (lines.extended || !scene.getInstances().isEmpty() || lines.count != scene.getPolygons().size())
+			return null;
+		return Arrays.copyOf(lines.hashes, lines.count);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/** Returns the scene as the file held it when it was last read. */
+	public synchronized Scene getScene() {
+		return scene;
+	}
+
+	/**
+	 * Reads the file again and returns what changed since it was last read,
+	 * which becomes the current scene. A file that cannot be parsed, as one
+	 * half written may not be, throws and leaves the current scene as it was.
+	 */
+	public synchronized Update reload() throws IOException {
+		Scene previous = scene;
+		Lines lines = readLines();
+		if (lines.extended || hashes == null) {
+			Scene loaded = SceneLoader.load(file);
+			if (loaded == null)
+				throw new IllegalArgumentException("Nothing found in the file.");
+			scene = loaded;
+			hashes = baseline(lines, loaded);
+			int count = loaded.getPolygons().size();
+			int[] all = new int[count];
+			for (int i = 0; i < count; i++)
+				all[i] = i;
+			return new Update(previous, loaded, 0, previous.getPolygons().size(), count, all);
+		}
+
+		int oldCount = hashes.length, newCount = lines.count;
+		int prefix = 0;
+		while (prefix < oldCount && prefix < newCount && hashes[prefix] == lines.hashes[prefix])
+			prefix++;
+		int suffix = 0;
+		while (suffix < oldCount - prefix && suffix < newCount - prefix
+				&& hashes[oldCount - 1 - suffix] == lines.hashes[newCount - 1 - suffix])
+			suffix++;
+		int removed = oldCount - prefix - suffix, added = newCount - prefix - suffix;
+
+		// an edit in place keeps the polygons between the lines it changed
+		int[] changed = new int[added];
+		int count = 0;
+		for (int i = prefix; i < prefix + added; i++)
+			if (removed != added || hashes[i] != lines.hashes[i])
+				changed[count++] = i;
+		changed = Arrays.copyOf(changed, count);
+		List<Polygon> parsed = parseLines(lines, changed);
+
+		List<Polygon> old = previous.getPolygons();
+		List<Polygon> polygons = new ArrayList<Polygon>(newCount);
+		polygons.addAll(old.subList(0, prefix));
+		if (removed == added)
+			polygons.addAll(old.subList(prefix, prefix + added));
+		else
+			for (int i = 0; i < added; i++)
+				polygons.add(null);
+		polygons.addAll(old.subList(prefix + removed, oldCount));
+		for (int i = 0; i < changed.length; i++)
+			polygons.set(changed[i], parsed.get(i));
+
+		float[] bound = bound(previous, old, prefix, removed, parsed);
+		if (bound == null)
+			bound = new Scene(polygons, null).getBound();
+		scene = new Scene(polygons, lines.light, bound);
+		hashes = Arrays.copyOf(lines.hashes, newCount);
+		return new Update(previous, scene, prefix, removed, added, changed);
+	}
+
+	/*
+	 * the bounds of the new scene: the old bounds grown to take in the new
+	 * polygons, unless a polygon that went touched them, when they may shrink
+	 */
+	private static float[] bound(Scene previous, List<Polygon> old, int from, int removed, List<Polygon> parsed) {
+		float[] bound = previous.getBound();
+		for (Polygon p : old.subList(from, from + removed))
+			for (Vector3D v : p.vertices)
+				if (v.x == bound[0] || v.x == bound[1] || v.y == bound[2] || v.y == bound[3] || v.z == bound[4]
+						|| v.z == bound[5])
+					return null;
+		for (Polygon p : parsed) {
+			for (Vector3D v : p.vertices) {
+				bound[0] = Math.min(bound[0], v.x);
+				bound[1] = Math.max(bound[1], v.x);
+				bound[2] = Math.min(bound[2], v.y);
+				bound[3] = Math.max(bound[3], v.y);
+				bound[4] = Math.min(bound[4], v.z);
+				bound[5] = Math.max(bound[5], v.z);
+			}
+		}
+		return bound;
+	}
+
+	/* the polygons on the given lines, checking the lines still hash as they did */
+	private List<Polygon> parseLines(Lines lines, int[] indices) throws IOException {
+		List<Polygon> polygons = new ArrayList<Polygon>(indices.length);
+		if (indices.length == 0)
+			return polygons;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(256);
+			for (int i : indices) {
+				int length = (int) (lines.ends[i] - lines.starts[i]);
+				if (buffer.capacity() < length)
+					buffer = ByteBuffer.allocate(length);
+				buffer.clear();
+				buffer.limit(length);
+				while (buffer.hasRemaining())
+					if (channel.read(buffer, lines.starts[i] + buffer.position()) < 0)
+						throw new IOException(file + " changed while it was read");
+				if (hash(buffer, 0, length) != lines.hashes[i])
+					throw new IOException(file + " changed while it was read");
+				polygons.add(SceneLoader.parsePolygon(new String(buffer.array(), 0, length, StandardCharsets.US_ASCII)));
+			}
+		} finally {
+			in.close();
+		}
+		return polygons;
+	}
+
+	/** The light of a file and where each of its polygon lines is, with its hash. */
+	private static class Lines {
+		Vector3D light;
+		long[] hashes = new long[1024], starts = new long[1024], ends = new long[1024];
+		int count;
+		boolean extended;
+
+		void add(long hash, long start, long end) {
+			if (count == hashes.length) {
+				hashes = Arrays.copyOf(hashes, count * 2);
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			hashes[count] = hash;
+			starts[count] = start;
+			ends[count] = end;
+			count++;
+		}
+	}
+
+	/* hashes every line of the file, parsing only the light */
+	private Lines readLines() throws IOException {
+		Lines lines = new Lines();
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+			byte[] bytes = buffer.array();
+			long offset = 0;
+			int kept = 0;
+			boolean first = true, eof = false;
+			while (!eof) {
+				buffer.position(kept);
+				int read = 0;
+				while (buffer.hasRemaining() && (read = channel.read(buffer)) > 0) {
+				}
+				eof = read < 0 || buffer.position() < buffer.capacity();
+				int end = buffer.position(), start = 0;
+				for (int i = 0; i <= end; i++) {
+					boolean last = i == end;
+					if (!last && bytes[i] != '\n')
+						continue;
+					if (last && !eof)
+						break;
+					// lines end as BufferedReader.readLine ends them
+					int stop = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+					if (first) {
+						if (!last || stop > start) {
+							lines.light = SceneLoader
+									.parseLight(new String(bytes, start, stop - start, StandardCharsets.US_ASCII));
+							first = false;
+						}
+					} else if (stop > start) {
+						if (Character.isLetter(firstNonSpace(bytes, start, stop)))
+							lines.extended = true;
+						lines.add(hash(buffer, start, stop - start), offset + start, offset + stop);
+					}
+					start = i + 1;
+				}
+				if (eof)
+					break;
+				if (start == 0) {
+					// a line longer than the buffer
+					buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length * 2));
+					bytes = buffer.array();
+					kept = end;
+					continue;
+				}
+				System.arraycopy(bytes, start, bytes, 0, end - start);
+				kept = end - start;
+				offset += start;
+			}
+		} finally {
+			in.close();
+		}
+		if (lines.light == null)
+			throw new IllegalArgumentException("Nothing found in the file.");
+		return lines;
+	}
+
+	private static byte firstNonSpace(byte[] bytes, int start, int end) {
+		for (int i = start; i < end; i++)
+			if (bytes[i] != ' ' && bytes[i] != '\t')
+				return bytes[i];
+		return ' ';
+	}
+
+	/* FNV-1a taken eight bytes at a time, which is several times faster */
+	private static long hash(ByteBuffer buffer, int start, int length) {
+		long hash = FNV_OFFSET ^ length;
+		int i = start, end = start + length;
+		for (; i + 8 <= end; i += 8) {
+			hash ^= buffer.getLong(i);
+			hash *= FNV_PRIME;
+			hash ^= hash >>> 29;
+		}
+		for (; i < end; i++) {
+			hash ^= buffer.get(i) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,631 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Keeps what is worked out from a scene file in a sidecar file, so opening
+ * the scene again maps the sidecar into memory instead of parsing the text.
+ * A sidecar holds:
+ *
+ * <ul>
+ * <li>the welded vertices: each distinct position once, with the triangles
+ * as three indices into them</li>
+ * <li>the face normal of each triangle, as {@link Pipeline#getNormal} gives
+ * it, and an area-weighted normal at each vertex</li>
+ * <li>the colours, the light and the bounds</li>
+ * <li>a spatial index: a uniform grid over the bounds, listing for each cell
+ * the triangles whose bounding boxes overlap it</li>
+ * </ul>
+ *
+ * A sidecar records the length, modification time and SHA-256 hash of the
+ * file it was made from. If the length and time still match it is used as it
+ * is; if not, the file is hashed, and a sidecar with the same hash is used and
+ * restamped, so touching or copying a scene does not throw its sidecar away.
+ * Otherwise it is stale and the scene is parsed again. Sidecars are written to
+ * a temporary file and moved into place, so a reader never sees half of one.
+ *
+ * Sidecars live next to their scenes, as scene.txt.cache, or in a cache
+ * directory named by a hash of the scene's path. Scenes with textures or
+ * instances are not cached: welding would lose the texture coordinates and
+ * expanding the instances would cost the memory instancing saves. Nor are
+ * scenes of more than MAX_TRIANGLES triangles, or whose sidecar would be too
+ * large to map at once.
+ *
+ * For now the renderer uses only the scene itself: {@link Data#toScene}
+ * builds the polygons again on the heap, so a cached open saves the parsing
+ * but not the memory. The welded vertices, the normals and the grid can be
+ * read through {@link Data}, but nothing in the renderer uses them yet.
+ */
+public class SceneSidecar {
+
+	public static final String SUFFIX = ".cache";
+	public static final int VERSION = 1;
+
+	/** The most triangles a sidecar is made for; welding more takes too long to be worth it. */
+	public static final int MAX_TRIANGLES = 20000000;
+
+	/* the grid is at most this many cells a side, and lists each triangle about this often at most */
+	private static final int MAX_GRID = 64;
+	private static final int MAX_ENTRIES_PER_TRIANGLE = 8;
+
+	private static final byte[] MAGIC = { 'S', 'C', 'N', 'C' };
+	private static final int HEADER_BYTES = 112;
+	private static final int LENGTH = 8, MODIFIED = 16, HASH = 24, LIGHT = 56, BOUND = 68, COUNTS = 92;
+
+	private final File directory;
+
+	/** Makes a cache that keeps each sidecar next to its scene. */
+	public SceneSidecar() {
+		this.directory = null;
+	}
+
+	/** Makes a cache that keeps sidecars in the given directory, creating it if need be. */
+	public SceneSidecar(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache the GUI uses: the directory named by the
+	 * renderer.cache system property, or .cache/renderer in the user's home.
+	 */
+	public static SceneSidecar defaultCache() {
+		String path = System.getProperty("renderer.cache");
+		if (path == null)
+			path = new File(new File(System.getProperty("user.home"), ".cache"), "renderer").getPath();
+		return new SceneSidecar(new File(path));
+	}
+
+	/** Returns where the sidecar of the given scene file is kept. */
+	public File sidecarFor(File scene) throws IOException {
+		if (directory == null)
+			return new File(scene.getPath() + SUFFIX);
+		String path = scene.getCanonicalPath();
+		return new File(directory, hex(sha256(path.getBytes(StandardCharsets.UTF_8))) + SUFFIX);
+	}
+
+	/**
+	 * Maps the sidecar of a scene file read-only, or returns null if it has
+	 * none or its sidecar is stale or damaged.
+	 */
+	public Data open(File scene) throws IOException {
+		File sidecar = sidecarFor(scene);
+		if (!sidecar.isFile())
+			return null;
+		FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			byte[] magic = new byte[4];
+			map.get(magic);
+			if (!Arrays.equals(magic, MAGIC) || map.getInt(4) != VERSION)
+				return null;
+			Data data = new Data(map);
+			if (data.expectedSize() != size || !data.isConsistent())
+				return null;
+			long length = scene.length(), modified = scene.lastModified();
+			if (map.getLong(LENGTH) != length || map.getLong(MODIFIED) != modified) {
+				byte[] stored = new byte[32];
+				map.position(HASH);
+				map.get(stored);
+				if (map.getLong(LENGTH) != length || !Arrays.equals(stored, hash(scene)))
+					return null;
+				// the same contents, so only the stamp was out of date
+				restamp(sidecar, length, modified);
+			}
+			return data;
+		} finally {
+			// the mapping stays valid once the channel is closed
+			channel.close();
+		}
+	}
+
+	/*
+	 * writes a new stamp into a sidecar's header through a short-lived
+	 * channel; a sidecar that cannot be written, say in a read-only cache, is
+	 * still good and is only hashed again next time
+	 */
+	private static void restamp(File sidecar, long length, long modified) {
+		ByteBuffer stamp = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		stamp.putLong(length).putLong(modified).flip();
+		try {
+			FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.WRITE);
+			try {
+				while (stamp.hasRemaining())
+					channel.write(stamp, LENGTH + stamp.position());
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// left stale
+		}
+	}
+
+	/**
+	 * Returns the scene in the given file from its sidecar if it has a fresh
+	 * one, or else parses it and writes a sidecar for next time. Returns null
+	 * if the file is empty.
+	 */
+	public Scene load(File scene) throws IOException {
+		Data data = open(scene);
+		if (data != null)
+			return data.toScene();
+		long length = scene.length(), modified = scene.lastModified();
+		Scene parsed = SceneLoader.load(scene);
+		if (parsed != null)
+			store(scene, parsed, length, modified);
+		return parsed;
+	}
+
+	/** Returns true if the scene has no textures or instances, so can be kept in a sidecar. */
+	public static boolean isCacheable(Scene scene) {
+		if (!scene.getInstances().isEmpty())
+			return false;
+		for (Polygon p : scene.getPolygons())
+			if (p.texture != null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Writes the sidecar of a scene just parsed from the given file, whose
+	 * length and modification time were as given before it was read. Nothing
+	 * is written if the scene cannot be cached or the file has changed since,
+	 * in which case this returns false.
+	 */
+	public boolean store(File file, Scene scene, long length, long modified) throws IOException {
+		if (scene.getPolygons().size() > MAX_TRIANGLES || !isCacheable(scene))
+			return false;
+		byte[] hash = hash(file);
+		if (file.length() != length || file.lastModified() != modified)
+			return false;
+
+		File sidecar = sidecarFor(file);
+		File parent = sidecar.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Could not create " + parent);
+		File temp = File.createTempFile(sidecar.getName(), ".tmp", parent);
+		try {
+			if (!write(temp, scene, hash, length, modified))
+				return false;
+			try {
+				Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+		return true;
+	}
+
+	// --------------------------------------------------------------------
+	// Building
+	// --------------------------------------------------------------------
+
+	/* writes the sidecar to the target, or returns false if it would be too large to map */
+	private static boolean write(File target, Scene scene, byte[] hash, long length, long modified)
+			throws IOException {
+		List<Polygon> polygons = scene.getPolygons();
+		int triangles = polygons.size();
+
+		// weld vertices with exactly the same coordinates
+		Map<Position, Integer> indices = new HashMap<Position, Integer>();
+		List<Vector3D> vertices = new ArrayList<Vector3D>();
+		int[] corners = new int[triangles * 3];
+		for (int t = 0; t < triangles; t++) {
+			for (int i = 0; i < 3; i++) {
+				Vector3D v = polygons.get(t).vertices[i];
+				Position key = new Position(v);
+				Integer index = indices.get(key);
+				if (index == null) {
+					index = vertices.size();
+					indices.put(key, index);
+					vertices.add(v);
+				}
+				corners[t * 3 + i] = index;
+			}
+		}
+
+		float[] points = new float[9];
+		float[] faceNormals = new float[triangles * 3];
+		float[] vertexNormals = new float[vertices.size() * 3];
+		for (int t = 0; t < triangles; t++) {
+			for (int i = 0; i < 3; i++) {
+				Vector3D v = vertices.get(corners[t * 3 + i]);
+				points[i * 3] = v.x;
+				points[i * 3 + 1] = v.y;
+				points[i * 3 + 2] = v.z;
+			}
+			Pipeline.getNormal(points, 0, faceNormals, t * 3);
+			// the cross product is twice the area along the normal, which weights it
+			for (int i = 0; i < 3; i++)
+				for (int axis = 0; axis < 3; axis++)
+					vertexNormals[corners[t * 3 + i] * 3 + axis] += faceNormals[t * 3 + axis];
+		}
+		for (int v = 0; v < vertexNormals.length; v += 3) {
+			float mag = (float) Math.sqrt(vertexNormals[v] * vertexNormals[v]
+					+ vertexNormals[v + 1] * vertexNormals[v + 1] + vertexNormals[v + 2] * vertexNormals[v + 2]);
+			if (mag > 0f)
+				for (int axis = 0; axis < 3; axis++)
+					vertexNormals[v + axis] /= mag;
+		}
+
+		float[] bound = scene.getBound();
+		Grid grid = Grid.build(bound, vertices, corners, triangles);
+
+		long size = Data.sizeFor(vertices.size(), triangles, grid.side, grid.entries.length);
+		if (size > Integer.MAX_VALUE)
+			return false;
+		FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			map.put(MAGIC).putInt(VERSION).putLong(length).putLong(modified).put(hash);
+			Vector3D light = scene.getLight();
+			map.putFloat(light.x).putFloat(light.y).putFloat(light.z);
+			for (float b : bound)
+				map.putFloat(b);
+			map.putInt(vertices.size()).putInt(triangles).putInt(grid.side).putInt(grid.entries.length);
+			map.position(HEADER_BYTES);
+			for (Vector3D v : vertices)
+				map.putFloat(v.x).putFloat(v.y).putFloat(v.z);
+			map.asFloatBuffer().put(vertexNormals);
+			map.position(map.position() + vertexNormals.length * 4);
+			map.asIntBuffer().put(corners);
+			map.position(map.position() + corners.length * 4);
+			for (Polygon p : polygons)
+				map.putInt(p.reflectance.getRGB() & 0xffffff);
+			map.asFloatBuffer().put(faceNormals);
+			map.position(map.position() + faceNormals.length * 4);
+			map.asIntBuffer().put(grid.starts);
+			map.position(map.position() + grid.starts.length * 4);
+			map.asIntBuffer().put(grid.entries);
+			map.force();
+		} finally {
+			channel.close();
+		}
+		return true;
+	}
+
+	/* a vertex position compared by its bits, so welding never merges -0 with 0 */
+	private static class Position {
+		final int x, y, z;
+
+		Position(Vector3D v) {
+			x = Float.floatToIntBits(v.x);
+			y = Float.floatToIntBits(v.y);
+			z = Float.floatToIntBits(v.z);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Position))
+				return false;
+			Position o = (Position) obj;
+			return x == o.x && y == o.y && z == o.z;
+		}
+
+		@Override
+		public int hashCode() {
+			return (x * 31 + y) * 31 + z;
+		}
+	}
+
+	/** A uniform grid of cells over the bounds, as the starts and contents of each cell's list. */
+	private static class Grid {
+		final int side;
+		final int[] starts;
+		final int[] entries;
+
+		Grid(int side, int[] starts, int[] entries) {
+			this.side = side;
+			this.starts = starts;
+			this.entries = entries;
+		}
+
+		static Grid build(float[] bound, List<Vector3D> vertices, int[] corners, int triangles) {
+			int side = Math.max(1, Math.min(MAX_GRID, (int) Math.round(Math.cbrt(triangles / 2.0))));
+			while (true) {
+				int cells = side * side * side;
+				int[] starts = new int[cells + 1];
+				int[] range = new int[6];
+				long total = 0;
+				for (int t = 0; t < triangles; t++) {
+					cellRange(bound, side, vertices, corners, t, range);
+					total += (long) (range[1] - range[0] + 1) * (range[3] - range[2] + 1) * (range[5] - range[4] + 1);
+				}
+				// big triangles in a fine grid are listed in too many cells, so coarsen it
+				if (side > 1 && total > (long) MAX_ENTRIES_PER_TRIANGLE * triangles) {
+					side = Math.max(1, side / 2);
+					continue;
+				}
+				for (int t = 0; t < triangles; t++) {
+					cellRange(bound, side, vertices, corners, t, range);
+					for (int z = range[4]; z <= range[5]; z++)
+						for (int y = range[2]; y <= range[3]; y++)
+							for (int x = range[0]; x <= range[1]; x++)
+								starts[(z * side + y) * side + x + 1]++;
+				}
+				for (int c = 0; c < cells; c++)
+					starts[c + 1] += starts[c];
+				int[] entries = new int[(int) total];
+				int[] next = Arrays.copyOf(starts, cells);
+				for (int t = 0; t < triangles; t++) {
+					cellRange(bound, side, vertices, corners, t, range);
+					for (int z = range[4]; z <= range[5]; z++)
+						for (int y = range[2]; y <= range[3]; y++)
+							for (int x = range[0]; x <= range[1]; x++)
+								entries[next[(z * side + y) * side + x]++] = t;
+				}
+				return new Grid(side, starts, entries);
+			}
+		}
+
+		/* the lowest and highest cell on each axis that a triangle's bounding box touches */
+		private static void cellRange(float[] bound, int side, List<Vector3D> vertices, int[] corners, int t,
+				int[] range) {
+			for (int axis = 0; axis < 3; axis++) {
+				float low = Float.POSITIVE_INFINITY, high = Float.NEGATIVE_INFINITY;
+				for (int i = 0; i < 3; i++) {
+					Vector3D v = vertices.get(corners[t * 3 + i]);
+					float value = axis == 0 ? v.x : axis == 1 ? v.y : v.z;
+					low = Math.min(low, value);
+					high = Math.max(high, value);
+				}
+				range[axis * 2] = cell(bound, side, axis, low);
+				range[axis * 2 + 1] = cell(bound, side, axis, high);
+			}
+		}
+	}
+
+	/* the cell along an axis that a coordinate falls in, clamped to the grid */
+	static int cell(float[] bound, int side, int axis, float value) {
+		float min = bound[axis * 2], extent = bound[axis * 2 + 1] - min;
+		if (!(extent > 0f))
+			return 0;
+		int cell = (int) ((value - min) / extent * side);
+		return cell < 0 ? 0 : cell >= side ? side - 1 : cell;
+	}
+
+	// --------------------------------------------------------------------
+	// Reading
+	// --------------------------------------------------------------------
+
+	/**
+	 * The contents of a sidecar, read straight from the mapped file. Data is
+	 * immutable and may be read from any number of threads.
+	 */
+	public static class Data {
+		private final ByteBuffer map;
+		private final FloatBuffer positions, vertexNormals, faceNormals;
+		private final IntBuffer corners, colors, starts, entries;
+		private final int vertexCount, triangleCount, side, entryCount;
+
+		Data(ByteBuffer map) {
+			this.map = map;
+			vertexCount = map.getInt(COUNTS);
+			triangleCount = map.getInt(COUNTS + 4);
+			side = map.getInt(COUNTS + 8);
+			entryCount = map.getInt(COUNTS + 12);
+			int offset = HEADER_BYTES;
+			positions = section(offset, vertexCount * 3).asFloatBuffer();
+			offset += vertexCount * 12;
+			vertexNormals = section(offset, vertexCount * 3).asFloatBuffer();
+			offset += vertexCount * 12;
+			corners = section(offset, triangleCount * 3).asIntBuffer();
+			offset += triangleCount * 12;
+			colors = section(offset, triangleCount).asIntBuffer();
+			offset += triangleCount * 4;
+			faceNormals = section(offset, triangleCount * 3).asFloatBuffer();
+			offset += triangleCount * 12;
+			starts = section(offset, side * side * side + 1).asIntBuffer();
+			offset += (side * side * side + 1) * 4;
+			entries = section(offset, entryCount).asIntBuffer();
+		}
+
+		/* a little-endian view of count four-byte values from the offset, or an empty one past the end */
+		private ByteBuffer section(int offset, int count) {
+			ByteBuffer view = map.duplicate();
+			long end = (long) offset + count * 4L;
+			if (offset < 0 || count < 0 || end > view.capacity())
+				return ByteBuffer.allocate(0);
+			view.position(offset);
+			view.limit((int) end);
+			return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		static long sizeFor(int vertices, int triangles, int side, int entries) {
+			return HEADER_BYTES + 4L * (vertices * 6L + triangles * 7L + (long) side * side * side + 1 + entries);
+		}
+
+		long expectedSize() {
+			if (vertexCount < 0 || triangleCount < 0 || side < 1 || side > MAX_GRID || entryCount < 0)
+				return -1;
+			return sizeFor(vertexCount, triangleCount, side, entryCount);
+		}
+
+		/*
+		 * true if every index in the sidecar is in range: corners name
+		 * vertices, the cell starts rise from 0 to the number of entries, and
+		 * entries name triangles. A damaged file can have the right length.
+		 */
+		boolean isConsistent() {
+			for (int i = 0; i < triangleCount * 3; i++)
+				if (corners.get(i) < 0 || corners.get(i) >= vertexCount)
+					return false;
+			int cells = side * side * side;
+			if (starts.get(0) != 0 || starts.get(cells) != entryCount)
+				return false;
+			for (int c = 0; c < cells; c++)
+				if (starts.get(c) > starts.get(c + 1))
+					return false;
+			for (int i = 0; i < entryCount; i++)
+				if (entries.get(i) < 0 || entries.get(i) >= triangleCount)
+					return false;
+			return true;
+		}
+
+		public Vector3D getLight() {
+			return new Vector3D(map.getFloat(LIGHT), map.getFloat(LIGHT + 4), map.getFloat(LIGHT + 8));
+		}
+
+		/** Returns the bounds in the same layout as {@link Scene#getBound()}. */
+		public float[] getBound() {
+			float[] bound = new float[6];
+			for (int i = 0; i < 6; i++)
+				bound[i] = map.getFloat(BOUND + i * 4);
+			return bound;
+		}
+
+		public int vertexCount() {
+			return vertexCount;
+		}
+
+		public int triangleCount() {
+			return triangleCount;
+		}
+
+		/** Copies the position of a welded vertex into dst. */
+		public void getVertex(int vertex, float[] dst, int offset) {
+			for (int i = 0; i < 3; i++)
+				dst[offset + i] = positions.get(vertex * 3 + i);
+		}
+
+		/**
+		 * Copies the unit normal at a welded vertex into dst, or zero where the
+		 * faces around it cancel out, as on a two-sided sheet.
+		 */
+		public void getVertexNormal(int vertex, float[] dst, int offset) {
+			for (int i = 0; i < 3; i++)
+				dst[offset + i] = vertexNormals.get(vertex * 3 + i);
+		}
+
+		/** Returns the index of one of the three vertices of a triangle. */
+		public int getCorner(int triangle, int corner) {
+			return corners.get(triangle * 3 + corner);
+		}
+
+		/** Returns the reflectance of a triangle packed as an RGB int. */
+		public int getColor(int triangle) {
+			return colors.get(triangle);
+		}
+
+		/** Copies the (unnormalised) face normal of a triangle into dst. */
+		public void getFaceNormal(int triangle, float[] dst, int offset) {
+			for (int i = 0; i < 3; i++)
+				dst[offset + i] = faceNormals.get(triangle * 3 + i);
+		}
+
+		/** Returns the number of cells along each side of the grid. */
+		public int gridSide() {
+			return side;
+		}
+
+		/** Returns the index of the grid cell holding a point, clamped to the grid. */
+		public int cellAt(float x, float y, float z) {
+			float[] bound = getBound();
+			return (cell(bound, side, 2, z) * side + cell(bound, side, 1, y)) * side + cell(bound, side, 0, x);
+		}
+
+		/** Returns the triangles whose bounding boxes overlap a grid cell, in order. */
+		public int[] trianglesInCell(int cell) {
+			int start = starts.get(cell), end = starts.get(cell + 1);
+			int[] triangles = new int[end - start];
+			for (int i = start; i < end; i++)
+				triangles[i - start] = entries.get(i);
+			return triangles;
+		}
+
+		/**
+		 * Builds the scene the sidecar was made from, polygon for polygon, with
+		 * its bounds already known. Welded vertices and equal colours are
+		 * shared between polygons.
+		 */
+		public Scene toScene() {
+			Vector3D[] vertices = new Vector3D[vertexCount];
+			for (int v = 0; v < vertexCount; v++)
+				vertices[v] = new Vector3D(positions.get(v * 3), positions.get(v * 3 + 1), positions.get(v * 3 + 2));
+			Map<Integer, Color> palette = new HashMap<Integer, Color>();
+			List<Polygon> polygons = new ArrayList<Polygon>(triangleCount);
+			for (int t = 0; t < triangleCount; t++) {
+				int rgb = colors.get(t);
+				Color color = palette.get(rgb);
+				if (color == null) {
+					color = new Color(rgb);
+					palette.put(rgb, color);
+				}
+				polygons.add(new Polygon(vertices[corners.get(t * 3)], vertices[corners.get(t * 3 + 1)],
+						vertices[corners.get(t * 3 + 2)], color));
+			}
+			return new Scene(polygons, getLight(), getBound());
+		}
+	}
+
+	// --------------------------------------------------------------------
+	// Hashing
+	// --------------------------------------------------------------------
+
+	private static byte[] hash(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] chunk = new byte[1 << 16];
+			int n;
+			while ((n = in.read(chunk)) > 0)
+				digest.update(chunk, 0, n);
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	private static byte[] sha256(byte[] bytes) {
+		return newDigest().digest(bytes);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes)
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,190 @@
+package renderer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a scene file and reads it again through a {@link SceneReloader}
+ * whenever it changes, so edits made in another program show up straight
+ * away.
+ *
+ * The file's directory is watched, since tools often save by writing a new
+ * file and renaming it over the old one. Tools may also write a file in
+ * several steps, so a change is only read once the file has been quiet for a
+ * short while. A file caught half written may fail to parse; it is simply read
+ * again on its next change.
+ *
+ * Building a reloader reads and hashes the whole file, so a watcher can be
+ * given the loaded scene instead and build its reloader on its own thread.
+ */
+public class SceneWatcher implements Closeable {
+
+	/** Receives the changes to the file. Both methods are called on the watching thread. */
+	public interface Listener {
+		/** Called with each change that changed the scene. */
+		void changed(SceneReloader.Update update);
+
+		/** Called when the changed file could not be read. */
+		void failed(Exception e);
+	}
+
+	/** The default time the file must be left alone before it is read. */
+	public static final long DEFAULT_SETTLE = 30;
+
+	private final File file;
+	// the scene the reloader is built from on the watching thread, until it is
+	private Scene loaded;
+	private volatile SceneReloader reloader;
+	private final Listener listener;
+	private final long settle;
+	private final WatchService service;
+	private final Path name;
+	private Thread thread;
+
+	public SceneWatcher(SceneReloader reloader, Listener listener) throws IOException {
+		this(reloader, listener, DEFAULT_SETTLE);
+	}
+
+	/**
+	 * @param settle
+	 *            How many milliseconds the file must go without changing before
+	 *            it is read.
+	 */
+	public SceneWatcher(SceneReloader reloader, Listener listener, long settle) throws IOException {
+		this(reloader.getFile(), null, reloader, listener, settle);
+	}
+
+	/**
+	 * Watches the file the given scene was loaded from. The file is read and
+	 * hashed on the watching thread once it starts, and if that fails the
+	 * listener is told and the watcher stops.
+	 */
+	public SceneWatcher(File file, Scene scene, Listener listener) throws IOException {
+		this(file, scene, null, listener, DEFAULT_SETTLE);
+	}
+
+	private SceneWatcher(File file, Scene scene, SceneReloader reloader, Listener listener, long settle)
+			throws IOException {
+		this.file = file;
+		this.loaded = scene;
+		this.reloader = reloader;
+		this.listener = listener;
+		this.settle = settle;
+		Path path = file.getAbsoluteFile().toPath();
+		this.name = path.getFileName();
+		this.service = FileSystems.getDefault().newWatchService();
+		try {
+			path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			service.close();
+			throw e;
+		}
+	}
+
+	/** Returns the reloader, or null if the watching thread has not built it yet. */
+	public SceneReloader getReloader() {
+		return reloader;
+	}
+
+	/** Starts watching on a new daemon thread. */
+	public synchronized void start() {
+		if (thread != null)
+			throw new IllegalStateException("SceneWatcher: already started");
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "scene-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching. The listener is not called again once this has returned,
+	 * except possibly for a call that was already under way.
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+
+	private void watch() {
+		if (reloader == null) {
+			try {
+				// changes from now on are queued by the service, so none is missed
+				reloader = new SceneReloader(file, loaded);
+				loaded = null;
+			} catch (IOException | RuntimeException e) {
+				listener.failed(e);
+				try {
+					service.close();
+				} catch (IOException closing) {
+					// it stops either way
+				}
+				return;
+			}
+		}
+		try {
+			while (true) {
+				if (!concernsFile(service.take()))
+					continue;
+				// wait until the writer seems to have finished; changes to other
+				// files in the directory do not put the reload off
+				long quiet = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settle);
+				long wait;
+				while ((wait = quiet - System.nanoTime()) > 0) {
+					WatchKey key = service.poll(wait, TimeUnit.NANOSECONDS);
+					if (key == null)
+						break;
+					if (concernsFile(key))
+						quiet = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settle);
+				}
+				reload();
+			}
+		} catch (ClosedWatchServiceException e) {
+			// closed
+		} catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	private void reload() {
+		try {
+			SceneReloader.Update update = reloader.reload();
+			if (!update.isEmpty())
+				listener.changed(update);
+		} catch (IOException | RuntimeException e) {
+			listener.failed(e);
+		}
+	}
+
+	/* takes the events of a key, returning true if any was about the file */
+	private boolean concernsFile(WatchKey key) {
+		boolean found = false;
+		for (WatchEvent<?> event : key.pollEvents())
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context()))
+				found = true;
+		key.reset();
+		return found;
+	}
+
+	/** Returns a watcher that starts from the given scene, already loaded from the file. */
+	public static SceneWatcher watch(File file, Scene scene, Listener listener) throws IOException {
+		SceneWatcher watcher = new SceneWatcher(file, scene, listener);
+		watcher.start();
+		return watcher;
+	}
+}
+
+// code for comp261 assignments
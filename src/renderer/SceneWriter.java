@@ -0,0 +1,29 @@
+package renderer;
+
+import java.io.IOException;
+
+/**
+ * Writes lines of the text format read by {@link SceneLoader}. Floats are
+ * written so that they parse back to exactly the same values.
+ */
+public class SceneWriter {
+
+	/** Writes the first line of a scene file, holding the light direction. */
+	public static void writeLight(Appendable out, Vector3D light) throws IOException {
+		out.append(Float.toString(light.x)).append(' ').append(Float.toString(light.y)).append(' ')
+				.append(Float.toString(light.z)).append('\n');
+	}
+
+	/**
+	 * Writes one polygon line from nine floats starting at the offset and a
+	 * reflectance packed as an RGB int.
+	 */
+	public static void writePolygon(Appendable out, float[] points, int offset, int rgb) throws IOException {
+		for (int i = 0; i < 9; i++)
+			out.append(Float.toString(points[offset + i])).append(' ');
+		out.append(Integer.toString((rgb >> 16) & 0xff)).append(' ').append(Integer.toString((rgb >> 8) & 0xff))
+				.append(' ').append(Integer.toString(rgb & 0xff)).append('\n');
+	}
+}
+
+// code for comp261 assignments
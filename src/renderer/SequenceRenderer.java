@@ -0,0 +1,126 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Renders a scene along a camera path without opening any window, sending the
+ * frames to a {@link FrameSink}.
+ *
+ * Run as a program it renders a turntable of a scene file:
+ *
+ * <pre>
+ * SequenceRenderer scene.txt out.y4m [frames] [width] [height]
+ * SequenceRenderer scene.txt out.rgb [frames] [width] [height]
+ * SequenceRenderer scene.txt out.raw [frames] [width] [height]
+ * SequenceRenderer scene.txt outdir/ [frames] [width] [height] [png level]
+ * </pre>
+ *
+ * where .raw is a stream of {@link RawFrameChannel} frames, and a target that
+ * is none of these is treated as a directory to fill with a PNG sequence,
+ * deflated at the given level from 0 to 9.
+ */
+public class SequenceRenderer {
+
+	/** The slider values the GUI starts with. */
+	public static final Color DEFAULT_LIGHT = new Color(128, 128, 128);
+
+	/**
+	 * Renders one frame per camera in the path and writes them to the sink in
+	 * order. The sink is not closed.
+	 */
+	public static void render(Scene scene, List<Camera> path, Dimension dimension, Color lightColor,
+			Color ambientLight, FrameSink sink) throws IOException {
+		FramePool pool = sink instanceof AsyncFrameSink ? ((AsyncFrameSink) sink).getPool() : null;
+		render(scene, path, dimension, lightColor, ambientLight, sink, pool);
+	}
+
+	/**
+	 * As above, drawing every frame into an image from the pool, which the sink
+	 * must give back once it has written it. A null pool, or one of another
+	 * size, gives a new image for every frame.
+	 */
+	public static void render(Scene scene, List<Camera> path, Dimension dimension, Color lightColor,
+			Color ambientLight, FrameSink sink, FramePool pool) throws IOException {
+		if (pool != null && (pool.getWidth() != dimension.width || pool.getHeight() != dimension.height))
+			pool = null;
+		FrameBuffer buffer = new FrameBuffer(dimension.width, dimension.height);
+		float[] bound = scene.getBound();
+		int index = 0;
+		for (Camera camera : path) {
+			Pipeline.renderFrame(scene, bound, camera, lightColor, ambientLight, buffer);
+			BufferedImage image = pool != null ? pool.acquire()
+					: new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
+			Pipeline.convertBitmapToImage(buffer.color, image);
+			sink.writeFrame(index++, image);
+		}
+	}
+
+	/**
+	 * Opens the sink a target file name asks for, running its encoding on
+	 * background threads.
+	 */
+	public static FrameSink openSink(File target) throws IOException {
+		return openSink(target, null, -1);
+	}
+
+	/**
+	 * As above, recycling frames of the given size through a pool, and
+	 * deflating PNGs at the given level, or -1 for the default.
+	 */
+	public static AsyncFrameSink openSink(File target, Dimension dimension, int level) throws IOException {
+		String name = target.getName().toLowerCase();
+		int threads = Runtime.getRuntime().availableProcessors();
+		FrameSink sink;
+		int capacity, workers;
+		if (name.endsWith(".raw")) {
+			sink = new RawFrameChannel(target.toPath());
+			capacity = 4;
+			workers = 1;
+		} else if (name.endsWith(".y4m") || name.endsWith(".rgb")) {
+			RawVideoWriter.Format format = name.endsWith(".y4m") ? RawVideoWriter.Format.Y4M
+					: RawVideoWriter.Format.RGB;
+			sink = new RawVideoWriter(target, format, 30);
+			capacity = 4;
+			workers = 1;
+		} else {
+			sink = new PngSequenceWriter(target, "frame_", level);
+			capacity = 2 * threads;
+			workers = threads;
+		}
+		// enough images for every frame queued or being written, and the one being drawn
+		FramePool pool = dimension == null ? null
+				: new FramePool(dimension.width, dimension.height, capacity + workers + 1);
+		return new AsyncFrameSink(sink, capacity, workers, pool);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: SequenceRenderer scene.txt target [frames] [width] [height] [png level]");
+			System.exit(1);
+		}
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+		int width = args.length > 3 ? Integer.parseInt(args[3]) : GUI.CANVAS_WIDTH;
+		int height = args.length > 4 ? Integer.parseInt(args[4]) : GUI.CANVAS_HEIGHT;
+		int level = args.length > 5 ? Integer.parseInt(args[5]) : -1;
+
+		Scene scene = SceneLoader.load(new File(args[0]));
+		if (scene == null) {
+			System.err.println("Nothing found in the file.");
+			System.exit(1);
+		}
+		Dimension dimension = new Dimension(width, height);
+		AsyncFrameSink sink = openSink(new File(args[1]), dimension, level);
+		try {
+			render(scene, Camera.DEFAULT.turntable(frames), dimension, DEFAULT_LIGHT, DEFAULT_LIGHT, sink);
+		} finally {
+			sink.close();
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,149 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.List;
+
+import renderer.Scene.Instance;
+import renderer.Scene.Polygon;
+
+/**
+ * A depth map of a scene seen from its directional light, for working out
+ * which surfaces are in shadow. The scene is turned so the light shines
+ * along +z (the way the viewer looks on screen), scaled to fill a square
+ * map, and drawn with the ordinary z-buffer; a point is then lit if nothing
+ * in the map lies in front of it.
+ *
+ * Besides its depth, every texel records which polygon is nearest the light
+ * there, and a polygon is never taken to shadow itself. This keeps the
+ * surfaces the light only grazes, whose depth changes steeply across the
+ * map, from speckling themselves with false shadow; where they meet their
+ * neighbours a bias that grows with that steepness is used instead.
+ *
+ * The map depends only on the scene's polygons and light, both held in the
+ * scene's own coordinates, so it stays valid however the camera moves.
+ * ShadowMaps are immutable once built.
+ */
+public class ShadowMap {
+
+	/** How far behind the nearest surface (in map texels) a point still counts as lit. */
+	public static final float BIAS = 1.5f;
+
+	private static final Color CASTER = Color.BLACK;
+
+	/* the most a polygon's depth is taken to change per texel, so edge-on ones are not biased without limit */
+	private static final float MAX_SLOPE = 8f;
+
+	final Scene scene;
+	final Vector3D light;
+	private final Affine toMap;
+	private final FrameBuffer map;
+	private final float[] slopes;
+
+	private ShadowMap(Scene scene, Affine toMap, FrameBuffer map, float[] slopes) {
+		this.scene = scene;
+		this.light = scene.getLight();
+		this.toMap = toMap;
+		this.map = map;
+		this.slopes = slopes;
+	}
+
+	/**
+	 * Draws the depth map of a scene from its light's direction at the given
+	 * resolution.
+	 */
+	public static ShadowMap build(Scene scene, int size) {
+		Vector3D light = scene.getLight().unitVector();
+		// rows of a rotation taking the direction the light shines in, -light, to +z
+		float wx = -light.x, wy = -light.y, wz = -light.z;
+		Vector3D across = Math.abs(wy) < 0.9f ? new Vector3D(0f, 1f, 0f) : new Vector3D(1f, 0f, 0f);
+		Vector3D u = across.crossProduct(new Vector3D(wx, wy, wz)).unitVector();
+		Vector3D v = new Vector3D(wx, wy, wz).crossProduct(u);
+		Affine rotation = new Affine(u.x, u.y, u.z, 0f, v.x, v.y, v.z, 0f, wx, wy, wz, 0f);
+
+		float[] bound = scene.getBound(rotation.toTransform());
+		float extent = Math.max(bound[1] - bound[0], bound[3] - bound[2]);
+		float scale = extent > 0 ? (size - 1) / extent : 1f;
+		Affine toMap = rotation.preTranslate(-bound[0], -bound[2], -bound[4]).preScale(scale, scale, scale);
+
+		// polygons are numbered as in getPolygons, without building those of instances
+		List<Polygon> own = scene.getInstances().isEmpty() ? scene.getPolygons() : scene.getOwnPolygons();
+		FrameBuffer map = new FrameBuffer(size, size);
+		float[] slopes = new float[scene.getPolygons().size()];
+		float[] points = new float[9];
+		float[] n = new float[3];
+		int t = 0;
+		for (Polygon p : own == null ? Collections.<Polygon> emptyList() : own) {
+			for (int i = 0; i < 3; i++) {
+				points[i * 3] = p.vertices[i].x;
+				points[i * 3 + 1] = p.vertices[i].y;
+				points[i * 3 + 2] = p.vertices[i].z;
+			}
+			toMap.multiplyInto(points, 0, points, 0, 3);
+			draw(map, points, n, slopes, t++);
+		}
+		for (Instance instance : scene.getInstances()) {
+			Affine m = toMap.compose(instance.placement);
+			float[] positions = instance.mesh.positions;
+			for (int i = 0; i < positions.length; i += 9) {
+				m.multiplyInto(positions, i, points, 0, 3);
+				draw(map, points, n, slopes, t++);
+			}
+		}
+		return new ShadowMap(scene, toMap, map, slopes);
+	}
+
+	/* draws polygon t, already in map space, noting how steep it is there */
+	private static void draw(FrameBuffer map, float[] points, float[] n, float[] slopes, int t) {
+		Pipeline.getNormal(points, 0, n, 0);
+		float sideways = (float) Math.sqrt(n[0] * n[0] + n[1] * n[1]);
+		slopes[t] = sideways < MAX_SLOPE * Math.abs(n[2]) ? sideways / Math.abs(n[2]) : MAX_SLOPE;
+		// faces turned either way cast shadows
+		Pipeline.computeZBuffer(map, Pipeline.computeEdgeList(points, 0), CASTER, t);
+	}
+
+	/** Returns true if this map was drawn for the given scene as it is now lit. */
+	public boolean isFor(Scene scene) {
+		return this.scene == scene && light.equals(scene.getLight());
+	}
+
+	public int getSize() {
+		return map.width;
+	}
+
+	/** The transform from the scene's coordinates to map texels and depth. */
+	public Affine getTransform() {
+		return toMap;
+	}
+
+	/**
+	 * Returns true if the point, already moved into map space by getTransform,
+	 * is lit. Points outside the map are lit.
+	 */
+	public boolean isLitInMap(float x, float y, float depth) {
+		int mx = (int) x, my = (int) y;
+		if (x < 0 || y < 0 || mx >= map.width || my >= map.height)
+			return true;
+		return depth <= map.depth[mx][my] + BIAS;
+	}
+
+	/**
+	 * As isLitInMap, for a point on the polygon with the given index in the
+	 * scene whose position is only known to within spread texels across the
+	 * map, as when it was carried back from a pixel on screen.
+	 */
+	public boolean isLitInMap(float x, float y, float depth, int polygon, float spread) {
+		int mx = (int) x, my = (int) y;
+		if (x < 0 || y < 0 || mx >= map.width || my >= map.height)
+			return true;
+		return map.ranks()[mx][my] == polygon || depth <= map.depth[mx][my] + BIAS + slopes[polygon] * spread;
+	}
+
+	/** Returns true if the point, in the scene's coordinates, is lit. */
+	public boolean isLit(Vector3D point) {
+		Vector3D p = toMap.multiply(point);
+		return isLitInMap(p.x, p.y, p.z);
+	}
+}
+
+// code for comp261 assignments
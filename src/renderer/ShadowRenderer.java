@@ -0,0 +1,219 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import renderer.Scene.Instance;
+import renderer.Scene.Polygon;
+
+/**
+ * Renders scenes with shadows cast by their directional light. The light is
+ * fixed in the scene's own coordinates, so unlike the plain pipeline its
+ * direction does not follow the camera, and the {@link ShadowMap} built for
+ * a scene is kept and reused for every frame until the scene or its light
+ * changes. The two colours of every polygon, lit and in shadow, are kept the
+ * same way until the light or ambient colour changes.
+ *
+ * Polygons are drawn into the z-buffer as usual, recording which polygon
+ * won each pixel. One pass over the finished frame then carries every drawn
+ * pixel back into map space with a single affine transform and darkens the
+ * ones the map says are shadowed, so the cost per frame is one transform per
+ * lit pixel, spread over the cores, on top of an ordinary render rather than
+ * a second render. Textured polygons are drawn with their textures, and
+ * where they are shadowed each pixel is darkened by the ratio of the
+ * polygon's shadowed colour to its lit one, which matches tinting the texel
+ * by the shadowed colour to within rounding.
+ *
+ * A renderer keeps its caches between frames and is not thread-safe.
+ */
+public class ShadowRenderer {
+
+	/** The default resolution of the shadow map on each side. */
+	public static final int DEFAULT_MAP_SIZE = 1024;
+
+	private final int mapSize;
+	private ShadowMap map;
+	private int shadowBuilds;
+	private int drawn;
+	private Scene shadedScene;
+	private Color shadedLight, shadedAmbient;
+	private Color[] lit = new Color[0], shadowed = new Color[0];
+	private boolean[] textured = new boolean[0];
+
+	public ShadowRenderer() {
+		this(DEFAULT_MAP_SIZE);
+	}
+
+	public ShadowRenderer(int mapSize) {
+		if (mapSize < 2)
+			throw new IllegalArgumentException("ShadowRenderer: bad map size " + mapSize);
+		this.mapSize = mapSize;
+	}
+
+	/** Renders a frame of the scene, with the given bounds, from the camera. */
+	public void renderFrame(Scene scene, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			final FrameBuffer buffer) {
+		Transform view = Pipeline.viewTransform(bound, camera, new Dimension(buffer.width, buffer.height));
+		render(scene, view, new Vector3D(camera.x, camera.y, 0f), lightColor, ambientLight, buffer);
+	}
+
+	/**
+	 * Renders the scene moved by view, re-centred on the buffer as
+	 * {@link Pipeline#autoTranslate} does and moved again by offset.
+	 */
+	public void render(Scene scene, Transform view, Vector3D offset, Color lightColor, Color ambientLight,
+			final FrameBuffer buffer) {
+		buffer.clear();
+		Dimension dimension = new Dimension(buffer.width, buffer.height);
+		Transform toScreen = Transform.newTranslation(offset.x, offset.y, offset.z)
+				.compose(Pipeline.centring(scene.getBound(view), 1.0f, dimension)).compose(view);
+		final ShadowMap shadows = getShadowMap(scene);
+		shade(scene, lightColor, ambientLight);
+
+		// polygons are numbered as in getPolygons, without building those of instances
+		Affine screen = toScreen.toAffine();
+		float[] v = new float[9];
+		float[] n = new float[3];
+		drawn = 0;
+		int t = 0;
+		for (Polygon p : ownPolygons(scene)) {
+			for (int i = 0; i < 3; i++) {
+				v[i * 3] = p.vertices[i].x;
+				v[i * 3 + 1] = p.vertices[i].y;
+				v[i * 3 + 2] = p.vertices[i].z;
+			}
+			screen.multiplyInto(v, 0, v, 0, 3);
+			draw(v, n, t++, p, buffer);
+		}
+		for (Instance instance : scene.getInstances()) {
+			Affine m = screen.compose(instance.placement);
+			List<Polygon> polygons = instance.mesh.polygons;
+			for (int i = 0; i < polygons.size(); i++) {
+				m.multiplyInto(instance.mesh.positions, i * 9, v, 0, 3);
+				draw(v, n, t++, polygons.get(i), buffer);
+			}
+		}
+
+		// from a pixel and its depth straight to the shadow map
+		final Affine toMap = shadows.getTransform().compose(screen.invert());
+		// a pixel's position is only known to within a pixel or so on screen
+		final float spread = 1f + Math.max((float) Math.hypot(toMap.m00, toMap.m10),
+				(float) Math.hypot(toMap.m01, toMap.m11));
+		final int[][] ranks = buffer.ranks();
+		IntStream.range(0, buffer.width).parallel().forEach(new IntConsumer() {
+			@Override
+			public void accept(int x) {
+				Color[] colors = buffer.color[x];
+				float[] depths = buffer.depth[x];
+				int[] column = ranks[x];
+				for (int y = 0; y < column.length; y++) {
+					int t = column[y];
+					// polygons facing away from the light look the same either way
+					if (t == Integer.MAX_VALUE || lit[t] == shadowed[t])
+						continue;
+					float z = depths[y];
+					float mx = toMap.m03 + (toMap.m00 * x + toMap.m01 * y + toMap.m02 * z);
+					float my = toMap.m13 + (toMap.m10 * x + toMap.m11 * y + toMap.m12 * z);
+					float mz = toMap.m23 + (toMap.m20 * x + toMap.m21 * y + toMap.m22 * z);
+					if (!shadows.isLitInMap(mx, my, mz, t, spread))
+						colors[y] = textured[t] ? darken(colors[y], lit[t], shadowed[t]) : shadowed[t];
+				}
+			}
+		});
+	}
+
+	/*
+	 * draws polygon t, already on screen, unless it faces away, recording it
+	 * as the one showing at the pixels it wins; p only lends its texture
+	 */
+	private void draw(float[] v, float[] n, int t, Polygon p, FrameBuffer buffer) {
+		Pipeline.getNormal(v, 0, n, 0);
+		if (n[2] > 0)
+			return;
+		drawn++;
+		EdgeList edgeList = Pipeline.computeEdgeList(v, 0);
+		if (p.texture != null)
+			Pipeline.computeTexturedZBuffer(buffer, edgeList, v, 0, p.texture, p.uvs, lit[t].getRGB(), t);
+		else
+			Pipeline.computeZBuffer(buffer, edgeList, lit[t], t);
+	}
+
+	private static List<Polygon> ownPolygons(Scene scene) {
+		List<Polygon> own = scene.getInstances().isEmpty() ? scene.getPolygons() : scene.getOwnPolygons();
+		return own == null ? Collections.<Polygon> emptyList() : own;
+	}
+
+	/** Returns the map for the scene, building it only if the one kept is out of date. */
+	public ShadowMap getShadowMap(Scene scene) {
+		if (map == null || !map.isFor(scene)) {
+			map = ShadowMap.build(scene, mapSize);
+			shadowBuilds++;
+		}
+		return map;
+	}
+
+	/** Returns how many polygons faced the viewer in the last frame. */
+	public int getDrawn() {
+		return drawn;
+	}
+
+	/** Returns how many shadow maps this renderer has had to build. */
+	public int getShadowBuilds() {
+		return shadowBuilds;
+	}
+
+	/* works out each polygon's colour in and out of shadow, lit in scene coordinates */
+	private void shade(Scene scene, Color lightColor, Color ambientLight) {
+		if (scene == shadedScene && lightColor.equals(shadedLight) && ambientLight.equals(shadedAmbient))
+			return;
+		int count = scene.getPolygons().size();
+		if (lit.length < count) {
+			lit = new Color[count];
+			shadowed = new Color[count];
+			textured = new boolean[count];
+		}
+		Vector3D light = scene.getLight();
+		int t = 0;
+		for (Polygon p : ownPolygons(scene))
+			shade(t++, p.reflectance.getRGB(), Pipeline.getNormal(p).cosTheta(light), p.texture != null,
+					lightColor, ambientLight);
+		float[] v = new float[9];
+		float[] n = new float[3];
+		for (Instance instance : scene.getInstances()) {
+			Scene.Mesh mesh = instance.mesh;
+			for (int i = 0; i < mesh.colors.length; i++) {
+				instance.placement.multiplyInto(mesh.positions, i * 9, v, 0, 3);
+				Pipeline.getNormal(v, 0, n, 0);
+				int rgb = instance.color == null ? mesh.colors[i] : instance.color.getRGB();
+				shade(t++, rgb, Pipeline.cosTheta(n, 0, light), mesh.polygons.get(i).texture != null, lightColor,
+						ambientLight);
+			}
+		}
+		shadedScene = scene;
+		shadedLight = lightColor;
+		shadedAmbient = ambientLight;
+	}
+
+	private void shade(int t, int rgb, float cos, boolean texture, Color lightColor, Color ambientLight) {
+		shadowed[t] = new Color(Pipeline.shade(rgb, 0f, lightColor, ambientLight));
+		lit[t] = cos > 0 ? new Color(Pipeline.shade(rgb, cos, lightColor, ambientLight)) : shadowed[t];
+		textured[t] = texture;
+	}
+
+	/* a textured pixel drawn in the lit colour, as it would be in the shadowed one */
+	private static Color darken(Color pixel, Color lit, Color shadowed) {
+		return new Color(scale(pixel.getRed(), lit.getRed(), shadowed.getRed()),
+				scale(pixel.getGreen(), lit.getGreen(), shadowed.getGreen()),
+				scale(pixel.getBlue(), lit.getBlue(), shadowed.getBlue()));
+	}
+
+	private static int scale(int value, int from, int to) {
+		return from == 0 ? 0 : Math.min(255, value * to / from);
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,155 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Rasterizes a scene on several threads by splitting up its polygons rather
+ * than the screen ("sort-last" rendering). Each worker draws its share of the
+ * polygons into a private colour and depth buffer with the ordinary
+ * {@link Pipeline#computeEdgeList}/{@link Pipeline#computeZBuffer} code, and
+ * the partial buffers are then merged by keeping, for every pixel, the colour
+ * nearest the viewer. The merge is itself split across the workers by column.
+ *
+ * Because every worker gets about the same number of polygons however they
+ * are spread over the screen, this balances well on models that cover only a
+ * small part of the canvas.
+ *
+ * Workers get consecutive runs of polygons and depth ties go to the lower
+ * worker, so the result is exactly what a serial render would give. The
+ * partial buffers are kept between frames. A SortLastRenderer may only render
+ * one frame at a time.
+ */
+public class SortLastRenderer {
+
+	private final int workers;
+	private final ExecutorService pool;
+	private FrameBuffer[] partials;
+
+	public SortLastRenderer(int workers) {
+		if (workers < 1)
+			throw new IllegalArgumentException("SortLastRenderer: need at least one worker");
+		this.workers = workers;
+		this.pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "sort-last-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** Projects the scene for the camera and renders it into the buffer. */
+	public void renderFrame(Scene scene, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer target) {
+		Scene projected = Pipeline.project(scene, bound, camera, new Dimension(target.width, target.height));
+		render(projected, lightColor, ambientLight, target);
+	}
+
+	/**
+	 * Renders a scene that is already in screen space into the buffer,
+	 * replacing everything that was in it.
+	 */
+	public void render(Scene scene, final Color lightColor, final Color ambientLight, final FrameBuffer target) {
+		if (partials == null || !partials[0].hasSize(target.width, target.height)) {
+			partials = new FrameBuffer[workers];
+			for (int i = 0; i < workers; i++)
+				partials[i] = new FrameBuffer(target.width, target.height);
+		}
+
+		// rasterize consecutive runs of polygons into the private buffers
+		final List<Polygon> polygons = scene.getPolygons();
+		final Vector3D lightVector = scene.getLight();
+		List<Callable<Void>> draw = new ArrayList<Callable<Void>>(workers);
+		for (int i = 0; i < workers; i++) {
+			final FrameBuffer partial = partials[i];
+			final int from = (int) ((long) polygons.size() * i / workers);
+			final int to = (int) ((long) polygons.size() * (i + 1) / workers);
+			draw.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					partial.clear();
+					Pipeline.rasterize(polygons.subList(from, to), lightVector, lightColor, ambientLight,
+							partial.color, partial.depth);
+					return null;
+				}
+			});
+		}
+		runAll(draw);
+
+		// depth-composite the private buffers, a strip of columns per worker
+		List<Callable<Void>> merge = new ArrayList<Callable<Void>>(workers);
+		for (int i = 0; i < workers; i++) {
+			final int from = target.width * i / workers;
+			final int to = target.width * (i + 1) / workers;
+			merge.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					composite(partials, target, from, to);
+					return null;
+				}
+			});
+		}
+		runAll(merge);
+	}
+
+	/**
+	 * Writes the nearest colour among the partial buffers into the target for
+	 * the columns from (inclusive) to to (exclusive). On equal depths the
+	 * earlier buffer wins, as the earlier polygon would in a serial render.
+	 */
+	static void composite(FrameBuffer[] partials, FrameBuffer target, int from, int to) {
+		for (int x = from; x < to; x++) {
+			Color[] targetColor = target.color[x];
+			float[] targetDepth = target.depth[x];
+			for (int y = 0; y < target.height; y++) {
+				Color color = partials[0].color[x][y];
+				float depth = partials[0].depth[x][y];
+				for (int i = 1; i < partials.length; i++) {
+					float d = partials[i].depth[x][y];
+					if (d < depth) {
+						depth = d;
+						color = partials[i].color[x][y];
+					}
+				}
+				targetColor[y] = color;
+				targetDepth[y] = depth;
+			}
+		}
+	}
+
+	private void runAll(List<Callable<Void>> tasks) {
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/** Stops the worker threads. */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,138 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders scene files that are too large to hold in memory at all, by
+ * streaming their triangles from disk through transform, culling and the
+ * z-buffer in fixed-size batches. The z-buffer does not care in which order
+ * triangles arrive, so the image is the same as rendering the whole mesh at
+ * once (see {@link Pipeline#renderFrame(OffHeapMesh, Camera, Color, Color, FrameBuffer)}).
+ *
+ * Fitting the model to the canvas needs its bounds before the first triangle
+ * is drawn, so a frame reads the file up to twice: once for the bounds
+ * (skipped if the caller already knows them, see {@link #scanBound(File)}) and
+ * once to draw. The frame is re-centred after rotation on the rotated box of
+ * those bounds, which needs no further pass.
+ *
+ * Run as a program it renders a file to a PNG:
+ *
+ * <pre>
+ * StreamingRenderer scene.txt out.png [yRot] [budgetKB]
+ * </pre>
+ */
+public class StreamingRenderer {
+
+	/** The bytes of working memory one triangle in a batch takes. */
+	public static final int BYTES_PER_TRIANGLE = 9 * 4 + 4;
+
+	/** The default amount of working memory for a batch of triangles. */
+	public static final int DEFAULT_BUDGET = 1 << 20;
+
+	private final float[] points;
+	private final int[] colors;
+	private final int batch;
+
+	/**
+	 * Creates a renderer whose triangle batches take no more than the given
+	 * number of bytes.
+	 */
+	public StreamingRenderer(int budgetBytes) {
+		this.batch = Math.max(1, budgetBytes / BYTES_PER_TRIANGLE);
+		this.points = new float[batch * 9];
+		this.colors = new int[batch];
+	}
+
+	/** Returns how many triangles are processed in each batch. */
+	public int getBatchSize() {
+		return batch;
+	}
+
+	/**
+	 * Reads the whole file once to find its bounds, in the layout of
+	 * {@link Scene#getBound()}, so they can be passed to later renders.
+	 */
+	public float[] scanBound(File file) throws IOException {
+		float[] bound = { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		TriangleReader reader = new TriangleReader(file);
+		try {
+			int count;
+			while ((count = reader.read(points, colors, batch)) > 0) {
+				for (int i = 0; i < count * 9; i += 3) {
+					for (int axis = 0; axis < 3; axis++) {
+						float value = points[i + axis];
+						if (value < bound[axis * 2])
+							bound[axis * 2] = value;
+						if (value > bound[axis * 2 + 1])
+							bound[axis * 2 + 1] = value;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return bound;
+	}
+
+	/** Renders a frame of the file, scanning it for its bounds first. */
+	public void render(File file, Camera camera, Color lightColor, Color ambientLight, FrameBuffer buffer)
+			throws IOException {
+		render(file, scanBound(file), camera, lightColor, ambientLight, buffer);
+	}
+
+	/**
+	 * Renders a frame of the file, whose bounds are already known, into the
+	 * given buffer.
+	 */
+	public void render(File file, float[] bound, Camera camera, Color lightColor, Color ambientLight,
+			FrameBuffer buffer) throws IOException {
+		buffer.clear();
+		Dimension dimension = new Dimension(buffer.width, buffer.height);
+		Transform view = Pipeline.viewTransform(bound, camera, dimension);
+		Transform toScreen = Transform.newTranslation(camera.x, camera.y, 0f)
+				.compose(Pipeline.centring(Pipeline.transformBound(bound, view), 1.0f, dimension)).compose(view);
+
+		Affine screen = toScreen.toAffine();
+		float[] v = new float[9];
+		float[] n = new float[3];
+		TriangleReader reader = new TriangleReader(file);
+		try {
+			Vector3D lightVector = toScreen.multiply(reader.getLight());
+			int count;
+			while ((count = reader.read(points, colors, batch)) > 0) {
+				for (int t = 0; t < count; t++) {
+					Pipeline.getNormal(points, t * 9, n, 0);
+					if (Pipeline.isBackFacing(n, screen))
+						continue;
+					System.arraycopy(points, t * 9, v, 0, 9);
+					Pipeline.drawTriangle(v, n, colors[t], toScreen, lightVector, lightColor, ambientLight, buffer);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: StreamingRenderer scene.txt out.png [yRot] [budgetKB]");
+			System.exit(1);
+		}
+		float yRot = args.length > 2 ? Float.parseFloat(args[2]) : 0f;
+		int budget = args.length > 3 ? Integer.parseInt(args[3]) * 1024 : DEFAULT_BUDGET;
+
+		StreamingRenderer renderer = new StreamingRenderer(budget);
+		FrameBuffer buffer = new FrameBuffer(GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+		renderer.render(new File(args[0]), new Camera(0f, yRot, 1.0f, 0f, 0f), SequenceRenderer.DEFAULT_LIGHT,
+				SequenceRenderer.DEFAULT_LIGHT, buffer);
+		ImageIO.write(Pipeline.convertBitmapToImage(buffer.color), "png", new File(args[1]));
+	}
+}
+
+// code for comp261 assignments
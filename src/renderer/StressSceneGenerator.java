@@ -0,0 +1,262 @@
+package renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Writes large synthetic scenes for measuring how the renderer scales, far
+ * beyond the thousand or so triangles of the scenes in data/. The same
+ * distribution, size and seed always give the same file, byte for byte.
+ *
+ * <ul>
+ * <li>SPHERE_GRID: a cube of closely packed spheres of 224 triangles each,
+ * about half of them facing away, as in a typical closed model.</li>
+ * <li>SOUP: randomly placed and oriented triangles, each pixel covered about
+ * four times over.</li>
+ * <li>OVERLAP: triangles all facing the viewer at random depths, each pixel
+ * covered about 64 times over, the worst case for depth testing.</li>
+ * <li>BOXES: a cube of boxes at random angles, sizes and colours. Text scenes
+ * declare the box once as a mesh and place it by instances, like
+ * bigboxes.txt; binary scenes, which cannot, hold every triangle.</li>
+ * </ul>
+ *
+ * The triangles shrink as their number grows, so every scene fills about the
+ * same space and the cost of covering pixels stays comparable between sizes.
+ *
+ * Run as a program it writes one scene, in the binary form of
+ * {@link TriangleWriter} if the file name ends in .tri:
+ *
+ * <pre>
+ * StressSceneGenerator SPHERE_GRID|SOUP|OVERLAP|BOXES triangles seed out.txt|out.tri
+ * </pre>
+ */
+public class StressSceneGenerator {
+
+	public enum Distribution {
+		SPHERE_GRID, SOUP, OVERLAP, BOXES
+	}
+
+	/** The light of every generated scene, the same as in the bundled scenes. */
+	public static final Vector3D LIGHT = new Vector3D(0.4f, -0.5f, 0.7681f);
+
+	/** Scenes are generated inside a cube this wide, centred on the origin. */
+	public static final float EXTENT = 2000f;
+
+	private static final int RINGS = 8, SECTORS = 16;
+	static final int SPHERE_TRIANGLES = 2 * SECTORS * (RINGS - 1);
+
+	/* the box of boxgrid.txt, 1000 wide, as three vertices and a colour per triangle */
+	private static final float[] BOX = {
+			500, -500, -500, 500, 500, -500, 500, 500, 500,
+			500, 500, 500, 500, -500, 500, 500, -500, -500,
+			-500, -500, -500, -500, -500, 500, -500, 500, 500,
+			-500, 500, 500, -500, 500, -500, -500, -500, -500,
+			-500, 500, -500, -500, 500, 500, 500, 500, 500,
+			500, 500, 500, 500, 500, -500, -500, 500, -500,
+			-500, -500, -500, 500, -500, -500, 500, -500, 500,
+			500, -500, 500, -500, -500, 500, -500, -500, -500,
+			-500, -500, 500, 500, -500, 500, 500, 500, 500,
+			500, 500, 500, -500, 500, 500, -500, -500, 500,
+			-500, -500, -500, -500, 500, -500, 500, 500, -500,
+			500, 500, -500, 500, -500, -500, -500, -500, -500 };
+	private static final int[] BOX_COLORS = { 0xe64632, 0xe64632, 0x3caa5a, 0x3caa5a, 0xf0c83c, 0xf0c83c,
+			0x466edc, 0x466edc, 0xa050c8, 0xa050c8, 0x28bec8, 0x28bec8 };
+
+	/** Writes a whole scene to the given file. */
+	public static void generate(Distribution distribution, long triangles, long seed, File file) throws IOException {
+		TriangleWriter out = file.getName().toLowerCase().endsWith(".tri") ? TriangleWriter.binary(file, LIGHT)
+				: TriangleWriter.text(file, LIGHT);
+		try {
+			generate(distribution, triangles, seed, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes exactly the given number of triangles of the distribution to an
+	 * open writer.
+	 */
+	public static void generate(Distribution distribution, long triangles, long seed, TriangleWriter out)
+			throws IOException {
+		if (triangles < 1)
+			throw new IllegalArgumentException("StressSceneGenerator: need at least one triangle");
+		SplittableRandom random = new SplittableRandom(seed);
+		switch (distribution) {
+		case SPHERE_GRID:
+			sphereGrid(triangles, random, out);
+			break;
+		case SOUP:
+			soup(triangles, random, out, 4f, false);
+			break;
+		case OVERLAP:
+			soup(triangles, random, out, 64f, true);
+			break;
+		case BOXES:
+			boxes(triangles, random, out);
+			break;
+		}
+	}
+
+	private static void sphereGrid(long triangles, SplittableRandom random, TriangleWriter out) throws IOException {
+		long spheres = (triangles + SPHERE_TRIANGLES - 1) / SPHERE_TRIANGLES;
+		int side = sideFor(spheres);
+		float spacing = EXTENT / side, radius = 0.45f * spacing;
+		float[] points = new float[9];
+		float[] normal = new float[3];
+		long written = 0;
+		for (long s = 0; s < spheres; s++) {
+			float cx = (s % side + 0.5f) * spacing - EXTENT / 2;
+			float cy = (s / side % side + 0.5f) * spacing - EXTENT / 2;
+			float cz = (s / side / side + 0.5f) * spacing - EXTENT / 2;
+			int rgb = randomColor(random);
+			for (int ring = 0; ring < RINGS && written < triangles; ring++) {
+				for (int sector = 0; sector < SECTORS && written < triangles; sector++) {
+					// the first and last rings meet at a pole, so have one triangle per sector
+					if (ring > 0) {
+						spherePoint(cx, cy, cz, radius, ring, sector, points, 0);
+						spherePoint(cx, cy, cz, radius, ring + 1, sector + 1, points, 3);
+						spherePoint(cx, cy, cz, radius, ring, sector + 1, points, 6);
+						writeFacing(out, points, normal, cx, cy, cz, rgb);
+						written++;
+					}
+					if (ring < RINGS - 1 && written < triangles) {
+						spherePoint(cx, cy, cz, radius, ring, sector, points, 0);
+						spherePoint(cx, cy, cz, radius, ring + 1, sector, points, 3);
+						spherePoint(cx, cy, cz, radius, ring + 1, sector + 1, points, 6);
+						writeFacing(out, points, normal, cx, cy, cz, rgb);
+						written++;
+					}
+				}
+			}
+		}
+	}
+
+	private static void spherePoint(float cx, float cy, float cz, float radius, int ring, int sector, float[] dst,
+			int offset) {
+		double latitude = Math.PI * ring / RINGS, longitude = 2 * Math.PI * sector / SECTORS;
+		dst[offset] = cx + (float) (radius * Math.sin(latitude) * Math.cos(longitude));
+		dst[offset + 1] = cy + (float) (radius * Math.cos(latitude));
+		dst[offset + 2] = cz + (float) (radius * Math.sin(latitude) * Math.sin(longitude));
+	}
+
+	/* writes the triangle wound so its face points away from (cx, cy, cz) */
+	private static void writeFacing(TriangleWriter out, float[] points, float[] normal, float cx, float cy, float cz,
+			int rgb) throws IOException {
+		Pipeline.getNormal(points, 0, normal, 0);
+		float mx = (points[0] + points[3] + points[6]) / 3 - cx, my = (points[1] + points[4] + points[7]) / 3 - cy,
+				mz = (points[2] + points[5] + points[8]) / 3 - cz;
+		if (normal[0] * mx + normal[1] * my + normal[2] * mz < 0)
+			swapLastVertices(points);
+		out.write(points, 0, rgb);
+	}
+
+	/*
+	 * random triangles with corners up to leg away from a random centre, big
+	 * enough that together they cover the extent about depth times over, facing any way or all towards the viewer
+	 */
+	private static void soup(long triangles, SplittableRandom random, TriangleWriter out, float depth,
+			boolean facing) throws IOException {
+		// a triangle with corners uniformly inside a square of side 2 has a mean area of 44/144
+		float leg = (float) (EXTENT * Math.sqrt(depth * 144 / (44.0 * triangles)));
+		float[] points = new float[9];
+		float[] normal = new float[3];
+		for (long t = 0; t < triangles; t++) {
+			float x = coordinate(random), y = coordinate(random), z = coordinate(random);
+			for (int v = 0; v < 9; v += 3) {
+				points[v] = x + (float) (random.nextDouble() - 0.5) * 2 * leg;
+				points[v + 1] = y + (float) (random.nextDouble() - 0.5) * 2 * leg;
+				points[v + 2] = facing ? z : z + (float) (random.nextDouble() - 0.5) * 2 * leg;
+			}
+			if (facing) {
+				// the viewer looks along +z, so a visible face has a normal towards -z
+				Pipeline.getNormal(points, 0, normal, 0);
+				if (normal[2] > 0)
+					swapLastVertices(points);
+			}
+			out.write(points, 0, randomColor(random));
+		}
+	}
+
+	private static void boxes(long triangles, SplittableRandom random, TriangleWriter out) throws IOException {
+		long instances = triangles / 12;
+		int extra = (int) (triangles % 12);
+		int side = sideFor(instances + (extra > 0 ? 1 : 0));
+		float spacing = EXTENT / side;
+		float scale = spacing / 1000f;
+		if (!out.isBinary()) {
+			out.writeLine("mesh box");
+			for (int t = 0; t < 12; t++)
+				out.writeLine(polygonLine(BOX, t * 9, BOX_COLORS[t]));
+			out.writeLine("end");
+		}
+		float[] points = new float[BOX.length];
+		for (long b = 0; b < instances + (extra > 0 ? 1 : 0); b++) {
+			float x = (b % side + 0.5f) * spacing - EXTENT / 2;
+			float y = (b / side % side + 0.5f) * spacing - EXTENT / 2;
+			float z = (b / side / side + 0.5f) * spacing - EXTENT / 2;
+			float xRot = (float) (random.nextDouble() * Math.PI), yRot = (float) (random.nextDouble() * Math.PI),
+					zRot = (float) (random.nextDouble() * Math.PI);
+			float size = scale * (0.4f + 0.3f * (float) random.nextDouble());
+			int rgb = randomColor(random);
+			if (b < instances && !out.isBinary()) {
+				out.writeLine("instance box " + x + ' ' + y + ' ' + z + ' ' + xRot + ' ' + yRot + ' ' + zRot + ' '
+						+ size + ' ' + ((rgb >> 16) & 0xff) + ' ' + ((rgb >> 8) & 0xff) + ' ' + (rgb & 0xff));
+				continue;
+			}
+			// placed exactly as SceneLoader.parseInstance places an instance
+			Transform placement = Transform.newTranslation(x, y, z).compose(Transform.newXRotation(xRot))
+					.compose(Transform.newYRotation(yRot)).compose(Transform.newZRotation(zRot))
+					.compose(Transform.newScale(size, size, size));
+			placement.toAffine().multiplyInto(BOX, 0, points, 0, BOX.length / 3);
+			int count = b < instances ? 12 : extra;
+			for (int t = 0; t < count; t++)
+				out.write(points, t * 9, rgb);
+		}
+	}
+
+	private static String polygonLine(float[] points, int offset, int rgb) throws IOException {
+		StringBuilder line = new StringBuilder();
+		SceneWriter.writePolygon(line, points, offset, rgb);
+		return line.substring(0, line.length() - 1);
+	}
+
+	/* the smallest side of a cube of cells holding at least count of them */
+	private static int sideFor(long count) {
+		int side = Math.max(1, (int) Math.cbrt(count));
+		while ((long) side * side * side < count)
+			side++;
+		return side;
+	}
+
+	private static float coordinate(SplittableRandom random) {
+		return (float) (random.nextDouble() - 0.5) * EXTENT;
+	}
+
+	private static int randomColor(SplittableRandom random) {
+		return 0x404040 | (random.nextInt() & 0xbfbfbf);
+	}
+
+	private static void swapLastVertices(float[] points) {
+		for (int i = 3; i < 6; i++) {
+			float swap = points[i];
+			points[i] = points[i + 3];
+			points[i + 3] = swap;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println(
+					"usage: StressSceneGenerator SPHERE_GRID|SOUP|OVERLAP|BOXES triangles seed out.txt|out.tri");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		generate(Distribution.valueOf(args[0].toUpperCase()), (long) Double.parseDouble(args[1]),
+				Long.parseLong(args[2]), new File(args[3]));
+		System.out.println("Wrote " + args[3] + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,174 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An image mapped onto polygons, kept as a chain of mip levels each half the
+ * size of the one before, down to a single texel. Textures repeat, so texture
+ * coordinates outside 0..1 wrap around.
+ *
+ * Each level is stored as 8x8 tiles of RGB ints, the tiles in rows and the
+ * texels inside a tile in Morton (Z) order. Texels that are close on screen
+ * are then usually close in memory too, whichever way a triangle runs across
+ * the texture, so a span crossing it touches a few cache lines per tile
+ * rather than one per texel as a row-major image would when drawn sideways.
+ * Both sides of every level are powers of two, so wrapping and addressing are
+ * shifts and masks; images of other sizes are stretched to the next power of
+ * two when the texture is made.
+ *
+ * Textures are immutable and may be sampled from any number of threads.
+ */
+public class Texture {
+
+	/** The largest side a texture is stored at; bigger images are shrunk. */
+	public static final int MAX_SIZE = 4096;
+
+	private static final int TILE_SHIFT = 3;
+	private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+	/* the bits of a coordinate within a tile spread to every other bit */
+	private static final int[] MORTON = { 0, 1, 4, 5, 16, 17, 20, 21 };
+
+	private final String name;
+	private final int[][] levels;
+	private final int[] widthShifts, heightShifts, tileRowShifts;
+
+	/** Makes a texture of the given image, which is not kept. */
+	public Texture(String name, BufferedImage image) {
+		this.name = name;
+		int widthShift = sizeShift(image.getWidth()), heightShift = sizeShift(image.getHeight());
+		int count = Math.max(widthShift, heightShift) + 1;
+		levels = new int[count][];
+		widthShifts = new int[count];
+		heightShifts = new int[count];
+		tileRowShifts = new int[count];
+
+		int width = 1 << widthShift, height = 1 << heightShift;
+		int[] texels = new int[width * height];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				texels[y * width + x] = image.getRGB(x * image.getWidth() / width, y * image.getHeight() / height)
+						& 0xffffff;
+		for (int level = 0; level < count; level++) {
+			widthShifts[level] = widthShift;
+			heightShifts[level] = heightShift;
+			tileRowShifts[level] = Math.max(widthShift - TILE_SHIFT, 0);
+			levels[level] = swizzle(texels, widthShift, heightShift);
+			if (level + 1 < count) {
+				texels = halve(texels, widthShift, heightShift);
+				widthShift = Math.max(widthShift - 1, 0);
+				heightShift = Math.max(heightShift - 1, 0);
+			}
+		}
+	}
+
+	/** Loads a texture from an image file in any format ImageIO reads. */
+	public static Texture load(String name, File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException("Not an image: " + file);
+		return new Texture(name, image);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the number of mip levels, the first being the full image. */
+	public int getLevels() {
+		return levels.length;
+	}
+
+	public int getWidth(int level) {
+		return 1 << widthShifts[level];
+	}
+
+	public int getHeight(int level) {
+		return 1 << heightShifts[level];
+	}
+
+	/**
+	 * Returns the mip level to sample where one pixel on screen covers
+	 * texelsPerPixel texels of the full image: the smallest level at which a
+	 * pixel covers no more than about one texel.
+	 */
+	public int level(float texelsPerPixel) {
+		if (!(texelsPerPixel >= 2f))
+			return 0;
+		// the exponent of a float is the floor of its base 2 logarithm
+		int level = Math.getExponent(texelsPerPixel);
+		return level < levels.length ? level : levels.length - 1;
+	}
+
+	/**
+	 * Returns the RGB colour of the texel at the texture coordinates (u, v) in
+	 * the given level, where (0, 0) is the top left of the image and (1, 1) its
+	 * bottom right.
+	 */
+	public int sample(float u, float v, int level) {
+		int widthShift = widthShifts[level], heightShift = heightShifts[level];
+		int x = (int) Math.floor(u * (1 << widthShift)) & ((1 << widthShift) - 1);
+		int y = (int) Math.floor(v * (1 << heightShift)) & ((1 << heightShift) - 1);
+		return levels[level][index(x, y, tileRowShifts[level])];
+	}
+
+	/** Returns the texel at (x, y) in the given level, which must lie inside it. */
+	public int getTexel(int x, int y, int level) {
+		return levels[level][index(x, y, tileRowShifts[level])];
+	}
+
+	private static int index(int x, int y, int tileRowShift) {
+		int tile = ((y >> TILE_SHIFT) << tileRowShift) + (x >> TILE_SHIFT);
+		return (tile << (2 * TILE_SHIFT)) | MORTON[x & TILE_MASK] | (MORTON[y & TILE_MASK] << 1);
+	}
+
+	/* stores a row-major level as tiles, every tile whole even if the level is smaller */
+	private static int[] swizzle(int[] texels, int widthShift, int heightShift) {
+		int width = 1 << widthShift, height = 1 << heightShift;
+		int tileRowShift = Math.max(widthShift - TILE_SHIFT, 0);
+		int tiles = (1 << tileRowShift) * (1 << Math.max(heightShift - TILE_SHIFT, 0));
+		int[] swizzled = new int[tiles << (2 * TILE_SHIFT)];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				swizzled[index(x, y, tileRowShift)] = texels[y * width + x];
+		return swizzled;
+	}
+
+	/* averages each 2x2 block of a row-major level, or 2x1 once a side is down to one texel */
+	private static int[] halve(int[] texels, int widthShift, int heightShift) {
+		int width = 1 << widthShift, height = 1 << heightShift;
+		int newWidth = Math.max(width >> 1, 1), newHeight = Math.max(height >> 1, 1);
+		int dx = width > 1 ? 1 : 0, dy = height > 1 ? width : 0;
+		int[] half = new int[newWidth * newHeight];
+		for (int y = 0; y < newHeight; y++) {
+			for (int x = 0; x < newWidth; x++) {
+				int i = (height > 1 ? 2 * y : y) * width + (width > 1 ? 2 * x : x);
+				int a = texels[i], b = texels[i + dx], c = texels[i + dy], d = texels[i + dy + dx];
+				int r = (((a >> 16) & 0xff) + ((b >> 16) & 0xff) + ((c >> 16) & 0xff) + ((d >> 16) & 0xff) + 2) >> 2;
+				int g = (((a >> 8) & 0xff) + ((b >> 8) & 0xff) + ((c >> 8) & 0xff) + ((d >> 8) & 0xff) + 2) >> 2;
+				int bl = ((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff) + 2) >> 2;
+				half[y * newWidth + x] = (r << 16) | (g << 8) | bl;
+			}
+		}
+		return half;
+	}
+
+	/* the power of two at or above a side, capped at MAX_SIZE */
+	private static int sizeShift(int side) {
+		int shift = 0;
+		while ((1 << shift) < side && (1 << shift) < MAX_SIZE)
+			shift++;
+		return shift;
+	}
+
+	@Override
+	public String toString() {
+		return "texture " + name + " " + getWidth(0) + "x" + getHeight(0);
+	}
+}
+
+// code for comp261 assignments
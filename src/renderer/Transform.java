@@ -29,6 +29,13 @@ public class Transform {
 				{ 0.0f, 1.0f, 0.0f, 0.0f }, { 0.0f, 0.0f, 1.0f, 0.0f } });
 	}
 
+	/* construct a Transformation from its elements, row by row */
+	static Transform of(float m00, float m01, float m02, float m03, float m10, float m11, float m12, float m13,
+			float m20, float m21, float m22, float m23) {
+		return new Transform(new float[][] { { m00, m01, m02, m03 }, { m10, m11, m12, m13 },
+				{ m20, m21, m22, m23 } });
+	}
+
 	/** Construct a translation Transformation based on a vector */
 	public static Transform newTranslation(Vector3D tr) {
 		return newTranslation(tr.x, tr.y, tr.z);
@@ -110,6 +117,35 @@ public class Transform {
 		return new Vector3D(x, y, z);
 	}
 
+	/*
+	 * apply this transform to the point stored as three floats at srcOff in src,
+	 * writing the result at dstOff in dst (which may be the same place)
+	 */
+	public void multiply(float[] src, int srcOff, float[] dst, int dstOff) {
+		float vx = src[srcOff], vy = src[srcOff + 1], vz = src[srcOff + 2];
+		dst[dstOff] = values[0][3] + (values[0][0] * vx + values[0][1] * vy + values[0][2] * vz);
+		dst[dstOff + 1] = values[1][3] + (values[1][0] * vx + values[1][1] * vy + values[1][2] * vz);
+		dst[dstOff + 2] = values[2][3] + (values[2][0] * vx + values[2][1] * vy + values[2][2] * vz);
+	}
+
+	/*
+	 * as multiply, but for a direction rather than a point, so the translation
+	 * is ignored. only valid for normals when the transform has no non-uniform
+	 * scaling.
+	 */
+	public void multiplyDirection(float[] src, int srcOff, float[] dst, int dstOff) {
+		float vx = src[srcOff], vy = src[srcOff + 1], vz = src[srcOff + 2];
+		dst[dstOff] = values[0][0] * vx + values[0][1] * vy + values[0][2] * vz;
+		dst[dstOff + 1] = values[1][0] * vx + values[1][1] * vy + values[1][2] * vz;
+		dst[dstOff + 2] = values[2][0] * vx + values[2][1] * vy + values[2][2] * vz;
+	}
+
+	/* the same transformation as an Affine, for inner loops */
+	public Affine toAffine() {
+		return new Affine(values[0][0], values[0][1], values[0][2], values[0][3], values[1][0], values[1][1],
+				values[1][2], values[1][3], values[2][0], values[2][1], values[2][2], values[2][3]);
+	}
+
 	public String toString() {
 		StringBuilder ans = new StringBuilder();
 		for (int row = 0; row < 3; row++) {
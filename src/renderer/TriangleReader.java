@@ -0,0 +1,144 @@
+package renderer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the triangles of a scene file a batch at a time into caller-supplied
+ * arrays, so a file of any size can be processed with a fixed amount of
+ * memory. Triangles are stored as nine floats each and colours as packed RGB
+ * ints, the layout {@link OffHeapMesh} uses.
+ *
+ * Files in the binary form written by {@link TriangleWriter} are read as well
+ * as text files, telling them apart by their first bytes.
+ */
+public class TriangleReader implements Closeable {
+
+	private final BufferedReader reader;
+	private final FileChannel channel;
+	private final ByteBuffer bytes;
+	private final Vector3D light;
+	private final int[] color = new int[3];
+	private final float[] points = new float[9];
+
+	/**
+	 * Opens the file and reads its light line or header. Throws
+	 * IllegalArgumentException if the file is empty.
+	 */
+	public TriangleReader(File file) throws IOException {
+		if (TriangleWriter.isBinary(file)) {
+			this.reader = null;
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			this.bytes = ByteBuffer.allocateDirect(1024 * TriangleWriter.TRIANGLE_BYTES)
+					.order(TriangleWriter.ORDER);
+			try {
+				bytes.limit(TriangleWriter.HEADER_BYTES);
+				fill();
+				bytes.flip();
+				if (bytes.remaining() < TriangleWriter.HEADER_BYTES)
+					throw new EOFException("Truncated header in " + file);
+				bytes.position(4);
+				if (bytes.getInt() != TriangleWriter.VERSION)
+					throw new IOException("Unknown binary scene version in " + file);
+				this.light = new Vector3D(bytes.getFloat(), bytes.getFloat(), bytes.getFloat());
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			// nothing buffered yet
+			bytes.clear().limit(0);
+			return;
+		}
+		this.channel = null;
+		this.bytes = null;
+		this.reader = new BufferedReader(new FileReader(file), 1 << 16);
+		String line = reader.readLine();
+		if (line == null) {
+			reader.close();
+			throw new IllegalArgumentException("Nothing found in " + file);
+		}
+		this.light = SceneLoader.parseLight(line);
+	}
+
+	public Vector3D getLight() {
+		return light;
+	}
+
+	/**
+	 * Reads up to max triangles, storing their vertices in points (nine floats
+	 * each) and their colours in colors. Returns how many were read, which is
+	 * zero once the file is exhausted.
+	 */
+	public int read(float[] points, int[] colors, int max) throws IOException {
+		if (channel != null)
+			return readBinary(points, colors, max);
+		int count = 0;
+		String line;
+		while (count < max && (line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			SceneLoader.parsePolygon(line, this.points, color);
+			System.arraycopy(this.points, 0, points, count * 9, 9);
+			colors[count] = OffHeapMesh.packColor(color[0], color[1], color[2]);
+			count++;
+		}
+		return count;
+	}
+
+	private int readBinary(float[] points, int[] colors, int max) throws IOException {
+		int count = 0;
+		while (count < max) {
+			if (bytes.remaining() < TriangleWriter.TRIANGLE_BYTES) {
+				bytes.compact();
+				int read = fill();
+				bytes.flip();
+				if (bytes.remaining() < TriangleWriter.TRIANGLE_BYTES) {
+					if (read < 0 && bytes.hasRemaining())
+						throw new EOFException("Truncated triangle at the end of the file");
+					break;
+				}
+			}
+			int n = Math.min(max - count, bytes.remaining() / TriangleWriter.TRIANGLE_BYTES);
+			FloatBuffer floats = bytes.asFloatBuffer();
+			int start = bytes.position();
+			for (int i = 0; i < n; i++) {
+				floats.position(i * TriangleWriter.TRIANGLE_BYTES / 4);
+				floats.get(points, (count + i) * 9, 9);
+				colors[count + i] = bytes.getInt(start + i * TriangleWriter.TRIANGLE_BYTES + 36) & 0xffffff;
+			}
+			bytes.position(start + n * TriangleWriter.TRIANGLE_BYTES);
+			count += n;
+		}
+		return count;
+	}
+
+	/* reads until the buffer is full or the file ends, returning -1 at the end */
+	private int fill() throws IOException {
+		int total = 0;
+		while (bytes.hasRemaining()) {
+			int read = channel.read(bytes);
+			if (read < 0)
+				return total == 0 ? -1 : total;
+			total += read;
+		}
+		return total;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+		else
+			reader.close();
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,144 @@
+package renderer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a scene a triangle at a time, so scenes far larger than memory can
+ * be produced, either as text in the format {@link SceneLoader} reads or in a
+ * binary form that {@link TriangleReader} and {@link OffHeapMesh#load(File)}
+ * read several times faster, as it needs no parsing:
+ *
+ * <pre>
+ * offset 0   the bytes "TRIB"
+ *        4   int version (1)
+ *        8   three floats: the light direction
+ *       20   long: the number of triangles
+ *       28   per triangle nine floats for its vertices, then its colour as an RGB int
+ * </pre>
+ *
+ * All values are little-endian. The binary form has no meshes, instances or
+ * textures; the text form may have meshes and instances written as lines of
+ * their own with {@link #writeLine(String)}.
+ */
+public class TriangleWriter implements Closeable {
+
+	private static final byte[] MAGIC = { 'T', 'R', 'I', 'B' };
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 28;
+	public static final int TRIANGLE_BYTES = 9 * 4 + 4;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final BufferedWriter text;
+	private final FileChannel channel;
+	private final ByteBuffer bytes;
+	private long count;
+
+	private TriangleWriter(BufferedWriter text, FileChannel channel) {
+		this.text = text;
+		this.channel = channel;
+		this.bytes = channel == null ? null : ByteBuffer.allocateDirect(1024 * TRIANGLE_BYTES).order(ORDER);
+	}
+
+	/** Starts a text scene file with the given light direction. */
+	public static TriangleWriter text(File file, Vector3D light) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+		SceneWriter.writeLight(writer, light);
+		return new TriangleWriter(writer, null);
+	}
+
+	/** Starts a binary scene file with the given light direction. */
+	public static TriangleWriter binary(File file, Vector3D light) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		TriangleWriter writer = new TriangleWriter(null, channel);
+		writer.bytes.put(MAGIC).putInt(VERSION).putFloat(light.x).putFloat(light.y).putFloat(light.z).putLong(-1L);
+		return writer;
+	}
+
+	/** Returns true if the file starts as a binary scene does. */
+	public static boolean isBinary(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] start = new byte[4];
+			int n = 0, read;
+			while (n < 4 && (read = in.read(start, n, 4 - n)) > 0)
+				n += read;
+			return n == 4 && Arrays.equals(start, MAGIC);
+		} finally {
+			in.close();
+		}
+	}
+
+	public boolean isBinary() {
+		return channel != null;
+	}
+
+	/**
+	 * Appends a triangle given as nine floats starting at the offset, with its
+	 * reflectance packed as an RGB int.
+	 */
+	public void write(float[] points, int offset, int rgb) throws IOException {
+		count++;
+		if (text != null) {
+			SceneWriter.writePolygon(text, points, offset, rgb);
+			return;
+		}
+		if (bytes.remaining() < TRIANGLE_BYTES)
+			flush();
+		for (int i = 0; i < 9; i++)
+			bytes.putFloat(points[offset + i]);
+		bytes.putInt(rgb & 0xffffff);
+	}
+
+	/**
+	 * Writes a line of a text scene as it is, such as a mesh or instance line.
+	 * Throws an IllegalStateException for a binary scene.
+	 */
+	public void writeLine(String line) throws IOException {
+		if (text == null)
+			throw new IllegalStateException("TriangleWriter: binary scenes have only triangles");
+		text.write(line);
+		text.write('\n');
+	}
+
+	/** Returns the number of triangles written so far. */
+	public long getCount() {
+		return count;
+	}
+
+	private void flush() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+		bytes.clear();
+	}
+
+	/** Finishes the file, filling in the triangle count of a binary scene. */
+	@Override
+	public void close() throws IOException {
+		if (text != null) {
+			text.close();
+			return;
+		}
+		try {
+			flush();
+			bytes.putLong(count).flip();
+			channel.write(bytes, 20);
+		} finally {
+			channel.close();
+		}
+	}
+}
+
+// code for comp261 assignments
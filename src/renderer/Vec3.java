@@ -0,0 +1,89 @@
+package renderer;
+
+/**
+ * A mutable 3D vector, for scratch space in inner loops where creating a new
+ * {@link Vector3D} for every intermediate result would cost an allocation
+ * and a square root each time. The magnitude is only worked out when it is
+ * asked for.
+ * 
+ * Every operation writes its result into this vector and returns it, so calls
+ * can be chained. The arithmetic is the same as Vector3D's, so results agree
+ * with it exactly.
+ */
+public final class Vec3 {
+	public float x;
+	public float y;
+	public float z;
+
+	public Vec3() {
+	}
+
+	public Vec3(float x, float y, float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public Vec3 set(float x, float y, float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	public Vec3 set(Vector3D v) {
+		return set(v.x, v.y, v.z);
+	}
+
+	/** Loads the three floats at offset in src. */
+	public Vec3 load(float[] src, int offset) {
+		return set(src[offset], src[offset + 1], src[offset + 2]);
+	}
+
+	/** Stores this vector as three floats at offset in dst. */
+	public void store(float[] dst, int offset) {
+		dst[offset] = x;
+		dst[offset + 1] = y;
+		dst[offset + 2] = z;
+	}
+
+	/** Sets this vector to a minus b. */
+	public Vec3 sub(Vec3 a, Vec3 b) {
+		return set(a.x - b.x, a.y - b.y, a.z - b.z);
+	}
+
+	/** Sets this vector to a plus b. */
+	public Vec3 add(Vec3 a, Vec3 b) {
+		return set(a.x + b.x, a.y + b.y, a.z + b.z);
+	}
+
+	/** Sets this vector to the cross product of a and b; either may be this. */
+	public Vec3 cross(Vec3 a, Vec3 b) {
+		return set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+	}
+
+	public float dot(Vec3 other) {
+		return x * other.x + y * other.y + z * other.z;
+	}
+
+	/** Works out the magnitude, as the Vector3D constructor does. */
+	public float mag() {
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/** The cosine of the angle to other, as {@link Vector3D#cosTheta} gives it. */
+	public float cosTheta(Vector3D other) {
+		return (x * other.x + y * other.y + z * other.z) / mag() / other.mag;
+	}
+
+	public Vector3D toVector3D() {
+		return new Vector3D(x, y, z);
+	}
+
+	@Override
+	public String toString() {
+		return "Vec3:(" + x + ',' + y + ',' + z + ')';
+	}
+}
+
+// code for comp261 assignments
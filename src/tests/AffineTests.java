@@ -0,0 +1,112 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.Affine;
+import renderer.Transform;
+import renderer.Vec3;
+import renderer.Vector3D;
+
+public class AffineTests {
+
+	private static final Transform[] TRANSFORMS = { Transform.identity(), Transform.newTranslation(3f, -7.5f, 11f),
+			Transform.newScale(0.3f, 2f, -1.5f), Transform.newXRotation(0.7f), Transform.newYRotation(-2.1f),
+			Transform.newZRotation(1.3f),
+			Transform.newScale(1.7f, 1.7f, 1.7f).compose(Transform.newXRotation(0.4f)
+					.compose(Transform.newYRotation(0.9f))).compose(Transform.newTranslation(-40f, 12f, 5f)) };
+
+	@Test
+	/** Bulk transforms give exactly what Transform gives, point by point. */
+	public void testMultiplyIntoMatchesTransform() {
+		Random random = new Random(35);
+		float[] points = new float[30];
+		for (int i = 0; i < points.length; i++)
+			points[i] = (random.nextFloat() - 0.5f) * 1000f;
+		for (Transform t : TRANSFORMS) {
+			float[] bulk = new float[points.length + 3];
+			t.toAffine().multiplyInto(points, 0, bulk, 3, 10);
+			float[] directions = points.clone();
+			t.toAffine().multiplyDirectionsInto(directions, 0, directions, 0, 10);
+			for (int p = 0; p < 30; p += 3) {
+				Vector3D expected = t.multiply(new Vector3D(points[p], points[p + 1], points[p + 2]));
+				assertEquals(expected.x, bulk[p + 3], 0f);
+				assertEquals(expected.y, bulk[p + 4], 0f);
+				assertEquals(expected.z, bulk[p + 5], 0f);
+
+				float[] direction = new float[3];
+				t.multiplyDirection(points, p, direction, 0);
+				assertEquals(direction[0], directions[p], 0f);
+				assertEquals(direction[1], directions[p + 1], 0f);
+				assertEquals(direction[2], directions[p + 2], 0f);
+			}
+		}
+	}
+
+	@Test
+	/** Composing Affines matches composing Transforms. */
+	public void testCompose() {
+		Vector3D v = new Vector3D(12f, -3f, 40f);
+		for (Transform a : TRANSFORMS) {
+			for (Transform b : TRANSFORMS) {
+				Vector3D expected = a.compose(b).multiply(v);
+				Vector3D actual = a.toAffine().compose(b.toAffine()).multiply(v);
+				assertEquals(expected.x, actual.x, 0f);
+				assertEquals(expected.y, actual.y, 0f);
+				assertEquals(expected.z, actual.z, 0f);
+				assertEquals(expected, a.toAffine().compose(b.toAffine()).toTransform().multiply(v));
+			}
+		}
+	}
+
+	@Test
+	/** The fused operations agree with building and composing the matrices. */
+	public void testFusedOperations() {
+		Vector3D v = new Vector3D(12f, -3f, 40f);
+		Affine view = TRANSFORMS[6].toAffine();
+		assertEquals(Transform.newScale(1.5f, 1.5f, 1.5f).compose(Transform.newXRotation(0.4f))
+				.compose(Transform.newYRotation(-1.2f)).multiply(v), Affine.scaledRotation(1.5f, 0.4f, -1.2f).multiply(v));
+		assertEquals(Affine.scale(2f, 3f, 4f).compose(view).multiply(v), view.preScale(2f, 3f, 4f).multiply(v));
+		assertEquals(Affine.translation(2f, 3f, 4f).compose(view).multiply(v),
+				view.preTranslate(2f, 3f, 4f).multiply(v));
+	}
+
+	@Test
+	/** Scratch vectors compute what Vector3D does, in place. */
+	public void testVec3() {
+		Vector3D a = new Vector3D(1.5f, -2f, 7f), b = new Vector3D(-4f, 0.25f, 3f);
+		Vec3 va = new Vec3().set(a), vb = new Vec3().set(b);
+		assertEquals(a.minus(b), new Vec3().sub(va, vb).toVector3D());
+		assertEquals(a.plus(b), new Vec3().add(va, vb).toVector3D());
+		assertEquals(a.dotProduct(b), va.dot(vb), 0f);
+		assertEquals(a.mag, va.mag(), 0f);
+		assertEquals(a.cosTheta(b), va.cosTheta(b), 0f);
+		Vec3 cross = new Vec3().set(a);
+		assertSame(cross, cross.cross(cross, vb));
+		assertEquals(a.crossProduct(b), cross.toVector3D());
+		assertEquals(TRANSFORMS[6].multiply(a), TRANSFORMS[6].toAffine().multiplyInto(new Vec3().set(a)).toVector3D());
+	}
+
+	@Test
+	/** Inverting undoes the transform, and singular transforms are refused. */
+	public void testInvert() {
+		Vector3D v = new Vector3D(12f, -3f, 40f);
+		for (Transform t : TRANSFORMS) {
+			Affine a = t.toAffine();
+			Vector3D back = a.invert().multiply(a.multiply(v));
+			assertEquals(v.x, back.x, 1e-3f);
+			assertEquals(v.y, back.y, 1e-3f);
+			assertEquals(v.z, back.z, 1e-3f);
+		}
+		try {
+			Affine.scale(1f, 0f, 1f).invert();
+			fail("a flattening transform has no inverse");
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -11,7 +11,17 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 
 @RunWith(Suite.class)
-@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class })
+@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class,
+		FrameSinkTests.class, RenderServiceTests.class, SceneTests.class,
+		OffHeapMeshTests.class, StreamingRendererTests.class,
+		ParallelSceneLoaderTests.class, ProgressiveLoaderTests.class,
+		SortLastRendererTests.class, GeometryStageTests.class,
+		AffineTests.class, MortonOrderTests.class,
+		ScanlineRendererTests.class, InstancingTests.class,
+		ShadowTests.class, TextureTests.class,
+		BatchRendererTests.class,
+		RenderFarmTests.class, StressSceneTests.class,
+		SceneSidecarTests.class, SceneReloaderTests.class, RawFrameTests.class })
 public class AllTests {
 
 }
@@ -0,0 +1,131 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.BatchRenderer;
+import renderer.BatchRenderer.Job;
+import renderer.BatchRenderer.Result;
+import renderer.MemoryBudget;
+
+public class BatchRendererTests {
+
+	private static File write(File file, String text) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		writer.write(text);
+		writer.close();
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	@Test
+	/** Manifest lines give the image size and optionally the camera and frame count. */
+	public void testManifest() throws IOException {
+		File directory = Files.createTempDirectory("batch").toFile();
+		try {
+			File manifest = write(new File(directory, "jobs.txt"),
+					"# thumbnails\n\na.txt a.png 64 48\nb.txt out/b 32 32 0.5 1.0 2 12\n");
+			List<Job> jobs = BatchRenderer.readManifest(manifest);
+			assertEquals(2, jobs.size());
+			assertEquals(new File(directory, "a.txt"), jobs.get(0).scene);
+			assertEquals(64, jobs.get(0).size.width);
+			assertEquals(1, jobs.get(0).frames);
+			assertEquals(12, jobs.get(1).frames);
+			assertEquals(2f, jobs.get(1).camera.scale, 0f);
+
+			write(manifest, "a.txt a.png 64 48\na.txt a.png 64\n");
+			try {
+				BatchRenderer.readManifest(manifest);
+				fail("a short line should be rejected");
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(":2:"));
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	/** Good jobs write their output, bad ones are reported and do not stop the rest. */
+	public void testRun() throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("batch").toFile();
+		try {
+			File scene = new File("data/tetras.txt").getAbsoluteFile();
+			write(new File(directory, "bad.txt"), "0 0 -1\n1 2 3 oops\n");
+			File manifest = write(new File(directory, "jobs.txt"),
+					scene + " thumb.png 40 30\n" + "missing.txt missing.png 40 30\n" + "bad.txt bad.png 40 30\n"
+							+ scene + " turn 20 20 0 0 1 3\n");
+
+			final List<Integer> done = Collections.synchronizedList(new ArrayList<Integer>());
+			List<Result> results = new BatchRenderer(64 << 20, 2).run(BatchRenderer.readManifest(manifest),
+					new BatchRenderer.Progress() {
+						@Override
+						public void finished(Result result, int count, int total) {
+							assertEquals(4, total);
+							done.add(count);
+						}
+					});
+			assertEquals(4, results.size());
+			assertEquals(4, done.size());
+			assertTrue(results.get(0).error + "", results.get(0).succeeded());
+			assertFalse(results.get(1).succeeded());
+			assertFalse(results.get(2).succeeded());
+			assertTrue(results.get(3).error + "", results.get(3).succeeded());
+			assertEquals("thumb.png", results.get(0).job.output.getName());
+
+			BufferedImage thumb = ImageIO.read(new File(directory, "thumb.png"));
+			assertEquals(40, thumb.getWidth());
+			assertEquals(30, thumb.getHeight());
+			assertEquals(3, new File(directory, "turn").listFiles().length);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	/** A budget blocks takers until enough is given back, and caps oversized requests. */
+	public void testMemoryBudget() throws InterruptedException {
+		final MemoryBudget budget = new MemoryBudget(100);
+		assertEquals(100, budget.acquire(500));
+		final CountDownLatch acquired = new CountDownLatch(1);
+		Thread waiter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					budget.acquire(30);
+					acquired.countDown();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		waiter.start();
+		assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+		budget.release(100);
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		assertEquals(30, budget.getUsed());
+		waiter.join();
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,270 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.AsyncFrameSink;
+import renderer.Camera;
+import renderer.FramePool;
+import renderer.FrameSink;
+import renderer.PngEncoder;
+import renderer.PngSequenceWriter;
+import renderer.RawVideoWriter;
+import renderer.SceneLoader;
+import renderer.SequenceRenderer;
+
+public class FrameSinkTests {
+
+	private static BufferedImage solid(int width, int height, int rgb) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				image.setRGB(x, y, rgb);
+		return image;
+	}
+
+	@Test
+	/** A Y4M stream is a header followed by a FRAME marker and three planes per frame. */
+	public void testY4MLayout() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RawVideoWriter writer = new RawVideoWriter(out, RawVideoWriter.Format.Y4M, 25);
+		writer.writeFrame(0, solid(4, 2, 0xffffff));
+		writer.writeFrame(1, solid(4, 2, 0x000000));
+		writer.close();
+
+		String header = "YUV4MPEG2 W4 H2 F25:1 Ip A1:1 C444\n";
+		byte[] bytes = out.toByteArray();
+		assertEquals(header.length() + 2 * ("FRAME\n".length() + 4 * 2 * 3), bytes.length);
+		assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+
+		// white is full-scale studio luma with neutral chroma, black is the floor
+		int first = header.length() + "FRAME\n".length();
+		assertEquals(235, bytes[first] & 0xff);
+		assertEquals(128, bytes[first + 8] & 0xff);
+		int second = first + 24 + "FRAME\n".length();
+		assertEquals(16, bytes[second] & 0xff);
+	}
+
+	@Test
+	/** Raw RGB output is just the packed pixels, row by row. */
+	public void testRawRGB() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RawVideoWriter writer = new RawVideoWriter(out, RawVideoWriter.Format.RGB, 25);
+		writer.writeFrame(0, solid(3, 3, 0x102030));
+		writer.close();
+
+		byte[] bytes = out.toByteArray();
+		assertEquals(27, bytes.length);
+		assertEquals(0x10, bytes[0]);
+		assertEquals(0x20, bytes[1]);
+		assertEquals(0x30, bytes[2]);
+	}
+
+	@Test
+	/** A single worker passes every frame on, in order, before close returns. */
+	public void testAsyncKeepsOrder() throws IOException {
+		final List<Integer> written = new ArrayList<Integer>();
+		FrameSink recorder = new FrameSink() {
+			public void writeFrame(int index, BufferedImage frame) {
+				written.add(index);
+			}
+
+			public void close() {
+			}
+		};
+
+		AsyncFrameSink sink = new AsyncFrameSink(recorder, 2, 1);
+		BufferedImage frame = solid(1, 1, 0);
+		for (int i = 0; i < 50; i++)
+			sink.writeFrame(i, frame);
+		sink.close();
+
+		assertEquals(50, written.size());
+		for (int i = 0; i < 50; i++)
+			assertEquals(Integer.valueOf(i), written.get(i));
+	}
+
+	@Test(expected = IOException.class)
+	/** A failure on a worker thread is reported back to the renderer. */
+	public void testAsyncReportsFailure() throws IOException {
+		FrameSink broken = new FrameSink() {
+			public void writeFrame(int index, BufferedImage frame) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			public void close() {
+			}
+		};
+
+		AsyncFrameSink sink = new AsyncFrameSink(broken, 1, 1);
+		sink.writeFrame(0, solid(1, 1, 0));
+		sink.close();
+	}
+
+	@Test
+	/** After an Error on a worker, the frames still queued go back to the pool and close does not hang. */
+	public void testAsyncSurvivesError() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		FrameSink broken = new FrameSink() {
+			public void writeFrame(int index, BufferedImage frame) throws IOException {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				throw new AssertionError("encoder crashed");
+			}
+
+			public void close() {
+			}
+		};
+		FramePool pool = new FramePool(4, 4, 3);
+		final AsyncFrameSink sink = new AsyncFrameSink(broken, 2, 1, pool);
+		sink.writeFrame(0, pool.acquire());
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		// frame 0 is with the worker, and these two fill the queue behind it
+		sink.writeFrame(1, pool.acquire());
+		sink.writeFrame(2, pool.acquire());
+		release.countDown();
+
+		final IOException[] thrown = new IOException[1];
+		Thread closer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sink.close();
+				} catch (IOException e) {
+					thrown[0] = e;
+				}
+			}
+		});
+		closer.setDaemon(true);
+		closer.start();
+		closer.join(10000);
+		assertFalse("close should not block", closer.isAlive());
+		assertNotNull(thrown[0]);
+		for (int i = 0; i < 3; i++)
+			pool.acquire();
+		assertEquals(3, pool.getAllocated());
+	}
+
+	private static BufferedImage noise(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				image.setRGB(x, y, (x * 7919 + y * 104729) * 31 & 0xffffff);
+		return image;
+	}
+
+	@Test
+	/** PNGs of every level read back as the same pixels, smaller the higher the level. */
+	public void testPngLevels() throws IOException {
+		int[] sizes = new int[10];
+		for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR }) {
+			BufferedImage image = noise(37, 23, type);
+			for (int level : new int[] { 0, 1, 9 }) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				PngEncoder encoder = new PngEncoder(level);
+				encoder.write(image, out);
+				// an encoder is reused from one image to the next
+				out.reset();
+				encoder.write(image, out);
+				encoder.close();
+				sizes[level] = out.size();
+				BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+				for (int x = 0; x < 37; x++)
+					for (int y = 0; y < 23; y++)
+						assertEquals(image.getRGB(x, y), read.getRGB(x, y));
+			}
+			assertTrue(sizes[9] <= sizes[1] && sizes[1] < sizes[0]);
+		}
+	}
+
+	@Test
+	/** A sequence reuses a few pooled images for every frame, and writes them all. */
+	public void testPooledSequence() throws IOException {
+		File directory = Files.createTempDirectory("frames").toFile();
+		Dimension size = new Dimension(64, 48);
+		AsyncFrameSink sink = SequenceRenderer.openSink(directory, size, 1);
+		SequenceRenderer.render(SceneLoader.load(new File("data/monkey.txt")), Camera.DEFAULT.turntable(40), size,
+				SequenceRenderer.DEFAULT_LIGHT, SequenceRenderer.DEFAULT_LIGHT, sink);
+		sink.close();
+
+		FramePool pool = sink.getPool();
+		assertTrue(pool.getAllocated() < 40);
+		PngSequenceWriter names = new PngSequenceWriter(directory, "frame_");
+		for (int i = 0; i < 40; i++) {
+			BufferedImage frame = ImageIO.read(names.fileFor(i));
+			assertEquals(64, frame.getWidth());
+			names.fileFor(i).delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	/** Writing only waits once the queue is full. */
+	public void testBackpressure() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		FrameSink slow = new FrameSink() {
+			public void writeFrame(int index, BufferedImage frame) throws IOException {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+
+			public void close() {
+			}
+		};
+		final AsyncFrameSink sink = new AsyncFrameSink(slow, 2, 1);
+		final BufferedImage frame = solid(1, 1, 0);
+		sink.writeFrame(0, frame);
+		sink.writeFrame(1, frame);
+		assertEquals(0, sink.getWaits());
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		// the worker holds frame 0 and the queue frame 1, so of two more only one fits
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sink.writeFrame(2, frame);
+					sink.writeFrame(3, frame);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		writer.start();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (sink.getWaits() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+		assertEquals(1, sink.getWaits());
+		release.countDown();
+		writer.join();
+		sink.close();
+	}
+}
+
+// code for COMP261 assignments
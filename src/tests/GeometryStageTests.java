@@ -0,0 +1,104 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.GeometryStage;
+import renderer.Pipeline;
+import renderer.ScanlineRenderer;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class GeometryStageTests {
+
+	private static final Color LIGHT = new Color(128, 128, 128);
+	private static final Color AMBIENT = new Color(60, 80, 100);
+	private static final Dimension SIZE = new Dimension(200, 150);
+
+	@Test
+	/** The parallel stage draws exactly what the Scene stages draw. */
+	public void testMatchesSceneStages() throws IOException {
+		Transform view = Transform.newScale(1.3f, 1.3f, 1.3f)
+				.compose(Transform.newXRotation(0.5f).compose(Transform.newYRotation(-0.8f)));
+		Vector3D offset = new Vector3D(7f, -4f, 0f);
+		for (String name : new String[] { "bigboxes", "monkey", "shapes" }) {
+			Scene scene = SceneLoader.load(new File("data/" + name + ".txt"));
+			assertRendersAlike(Pipeline.autoScaleAndTranslate(scene, scene.getBound(), SIZE), view, offset);
+		}
+	}
+
+	@Test
+	/** Scenes spanning several batches are split and put back in order. */
+	public void testManyBatches() throws IOException {
+		Scene scene = SceneLoader.load(new File("data/monkey.txt"));
+		List<Polygon> copies = new ArrayList<Polygon>();
+		while (copies.size() < GeometryStage.BATCH_SIZE * 3 + 17) {
+			float shift = copies.size() / 100;
+			for (Polygon p : scene.getPolygons()) {
+				Vector3D[] v = p.getVertices();
+				copies.add(new Polygon(v[0].plus(new Vector3D(shift, 0f, 0f)), v[1].plus(new Vector3D(shift, 0f, 0f)),
+						v[2].plus(new Vector3D(shift, 0f, 0f)), p.getReflectance()));
+			}
+		}
+		Scene big = new Scene(copies, scene.getLight());
+		assertRendersAlike(Pipeline.autoScaleAndTranslate(big, big.getBound(), SIZE),
+				Transform.newYRotation(2.0f), new Vector3D(0f, 0f, 0f));
+	}
+
+	@Test
+	/** The stage reuses its arrays when a smaller scene follows a larger one. */
+	public void testReuse() throws IOException {
+		GeometryStage stage = new GeometryStage();
+		Scene big = SceneLoader.load(new File("data/monkey.txt"));
+		Scene small = SceneLoader.load(new File("data/tetras.txt"));
+		stage.process(big.getPolygons(), Transform.identity(), big.getLight(), new Vector3D(0f, 0f, 0f), SIZE, LIGHT,
+				AMBIENT);
+		stage.process(small.getPolygons(), Transform.identity(), small.getLight(), new Vector3D(0f, 0f, 0f), SIZE,
+				LIGHT, AMBIENT);
+		assertEquals(small.getPolygons().size(), stage.size());
+	}
+
+	private void assertRendersAlike(Scene fitted, Transform view, Vector3D offset) {
+		Scene viewed = new Scene(Pipeline.transformScene(fitted, view).getPolygons(), fitted.getLight());
+		Scene centred = Pipeline.autoTranslate(viewed, viewed.getBound(), SIZE);
+		Scene moved = Pipeline.translateScene(centred, offset.x, offset.y, offset.z);
+		Color[][] expected = new Color[SIZE.width][SIZE.height];
+		float[][] expectedDepth = new float[SIZE.width][SIZE.height];
+		Pipeline.clearBuffers(expected, expectedDepth);
+		Pipeline.rasterize(moved, LIGHT, AMBIENT, expected, expectedDepth);
+
+		GeometryStage stage = new GeometryStage();
+		stage.process(fitted.getPolygons(), view, fitted.getLight(), offset, SIZE, LIGHT, AMBIENT);
+		Color[][] actual = new Color[SIZE.width][SIZE.height];
+		float[][] actualDepth = new float[SIZE.width][SIZE.height];
+		Pipeline.clearBuffers(actual, actualDepth);
+		stage.rasterize(actual, actualDepth);
+
+		assertEquals(moved.getPolygons().size(), stage.size());
+		for (int t = 0; t < stage.size(); t++)
+			assertEquals(!Pipeline.isHidden(moved.getPolygons().get(t)), stage.isVisible(t));
+		BufferedImage scanned = new BufferedImage(SIZE.width, SIZE.height, BufferedImage.TYPE_INT_RGB);
+		stage.rasterize(new ScanlineRenderer(), scanned);
+		for (int x = 0; x < SIZE.width; x++) {
+			for (int y = 0; y < SIZE.height; y++) {
+				assertEquals(expected[x][y], actual[x][y]);
+				assertEquals(expectedDepth[x][y], actualDepth[x][y], 0f);
+				assertEquals(expected[x][y].getRGB(), scanned.getRGB(x, y));
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
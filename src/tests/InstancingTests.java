@@ -0,0 +1,113 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.ParallelSceneLoader;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Instance;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+
+public class InstancingTests {
+
+	private static final File BOXGRID = new File("data/boxgrid.txt");
+
+	@Test
+	/** Instances share one copy of their mesh but still list every polygon. */
+	public void testSharedMesh() throws IOException {
+		Scene scene = SceneLoader.load(BOXGRID);
+		assertEquals(36, scene.getInstances().size());
+		assertTrue(scene.getOwnPolygons().isEmpty());
+		for (Instance instance : scene.getInstances())
+			assertSame(scene.getInstances().get(0).getMesh(), instance.getMesh());
+		int meshSize = scene.getInstances().get(0).getMesh().getPolygons().size();
+		assertEquals(12, meshSize);
+		assertEquals(36 * meshSize, scene.getPolygons().size());
+
+		// recoloured instances take their colour, the others keep the mesh's
+		Instance plain = scene.getInstances().get(0);
+		assertNull(plain.getColor());
+		assertEquals(plain.getMesh().getPolygons().get(3).getReflectance(),
+				scene.getPolygons().get(3).getReflectance());
+		Instance coloured = scene.getInstances().get(1);
+		assertEquals(new Color(60, 160, 220), coloured.getColor());
+		assertEquals(coloured.getColor(), scene.getPolygons().get(meshSize + 5).getReflectance());
+	}
+
+	@Test
+	/** The bounds are those of the polygons the instances place. */
+	public void testBound() throws IOException {
+		Scene scene = SceneLoader.load(BOXGRID);
+		Scene flat = new Scene(new ArrayList<Polygon>(scene.getPolygons()), scene.getLight());
+		assertArrayEquals(flat.getBound(), scene.getBound(), 0f);
+	}
+
+	@Test
+	/** Drawing instances directly covers the same pixels as drawing the copies. */
+	public void testRenderMatchesFlattened() throws IOException {
+		Scene scene = SceneLoader.load(BOXGRID);
+		Scene flat = new Scene(new ArrayList<Polygon>(scene.getPolygons()), scene.getLight());
+		Color light = new Color(128, 128, 128);
+		for (Camera camera : new Camera[] { Camera.DEFAULT, new Camera(0.5f, 0.7f, 1.3f, 4f, -2f),
+				new Camera(0.2f, -0.4f, 3f, 100f, 50f) }) {
+			FrameBuffer instanced = new FrameBuffer(160, 120);
+			FrameBuffer copies = new FrameBuffer(160, 120);
+			Pipeline.renderFrame(scene, scene.getBound(), camera, light, light, instanced);
+			Pipeline.renderFrame(flat, flat.getBound(), camera, light, light, copies);
+			int different = 0, drawn = 0;
+			for (int x = 0; x < 160; x++) {
+				for (int y = 0; y < 120; y++) {
+					boolean a = instanced.color[x][y] == Pipeline.BACKGROUND;
+					boolean b = copies.color[x][y] == Pipeline.BACKGROUND;
+					different += a != b ? 1 : 0;
+					drawn += a ? 0 : 1;
+				}
+			}
+			assertTrue(drawn > 0);
+			assertTrue("pixels covered differently: " + different, different < 160 * 120 / 200);
+		}
+	}
+
+	@Test
+	/** The parallel loader hands scenes with instances to the plain loader. */
+	public void testParallelLoad() throws IOException {
+		Scene scene = ParallelSceneLoader.loadScene(BOXGRID, 64);
+		assertEquals(36, scene.getInstances().size());
+		assertEquals(36 * 12, ParallelSceneLoader.loadMesh(BOXGRID, 64).size());
+	}
+
+	@Test
+	/** Malformed declarations are rejected. */
+	public void testBadDeclarations() throws IOException {
+		String polygon = "0 0 0 1 0 0 0 1 0 10 20 30\n";
+		for (String body : new String[] { "instance box 0 0 0\n", "mesh box\n" + polygon,
+				"mesh box\n" + polygon + "end\ninstance box 0 0\n",
+				"mesh box\n" + polygon + "end\nmesh box\n" + polygon + "end\n" }) {
+			try {
+				SceneLoader.read(new BufferedReader(new StringReader("0 0 1\n" + body)));
+				fail("accepted " + body);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		Scene scene = SceneLoader
+				.read(new BufferedReader(new StringReader("0 0 1\nmesh box\n" + polygon + "end\n" + polygon
+						+ "instance box 5 0 0 0 0 0 2 1 2 3\n")));
+		assertEquals(1, scene.getOwnPolygons().size());
+		assertEquals(new Color(1, 2, 3), scene.getPolygons().get(1).getReflectance());
+		assertEquals(7f, scene.getPolygons().get(1).getVertices()[1].x, 0f);
+	}
+}
+
+// code for COMP261 assignments
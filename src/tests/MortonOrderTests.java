@@ -0,0 +1,24 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import renderer.MortonOrder;
+
+public class MortonOrderTests {
+
+	@Test
+	/** Keys carry their index, and points in one cell keep index order. */
+	public void testKeys() {
+		float[] bound = { 0f, 1f, 0f, 1f, 0f, 1f };
+		long near = MortonOrder.key(0.1f, 0.1f, 0.1f, bound, 5);
+		long far = MortonOrder.key(0.9f, 0.9f, 0.9f, bound, 2);
+		assertEquals(5, MortonOrder.index(near));
+		assertEquals(2, MortonOrder.index(far));
+		assertTrue(near < far);
+		assertTrue(MortonOrder.key(0.1f, 0.1f, 0.1f, bound, 4) < near);
+	}
+}
+
+// code for COMP261 assignments
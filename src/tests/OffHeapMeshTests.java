@@ -0,0 +1,139 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.OffHeapMesh;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.Vector3D;
+
+public class OffHeapMeshTests {
+
+	@Test
+	/** Loading a file into a mesh keeps every triangle, colour and the bounds. */
+	public void testLoadMatchesScene() throws IOException {
+		File file = new File("data/monkey.txt");
+		Scene scene = SceneLoader.load(file);
+		OffHeapMesh mesh = OffHeapMesh.load(file);
+
+		assertEquals(scene.getPolygons().size(), mesh.size());
+		assertEquals(scene.getLight(), mesh.getLight());
+		assertArrayEquals(scene.getBound(), mesh.getBound(), 0f);
+
+		float[] v = new float[9];
+		float[] n = new float[3];
+		for (int t = 0; t < mesh.size(); t += 97) {
+			Polygon p = scene.getPolygons().get(t);
+			mesh.getPositions(t, v, 0);
+			for (int i = 0; i < 3; i++)
+				assertEquals(p.getVertices()[i], new Vector3D(v[i * 3], v[i * 3 + 1], v[i * 3 + 2]));
+			mesh.getNormal(t, n, 0);
+			assertEquals(Pipeline.getNormal(p), new Vector3D(n[0], n[1], n[2]));
+			assertEquals(p.getReflectance().getRGB() & 0xffffff, mesh.getColor(t));
+		}
+	}
+
+	@Test
+	/** Meshes larger than one storage chunk are addressed correctly. */
+	public void testManyChunks() {
+		OffHeapMesh mesh = new OffHeapMesh(new Vector3D(0, 0, -1));
+		float[] points = new float[9];
+		int count = 150000;
+		for (int t = 0; t < count; t++) {
+			points[0] = t;
+			mesh.add(points, 0, t & 0xffffff);
+		}
+		assertEquals(count, mesh.size());
+		mesh.getPositions(count - 1, points, 0);
+		assertEquals(count - 1, points[0], 0f);
+		assertEquals(70000, mesh.getColor(70000));
+		assertEquals(count - 1, mesh.getBound()[1], 0f);
+	}
+
+	@Test
+	/** The mesh renderer covers the same pixels as the scene renderer. */
+	public void testRenderMatchesScene() throws IOException {
+		File file = new File("data/bigboxes.txt");
+		Scene scene = SceneLoader.load(file);
+		OffHeapMesh mesh = OffHeapMesh.load(file);
+		Camera camera = new Camera(0.3f, 0.8f, 1.1f, 4f, -2f);
+		Color light = new Color(128, 128, 128);
+
+		FrameBuffer fromScene = new FrameBuffer(160, 120);
+		FrameBuffer fromMesh = new FrameBuffer(160, 120);
+		Pipeline.renderFrame(scene, scene.getBound(), camera, light, light, fromScene);
+		Pipeline.renderFrame(mesh, camera, light, light, fromMesh);
+
+		int different = 0;
+		for (int x = 0; x < 160; x++)
+			for (int y = 0; y < 120; y++)
+				if ((fromScene.color[x][y] == Pipeline.BACKGROUND) != (fromMesh.color[x][y] == Pipeline.BACKGROUND))
+					different++;
+		assertTrue("pixels covered differently: " + different, different < 160 * 120 / 200);
+	}
+
+	@Test
+	/** Clusters gather triangles facing the same way, whatever order they were added in. */
+	public void testClusterCones() {
+		OffHeapMesh mesh = new OffHeapMesh(new Vector3D(0, 0, -1));
+		// triangles tilted a little from +z, alternating with ones facing -z
+		float[] points = new float[9];
+		for (int t = 0; t < OffHeapMesh.CLUSTER_SIZE * 4; t++) {
+			float tilt = (t % 7) * 0.05f, x = (t % 2) * 100f;
+			float[] tri = t % 2 == 0 ? new float[] { 0, 0, 0, 1, 0, 0, 0, 1, tilt }
+					: new float[] { x, 0, 0, x, 1, 0, x + 1, 0, 0 };
+			System.arraycopy(tri, 0, points, 0, 9);
+			mesh.add(points, 0, 0);
+		}
+		assertEquals(4, mesh.clusterCount());
+		float[] n = new float[3];
+		for (int t = 0; t < mesh.size(); t++) {
+			mesh.getNormal(t, n, 0);
+			assertEquals(n[2] > 0, mesh.clusterFacesAway(mesh.getCluster(t), 0f, 0f, 1f));
+			assertEquals(n[2] < 0, mesh.clusterFacesAway(mesh.getCluster(t), 0f, 0.1f, -3f));
+			assertFalse(mesh.clusterFacesAway(mesh.getCluster(t), 1f, 0f, 0f));
+		}
+
+		// adding a triangle works the clusters out again; a degenerate
+		// triangle stops its cluster ever being rejected
+		mesh.add(new float[9], 0, 0);
+		assertEquals(5, mesh.clusterCount());
+		int last = mesh.getCluster(mesh.size() - 1);
+		assertFalse(mesh.clusterFacesAway(last, 0f, 0f, 1f));
+		assertFalse(mesh.clusterFacesAway(last, 0f, 0f, -1f));
+	}
+
+	@Test
+	/** Rejected clusters never hold a triangle that faces the viewer. */
+	public void testClusterRejectionIsConservative() throws IOException {
+		OffHeapMesh mesh = OffHeapMesh.load(new File("data/monkey.txt"));
+		float[] n = new float[3];
+		int rejected = 0;
+		for (int i = 0; i < 200; i++) {
+			double a = i * 0.7, b = i * 0.31;
+			float dx = (float) (Math.cos(a) * Math.cos(b)), dy = (float) Math.sin(b);
+			float dz = (float) (Math.sin(a) * Math.cos(b));
+			mesh.clusterCount();
+			for (int t = 0; t < mesh.size(); t++) {
+				if (!mesh.clusterFacesAway(mesh.getCluster(t), dx, dy, dz))
+					continue;
+				rejected++;
+				mesh.getNormal(t, n, 0);
+				assertTrue(dx * n[0] + dy * n[1] + dz * n[2] > 0);
+			}
+		}
+		assertTrue(rejected > 0);
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,71 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.OffHeapMesh;
+import renderer.ParallelSceneLoader;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+
+public class ParallelSceneLoaderTests {
+
+	private static void assertSameScene(Scene expected, Scene actual) {
+		assertEquals(expected.getLight(), actual.getLight());
+		assertArrayEquals(expected.getBound(), actual.getBound(), 0f);
+		List<Polygon> a = expected.getPolygons();
+		List<Polygon> b = actual.getPolygons();
+		assertEquals(a.size(), b.size());
+		for (int i = 0; i < a.size(); i++) {
+			assertArrayEquals(a.get(i).getVertices(), b.get(i).getVertices());
+			assertEquals(a.get(i).getReflectance(), b.get(i).getReflectance());
+		}
+	}
+
+	@Test
+	/** Splitting a file into many small ranges keeps every polygon in order. */
+	public void testSmallChunksKeepOrder() throws IOException {
+		for (String name : new String[] { "ball", "car", "monkey", "tetras" }) {
+			File file = new File("data/" + name + ".txt");
+			Scene expected = SceneLoader.load(file);
+			assertSameScene(expected, ParallelSceneLoader.loadScene(file, 1000));
+			assertSameScene(expected, ParallelSceneLoader.loadScene(file));
+		}
+	}
+
+	@Test
+	/** Windows line breaks, blank lines and a missing final break are all fine. */
+	public void testAwkwardLineBreaks() throws IOException {
+		File file = File.createTempFile("scene", ".txt");
+		file.deleteOnExit();
+		FileWriter out = new FileWriter(file);
+		out.write("0 0 -1\r\n");
+		for (int i = 0; i < 200; i++)
+			out.write(i + " 0 0 1 " + i + " 0 0 1 " + (-i) + " 10 20 30" + (i % 7 == 0 ? "\r\n\r\n" : "\r\n"));
+		out.write("1 2 3 4 5 6 7 8 9 255 255 255");
+		out.close();
+
+		assertSameScene(SceneLoader.load(file), ParallelSceneLoader.loadScene(file, 100));
+		OffHeapMesh mesh = ParallelSceneLoader.loadMesh(file, 100);
+		assertEquals(201, mesh.size());
+		assertEquals(0xffffff, mesh.getColor(200));
+	}
+
+	@Test
+	/** An empty file loads as null, like SceneLoader. */
+	public void testEmptyFile() throws IOException {
+		File file = File.createTempFile("empty", ".txt");
+		file.deleteOnExit();
+		assertNull(ParallelSceneLoader.loadScene(file));
+		assertNull(ParallelSceneLoader.loadMesh(file));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,18 @@
+package tests;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * Runs the performance tests, which are slower than the rest and sensitive to
+ * whatever else the machine is doing, so are kept apart from AllTests.
+ */
+
+@RunWith(Suite.class)
+@SuiteClasses({ PerformanceTests.class })
+public class PerformanceSuite {
+
+}
+
+//code for COMP261 assignments
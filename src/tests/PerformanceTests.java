@@ -0,0 +1,247 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.OffHeapMesh;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.SceneLoader;
+
+/**
+ * Performance regression tests over the scenes in data/, rendered headlessly
+ * by both the Scene and the off-heap mesh paths. They check three things per
+ * scene and path:
+ *
+ * <ul>
+ * <li>the bytes allocated per frame, measured by the JVM for the rendering
+ * thread, stay within a budget;</li>
+ * <li>the median frame time stays within a budget given in calibration units,
+ * the time this machine takes over a fixed loop of array work much like
+ * rasterizing, so the budgets hold on slower and faster machines alike;</li>
+ * <li>the pixels are exactly those of the golden images in data/golden, so an
+ * optimization cannot change the output without someone noticing.</li>
+ * </ul>
+ *
+ * These take a few seconds and their timings depend on the machine being
+ * otherwise quiet, so they are not part of AllTests; run PerformanceSuite.
+ * When a change is meant to alter the images, run this class's main method
+ * to write new golden images, and check them before committing them.
+ */
+public class PerformanceTests {
+
+	private static final String[] SCENES = { "ball", "bigboxes", "boxgrid", "car", "monkey", "shapes", "tetras" };
+
+	/*
+	 * per scene, the bytes a Scene frame and a mesh frame may allocate, about
+	 * twice what they measured when the budgets were set
+	 */
+	private static final long[][] BYTE_BUDGETS = {
+			{ 1000000, 230000 }, // ball
+			{ 100000, 50000 }, // bigboxes
+			{ 270000, 230000 }, // boxgrid
+			{ 850000, 160000 }, // car
+			{ 2600000, 480000 }, // monkey
+			{ 420000, 115000 }, // shapes
+			{ 50000, 24000 } // tetras
+	};
+
+	/*
+	 * per scene, the calibration units a Scene frame and a mesh frame may take,
+	 * about three times what they measured, as timings are noisier
+	 */
+	private static final double[][] TIME_BUDGETS = {
+			{ 5.5, 5.5 }, // ball
+			{ 4.0, 4.0 }, // bigboxes
+			{ 4.5, 4.5 }, // boxgrid
+			{ 4.5, 5.0 }, // car
+			{ 6.5, 6.0 }, // monkey
+			{ 4.0, 4.0 }, // shapes
+			{ 3.5, 3.5 } // tetras
+	};
+
+	private static final Dimension SIZE = new Dimension(600, 600);
+	private static final Dimension GOLDEN_SIZE = new Dimension(300, 300);
+	private static final Camera CAMERA = new Camera(0.4f, 0.7f, 1.0f, 0f, 0f);
+	private static final Color LIGHT = new Color(128, 128, 128);
+	private static final Color AMBIENT = new Color(128, 128, 128);
+	private static final File GOLDEN = new File("data/golden");
+
+	private static final int WARMUP_FRAMES = 50;
+	private static final int FRAMES = 31;
+
+	private static double unit;
+
+	@BeforeClass
+	public static void calibrate() {
+		float[][] depth = new float[SIZE.width][SIZE.height];
+		for (int i = 0; i < 20; i++)
+			calibration(depth);
+		double[] times = new double[15];
+		for (int i = 0; i < times.length; i++) {
+			long start = System.nanoTime();
+			calibration(depth);
+			times[i] = System.nanoTime() - start;
+		}
+		unit = median(times);
+	}
+
+	/*
+	 * the yardstick for frame times: a depth test over a 600x600 buffer with
+	 * pseudo-random depths, using no renderer code
+	 */
+	private static float calibration(float[][] depth) {
+		int seed = 1;
+		float sum = 0;
+		for (float[] column : depth) {
+			for (int y = 0; y < column.length; y++) {
+				seed = seed * 1103515245 + 12345;
+				float z = (seed >>> 8) * 1e-3f;
+				if (z < column[y] || y % 2 == 0)
+					column[y] = z;
+			}
+		}
+		for (float[] column : depth)
+			sum += column[0];
+		return sum;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue(counter.isThreadAllocatedMemorySupported());
+		counter.setThreadAllocatedMemoryEnabled(true);
+		return counter;
+	}
+
+	/* renders one frame of a scene or mesh into the buffer */
+	private interface Frame {
+		void render(FrameBuffer buffer);
+	}
+
+	private static Frame sceneFrame(final Scene scene) {
+		final float[] bound = scene.getBound();
+		return new Frame() {
+			@Override
+			public void render(FrameBuffer buffer) {
+				Pipeline.renderFrame(scene, bound, CAMERA, LIGHT, AMBIENT, buffer);
+			}
+		};
+	}
+
+	private static Frame meshFrame(final OffHeapMesh mesh) {
+		return new Frame() {
+			@Override
+			public void render(FrameBuffer buffer) {
+				Pipeline.renderFrame(mesh, CAMERA, LIGHT, AMBIENT, buffer);
+			}
+		};
+	}
+
+	private static Scene load(String name) throws IOException {
+		return SceneLoader.load(new File("data/" + name + ".txt"));
+	}
+
+	/* checks the allocation and time budgets of one path over one scene */
+	private static void checkBudget(String name, Frame frame, long bytes, double units) {
+		com.sun.management.ThreadMXBean counter = allocationCounter();
+		long thread = Thread.currentThread().getId();
+		FrameBuffer buffer = new FrameBuffer(SIZE.width, SIZE.height);
+		for (int i = 0; i < WARMUP_FRAMES; i++)
+			frame.render(buffer);
+
+		long before = counter.getThreadAllocatedBytes(thread);
+		double[] times = new double[FRAMES];
+		for (int i = 0; i < FRAMES; i++) {
+			long start = System.nanoTime();
+			frame.render(buffer);
+			times[i] = System.nanoTime() - start;
+		}
+		long perFrame = (counter.getThreadAllocatedBytes(thread) - before) / FRAMES;
+		double frameUnits = median(times) / unit;
+		assertTrue(name + " allocated " + perFrame + " bytes per frame, over its budget of " + bytes,
+				perFrame <= bytes);
+		assertTrue(name + " took " + String.format("%.2f", frameUnits) + " units per frame, over its budget of "
+				+ units, frameUnits <= units);
+	}
+
+	@Test
+	/** Frames of each Scene stay within their allocation and time budgets. */
+	public void testSceneBudgets() throws IOException {
+		for (int s = 0; s < SCENES.length; s++)
+			checkBudget(SCENES[s], sceneFrame(load(SCENES[s])), BYTE_BUDGETS[s][0], TIME_BUDGETS[s][0]);
+	}
+
+	@Test
+	/** Frames of each off-heap mesh stay within their allocation and time budgets. */
+	public void testMeshBudgets() throws IOException {
+		for (int s = 0; s < SCENES.length; s++)
+			checkBudget(SCENES[s] + " mesh", meshFrame(OffHeapMesh.fromScene(load(SCENES[s]))), BYTE_BUDGETS[s][1],
+					TIME_BUDGETS[s][1]);
+	}
+
+	/* renders a frame at the golden images' size */
+	private static BufferedImage golden(Frame frame) {
+		FrameBuffer buffer = new FrameBuffer(GOLDEN_SIZE.width, GOLDEN_SIZE.height);
+		frame.render(buffer);
+		return Pipeline.convertBitmapToImage(buffer.color);
+	}
+
+	private static void assertMatchesGolden(String name, BufferedImage image) throws IOException {
+		BufferedImage expected = ImageIO.read(new File(GOLDEN, name + ".png"));
+		assertNotNull("no golden image for " + name, expected);
+		assertEquals(expected.getWidth(), image.getWidth());
+		assertEquals(expected.getHeight(), image.getHeight());
+		int differing = 0;
+		for (int x = 0; x < image.getWidth(); x++)
+			for (int y = 0; y < image.getHeight(); y++)
+				if ((expected.getRGB(x, y) & 0xffffff) != (image.getRGB(x, y) & 0xffffff))
+					differing++;
+		assertEquals(name + " differs from its golden image in " + differing + " pixels", 0, differing);
+	}
+
+	@Test
+	/** Both paths draw exactly the golden images. */
+	public void testGoldenImages() throws IOException {
+		for (String name : SCENES) {
+			Scene scene = load(name);
+			assertMatchesGolden(name, golden(sceneFrame(scene)));
+			assertMatchesGolden(name + "-mesh", golden(meshFrame(OffHeapMesh.fromScene(scene))));
+		}
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/** Writes the golden images from the renderer as it is now. */
+	public static void main(String[] args) throws IOException {
+		GOLDEN.mkdirs();
+		for (String name : SCENES) {
+			Scene scene = load(name);
+			ImageIO.write(golden(sceneFrame(scene)), "png", new File(GOLDEN, name + ".png"));
+			ImageIO.write(golden(meshFrame(OffHeapMesh.fromScene(scene))), "png", new File(GOLDEN, name + "-mesh.png"));
+		}
+	}
+}
+
+// code for COMP261 assignments
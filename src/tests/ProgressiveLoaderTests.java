@@ -0,0 +1,118 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.ProgressiveLoader;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+
+public class ProgressiveLoaderTests {
+
+	private static File writeScene(int triangles) throws IOException {
+		File file = File.createTempFile("progressive", ".txt");
+		file.deleteOnExit();
+		FileWriter out = new FileWriter(file);
+		out.write("0 0 -1\n");
+		for (int i = 0; i < triangles; i++)
+			out.write(i + " 0 0 " + (i + 1) + " 5 0 " + i + " 5 " + (i % 9) + " 100 150 200\n");
+		out.close();
+		return file;
+	}
+
+	/** Records everything a load reports. */
+	private static class Recorder implements ProgressiveLoader.Listener {
+		final List<Scene> scenes = new ArrayList<Scene>();
+		final List<Boolean> complete = new ArrayList<Boolean>();
+		Exception failure;
+
+		public synchronized void loaded(Scene scene, boolean done) {
+			scenes.add(scene);
+			complete.add(done);
+		}
+
+		public synchronized void failed(Exception e) {
+			failure = e;
+		}
+	}
+
+	@Test
+	/** Partial scenes grow in file order and the last one is the whole file. */
+	public void testPartialScenesGrow() throws Exception {
+		File file = writeScene(5000);
+		Recorder recorder = new Recorder();
+		ProgressiveLoader loader = new ProgressiveLoader(file, recorder, 0, 4096);
+		loader.start();
+		loader.join();
+
+		assertNull(recorder.failure);
+		assertTrue(recorder.scenes.size() > 2);
+		assertEquals(Boolean.TRUE, recorder.complete.get(recorder.complete.size() - 1));
+		assertEquals(Boolean.FALSE, recorder.complete.get(0));
+
+		List<Polygon> all = SceneLoader.load(file).getPolygons();
+		int previous = 0;
+		for (Scene partial : recorder.scenes) {
+			List<Polygon> polygons = partial.getPolygons();
+			assertTrue(polygons.size() >= previous);
+			previous = polygons.size();
+
+			// the provisional bounds cover exactly what has arrived
+			float right = Float.NEGATIVE_INFINITY;
+			int i = 0;
+			for (Polygon p : polygons) {
+				assertArrayEquals(all.get(i).getVertices(), p.getVertices());
+				assertSame(p, polygons.get(i));
+				right = Math.max(right, p.getVertices()[1].x);
+				i++;
+			}
+			assertEquals(right, partial.getBound()[1], 0f);
+		}
+		assertEquals(all.size(), previous);
+	}
+
+	@Test
+	/** An empty file is reported as a failure rather than a scene. */
+	public void testEmptyFile() throws Exception {
+		File empty = File.createTempFile("empty", ".txt");
+		empty.deleteOnExit();
+		Recorder recorder = new Recorder();
+		ProgressiveLoader loader = new ProgressiveLoader(empty, recorder, 0, 4096);
+		loader.start();
+		loader.join();
+		assertTrue(recorder.scenes.isEmpty());
+		assertTrue(recorder.failure instanceof IllegalArgumentException);
+	}
+
+	@Test
+	/** A cancelled load never reports a complete scene. */
+	public void testCancel() throws Exception {
+		Recorder recorder = new Recorder() {
+			@Override
+			public synchronized void loaded(Scene scene, boolean done) {
+				super.loaded(scene, done);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		ProgressiveLoader loader = new ProgressiveLoader(writeScene(20000), recorder, 0, 2048);
+		loader.start();
+		loader.cancel();
+		loader.join();
+		assertFalse(recorder.complete.contains(Boolean.TRUE));
+		assertNull(recorder.failure);
+	}
+}
+
+// code for COMP261 assignments
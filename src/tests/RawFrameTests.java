@@ -0,0 +1,145 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.Pipeline;
+import renderer.RawFrame;
+import renderer.RawFrameChannel;
+import renderer.Scene;
+import renderer.SceneLoader;
+import renderer.SequenceRenderer;
+
+public class RawFrameTests {
+
+	private static final int WIDTH = 40, HEIGHT = 30;
+	private static final int HEADER = RawFrameChannel.HEADER_BYTES;
+
+	private static FrameBuffer render(Camera camera) throws IOException {
+		Scene scene = SceneLoader.load(new File("data/monkey.txt"));
+		FrameBuffer buffer = new FrameBuffer(WIDTH, HEIGHT);
+		Pipeline.renderFrame(scene, scene.getBound(), camera, SequenceRenderer.DEFAULT_LIGHT,
+				SequenceRenderer.DEFAULT_LIGHT, buffer);
+		return buffer;
+	}
+
+	/* checks a raw frame starting at the given offset holds the buffer's colours */
+	private static void assertFrame(FrameBuffer expected, ByteBuffer bytes, int offset) {
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Color c = expected.color[x][y];
+				int at = offset + (y * WIDTH + x) * 4;
+				assertEquals(c.getBlue(), bytes.get(at) & 0xff);
+				assertEquals(c.getGreen(), bytes.get(at + 1) & 0xff);
+				assertEquals(c.getRed(), bytes.get(at + 2) & 0xff);
+				assertEquals(255, bytes.get(at + 3) & 0xff);
+			}
+		}
+	}
+
+	@Test
+	/** A frame is written as B, G, R, 255 per pixel, row by row, at the buffer's position. */
+	public void testLayout() throws IOException {
+		FrameBuffer buffer = render(Camera.DEFAULT);
+		ByteBuffer target = ByteBuffer.allocate(8 + (int) RawFrame.frameBytes(WIDTH, HEIGHT) + 8);
+		target.position(8);
+		RawFrame.copy(buffer, target);
+		assertEquals(8 + WIDTH * HEIGHT * 4, target.position());
+		assertEquals(ByteOrder.BIG_ENDIAN, target.order());
+		assertFrame(buffer, target, 8);
+
+		try {
+			RawFrame.copy(buffer, target);
+			fail("copied into too small a buffer");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/** Frames rendered into a mapped file can be read back by mapping it again. */
+	public void testMappedFile() throws IOException {
+		File file = File.createTempFile("frames", ".raw");
+		file.deleteOnExit();
+		Scene scene = SceneLoader.load(new File("data/monkey.txt"));
+		FrameBuffer scratch = new FrameBuffer(WIDTH, HEIGHT);
+		Camera[] cameras = { Camera.DEFAULT, new Camera(0.5f, 1f, 1.2f, 3f, -2f) };
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer region = RawFrame.map(channel, 100, WIDTH, HEIGHT, cameras.length);
+			for (Camera camera : cameras)
+				RawFrame.render(scene, scene.getBound(), camera, SequenceRenderer.DEFAULT_LIGHT,
+						SequenceRenderer.DEFAULT_LIGHT, scratch, region);
+			region.force();
+		} finally {
+			channel.close();
+		}
+		assertEquals(100 + 2 * RawFrame.frameBytes(WIDTH, HEIGHT), file.length());
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			MappedByteBuffer read = channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			for (int i = 0; i < cameras.length; i++)
+				assertFrame(render(cameras[i]), read, 100 + i * (int) RawFrame.frameBytes(WIDTH, HEIGHT));
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test
+	/** Every kind of frame goes to a channel behind its header, gathering or not. */
+	public void testChannel() throws IOException {
+		FrameBuffer buffer = render(Camera.DEFAULT);
+		BufferedImage image = Pipeline.convertBitmapToImage(buffer.color);
+		ByteBuffer raw = ByteBuffer.allocateDirect((int) RawFrame.frameBytes(WIDTH, HEIGHT));
+		RawFrame.copy(buffer, raw);
+		raw.flip();
+		int frame = HEADER + WIDTH * HEIGHT * 4;
+
+		File file = File.createTempFile("frames", ".raw");
+		file.deleteOnExit();
+		RawFrameChannel channel = new RawFrameChannel(file.toPath());
+		channel.writeFrame(0, image);
+		channel.writeFrame(1, buffer);
+		channel.writeFrame(2, WIDTH, HEIGHT, raw);
+		channel.close();
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(3 * frame, bytes.capacity());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(RawFrameChannel.MAGIC, bytes.getInt(i * frame));
+			assertEquals(WIDTH, bytes.getInt(i * frame + 4));
+			assertEquals(HEIGHT, bytes.getInt(i * frame + 8));
+			assertEquals(i, bytes.getInt(i * frame + 12));
+			assertFrame(buffer, bytes, i * frame + HEADER);
+		}
+		assertEquals("RAWF", new String(bytes.array(), 0, 4, "US-ASCII"));
+
+		// a stream is not a gathering channel
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RawFrameChannel stream = new RawFrameChannel(Channels.newChannel(out));
+		stream.writeFrame(7, image);
+		stream.close();
+		bytes = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(frame, bytes.capacity());
+		assertEquals(7, bytes.getInt(12));
+		assertFrame(buffer, bytes, HEADER);
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,143 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameSink;
+import renderer.Pipeline;
+import renderer.RenderFarm;
+import renderer.Scene;
+import renderer.SceneLoader;
+import renderer.SequenceRenderer;
+
+public class RenderFarmTests {
+
+	private static final File SCENE = new File("data/tetras.txt");
+	private static final Dimension SIZE = new Dimension(48, 40);
+
+	/** Keeps frames, checking they arrive in order. */
+	private static class Frames implements FrameSink {
+		final List<BufferedImage> images = new ArrayList<BufferedImage>();
+
+		@Override
+		public void writeFrame(int index, BufferedImage frame) {
+			assertEquals(images.size(), index);
+			images.add(frame);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static void assertSameFrames(List<Camera> path, List<BufferedImage> frames) throws IOException {
+		Scene scene = SceneLoader.load(SCENE);
+		assertEquals(path.size(), frames.size());
+		for (int i = 0; i < path.size(); i++) {
+			BufferedImage expected = Pipeline.renderFrame(scene, path.get(i), SIZE, SequenceRenderer.DEFAULT_LIGHT,
+					SequenceRenderer.DEFAULT_LIGHT);
+			for (int x = 0; x < SIZE.width; x++)
+				for (int y = 0; y < SIZE.height; y++)
+					assertEquals("frame " + i + " at " + x + "," + y, expected.getRGB(x, y), frames.get(i).getRGB(x, y));
+		}
+	}
+
+	@Test
+	/** Frames rendered by worker processes match frames rendered here, in order. */
+	public void testLocalWorkers() throws IOException, InterruptedException {
+		RenderFarm farm = new RenderFarm(0);
+		try {
+			farm.startLocalWorker();
+			farm.startLocalWorker();
+			assertTrue(farm.awaitWorkers(2, 30000));
+			List<Camera> path = Camera.DEFAULT.turntable(8);
+			Frames frames = new Frames();
+			farm.render(SCENE, path, SIZE, SequenceRenderer.DEFAULT_LIGHT, SequenceRenderer.DEFAULT_LIGHT, 2, frames);
+			assertSameFrames(path, frames.images);
+			// the workers are given back for the next render
+			assertTrue(farm.awaitWorkers(2, 5000));
+		} finally {
+			farm.close();
+		}
+	}
+
+	@Test
+	/** The frames a worker did not finish before dying are rendered by another. */
+	public void testFailover() throws IOException, InterruptedException {
+		RenderFarm farm = new RenderFarm(0);
+		try {
+			farm.startLocalWorker("--fail-after", "1");
+			assertTrue(farm.awaitWorkers(1, 30000));
+			farm.startLocalWorker();
+			List<Camera> path = Camera.DEFAULT.turntable(6);
+			Frames frames = new Frames();
+			farm.render(SCENE, path, SIZE, SequenceRenderer.DEFAULT_LIGHT, SequenceRenderer.DEFAULT_LIGHT, 3, frames);
+			assertSameFrames(path, frames.images);
+		} finally {
+			farm.close();
+		}
+	}
+
+	@Test
+	/** A sink that throws fails the render rather than leaving the other workers waiting. */
+	public void testBrokenSink() throws IOException, InterruptedException {
+		RenderFarm farm = new RenderFarm(0);
+		try {
+			farm.startLocalWorker();
+			farm.startLocalWorker();
+			assertTrue(farm.awaitWorkers(2, 30000));
+			try {
+				farm.render(SCENE, Camera.DEFAULT.turntable(8), SIZE, SequenceRenderer.DEFAULT_LIGHT,
+						SequenceRenderer.DEFAULT_LIGHT, 2, new Frames() {
+							@Override
+							public void writeFrame(int index, BufferedImage frame) {
+								if (index == 3)
+									throw new IllegalStateException("sink is full");
+								super.writeFrame(index, frame);
+							}
+						});
+				fail("the render should fail");
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("sink is full"));
+			}
+		} finally {
+			farm.close();
+		}
+	}
+
+	@Test
+	/** A scene the workers cannot parse fails the render rather than being retried forever. */
+	public void testBadScene() throws IOException, InterruptedException {
+		File bad = File.createTempFile("bad", ".txt");
+		bad.deleteOnExit();
+		FileWriter writer = new FileWriter(bad);
+		writer.write("0 0 -1\n1 2 3 oops\n");
+		writer.close();
+		RenderFarm farm = new RenderFarm(0);
+		try {
+			farm.startLocalWorker();
+			assertTrue(farm.awaitWorkers(1, 30000));
+			try {
+				farm.render(bad, Camera.DEFAULT.turntable(2), SIZE, SequenceRenderer.DEFAULT_LIGHT,
+						SequenceRenderer.DEFAULT_LIGHT, 1, new Frames());
+				fail("the render should fail");
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("worker failed"));
+			}
+		} finally {
+			farm.close();
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,161 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import renderer.Pipeline;
+import renderer.RenderService;
+import renderer.SceneCache;
+import renderer.SceneLoader;
+
+public class RenderServiceTests {
+
+	private RenderService service;
+
+	@Before
+	public void startService() throws IOException {
+		service = new RenderService(0, new File("data"), 4, 2);
+		service.start();
+	}
+
+	@After
+	public void stopService() {
+		service.stop(0);
+	}
+
+	private HttpURLConnection open(String query) throws IOException {
+		URL url = new URL("http://localhost:" + service.getPort() + "/render?" + query);
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	@Test
+	/** A scene named in the query comes back as a PNG of the requested size. */
+	public void testRenderFile() throws IOException {
+		HttpURLConnection connection = open("scene=tetras.txt&yRot=0.4&width=64&height=48");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("image/png", connection.getContentType());
+		InputStream in = connection.getInputStream();
+		BufferedImage image = ImageIO.read(in);
+		in.close();
+		assertEquals(64, image.getWidth());
+		assertEquals(48, image.getHeight());
+
+		// something other than the background was drawn
+		boolean drawn = false;
+		for (int x = 0; x < 64; x++)
+			for (int y = 0; y < 48; y++)
+				drawn |= image.getRGB(x, y) != Pipeline.BACKGROUND.getRGB();
+		assertTrue(drawn);
+	}
+
+	@Test
+	/** A scene can be posted as the request body instead. */
+	public void testRenderPostedScene() throws IOException {
+		String scene = "0 0 -1\n0 0 0 10 0 0 0 10 0 255 0 0\n";
+		HttpURLConnection connection = open("width=32&height=32");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(scene.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(32, ImageIO.read(connection.getInputStream()).getWidth());
+	}
+
+	@Test
+	/** Bad requests are reported with a matching status code. */
+	public void testErrors() throws IOException {
+		assertEquals(404, open("scene=missing.txt").getResponseCode());
+		assertEquals(403, open("scene=../src/renderer/Scene.java").getResponseCode());
+		assertEquals(400, open("scene=tetras.txt&width=0").getResponseCode());
+		assertEquals(400, open("scene=tetras.txt&yRot=sideways").getResponseCode());
+
+		// posted scenes have no directory to find textures in
+		HttpURLConnection connection = open("width=32&height=32");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write("0 0 -1\ntexture t /etc/passwd\n".getBytes(StandardCharsets.UTF_8));
+		out.close();
+		assertEquals(400, connection.getResponseCode());
+	}
+
+	@Test
+	/** Posted bodies over the limit are refused, by their length or as they are read. */
+	public void testBodyLimit() throws IOException {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.getPort());
+		try {
+			OutputStream out = socket.getOutputStream();
+			out.write(("POST /render HTTP/1.1\r\nHost: localhost\r\nContent-Length: "
+					+ (RenderService.MAX_BODY + 1L) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			assertTrue(in.readLine().startsWith("HTTP/1.1 413"));
+		} finally {
+			socket.close();
+		}
+
+		HttpURLConnection connection = open("width=32&height=32");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setChunkedStreamingMode(8192);
+		OutputStream out = connection.getOutputStream();
+		byte[] blank = new byte[8192];
+		Arrays.fill(blank, (byte) '\n');
+		try {
+			for (int sent = 0; sent <= RenderService.MAX_BODY; sent += blank.length)
+				out.write(blank);
+			out.close();
+		} catch (IOException e) {
+			// the service may stop reading before everything is sent
+		}
+		assertEquals(413, connection.getResponseCode());
+	}
+
+	@Test
+	/** The cache evicts the least recently used scene once it is full. */
+	public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+		SceneCache cache = new SceneCache(2);
+		cache.get("ball", loader("data/ball.txt"));
+		cache.get("tetras", loader("data/tetras.txt"));
+		cache.get("ball", loader("data/ball.txt"));
+		cache.get("shapes", loader("data/shapes.txt"));
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains("ball"));
+		assertTrue(cache.contains("shapes"));
+		assertFalse(cache.contains("tetras"));
+	}
+
+	private static Callable<SceneCache.Entry> loader(final String path) {
+		return new Callable<SceneCache.Entry>() {
+			@Override
+			public SceneCache.Entry call() throws IOException {
+				return new SceneCache.Entry(SceneLoader.load(new File(path)));
+			}
+		};
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,72 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.Pipeline;
+import renderer.RenderEngine;
+import renderer.ScanlineRenderer;
+import renderer.Scene;
+import renderer.SceneLoader;
+
+public class ScanlineRendererTests {
+
+	private static final Color LIGHT = new Color(128, 128, 128);
+	private static final Color AMBIENT = new Color(60, 80, 100);
+
+	@Test
+	/** The scanline renderer draws exactly the z-buffer's images. */
+	public void testMatchesZBuffer() throws IOException {
+		Dimension size = new Dimension(200, 150);
+		for (String name : new String[] { "monkey", "bigboxes", "ball", "car", "shapes", "tetras" }) {
+			Scene scene = SceneLoader.load(new File("data/" + name + ".txt"));
+			for (Camera camera : new Camera(0.6f, 0f, 1.3f, 5f, -3f).turntable(4))
+				assertSameImage(Pipeline.renderFrame(scene, camera, size, LIGHT, AMBIENT),
+						Pipeline.renderFrame(scene, camera, size, LIGHT, AMBIENT, RenderEngine.SCANLINE));
+		}
+	}
+
+	@Test
+	/** Polygons hanging off every side of the image are clipped alike. */
+	public void testClipping() throws IOException {
+		Scene scene = SceneLoader.load(new File("data/monkey.txt"));
+		Dimension size = new Dimension(120, 90);
+		for (Camera camera : new Camera[] { new Camera(0.2f, 0.4f, 3f, 0f, 0f), new Camera(0f, 0f, 1f, -80f, -60f),
+				new Camera(0f, 0f, 1f, 80f, 60f), new Camera(0f, 0f, 1f, 500f, 0f) })
+			assertSameImage(Pipeline.renderFrame(scene, camera, size, LIGHT, AMBIENT),
+					Pipeline.renderFrame(scene, camera, size, LIGHT, AMBIENT, RenderEngine.SCANLINE));
+	}
+
+	@Test
+	/** One renderer can draw frames of different sizes and scenes in turn. */
+	public void testReuse() throws IOException {
+		ScanlineRenderer renderer = new ScanlineRenderer();
+		String[] names = { "monkey", "tetras", "bigboxes" };
+		Dimension[] sizes = { new Dimension(150, 100), new Dimension(300, 200), new Dimension(40, 60) };
+		for (int i = 0; i < names.length; i++) {
+			Scene scene = SceneLoader.load(new File("data/" + names[i] + ".txt"));
+			Scene screen = Pipeline.project(scene, Camera.DEFAULT, sizes[i]);
+			BufferedImage image = new BufferedImage(sizes[i].width, sizes[i].height, BufferedImage.TYPE_INT_RGB);
+			renderer.render(screen, LIGHT, AMBIENT, image);
+			assertSameImage(Pipeline.renderFrame(scene, Camera.DEFAULT, sizes[i], LIGHT, AMBIENT), image);
+		}
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int x = 0; x < expected.getWidth(); x++)
+			for (int y = 0; y < expected.getHeight(); y++)
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,265 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.SceneReloader;
+import renderer.SceneWatcher;
+import renderer.Vector3D;
+
+public class SceneReloaderTests {
+
+	private File directory, file;
+	private List<String> lines;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("reload").toFile();
+		file = new File(directory, "scene.txt");
+		lines = new ArrayList<String>(Files.readAllLines(new File("data/monkey.txt").toPath()));
+		save();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : directory.listFiles())
+			f.delete();
+		directory.delete();
+	}
+
+	private void save() throws IOException {
+		Files.write(file.toPath(), lines, StandardCharsets.US_ASCII);
+	}
+
+	/* a polygon line well inside the monkey's bounds */
+	private static String inside(int red) {
+		return "100 100 0 100.1 100 0 100 100.1 0 " + red + " 10 10";
+	}
+
+	private static void assertSamePolygons(List<Polygon> expected, List<Polygon> actual, float delta) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Vector3D[] a = expected.get(i).getVertices(), b = actual.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				assertEquals(a[k].x, b[k].x, delta);
+				assertEquals(a[k].y, b[k].y, delta);
+				assertEquals(a[k].z, b[k].z, delta);
+			}
+			assertEquals(expected.get(i).getReflectance(), actual.get(i).getReflectance());
+		}
+	}
+
+	@Test
+	/** Editing lines in place replaces just those polygons and keeps the rest. */
+	public void testEditInPlace() throws IOException {
+		SceneReloader reloader = new SceneReloader(file);
+		List<Polygon> before = reloader.getScene().getPolygons();
+		lines.set(11, inside(200));
+		lines.set(41, inside(100));
+		save();
+
+		SceneReloader.Update update = reloader.reload();
+		assertEquals(10, update.from);
+		assertEquals(update.removed, update.added);
+		assertArrayEquals(new int[] { 10, 40 }, update.getChanged());
+		List<Polygon> after = update.scene.getPolygons();
+		assertSamePolygons(SceneLoader.load(file).getPolygons(), after, 0f);
+		for (int i = 0; i < after.size(); i++)
+			if (i != 10 && i != 40)
+				assertSame(before.get(i), after.get(i));
+		assertSame(update.scene, reloader.getScene());
+	}
+
+	@Test
+	/** Inserted and deleted lines shift the polygons after them. */
+	public void testInsertAndDelete() throws IOException {
+		SceneReloader reloader = new SceneReloader(file);
+		int count = reloader.getScene().getPolygons().size();
+		lines.add(5, inside(1));
+		lines.add(6, inside(2));
+		save();
+		SceneReloader.Update update = reloader.reload();
+		assertEquals(4, update.from);
+		assertEquals(0, update.removed);
+		assertEquals(2, update.added);
+		assertEquals(count + 2, update.scene.getPolygons().size());
+		assertSamePolygons(SceneLoader.load(file).getPolygons(), update.scene.getPolygons(), 0f);
+
+		lines.remove(lines.size() - 1);
+		save();
+		update = reloader.reload();
+		assertEquals(1, update.removed);
+		assertEquals(0, update.added);
+		assertSamePolygons(SceneLoader.load(file).getPolygons(), update.scene.getPolygons(), 0f);
+		assertArrayEquals(SceneLoader.load(file).getBound(), update.scene.getBound(), 0f);
+
+		// nothing to do when the file is saved unchanged
+		save();
+		assertTrue(reloader.reload().isEmpty());
+	}
+
+	@Test
+	/** Patching the fitted scene gives what fitting the new scene whole gives. */
+	public void testRefit() throws IOException {
+		Dimension size = new Dimension(600, 600);
+		SceneReloader reloader = new SceneReloader(file);
+		Scene fitted = Pipeline.autoScaleAndTranslate(reloader.getScene(), reloader.getScene().getBound(), size);
+		lines.set(20, inside(50));
+		lines.add(30, inside(60));
+		save();
+		SceneReloader.Update update = reloader.reload();
+		Scene patched = update.refit(fitted, size);
+		assertNotNull(patched);
+		Scene whole = Pipeline.autoScaleAndTranslate(update.scene, update.scene.getBound(), size);
+		assertSamePolygons(whole.getPolygons(), patched.getPolygons(), 0f);
+		assertEquals(whole.getLight().x, patched.getLight().x, 0f);
+
+		// a polygon outside the old bounds moves everything
+		lines.add("1000 1000 1000 1001 1000 1000 1000 1001 1000 1 2 3");
+		save();
+		assertNull(reloader.reload().refit(patched, size));
+	}
+
+	@Test
+	/** Files with meshes and instances are read again whole. */
+	public void testExtendedFile() throws IOException {
+		Files.copy(new File("data/boxgrid.txt").toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		SceneReloader reloader = new SceneReloader(file);
+		Files.write(file.toPath(), "\n0 0 0 10 0 0 0 10 0 1 2 3\n".getBytes(StandardCharsets.US_ASCII),
+				StandardOpenOption.APPEND);
+		SceneReloader.Update update = reloader.reload();
+		assertEquals(0, update.from);
+		assertEquals(update.added, update.getChanged().length);
+		assertEquals(SceneLoader.load(file).getPolygons().size(), update.scene.getPolygons().size());
+	}
+
+	@Test
+	/** A watcher reads the file again when it is saved, in place or by renaming. */
+	public void testWatcher() throws Exception {
+		final BlockingQueue<SceneReloader.Update> updates = new LinkedBlockingQueue<SceneReloader.Update>();
+		SceneWatcher watcher = new SceneWatcher(new SceneReloader(file), new SceneWatcher.Listener() {
+			@Override
+			public void changed(SceneReloader.Update update) {
+				updates.add(update);
+			}
+
+			@Override
+			public void failed(Exception e) {
+			}
+		});
+		watcher.start();
+		try {
+			lines.set(3, inside(77));
+			save();
+			SceneReloader.Update update = updates.poll(10, TimeUnit.SECONDS);
+			assertNotNull(update);
+			assertArrayEquals(new int[] { 2 }, update.getChanged());
+
+			lines.set(3, inside(78));
+			File saved = new File(directory, "scene.tmp");
+			Files.write(saved.toPath(), lines, StandardCharsets.US_ASCII);
+			Files.move(saved.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			update = updates.poll(10, TimeUnit.SECONDS);
+			assertNotNull(update);
+			assertEquals(78, update.scene.getPolygons().get(2).getReflectance().getRed());
+		} finally {
+			watcher.close();
+		}
+	}
+
+	@Test
+	/** A sibling file that never stops changing does not hold the reload back. */
+	public void testWatcherIgnoresSiblings() throws Exception {
+		final BlockingQueue<SceneReloader.Update> updates = new LinkedBlockingQueue<SceneReloader.Update>();
+		SceneWatcher watcher = new SceneWatcher(new SceneReloader(file), new SceneWatcher.Listener() {
+			@Override
+			public void changed(SceneReloader.Update update) {
+				updates.add(update);
+			}
+
+			@Override
+			public void failed(Exception e) {
+			}
+		}, 200);
+		final File sibling = new File(directory, "sibling.txt");
+		final long until = System.currentTimeMillis() + 20000;
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; System.currentTimeMillis() < until && !Thread.interrupted(); i++) {
+						Files.write(sibling.toPath(), Integer.toString(i).getBytes(StandardCharsets.US_ASCII));
+						Thread.sleep(20);
+					}
+				} catch (IOException | InterruptedException e) {
+					// done
+				}
+			}
+		});
+		watcher.start();
+		writer.start();
+		try {
+			lines.set(3, inside(80));
+			save();
+			SceneReloader.Update update = updates.poll(10, TimeUnit.SECONDS);
+			assertNotNull(update);
+			assertArrayEquals(new int[] { 2 }, update.getChanged());
+		} finally {
+			writer.interrupt();
+			writer.join();
+			watcher.close();
+		}
+	}
+
+	@Test
+	/** A watcher given the loaded scene builds its reloader on its own thread. */
+	public void testWatcherFromScene() throws Exception {
+		final BlockingQueue<SceneReloader.Update> updates = new LinkedBlockingQueue<SceneReloader.Update>();
+		Scene scene = SceneLoader.load(file);
+		SceneWatcher watcher = SceneWatcher.watch(file, scene, new SceneWatcher.Listener() {
+			@Override
+			public void changed(SceneReloader.Update update) {
+				updates.add(update);
+			}
+
+			@Override
+			public void failed(Exception e) {
+			}
+		});
+		try {
+			while (watcher.getReloader() == null)
+				Thread.sleep(5);
+			lines.set(3, inside(79));
+			save();
+			SceneReloader.Update update = updates.poll(10, TimeUnit.SECONDS);
+			assertNotNull(update);
+			assertSame(scene, update.previous);
+			assertArrayEquals(new int[] { 2 }, update.getChanged());
+		} finally {
+			watcher.close();
+		}
+	}
+}
+
+// code for COMP261 assignments
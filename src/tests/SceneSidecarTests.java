@@ -0,0 +1,252 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import renderer.Pipeline;
+import renderer.ProgressiveLoader;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.SceneSidecar;
+import renderer.Vector3D;
+
+public class SceneSidecarTests {
+
+	private File directory;
+	private SceneSidecar cache;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("sidecar").toFile();
+		cache = new SceneSidecar(new File(directory, "cache"));
+	}
+
+	@After
+	public void tearDown() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	private File copy(String name) throws IOException {
+		File file = new File(directory, name);
+		Files.copy(new File("data", name).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+
+	private static void assertSameScene(Scene expected, Scene actual) {
+		List<Polygon> a = expected.getPolygons(), b = actual.getPolygons();
+		assertEquals(a.size(), b.size());
+		for (int i = 0; i < a.size(); i++) {
+			Vector3D[] va = a.get(i).getVertices(), vb = b.get(i).getVertices();
+			for (int k = 0; k < 3; k++) {
+				assertEquals(va[k].x, vb[k].x, 0f);
+				assertEquals(va[k].y, vb[k].y, 0f);
+				assertEquals(va[k].z, vb[k].z, 0f);
+			}
+			assertEquals(a.get(i).getReflectance(), b.get(i).getReflectance());
+		}
+		assertEquals(expected.getLight().x, actual.getLight().x, 0f);
+		assertArrayEquals(expected.getBound(), actual.getBound(), 0f);
+	}
+
+	@Test
+	/** A scene read back from its sidecar is polygon for polygon the parsed scene. */
+	public void testRoundTrip() throws IOException {
+		File file = copy("monkey.txt");
+		assertNull(cache.open(file));
+		Scene parsed = cache.load(file);
+		assertTrue(cache.sidecarFor(file).isFile());
+
+		SceneSidecar.Data data = cache.open(file);
+		assertNotNull(data);
+		assertSameScene(parsed, data.toScene());
+		assertSameScene(parsed, cache.load(file));
+	}
+
+	@Test
+	/** Shared corners are stored once, mostly with unit normals, and faces keep their normals. */
+	public void testWelding() throws IOException {
+		File file = copy("monkey.txt");
+		Scene parsed = cache.load(file);
+		SceneSidecar.Data data = cache.open(file);
+		assertEquals(parsed.getPolygons().size(), data.triangleCount());
+		assertTrue(data.vertexCount() < data.triangleCount());
+
+		float[] n = new float[3];
+		int units = 0;
+		for (int v = 0; v < data.vertexCount(); v++) {
+			data.getVertexNormal(v, n, 0);
+			float mag = (float) Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+			assertTrue(Math.abs(mag - 1f) < 1e-4f || mag == 0f);
+			units += mag > 0f ? 1 : 0;
+		}
+		assertTrue(units > data.vertexCount() / 2);
+		float[] p = new float[9], expected = new float[3];
+		for (int t = 0; t < data.triangleCount(); t++) {
+			for (int c = 0; c < 3; c++)
+				data.getVertex(data.getCorner(t, c), p, c * 3);
+			Pipeline.getNormal(p, 0, expected, 0);
+			data.getFaceNormal(t, n, 0);
+			assertArrayEquals(expected, n, 0f);
+		}
+	}
+
+	@Test
+	/** Every triangle is listed in the grid cell that holds its centroid. */
+	public void testSpatialIndex() throws IOException {
+		File file = copy("monkey.txt");
+		cache.load(file);
+		SceneSidecar.Data data = cache.open(file);
+		assertTrue(data.gridSide() > 1);
+		float[] p = new float[9];
+		for (int t = 0; t < data.triangleCount(); t++) {
+			for (int c = 0; c < 3; c++)
+				data.getVertex(data.getCorner(t, c), p, c * 3);
+			int cell = data.cellAt((p[0] + p[3] + p[6]) / 3, (p[1] + p[4] + p[7]) / 3, (p[2] + p[5] + p[8]) / 3);
+			boolean found = false;
+			for (int listed : data.trianglesInCell(cell))
+				found |= listed == t;
+			assertTrue("triangle " + t, found);
+		}
+	}
+
+	@Test
+	/** Changing a scene makes its sidecar stale; only touching it does not. */
+	public void testInvalidation() throws IOException {
+		File file = copy("tetras.txt");
+		int triangles = cache.load(file).getPolygons().size();
+
+		assertTrue(file.setLastModified(file.lastModified() - 60000));
+		assertNotNull(cache.open(file));
+		// restamped, so the next open need not hash the file
+		assertNotNull(cache.open(file));
+
+		FileWriter writer = new FileWriter(file, true);
+		writer.write("0 0 0 0 10 0 10 0 0 1 2 3\n");
+		writer.close();
+		assertNull(cache.open(file));
+		assertEquals(triangles + 1, cache.load(file).getPolygons().size());
+		assertEquals(triangles + 1, cache.open(file).triangleCount());
+	}
+
+	@Test
+	/** A sidecar that cannot be written to is still read, even when its stamp is stale. */
+	public void testReadOnlySidecar() throws IOException {
+		File file = copy("tetras.txt");
+		Scene scene = cache.load(file);
+		File sidecar = cache.sidecarFor(file);
+		assertTrue(sidecar.setWritable(false));
+		try {
+			assertNotNull(cache.open(file));
+			assertTrue(file.setLastModified(file.lastModified() - 60000));
+			assertSameScene(scene, cache.open(file).toScene());
+		} finally {
+			sidecar.setWritable(true);
+		}
+	}
+
+	@Test
+	/** A sidecar of the right length but with indices out of range is not used. */
+	public void testDamagedIndices() throws IOException {
+		File file = copy("tetras.txt");
+		Scene scene = cache.load(file);
+		SceneSidecar.Data data = cache.open(file);
+		File sidecar = cache.sidecarFor(file);
+		// the first corner index comes straight after the vertices and their normals
+		long corner = sidecar.length() - 4L * (data.triangleCount() * 7L + data.gridSide() * data.gridSide()
+				* data.gridSide() + 1) - 4L * entryCount(data);
+		RandomAccessFile raf = new RandomAccessFile(sidecar, "rw");
+		try {
+			raf.seek(corner);
+			raf.write(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f });
+		} finally {
+			raf.close();
+		}
+		assertNull(cache.open(file));
+		assertSameScene(scene, cache.load(file));
+	}
+
+	/* the number of entries in the grid, summed over its cells */
+	private static int entryCount(SceneSidecar.Data data) {
+		int count = 0;
+		int cells = data.gridSide() * data.gridSide() * data.gridSide();
+		for (int c = 0; c < cells; c++)
+			count += data.trianglesInCell(c).length;
+		return count;
+	}
+
+	@Test
+	/** Scenes with instances keep them, so have no sidecar. */
+	public void testInstancesNotCached() throws IOException {
+		File file = copy("boxgrid.txt");
+		Scene scene = cache.load(file);
+		assertFalse(scene.getInstances().isEmpty());
+		assertFalse(cache.sidecarFor(file).exists());
+		assertNull(cache.open(file));
+	}
+
+	@Test
+	/** Without a cache directory the sidecar sits next to the scene. */
+	public void testNextToScene() throws IOException {
+		File file = copy("tetras.txt");
+		SceneSidecar beside = new SceneSidecar();
+		assertEquals(new File(directory, "tetras.txt" + SceneSidecar.SUFFIX), beside.sidecarFor(file));
+		beside.load(file);
+		assertNotNull(beside.open(file));
+	}
+
+	@Test
+	/** A progressive load of a scene with a sidecar hands it over whole at once. */
+	public void testProgressiveLoaderUsesSidecar() throws Exception {
+		File file = copy("monkey.txt");
+		final List<Scene> scenes = new ArrayList<Scene>();
+		final List<Boolean> complete = new ArrayList<Boolean>();
+		ProgressiveLoader.Listener listener = new ProgressiveLoader.Listener() {
+			@Override
+			public synchronized void loaded(Scene scene, boolean done) {
+				scenes.add(scene);
+				complete.add(done);
+			}
+
+			@Override
+			public void failed(Exception e) {
+				fail(e.toString());
+			}
+		};
+		ProgressiveLoader first = new ProgressiveLoader(file, listener, 0, 4096, cache);
+		first.start();
+		first.join();
+		assertNotNull(cache.open(file));
+
+		scenes.clear();
+		complete.clear();
+		ProgressiveLoader second = new ProgressiveLoader(file, listener, 0, 4096, cache);
+		second.start();
+		second.join();
+		assertEquals(1, scenes.size());
+		assertEquals(Boolean.TRUE, complete.get(0));
+		assertSameScene(SceneLoader.load(file), scenes.get(0));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,106 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.Vector3D;
+
+public class SceneTests {
+
+	private static List<Polygon> triangle(float offset) {
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		polygons.add(new Polygon(new float[] { offset, 0, 0, 1, 0, 0, 0, 1, 0 }, new int[] { 10, 20, 30 }));
+		return polygons;
+	}
+
+	@Test
+	/** Creating a scene must not change the polygons of any other scene. */
+	public void testScenesAreIndependent() {
+		Scene first = new Scene(triangle(0), new Vector3D(0, 0, -1));
+		Scene second = new Scene(triangle(5), new Vector3D(0, 0, -1));
+
+		assertEquals(0, first.getPolygons().get(0).getVertices()[0].x, 1e-5);
+		assertEquals(5, second.getPolygons().get(0).getVertices()[0].x, 1e-5);
+		assertEquals(0, first.getBound()[0], 1e-5);
+	}
+
+	@Test
+	/** Neither the polygon list nor the polygons can be changed from outside. */
+	public void testScenesAreImmutable() {
+		Scene scene = new Scene(triangle(0), new Vector3D(0, 0, -1));
+		Polygon polygon = scene.getPolygons().get(0);
+		polygon.getVertices()[0] = new Vector3D(9, 9, 9);
+		assertEquals(0, polygon.getVertices()[0].x, 1e-5);
+
+		try {
+			scene.getPolygons().add(polygon);
+			fail("the polygon list should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/** Different scenes and cameras rendered on many threads match serial renders. */
+	public void testParallelRendersMatch() throws Exception {
+		final Scene[] scenes = { SceneLoader.load(new File("data/monkey.txt")),
+				SceneLoader.load(new File("data/tetras.txt")) };
+		final Camera[] cameras = { Camera.DEFAULT, new Camera(0.3f, -0.7f, 1.2f, 5f, 0f) };
+		final Dimension size = new Dimension(120, 90);
+		final Color light = new Color(128, 128, 128);
+
+		int[][] expected = new int[4][];
+		for (int i = 0; i < 4; i++)
+			expected[i] = pixels(Pipeline.renderFrame(scenes[i % 2], cameras[i / 2], size, light, light));
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+			for (int n = 0; n < 32; n++) {
+				final int i = n % 4;
+				results.add(pool.submit(new Callable<int[]>() {
+					@Override
+					public int[] call() {
+						return pixels(Pipeline.renderFrame(scenes[i % 2], cameras[i / 2], size, light, light));
+					}
+				}));
+			}
+			for (int n = 0; n < results.size(); n++)
+				assertArrayEquals(expected[n % 4], results.get(n).get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	@Test
+	/** An empty scene file loads as null rather than failing. */
+	public void testEmptyFile() throws IOException {
+		File empty = File.createTempFile("empty", ".txt");
+		empty.deleteOnExit();
+		assertNull(SceneLoader.load(empty));
+	}
+}
+
+// code for COMP261 assignments
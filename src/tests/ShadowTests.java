@@ -0,0 +1,146 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.ShadowMap;
+import renderer.ShadowRenderer;
+import renderer.Texture;
+import renderer.Vector3D;
+
+public class ShadowTests {
+
+	private static final Color LIGHT = new Color(255, 255, 255);
+	private static final Color AMBIENT = new Color(100, 100, 100);
+	private static final int FLOOR = new Color(200, 200, 200).getRGB();
+
+	/* a floor facing the viewer with a small triangle hanging 400 in front of it */
+	private static Scene occludedFloor(Vector3D light) {
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		polygons.add(new Polygon(new float[] { -1000, -1000, 100, -1000, 1000, 100, 1000, 1000, 100 },
+				new int[] { 200, 200, 200 }));
+		polygons.add(new Polygon(new float[] { -1000, -1000, 100, 1000, 1000, 100, 1000, -1000, 100 },
+				new int[] { 200, 200, 200 }));
+		polygons.add(new Polygon(new float[] { -100, -100, -300, -100, 100, -300, 100, 100, -300 },
+				new int[] { 50, 50, 200 }));
+		return new Scene(polygons, light);
+	}
+
+	@Test
+	/** Points behind the occluder, as seen from the light, are in shadow. */
+	public void testShadowMap() {
+		ShadowMap map = ShadowMap.build(occludedFloor(new Vector3D(1f, 0f, -1f)), 256);
+		assertFalse(map.isLit(new Vector3D(-400f, 50f, 100f)));
+		assertTrue(map.isLit(new Vector3D(400f, 50f, 100f)));
+		assertTrue(map.isLit(new Vector3D(-400f, -800f, 100f)));
+		// the occluder does not shadow itself
+		assertTrue(map.isLit(new Vector3D(0f, 50f, -300f)));
+	}
+
+	@Test
+	/** Shadowed floor pixels are drawn with ambient light alone. */
+	public void testRender() {
+		Scene scene = occludedFloor(new Vector3D(1f, 0f, -1f));
+		FrameBuffer buffer = new FrameBuffer(200, 200);
+		new ShadowRenderer(256).renderFrame(scene, scene.getBound(), Camera.DEFAULT, LIGHT, AMBIENT, buffer);
+		int lit = new Color(Pipeline.shade(FLOOR, (float) Math.sqrt(0.5), LIGHT, AMBIENT)).getRGB();
+		int shadowed = new Color(Pipeline.shade(FLOOR, 0f, LIGHT, AMBIENT)).getRGB();
+		int litCount = 0, shadowCount = 0;
+		for (int x = 0; x < buffer.width; x++) {
+			for (int y = 0; y < buffer.height; y++) {
+				int rgb = buffer.color[x][y].getRGB();
+				if (rgb == lit)
+					litCount++;
+				else if (rgb == shadowed)
+					shadowCount++;
+			}
+		}
+		assertTrue(litCount > shadowCount);
+		// the occluder covers about 1% of the floor, and hides a little of its shadow
+		assertTrue(shadowCount > 20);
+		assertTrue(shadowCount < 200);
+		// the shadow falls on the side away from the light
+		assertEquals(shadowed, buffer.color[77][100].getRGB());
+		assertEquals(lit, buffer.color[123][100].getRGB());
+	}
+
+	@Test
+	/** Textured polygons keep their texture, in light and in shadow. */
+	public void testTexturedRender() {
+		BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 2, 2, new int[] { 0xff0000, 0xff0000, 0xff0000, 0xff0000 }, 0, 2);
+		Texture red = new Texture("red", image);
+		Color white = new Color(255, 255, 255);
+		Scene flat = occludedFloor(new Vector3D(1f, 0f, -1f));
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		for (int i = 0; i < 2; i++) {
+			Vector3D[] v = flat.getPolygons().get(i).getVertices();
+			polygons.add(new Polygon(v[0], v[1], v[2], white, red, new float[] { 0, 0, 0, 1, 1, 1 }));
+		}
+		polygons.add(flat.getPolygons().get(2));
+		Scene scene = new Scene(polygons, flat.getLight());
+
+		FrameBuffer buffer = new FrameBuffer(200, 200);
+		new ShadowRenderer(256).renderFrame(scene, scene.getBound(), Camera.DEFAULT, LIGHT, AMBIENT, buffer);
+		int lit = Pipeline.shade(0xff0000, (float) Math.sqrt(0.5), LIGHT, AMBIENT);
+		int shadowed = Pipeline.shade(0xff0000, 0f, LIGHT, AMBIENT);
+		Color inShadow = buffer.color[77][100], inLight = buffer.color[123][100];
+		assertEquals(lit, inLight.getRGB() & 0xffffff);
+		assertEquals((shadowed >> 16) & 0xff, inShadow.getRed(), 1);
+		assertEquals(0, inShadow.getGreen());
+		assertEquals(0, inShadow.getBlue());
+	}
+
+	@Test
+	/** A scene with instances is shadowed as its flattened copy is. */
+	public void testInstances() throws IOException {
+		Scene scene = SceneLoader.load(new File("data/boxgrid.txt"));
+		assertFalse(scene.getInstances().isEmpty());
+		Scene flat = new Scene(new ArrayList<Polygon>(scene.getPolygons()), scene.getLight());
+		Camera camera = new Camera(0.5f, 0.7f, 1.3f, 4f, -2f);
+		FrameBuffer instanced = new FrameBuffer(160, 120);
+		FrameBuffer copies = new FrameBuffer(160, 120);
+		new ShadowRenderer(256).renderFrame(scene, scene.getBound(), camera, LIGHT, AMBIENT, instanced);
+		new ShadowRenderer(256).renderFrame(flat, flat.getBound(), camera, LIGHT, AMBIENT, copies);
+		int different = 0;
+		for (int x = 0; x < 160; x++)
+			for (int y = 0; y < 120; y++)
+				different += instanced.color[x][y].equals(copies.color[x][y]) ? 0 : 1;
+		assertTrue("pixels drawn differently: " + different, different < 160 * 120 / 200);
+	}
+
+	@Test
+	/** The map is only rebuilt when the scene or its light changes. */
+	public void testMapCached() {
+		Scene scene = occludedFloor(new Vector3D(1f, 0f, -1f));
+		ShadowRenderer renderer = new ShadowRenderer(128);
+		FrameBuffer buffer = new FrameBuffer(100, 100);
+		renderer.renderFrame(scene, scene.getBound(), Camera.DEFAULT, LIGHT, AMBIENT, buffer);
+		ShadowMap map = renderer.getShadowMap(scene);
+		for (Camera camera : Camera.DEFAULT.turntable(5))
+			renderer.renderFrame(scene, scene.getBound(), camera, LIGHT, AMBIENT, buffer);
+		assertSame(map, renderer.getShadowMap(scene));
+		assertEquals(1, renderer.getShadowBuilds());
+
+		Scene moved = occludedFloor(new Vector3D(-1f, 0f, -1f));
+		renderer.renderFrame(moved, moved.getBound(), Camera.DEFAULT, LIGHT, AMBIENT, buffer);
+		assertNotSame(map, renderer.getShadowMap(moved));
+		assertEquals(2, renderer.getShadowBuilds());
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,66 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.SceneLoader;
+import renderer.SortLastRenderer;
+
+public class SortLastRendererTests {
+
+	@Test
+	/** Splitting the polygons between workers gives exactly the serial image. */
+	public void testMatchesSerialRender() throws IOException {
+		Color light = new Color(128, 128, 128);
+		Color ambient = new Color(60, 80, 100);
+		Camera camera = new Camera(0.5f, -0.8f, 1.0f, 0f, 0f);
+		SortLastRenderer renderer = new SortLastRenderer(3);
+		try {
+			for (String name : new String[] { "bigboxes", "monkey", "shapes" }) {
+				Scene scene = SceneLoader.load(new File("data/" + name + ".txt"));
+				FrameBuffer serial = new FrameBuffer(200, 150);
+				FrameBuffer parallel = new FrameBuffer(200, 150);
+				Pipeline.renderFrame(scene, scene.getBound(), camera, light, ambient, serial);
+				renderer.renderFrame(scene, scene.getBound(), camera, light, ambient, parallel);
+
+				for (int x = 0; x < 200; x++) {
+					for (int y = 0; y < 150; y++) {
+						assertEquals(serial.color[x][y], parallel.color[x][y]);
+						assertEquals(serial.depth[x][y], parallel.depth[x][y], 0f);
+					}
+				}
+			}
+		} finally {
+			renderer.shutdown();
+		}
+	}
+
+	@Test
+	/** More workers than polygons leaves some workers with nothing to do. */
+	public void testMoreWorkersThanPolygons() throws IOException {
+		Scene scene = SceneLoader.load(new File("data/tetras.txt"));
+		SortLastRenderer renderer = new SortLastRenderer(scene.getPolygons().size() + 5);
+		try {
+			FrameBuffer buffer = new FrameBuffer(50, 50);
+			renderer.renderFrame(scene, scene.getBound(), Camera.DEFAULT, Color.WHITE, Color.GRAY, buffer);
+			boolean drawn = false;
+			for (int x = 0; x < 50; x++)
+				for (int y = 0; y < 50; y++)
+					drawn |= buffer.color[x][y] != Pipeline.BACKGROUND;
+			assertTrue(drawn);
+		} finally {
+			renderer.shutdown();
+		}
+	}
+}
+
+// code for COMP261 assignments
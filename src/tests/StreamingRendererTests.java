@@ -0,0 +1,51 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.OffHeapMesh;
+import renderer.Pipeline;
+import renderer.StreamingRenderer;
+
+public class StreamingRendererTests {
+
+	@Test
+	/** The bounds found by streaming match those of the loaded mesh. */
+	public void testScanBound() throws IOException {
+		File file = new File("data/car.txt");
+		StreamingRenderer renderer = new StreamingRenderer(1000);
+		assertArrayEquals(OffHeapMesh.load(file).getBound(), renderer.scanBound(file), 0f);
+	}
+
+	@Test
+	/**
+	 * Rendering in small batches gives exactly the image of rendering the whole
+	 * mesh at once, because the z-buffer is order independent.
+	 */
+	public void testMatchesInMemoryRender() throws IOException {
+		File file = new File("data/shapes.txt");
+		Camera camera = new Camera(-0.4f, 1.3f, 0.9f, 0f, 6f);
+		Color light = new Color(128, 128, 128);
+
+		FrameBuffer expected = new FrameBuffer(150, 100);
+		Pipeline.renderFrame(OffHeapMesh.load(file), camera, light, light, expected);
+
+		StreamingRenderer renderer = new StreamingRenderer(7 * StreamingRenderer.BYTES_PER_TRIANGLE);
+		assertEquals(7, renderer.getBatchSize());
+		FrameBuffer streamed = new FrameBuffer(150, 100);
+		renderer.render(file, camera, light, light, streamed);
+
+		for (int x = 0; x < 150; x++)
+			for (int y = 0; y < 100; y++)
+				assertEquals(expected.color[x][y], streamed.color[x][y]);
+	}
+}
+
+// code for COMP261 assignments
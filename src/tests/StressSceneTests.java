@@ -0,0 +1,126 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import renderer.OffHeapMesh;
+import renderer.Pipeline;
+import renderer.ScalingReport;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.StressSceneGenerator;
+import renderer.StressSceneGenerator.Distribution;
+import renderer.TriangleReader;
+
+public class StressSceneTests {
+
+	private static File temp(String suffix) throws IOException {
+		File file = File.createTempFile("stress", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	/** Every distribution writes exactly the triangles asked for, as text or binary. */
+	public void testCounts() throws IOException {
+		for (Distribution distribution : Distribution.values()) {
+			for (int triangles : new int[] { 1, 1000, 1237 }) {
+				File text = temp(".txt"), binary = temp(".tri");
+				StressSceneGenerator.generate(distribution, triangles, 7, text);
+				StressSceneGenerator.generate(distribution, triangles, 7, binary);
+				Scene scene = SceneLoader.load(text);
+				OffHeapMesh mesh = OffHeapMesh.load(binary);
+				assertEquals(distribution + " text", triangles, scene.getPolygons().size());
+				assertEquals(distribution + " binary", triangles, mesh.size());
+				// the same scene either way, instances and all
+				assertArrayEquals(distribution.toString(), scene.getBound(), mesh.getBound(), 0f);
+			}
+		}
+	}
+
+	@Test
+	/** The same seed always gives the same file, and another seed a different one. */
+	public void testDeterministic() throws IOException {
+		for (Distribution distribution : Distribution.values()) {
+			File a = temp(".txt"), b = temp(".txt"), c = temp(".txt");
+			StressSceneGenerator.generate(distribution, 500, 42, a);
+			StressSceneGenerator.generate(distribution, 500, 42, b);
+			StressSceneGenerator.generate(distribution, 500, 43, c);
+			byte[] bytes = Files.readAllBytes(a.toPath());
+			assertArrayEquals(bytes, Files.readAllBytes(b.toPath()));
+			assertFalse(Arrays.equals(bytes, Files.readAllBytes(c.toPath())));
+		}
+	}
+
+	@Test
+	/** A binary scene reads back to exactly the triangles of the text one. */
+	public void testBinaryMatchesText() throws IOException {
+		File text = temp(".txt"), binary = temp(".tri");
+		StressSceneGenerator.generate(Distribution.SOUP, 3000, 1, text);
+		StressSceneGenerator.generate(Distribution.SOUP, 3000, 1, binary);
+		float[] a = new float[9 * 4096], b = new float[9 * 4096];
+		int[] ca = new int[4096], cb = new int[4096];
+		TriangleReader textReader = new TriangleReader(text);
+		TriangleReader binaryReader = new TriangleReader(binary);
+		try {
+			assertEquals(textReader.getLight().x, binaryReader.getLight().x, 0f);
+			assertEquals(3000, textReader.read(a, ca, 4096));
+			// batches of 1000 straddle the reader's buffer of 1024 triangles
+			int m = 0, read;
+			while ((read = binaryReader.read(b, cb, 1000)) > 0) {
+				for (int i = 0; i < read; i++) {
+					for (int k = 0; k < 9; k++)
+						assertEquals(a[(m + i) * 9 + k], b[i * 9 + k], 0f);
+					assertEquals(ca[m + i], cb[i]);
+				}
+				m += read;
+			}
+			assertEquals(3000, m);
+		} finally {
+			textReader.close();
+			binaryReader.close();
+		}
+	}
+
+	@Test
+	/** Overlap scenes face the viewer, so none of their triangles is culled. */
+	public void testOverlapFacesViewer() throws IOException {
+		File text = temp(".txt");
+		StressSceneGenerator.generate(Distribution.OVERLAP, 200, 3, text);
+		List<Polygon> polygons = SceneLoader.load(text).getPolygons();
+		for (Polygon p : polygons)
+			assertFalse(Pipeline.isHidden(p));
+	}
+
+	@Test
+	/** The report has a line per distribution and size, with sensible numbers. */
+	public void testReport() throws IOException {
+		File directory = Files.createTempDirectory("scaling").toFile();
+		StringWriter text = new StringWriter();
+		List<ScalingReport.Row> rows = ScalingReport.run(directory, 1000, 5, true, new PrintWriter(text));
+		assertEquals(Distribution.values().length, rows.size());
+		for (ScalingReport.Row row : rows) {
+			assertEquals(1000, row.triangles);
+			assertTrue(row.fileBytes > 1000 * 40);
+			assertTrue(row.loadMillis > 0 && row.frameMillis > 0);
+		}
+		String[] lines = text.toString().trim().split("\\R");
+		assertEquals(ScalingReport.CSV_HEADER, lines[0]);
+		assertEquals(rows.size() + 1, lines.length);
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,274 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Test;
+
+import renderer.Camera;
+import renderer.FrameBuffer;
+import renderer.ParallelSceneLoader;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Scene.Polygon;
+import renderer.SceneLoader;
+import renderer.Texture;
+
+public class TextureTests {
+
+	private static final Color WHITE = new Color(255, 255, 255);
+	private static final Color NONE = new Color(0, 0, 0);
+
+	/* a quad facing the viewer with the whole texture across it */
+	private static final String QUAD = "-1000 -1000 0 -1000 1000 0 1000 1000 0 255 255 255 %1$s 0 0 0 1 1 1\n"
+			+ "-1000 -1000 0 1000 1000 0 1000 -1000 0 255 255 255 %1$s 0 0 1 1 1 0\n";
+
+	// the directories texturedQuadFile has made
+	private final List<File> directories = new ArrayList<File>();
+
+	@After
+	public void tearDown() {
+		for (File dir : directories) {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	private static BufferedImage image(int width, int height, int[] rgb) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, width, height, rgb, 0, width);
+		return image;
+	}
+
+	private Scene texturedQuad(BufferedImage texture) throws IOException {
+		return SceneLoader.load(texturedQuadFile(texture));
+	}
+
+	private File texturedQuadFile(BufferedImage texture) throws IOException {
+		return texturedFile(texture, String.format(QUAD, "tex"));
+	}
+
+	/* writes the texture and a scene using it as tex to a new directory */
+	private File texturedFile(BufferedImage texture, String polygons) throws IOException {
+		File dir = Files.createTempDirectory("textures").toFile();
+		directories.add(dir);
+		ImageIO.write(texture, "png", new File(dir, "tex.png"));
+		File file = new File(dir, "quad.txt");
+		Writer out = new FileWriter(file);
+		try {
+			out.write("0 0 -1\ntexture tex tex.png\n" + polygons);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	/** Tiled, swizzled storage still gives back every texel, and wraps. */
+	public void testStorage() {
+		int[] rgb = new int[24 * 16];
+		for (int i = 0; i < rgb.length; i++)
+			rgb[i] = i * 7919 & 0xffffff;
+		// stretched to 32x16
+		Texture texture = new Texture("t", image(24, 16, rgb));
+		assertEquals(32, texture.getWidth(0));
+		assertEquals(16, texture.getHeight(0));
+		rgb = new int[32 * 16];
+		for (int i = 0; i < rgb.length; i++)
+			rgb[i] = i * 7919 & 0xffffff;
+		texture = new Texture("t", image(32, 16, rgb));
+		for (int y = 0; y < 16; y++) {
+			for (int x = 0; x < 32; x++) {
+				assertEquals(rgb[y * 32 + x], texture.getTexel(x, y, 0));
+				assertEquals(rgb[y * 32 + x], texture.sample((x + 0.5f) / 32, (y + 0.5f) / 16, 0));
+				assertEquals(rgb[y * 32 + x], texture.sample((x + 0.5f) / 32 + 1, (y + 0.5f) / 16 - 2, 0));
+			}
+		}
+	}
+
+	@Test
+	/** Each mip level averages the one before, down to one texel. */
+	public void testMipChain() {
+		int[] rgb = { 0x000000, 0x040404, 0x080000, 0x0c0000, 0x000400, 0x000008, 0x100000, 0x140000,
+				0, 0, 0, 0, 0, 0, 0, 0 };
+		Texture texture = new Texture("t", image(4, 4, rgb));
+		assertEquals(3, texture.getLevels());
+		assertEquals(0x010203, texture.getTexel(0, 0, 1));
+		assertEquals(0x0e0000, texture.getTexel(1, 0, 1));
+		assertEquals(0x040101, texture.getTexel(0, 0, 2));
+
+		Texture strip = new Texture("t", image(8, 2, new int[16]));
+		assertEquals(4, strip.getLevels());
+		assertEquals(4, strip.getWidth(1));
+		assertEquals(1, strip.getHeight(1));
+		assertEquals(1, strip.getWidth(3));
+	}
+
+	@Test
+	/** The level is the one where a pixel covers about a texel. */
+	public void testLevelSelection() {
+		Texture texture = new Texture("t", image(16, 16, new int[256]));
+		assertEquals(0, texture.level(0.25f));
+		assertEquals(0, texture.level(1.9f));
+		assertEquals(1, texture.level(2f));
+		assertEquals(1, texture.level(3.9f));
+		assertEquals(3, texture.level(8f));
+		assertEquals(4, texture.level(1e9f));
+		assertEquals(0, texture.level(Float.NaN));
+	}
+
+	@Test
+	/** Textured lines load with their texture, whichever loader is used. */
+	public void testLoad() throws IOException {
+		Scene scene = texturedQuad(image(2, 2, new int[] { 0xff0000, 0x00ff00, 0x0000ff, 0xffffff }));
+		Polygon p = scene.getPolygons().get(1);
+		assertEquals("tex", p.getTexture().getName());
+		assertArrayEquals(new float[] { 0, 0, 1, 1, 1, 0 }, p.getTextureCoordinates(), 0f);
+		assertEquals(0x0000ff, p.getTexture().getTexel(0, 1, 0));
+
+		File file = texturedQuadFile(image(1, 1, new int[1]));
+		assertNotNull(ParallelSceneLoader.loadScene(file).getPolygons().get(0).getTexture());
+		try {
+			SceneLoader.parsePolygon(String.format(QUAD, "tex").split("\n")[0]);
+			fail("the texture was never declared");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	/** Texture images are only read from inside the scene's directory. */
+	public void testTexturePaths() throws IOException {
+		File image = new File(texturedQuadFile(image(1, 1, new int[1])).getParentFile(), "tex.png");
+		File dir = Files.createTempDirectory("textures").toFile();
+		directories.add(dir);
+		String[] outside = { image.getAbsolutePath(), "../" + image.getParentFile().getName() + "/tex.png" };
+		for (String path : outside) {
+			File file = new File(dir, "scene.txt");
+			Files.write(file.toPath(), ("0 0 -1\ntexture tex " + path + "\n").getBytes("US-ASCII"));
+			try {
+				SceneLoader.load(file);
+				fail("read a texture from " + path);
+			} catch (SecurityException expected) {
+			}
+		}
+		try {
+			SceneLoader.read(new BufferedReader(new StringReader("0 0 -1\ntexture tex tex.png\n")));
+			fail("read a texture without a scene directory");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	/** Both loaders reject the same malformed and undeclared textured lines. */
+	public void testLoadersAgree() throws IOException {
+		String[] bad = { "0 0 0 1 0 0 0 1 0 255 255 255 tex\n",
+				"0 0 0 1 0 0 0 1 0 255 255 255 tex 0 0 1 1\n", String.format(QUAD, "tex") };
+		for (String polygons : bad) {
+			File file = File.createTempFile("bad", ".txt");
+			file.deleteOnExit();
+			Files.write(file.toPath(), ("0 0 -1\n" + polygons).getBytes("US-ASCII"));
+			try {
+				SceneLoader.load(file);
+				fail("SceneLoader read " + polygons);
+			} catch (IllegalArgumentException expected) {
+			}
+			try {
+				ParallelSceneLoader.loadScene(file);
+				fail("ParallelSceneLoader read " + polygons);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	@Test
+	/** A white texture looks exactly like no texture at all. */
+	public void testWhiteMatchesFlat() throws IOException {
+		int[] white = new int[16];
+		Arrays.fill(white, 0xffffff);
+		Scene textured = texturedQuad(image(4, 4, white));
+		List<Polygon> polygons = new ArrayList<Polygon>();
+		for (Polygon p : textured.getPolygons())
+			polygons.add(new Polygon(p.getVertices()[0], p.getVertices()[1], p.getVertices()[2], p.getReflectance()));
+		Scene flat = new Scene(polygons, textured.getLight());
+		Dimension size = new Dimension(120, 100);
+		BufferedImage a = Pipeline.renderFrame(textured, Camera.DEFAULT, size, WHITE, new Color(40, 40, 40));
+		BufferedImage b = Pipeline.renderFrame(flat, Camera.DEFAULT, size, WHITE, new Color(40, 40, 40));
+		for (int x = 0; x < size.width; x++)
+			for (int y = 0; y < size.height; y++)
+				assertEquals(b.getRGB(x, y), a.getRGB(x, y));
+	}
+
+	@Test
+	/** The texture appears the right way round, and shrinks without aliasing. */
+	public void testSampling() throws IOException {
+		Dimension size = new Dimension(100, 100);
+		// red left, blue right, under white ambient light alone
+		Scene halves = texturedQuad(image(2, 1, new int[] { 0xff0000, 0x0000ff }));
+		BufferedImage image = Pipeline.renderFrame(halves, Camera.DEFAULT, size, NONE, WHITE);
+		assertEquals(0xff0000, image.getRGB(40, 50) & 0xffffff);
+		assertEquals(0x0000ff, image.getRGB(60, 50) & 0xffffff);
+
+		// a checkerboard of single texels far finer than the pixels averages to grey
+		int[] checks = new int[256 * 256];
+		for (int i = 0; i < checks.length; i++)
+			checks[i] = ((i & 1) ^ ((i >> 8) & 1)) == 0 ? 0xffffff : 0;
+		Scene fine = texturedQuad(image(256, 256, checks));
+		image = Pipeline.renderFrame(fine, Camera.DEFAULT, new Dimension(40, 40), NONE, WHITE);
+		int grey = image.getRGB(20, 20) & 0xff;
+		assertTrue(grey > 100 && grey < 160);
+	}
+
+	@Test
+	/** Textured meshes are drawn textured when instances are drawn directly. */
+	public void testInstancedTexture() throws IOException {
+		BufferedImage halves = image(2, 1, new int[] { 0xff0000, 0x0000ff });
+		Scene own = SceneLoader.load(texturedQuadFile(halves));
+		Scene placed = SceneLoader.load(texturedFile(halves, "mesh quad\n" + String.format(QUAD, "tex")
+				+ "end\ninstance quad 0 0 0\n"));
+		assertEquals(1, placed.getInstances().size());
+		for (Scene scene : new Scene[] { own, placed }) {
+			FrameBuffer buffer = new FrameBuffer(100, 100);
+			Pipeline.renderFrame(scene, scene.getBound(), Camera.DEFAULT, NONE, WHITE, buffer);
+			assertEquals(0xff0000, buffer.color[40][50].getRGB() & 0xffffff);
+			assertEquals(0x0000ff, buffer.color[60][50].getRGB() & 0xffffff);
+		}
+	}
+
+	@Test
+	/** With varying w, texture coordinates follow the perspective, not the screen. */
+	public void testPerspectiveCorrect() {
+		// red rises by 4 across each of 64 texels
+		int[] ramp = new int[64];
+		for (int x = 0; x < 64; x++)
+			ramp[x] = (x * 4) << 16;
+		Texture texture = new Texture("ramp", image(64, 1, ramp));
+		Color[][] zbuffer = new Color[200][200];
+		float[][] zdepth = new float[200][200];
+		Pipeline.clearBuffers(zbuffer, zdepth);
+		float[] points = { 0, 0, 0, 200, 0, 0, 0, 200, 0 };
+		Pipeline.computeTexturedZBuffer(zbuffer, zdepth, Pipeline.computeEdgeList(points, 0), points, 0,
+				new float[] { 1, 3, 1 }, texture, new float[] { 0, 0, 1, 0, 0, 1 }, 0xffffff);
+		// half way along the top edge on screen is only a quarter of the way in texture space
+		int red = zbuffer[100][1].getRed();
+		assertTrue(red >= 56 && red <= 72);
+	}
+}
+
+// code for COMP261 assignments